@@ -0,0 +1,89 @@
+package com.esaunders.TextbookExchange.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.esaunders.TextbookExchange.config.JwtProperties;
+import com.esaunders.TextbookExchange.service.JwtService;
+import com.esaunders.TextbookExchange.service.RevocationList;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Per-request cost of authenticating a bearer token, before and after the
+ * filter verified each token once. {@code rebuildAndParseThreeTimes} is the
+ * old path: a key and parser built for every call, and the token parsed for
+ * the username, then the subject and expiry again. The user lookup is left
+ * out, as it is the same on both paths.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ * @author Ethan Saunders
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String SECRET = "a-benchmark-secret-that-is-at-least-256-bits-long";
+
+    private JwtService cached;
+    private JwtService uncached;
+    private UserDetails user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        JwtProperties properties = new JwtProperties();
+        // Never refreshed, so the revocation list needs no repositories
+        RevocationList revocations = new RevocationList(null, null, properties);
+        cached = new JwtService(SECRET, properties, revocations);
+        properties.setVerifiedCacheSize(0);
+        uncached = new JwtService(SECRET, properties, revocations);
+        user = User.withUsername("student@school.edu").password("x").authorities("USER").build();
+        token = cached.generateToken(user);
+    }
+
+    private Claims parseWithNewParser(String jwt) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(jwt)
+                .getBody();
+    }
+
+    @Benchmark
+    public boolean rebuildAndParseThreeTimes() {
+        String username = parseWithNewParser(token).getSubject();
+        return username.equals(user.getUsername())
+            && parseWithNewParser(token).getSubject().equals(user.getUsername())
+            && !parseWithNewParser(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public JwtService.VerifiedToken verifyOnce() {
+        return uncached.verify(token);
+    }
+
+    @Benchmark
+    public JwtService.VerifiedToken verifyCached() {
+        return cached.verify(token);
+    }
+}
@@ -4,12 +4,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 
 /**
- * AWS S3 configuration for providing a singleton S3Client bean.
+ * AWS S3 configuration for providing singleton S3Client and S3Presigner beans.
  * Loads credentials and region from application properties.
  * @author Ethan Saunders
  */
@@ -43,4 +44,21 @@ public class AwsS3Config {
                 )
                 .build();
     }
+
+    /**
+     * Creates an S3Presigner bean for signing direct client uploads.
+     * Signing is done locally with the same credentials as the S3Client.
+     * @return the configured S3Presigner
+     */
+    @Bean
+    public S3Presigner s3Presigner() {
+        return S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(
+                    StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(accessKey, secretKey)
+                    )
+                )
+                .build();
+    }
 }
@@ -0,0 +1,52 @@
+package com.esaunders.TextbookExchange.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the /images proxy, which serves listing images
+ * from a local disk cache of the S3 bucket.
+ * @author Ethan Saunders
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image-cache")
+public class ImageCacheProperties {
+
+    /** Directory of the cached images; blank uses a directory under java.io.tmpdir. It is emptied on startup. */
+    private String dir = "";
+
+    /** Upper bound, in bytes, on the size of the cached images. */
+    private long maxBytes = 1024L * 1024 * 1024;
+
+    /** Number of images fetched from the origin at once. */
+    private int fetchThreads = 8;
+
+    /** Number of fetches that may wait for a thread; further misses are refused with 503. */
+    private int fetchQueueCapacity = 64;
+
+    /**
+     * How long a cached image is served before it is fetched again. Deletions evict images
+     * at once on the instance that made them; this bounds how long other instances lag.
+     */
+    private Duration ttl = Duration.ofDays(1);
+
+    /** How long a key the origin does not have is answered with 404 without asking again. */
+    private Duration missTtl = Duration.ofMinutes(1);
+
+    /** Upper bound on the number of missing keys remembered. */
+    private long maxMisses = 100_000;
+
+    /**
+     * How long an evicted image's file is kept before it is deleted, so that requests
+     * which were handed the file just before the eviction can still open it.
+     */
+    private Duration evictedFileGrace = Duration.ofMinutes(1);
+
+    /** Directory used as the bucket instead of S3, for running offline; blank uses S3. */
+    private String bucketDir = "";
+}
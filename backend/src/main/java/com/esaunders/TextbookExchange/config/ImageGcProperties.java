@@ -0,0 +1,36 @@
+package com.esaunders.TextbookExchange.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the sweep that deletes listing images no listing refers to.
+ * @author Ethan Saunders
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "image-gc")
+public class ImageGcProperties {
+
+    /** Whether the sweep runs on a schedule. */
+    private boolean enabled = true;
+
+    /** Delay after startup before the first sweep. */
+    private Duration initialDelay = Duration.ofMinutes(10);
+
+    /** Delay between the end of one sweep and the start of the next. */
+    private Duration interval = Duration.ofHours(24);
+
+    /** Objects younger than this are never deleted, as their listing may still be being saved. */
+    private Duration grace = Duration.ofHours(24);
+
+    /** Upper bound on the number of objects deleted per second. */
+    private int maxDeletesPerSecond = 500;
+
+    /** Target false-positive rate of the reference filter; a false positive only keeps an orphan. */
+    private double falsePositiveRate = 0.01;
+}
@@ -9,8 +9,10 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.esaunders.TextbookExchange.service.CustomUserDetailsService;
+import com.esaunders.TextbookExchange.dtos.CustomUserDetails;
+import com.esaunders.TextbookExchange.model.User;
 import com.esaunders.TextbookExchange.service.JwtService;
+import com.esaunders.TextbookExchange.service.UserCache;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -32,9 +34,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtService jwtService;
 
     /**
-     * Service to load user details from the database.
+     * Cache of users, for tokens issued without the user ID claim.
      */
-    private CustomUserDetailsService userDetailsService;
+    private UserCache userCache;
 
     /**
      * Checks each request for a valid JWT token and authenticates the user if valid.
@@ -58,25 +60,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String userEmail;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt);
+        // Verify the token once; the claims are reused for the rest of the request
+        JwtService.VerifiedToken token = jwtService.verify(authHeader.substring(7));
 
-        if (userEmail != null &&
+        if (token != null &&
             SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails =
-                userDetailsService.loadUserByUsername(userEmail);
+            UserDetails userDetails = principalOf(token);
 
-            // Only authenticate if token is valid and matches user
-            if (userEmail.equals(userDetails.getUsername()) &&
-                jwtService.isTokenValid(jwt, userDetails)) {
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authToken =
                     new UsernamePasswordAuthenticationToken(
                         userDetails,
@@ -91,4 +88,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Builds the principal from the token's claims, without loading the user.
+     * Tokens issued before they carried the user ID fall back to the user cache.
+     *
+     * @param token the verified token
+     * @return the principal, or null if the token's user no longer exists
+     */
+    private UserDetails principalOf(JwtService.VerifiedToken token) {
+        if (token.userId() == null) {
+            User user = userCache.findByEmail(token.subject());
+            return user == null ? null : new CustomUserDetails(user);
+        }
+        User user = new User();
+        user.setId(token.userId());
+        user.setEmail(token.subject());
+        return new CustomUserDetails(user);
+    }
 }
@@ -0,0 +1,41 @@
+package com.esaunders.TextbookExchange.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for access tokens, refresh tokens and revocation.
+ * Access tokens are verified without the database, so their lifetime bounds
+ * how long a token stays usable after the revocation list misses it.
+ * @author Ethan Saunders
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "jwt")
+public class JwtProperties {
+
+    /** How long an access token is valid. */
+    private Duration accessTokenTtl = Duration.ofMinutes(15);
+
+    /** How long a refresh token is valid; each rotation issues a new one with the full lifetime. */
+    private Duration refreshTokenTtl = Duration.ofDays(30);
+
+    /**
+     * How long after a refresh token is rotated a second use is treated as a race between
+     * tabs sharing it, and refused without ending the family.
+     */
+    private Duration refreshReuseGrace = Duration.ofSeconds(30);
+
+    /** Number of recently verified access tokens remembered. */
+    private long verifiedCacheSize = 10_000;
+
+    /** How often each instance reads revocations made by other instances. */
+    private Duration revocationRefreshInterval = Duration.ofSeconds(5);
+
+    /** Target false positive rate of the revocation Bloom filter, before the exact check. */
+    private double revocationFalsePositiveRate = 0.001;
+}
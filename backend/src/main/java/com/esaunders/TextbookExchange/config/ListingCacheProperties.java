@@ -0,0 +1,32 @@
+package com.esaunders.TextbookExchange.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the in-memory listing caches.
+ * Entries are invalidated when listings are posted or deleted; the TTLs bound
+ * staleness from changes made elsewhere, such as by another instance.
+ * @author Ethan Saunders
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "listing-cache")
+public class ListingCacheProperties {
+
+    /** How long a window of the home feed stays cached. */
+    private Duration feedTtl = Duration.ofMinutes(5);
+
+    /** How long a listing's detail stays cached. */
+    private Duration detailTtl = Duration.ofMinutes(10);
+
+    /** How long a page of search results stays cached. */
+    private Duration searchTtl = Duration.ofMinutes(2);
+
+    /** Approximate upper bound, in bytes, on the size of each cache. */
+    private long maxBytes = 16L * 1024 * 1024;
+}
@@ -0,0 +1,45 @@
+package com.esaunders.TextbookExchange.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for login: the pool checking passwords and the
+ * per-client rate limits applied before a password is checked. BCrypt is
+ * deliberately slow, so a burst of logins is kept to a few cores and refused
+ * early rather than queued behind the rest of the application's traffic.
+ * @author Ethan Saunders
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "login")
+public class LoginProperties {
+
+    /** Number of passwords checked at once. */
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /** Number of logins waiting for a thread before further logins are refused. */
+    private int queueCapacity = 32;
+
+    /** How long a login may wait and run before it is answered as busy. */
+    private Duration timeout = Duration.ofSeconds(10);
+
+    /** Logins an IP address may make in a burst. */
+    private int ipBurst = 20;
+
+    /** Logins an IP address may make per minute, once its burst is spent. */
+    private double ipPerMinute = 10;
+
+    /** Logins to one account that may be made in a burst. */
+    private int emailBurst = 5;
+
+    /** Logins to one account that may be made per minute, once its burst is spent. */
+    private double emailPerMinute = 5;
+
+    /** Approximate number of IP addresses and of accounts whose rates are tracked. */
+    private int maxTrackedClients = 100_000;
+}
@@ -0,0 +1,41 @@
+package com.esaunders.TextbookExchange.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for book listing search.
+ * Selects the search backend and tunes the embedded full-text index.
+ * @author Ethan Saunders
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "search")
+public class SearchProperties {
+
+    /**
+     * The backends that can serve listing searches.
+     */
+    public enum Mode {
+        /** Filters evaluated by the database with JPA Specifications. */
+        DATABASE,
+        /** Ranked full-text search over the embedded Lucene index. */
+        LUCENE,
+        /** PostgreSQL full-text search ranked with ts_rank, with trigram matching for typos. */
+        POSTGRES
+    }
+
+    /** The backend used by /api/books/search. */
+    private Mode mode = Mode.DATABASE;
+
+    /** Directory of the Lucene index; blank keeps the index in memory. */
+    private String indexPath = "";
+
+    /** Upper bound, in milliseconds, before an indexed change becomes searchable. */
+    private long maxStalenessMs = 1000;
+
+    /** Interval, in milliseconds, between durable commits of the index. */
+    private long commitIntervalMs = 60000;
+}
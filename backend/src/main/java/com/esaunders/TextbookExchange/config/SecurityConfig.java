@@ -101,6 +101,7 @@ public class SecurityConfig {
                     "/api/users/**",
                     "/api/books/**",
                     "/api/messages/**",
+                    "/images/**",
                     "/ws/**"
                 ).permitAll()
                 .anyRequest().authenticated()
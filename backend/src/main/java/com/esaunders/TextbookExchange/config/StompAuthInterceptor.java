@@ -0,0 +1,91 @@
+package com.esaunders.TextbookExchange.config;
+
+import java.security.Principal;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.service.JwtService;
+import com.esaunders.TextbookExchange.service.UserCache;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Authenticates STOMP sessions from the JWT in the CONNECT frame's Authorization header.
+ * The session principal is named after the user's ID, so messages sent to
+ * {@code /user/{id}/queue/...} reach only that user's sessions.
+ * @author Ethan Saunders
+ */
+@AllArgsConstructor
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+    /**
+     * Service for JWT token operations.
+     */
+    private JwtService jwtService;
+
+    /**
+     * Cache of users, for tokens issued without the user ID claim.
+     */
+    private UserCache userCache;
+
+    /**
+     * Principal of an authenticated STOMP session.
+     * @param userId the ID of the connected user
+     */
+    public record UserPrincipal(Long userId) implements Principal {
+        @Override
+        public String getName() {
+            return String.valueOf(userId);
+        }
+    }
+
+    /**
+     * Sets the session principal on CONNECT, rejecting connections without a valid token.
+     * Other frames pass through; the broker keeps the principal for the rest of the session.
+     *
+     * @param message the inbound message
+     * @param channel the client inbound channel
+     * @return the message
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new MessageDeliveryException("Missing bearer token");
+        }
+        JwtService.VerifiedToken token = jwtService.verify(authHeader.substring(7));
+        Long userId = token == null ? null : userIdOf(token);
+        if (userId == null) {
+            throw new MessageDeliveryException("Invalid or expired token");
+        }
+        accessor.setUser(new UserPrincipal(userId));
+        return message;
+    }
+
+    /**
+     * Gets the user ID from the token, looking the user up for tokens issued without it.
+     *
+     * @param token the verified token
+     * @return the user ID, or null if the token's user no longer exists
+     */
+    private Long userIdOf(JwtService.VerifiedToken token) {
+        if (token.userId() != null) {
+            return token.userId();
+        }
+        User user = userCache.findByEmail(token.subject());
+        return user == null ? null : user.getId();
+    }
+}
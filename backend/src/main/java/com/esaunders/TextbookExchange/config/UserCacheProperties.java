@@ -0,0 +1,26 @@
+package com.esaunders.TextbookExchange.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Data;
+
+/**
+ * Configuration properties for the cache of users behind authenticated requests.
+ * Entries are evicted when a user is updated, verified or deleted here; the TTL
+ * bounds staleness from changes made by another instance.
+ * @author Ethan Saunders
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "user-cache")
+public class UserCacheProperties {
+
+    /** How long a user stays cached after being loaded. */
+    private Duration ttl = Duration.ofSeconds(30);
+
+    /** Maximum number of users cached, by ID and by email each. */
+    private long maxSize = 10_000;
+}
@@ -1,31 +1,50 @@
 package com.esaunders.TextbookExchange.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import lombok.AllArgsConstructor;
+
 /**
  * WebSocket configuration for STOMP messaging and endpoint registration.
  * Enables message broker and sets up allowed origins for SockJS.
+ * Messages are delivered to per-user queues rather than a shared topic.
  * @author Ethan Saunders
  */
 @Configuration
 @EnableWebSocketMessageBroker
+@AllArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    /** Authenticates STOMP sessions when they connect. */
+    private StompAuthInterceptor stompAuthInterceptor;
+
     /**
      * Configures the message broker for STOMP messaging.
-     * Sets the topic for outgoing messages and application prefix for incoming messages.
+     * Sets the queue prefix for outgoing messages, the user destination prefix
+     * and the application prefix for incoming messages.
      * @param config the message broker registry
      */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic"); // Enable simple broker for outgoing messages
+        config.enableSimpleBroker("/queue"); // Enable simple broker for outgoing messages
+        config.setUserDestinationPrefix("/user"); // Resolve /user/queue/... to the session's own queue
         config.setApplicationDestinationPrefixes("/app"); // Set prefix for incoming messages
     }
 
+    /**
+     * Authenticates each session from the token sent with its CONNECT frame.
+     * @param registration the client inbound channel registration
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor);
+    }
+
     /**
      * Registers the STOMP WebSocket endpoint and configures allowed origins.
      * @param registry the STOMP endpoint registry
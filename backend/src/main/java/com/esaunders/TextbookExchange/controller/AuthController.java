@@ -3,37 +3,42 @@ package com.esaunders.TextbookExchange.controller;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.esaunders.TextbookExchange.dtos.CustomUserDetails;
 import com.esaunders.TextbookExchange.dtos.LoginRequest;
+import com.esaunders.TextbookExchange.dtos.RefreshRequest;
 import com.esaunders.TextbookExchange.dtos.RegisterUser;
 import com.esaunders.TextbookExchange.dtos.UserDto;
 import com.esaunders.TextbookExchange.mapper.UserMapper;
 import com.esaunders.TextbookExchange.model.User;
-import com.esaunders.TextbookExchange.model.VerificationToken;
 import com.esaunders.TextbookExchange.repository.UserRepository;
-import com.esaunders.TextbookExchange.repository.VerificationTokenRepository;
 import com.esaunders.TextbookExchange.service.EmailService;
 import com.esaunders.TextbookExchange.service.JwtService;
+import com.esaunders.TextbookExchange.service.LoginService;
+import com.esaunders.TextbookExchange.service.RefreshTokenService;
 import com.esaunders.TextbookExchange.service.UserService;
+import com.esaunders.TextbookExchange.service.VerificationLinkService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 
 /**
@@ -59,11 +64,11 @@ public class AuthController {
     /** Mapper for converting between User and UserDto. */
     private UserMapper userMapper;
 
-    /** Authentication manager for processing authentication requests. */
-    private AuthenticationManager authenticationManager;
+    /** Service checking login credentials on a bounded pool, with rate limits. */
+    private LoginService loginService;
 
-    /** Repository for verification tokens. */
-    private VerificationTokenRepository verificationTokenRepository;
+    /** Service issuing and checking email verification links. */
+    private VerificationLinkService verificationLinkService;
 
     /** Password encoder for hashing user passwords. */
     private PasswordEncoder passwordEncoder;
@@ -71,34 +76,96 @@ public class AuthController {
     /** Service for JWT token operations. */
     private JwtService jwtService;
 
+    /** Service issuing and rotating refresh tokens. */
+    private RefreshTokenService refreshTokenService;
+
     /**
      * Authenticates a user and returns a JWT token if successful.
+     * The password is checked on the login pool; clients over their rate limit
+     * are refused with 429, and logins beyond the pool's queue with 503.
      *
      * @param loginRequest the login request containing email and password
-     * @return a response entity with the JWT token or unauthorized status
+     * @param request the HTTP request, for the client's address as forwarded by trusted proxies
+     * @return a response entity with the JWT token or unauthorized status, once the password is checked
      */
     @PostMapping("/login")
-    public ResponseEntity<Map<String, String>> login(@RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> login(@RequestBody LoginRequest loginRequest,
+                                                                        HttpServletRequest request) {
+        CompletableFuture<Authentication> authentication;
         try {
-            Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    loginRequest.getEmail(),
-                    loginRequest.getPassword()
-                )
-            );
-            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            authentication = loginService.authenticate(loginRequest.getEmail(), loginRequest.getPassword(),
+                request.getRemoteAddr());
+        } catch (LoginService.RateLimitedException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", "Too many login attempts")));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(busy());
+        }
+        return authentication.handle((result, e) -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof AuthenticationException) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            if (cause instanceof TimeoutException) {
+                return busy();
+            }
+            if (cause != null) {
+                throw new CompletionException(cause);
+            }
+            CustomUserDetails userDetails = (CustomUserDetails) result.getPrincipal();
             if (!userDetails.isVerified()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not verified"));
             }
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            String jwt = jwtService.generateToken(userDetails);
+            RefreshTokenService.TokenPair tokens = refreshTokenService.issue(userDetails.getUser());
             Map<String, String> response = new HashMap<>();
-            response.put("token", jwt);
+            response.put("token", tokens.accessToken());
+            response.put("refreshToken", tokens.refreshToken());
             return ResponseEntity.ok(response);
-        } catch (BadCredentialsException e) {
+        });
+    }
+
+    private static ResponseEntity<Map<String, String>> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+            .body(Map.of("error", "Too many logins are in progress. Please try again shortly."));
+    }
+
+    /**
+     * Trades a refresh token for a new access token and refresh token.
+     * The refresh token can be used once; using it again ends every session from the same login.
+     *
+     * @param request the request containing the refresh token
+     * @return a response entity with the new tokens or unauthorized status
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, String>> refresh(@RequestBody RefreshRequest request) {
+        RefreshTokenService.TokenPair tokens = refreshTokenService.rotate(request.getRefreshToken());
+        if (tokens == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        Map<String, String> response = new HashMap<>();
+        response.put("token", tokens.accessToken());
+        response.put("refreshToken", tokens.refreshToken());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Logs out: revokes the access token in the Authorization header, if any,
+     * and the refresh token in the body, along with every token rotated from it.
+     *
+     * @param authorization the Authorization header, or null
+     * @param request the request containing the refresh token, or null
+     * @return a response entity with no content
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                       @RequestBody(required = false) RefreshRequest request) {
+        JwtService.VerifiedToken accessToken = authorization != null && authorization.startsWith("Bearer ")
+            ? jwtService.verify(authorization.substring(7))
+            : null;
+        refreshTokenService.logout(request == null ? null : request.getRefreshToken(), accessToken);
+        return ResponseEntity.noContent().build();
     }
 
     /**
@@ -114,7 +181,7 @@ public class AuthController {
                 .body(null);
         }
         User user = userMapper.toEntity(request);
-        VerificationToken token = new VerificationToken();
+        String token;
 
         try {
             if (userRepository.findByUsername(request.getUsername()).isPresent()) {
@@ -124,10 +191,7 @@ public class AuthController {
             user.setPassword(passwordEncoder.encode(user.getPassword()));
             user.setCreatedAt(LocalDateTime.now());
             userRepository.save(user);
-            token.setToken(UUID.randomUUID().toString());
-            token.setUser(user);
-            token.setExpiryTime(LocalDateTime.now().plusHours(1));
-            verificationTokenRepository.save(token);
+            token = verificationLinkService.issue(user);
         } catch (Exception e) {
             System.out.println("Failed to register user: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -135,7 +199,7 @@ public class AuthController {
         }
 
         try {
-            String verifyUrl = "https://textbook-exchange-six.vercel.app/verify?token=" + token.getToken();
+            String verifyUrl = "https://textbook-exchange-six.vercel.app/verify?token=" + token;
             emailService.sendEmail(user.getEmail(), "Verify your account", 
                 "Copy the link in browser to verify: " + verifyUrl);
         } catch (Exception e) {
@@ -156,12 +220,8 @@ public class AuthController {
      */
     @GetMapping("/verify")
     public ResponseEntity<?> verify(@RequestParam String token) {
-        VerificationToken vToken = verificationTokenRepository.findByToken(token);
-        if (vToken != null && !vToken.isExpired()) {
-            User user = vToken.getUser();
-            user.setVerified(true);
-            userRepository.save(user);
-            verificationTokenRepository.delete(vToken);
+        Long userId = verificationLinkService.verify(token);
+        if (userId != null && userService.markVerified(userId)) {
             return ResponseEntity.ok("Verified");
         }
         return ResponseEntity.badRequest().body("Invalid or expired token");
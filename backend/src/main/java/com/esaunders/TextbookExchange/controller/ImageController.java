@@ -0,0 +1,240 @@
+package com.esaunders.TextbookExchange.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.esaunders.TextbookExchange.service.ImageCache;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+
+/**
+ * Controller serving listing images through the local disk cache, for deployments
+ * where S3 egress is the bottleneck. Supports conditional and single-range requests.
+ * Images are written with sendfile when the connector supports it, so their bytes
+ * go from the page cache to the socket without being copied through the heap.
+ * Otherwise they are written through the servlet output stream, which copies them
+ * through a heap buffer.
+ * @author Ethan Saunders
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/images")
+public class ImageController {
+    /** Image keys never change content, so responses may be cached for a year. */
+    static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    /** Request attributes through which Tomcat sends a file itself, with sendfile. */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** Marks a range that lies outside the image. */
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /** Disk cache of images. */
+    private ImageCache imageCache;
+
+    /**
+     * Serves a listing image.
+     *
+     * @param key the object key, such as images/&lt;sha256&gt;.jpg
+     * @param request the request
+     * @param response the response
+     * @throws IOException if the response cannot be written
+     */
+    @RequestMapping(path = "/{*key}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void getImage(@PathVariable String key, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        String objectKey = key.startsWith("/") ? key.substring(1) : key;
+        if (!ImageCache.isServable(objectKey)) {
+            response.sendError(404);
+            return;
+        }
+        ImageCache.CachedImage image;
+        try {
+            image = imageCache.get(objectKey);
+        } catch (RejectedExecutionException e) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.sendError(503);
+            return;
+        } catch (Exception e) {
+            System.err.println("Failed to fetch image " + objectKey + ": " + e.getMessage());
+            response.sendError(502);
+            return;
+        }
+        if (image == null) {
+            response.sendError(404);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (image.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, image.etag());
+        }
+        if (image.lastModified() != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, image.lastModified().toEpochMilli());
+        }
+        if (isNotModified(request, image)) {
+            response.setStatus(304);
+            return;
+        }
+
+        long start = 0;
+        long end = image.size() - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && isRangeCurrent(request, image)) {
+            long[] bounds = parseRange(range, image.size());
+            if (bounds == UNSATISFIABLE) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + image.size());
+                response.setStatus(416);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(206);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + image.size());
+            }
+        }
+        long length = end - start + 1;
+        response.setContentType(image.contentType());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat opens and writes the file after this method returns, straight from the
+            // page cache; the cache keeps evicted files long enough for it to be opened
+            request.setAttribute(SENDFILE_FILENAME, image.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        // Without sendfile the servlet stream is the only way out, and it buffers on the heap
+        try (FileChannel file = FileChannel.open(image.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Checks the request's validators against the image.
+     * @param request the request
+     * @param image the image
+     * @return true if the client's copy is current
+     */
+    private static boolean isNotModified(HttpServletRequest request, ImageCache.CachedImage image) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // If-Modified-Since is ignored when If-None-Match is present
+            return image.etag() != null && matchesEtag(ifNoneMatch, image.etag());
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && image.lastModified() != null
+            && image.lastModified().toEpochMilli() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Checks If-Range, which asks for the range only if the image has not changed.
+     * @param request the request
+     * @param image the image
+     * @return true if the range applies
+     */
+    private static boolean isRangeCurrent(HttpServletRequest request, ImageCache.CachedImage image) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(image.etag());
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && image.lastModified() != null
+            && image.lastModified().toEpochMilli() / 1000 == date / 1000;
+    }
+
+    private static boolean matchesEtag(String header, String etag) {
+        String strong = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(strong)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a Range header. Only a single byte range is supported;
+     * a header asking for several is ignored and the whole image is sent.
+     * @param header the Range header
+     * @param size the size of the image
+     * @return the first and last byte, inclusive; {@link #UNSATISFIABLE} if the range
+     *         lies outside the image; or null if the header is to be ignored
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // A suffix range: the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                return size == 0 ? UNSATISFIABLE : new long[] {Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= size) {
+                return UNSATISFIABLE;
+            }
+            return new long[] {start, Math.min(end, size - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.esaunders.TextbookExchange.controller;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -11,21 +14,28 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.esaunders.TextbookExchange.dtos.BookDto;
 import com.esaunders.TextbookExchange.dtos.BookRequest;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.dtos.SuggestionDto;
+import com.esaunders.TextbookExchange.dtos.UploadUrlRequest;
 import com.esaunders.TextbookExchange.mapper.BookMapper;
-import com.esaunders.TextbookExchange.mapper.UserMapper;
 import com.esaunders.TextbookExchange.model.BookListing;
 import com.esaunders.TextbookExchange.model.User;
 import com.esaunders.TextbookExchange.repository.BookListingRepository;
+import com.esaunders.TextbookExchange.service.ImageUploadService;
+import com.esaunders.TextbookExchange.service.ListingExportService;
+import com.esaunders.TextbookExchange.service.ListingImportService;
 import com.esaunders.TextbookExchange.service.ListingService;
-import com.esaunders.TextbookExchange.service.S3Service;
+import com.esaunders.TextbookExchange.service.SuggestionService;
 import com.esaunders.TextbookExchange.service.UserService;
 
 import lombok.AllArgsConstructor;
@@ -47,46 +57,42 @@ public class ListingController {
     /** Mapper for converting between BookListing and BookDto.*/
     private BookMapper bookMapper;
 
-    /** Service for listing-related business logic. */
-    private UserMapper userMapper;
-
     /** Service for listing-related business logic. */
     private ListingService listingService;
 
     /** Service for user-related operations. */
     private UserService userService;
 
-    /** Service for S3 operations. */
-    private S3Service s3Service;
+    /** Service for typeahead suggestions. */
+    private SuggestionService suggestionService;
+
+    /** Service for bulk export of listings. */
+    private ListingExportService listingExportService;
+
+    /** Service for bulk import of listings. */
+    private ListingImportService listingImportService;
+
+    /** Service for uploading listing images in the background. */
+    private ImageUploadService imageUploadService;
 
     /**
-     * Returns the 10 most recent book listings, excluding the current user's own listings.
+     * Returns one page of the most recent book listings, excluding the current user's own listings.
      *
-     * @return a response entity with a list of BookDto
+     * @param cursor the cursor from the previous page's response (optional)
+     * @param limit the maximum number of listings to return
+     * @return a response entity with the page of BookDto and the next cursor
      */
     @GetMapping
-    public ResponseEntity<List<BookDto>> getAllBooks() {
+    public ResponseEntity<?> getAllBooks(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "10") int limit
+    ) {
         User user = userService.getAuthenticatedUser();
-
-        List<BookDto> books = bookListingRepository.findAll().stream()
-            .map(book -> {
-                BookDto dto = bookMapper.toBookDto(book);
-                if (book.getOwner() != null) {
-                    dto.setSeller(userMapper.toUserDto(book.getOwner()));
-                }
-                return dto;
-            })
-            .filter(book -> user == null || book.getOwnerId() == null || !book.getOwnerId().equals(user.getId()))
-            .sorted((a, b) -> {
-                if (a.getPostedAt() == null && b.getPostedAt() == null) return 0;
-                if (a.getPostedAt() == null) return 1;
-                if (b.getPostedAt() == null) return -1;
-                return b.getPostedAt().compareTo(a.getPostedAt());
-            })
-            .limit(10)
-            .collect(Collectors.toList());
-
-        return ResponseEntity.ok(books);
+        try {
+            return ResponseEntity.ok(listingService.getFeed(user, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     /**
@@ -97,55 +103,88 @@ public class ListingController {
      * @param condition book condition filter (optional)
      * @param minPrice minimum price filter (optional)
      * @param maxPrice maximum price filter (optional)
-     * @return a response entity with a list of BookDto matching the filters
+     * @param sort sort option: relevance, newest, oldest, price_asc, price_desc or title (optional)
+     * @param page zero-based page number
+     * @param size maximum number of listings per page
+     * @return a response entity with the page of BookDto matching the filters
      */
     @GetMapping("/search")
-    public ResponseEntity<List<BookDto>> searchBooks(
+    public ResponseEntity<?> searchBooks(
         @RequestParam(required = false) String query,
         @RequestParam(required = false) String condition,
         @RequestParam(required = false) Double minPrice,
-        @RequestParam(required = false) Double maxPrice
+        @RequestParam(required = false) Double maxPrice,
+        @RequestParam(required = false) String sort,
+        @RequestParam(defaultValue = "0") int page,
+        @RequestParam(defaultValue = "20") int size
     ) {
         User user = userService.getAuthenticatedUser();
-        List<BookDto> books = bookListingRepository.findAll().stream()
-            .map(book -> {
-                BookDto dto = bookMapper.toBookDto(book);
-                if (book.getOwner() != null) {
-                    dto.setSeller(userMapper.toUserDto(book.getOwner()));
-                }
-                return dto;
-            })
-            .filter(book -> {
-                boolean matches = true;
-                if (user != null && book.getOwnerId() != null && book.getOwnerId().equals(user.getId())) {
-                    return false;
-                }
-                if (query != null && !query.isEmpty()) {
-                    String q = query.toLowerCase();
-                    matches &= (book.getTitle() != null && book.getTitle().toLowerCase().contains(q))
-                            || (book.getCourseCode() != null && book.getCourseCode().toLowerCase().contains(q));
-                }
-                if (condition != null && !condition.isEmpty()) {
-                    matches &= condition.equalsIgnoreCase(book.getCondition());
-                }
-                if (minPrice != null) {
-                    matches &= book.getPrice() >= minPrice;
-                }
-                if (maxPrice != null) {
-                    matches &= book.getPrice() <= maxPrice;
-                }
-                return matches;
-            })
-            .collect(Collectors.toList());
-
-        return ResponseEntity.ok(books);
+        BookSearchCriteria criteria = new BookSearchCriteria(query, condition, minPrice, maxPrice,
+            user != null ? user.getId() : null);
+        try {
+            return ResponseEntity.ok(listingService.searchBooks(criteria, sort, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Streams every listing matching the filters as NDJSON or CSV, in ID order.
+     * Rows are written as they are read from the database, so the full inventory
+     * can be exported without loading it into memory.
+     *
+     * @param format the export format: ndjson or csv
+     * @param query search term for title or course code (optional)
+     * @param condition book condition filter (optional)
+     * @param minPrice minimum price filter (optional)
+     * @param maxPrice maximum price filter (optional)
+     * @return a response entity streaming the listings
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportBooks(
+        @RequestParam(defaultValue = "ndjson") String format,
+        @RequestParam(required = false) String query,
+        @RequestParam(required = false) String condition,
+        @RequestParam(required = false) Double minPrice,
+        @RequestParam(required = false) Double maxPrice
+    ) {
+        ListingExportService.Format exportFormat;
+        try {
+            exportFormat = ListingExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        BookSearchCriteria criteria = new BookSearchCriteria(query, condition, minPrice, maxPrice, null);
+        StreamingResponseBody body = out -> listingExportService.export(criteria, exportFormat, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"listings." + exportFormat.getExtension() + "\"")
+            .body(body);
+    }
+
+    /**
+     * Suggests course codes and titles starting with a prefix, for typeahead.
+     *
+     * @param prefix the text typed so far
+     * @param limit the maximum number of suggestions of each kind
+     * @return a response entity with the matching course codes and titles
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<SuggestionDto> suggest(
+        @RequestParam(defaultValue = "") String prefix,
+        @RequestParam(defaultValue = "" + SuggestionService.DEFAULT_LIMIT) int limit
+    ) {
+        return ResponseEntity.ok(suggestionService.suggest(prefix, limit));
     }
 
     /**
      * Posts a new book listing for the authenticated user.
+     * The listing is saved as PENDING_IMAGE and the request returns at once;
+     * the image is resized and uploaded in the background, after which the listing is shown.
      *
-     * @param bookDto the book listing data
-     * @return a response entity indicating success or error
+     * @param request the book listing data
+     * @param image the book image
+     * @return a response entity with the pending listing, or an error
      */
     @PostMapping(path = "/post-listing", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
     public ResponseEntity<?> postBookListing(
@@ -161,10 +200,72 @@ public class ListingController {
             return ResponseEntity.badRequest().body("Book image is required.");
         }
         // Validate image type
-        String contentType = image.getContentType();
-        if (!("image/jpeg".equals(contentType) || "image/png".equals(contentType))) {
+        if (!ImageUploadService.IMAGE_TYPES.contains(image.getContentType())) {
             return ResponseEntity.badRequest().body("Invalid image type. Only JPEG and PNG are allowed.");
         }
+        if (image.getSize() > ImageUploadService.MAX_IMAGE_BYTES) {
+            return ResponseEntity.badRequest().body("Book image must be at most "
+                + (ImageUploadService.MAX_IMAGE_BYTES / (1024 * 1024)) + " MB.");
+        }
+
+        BookListing bookListing = bookMapper.toEntity(request);
+        if (!listingService.checkCourseCodeValid(bookListing.getCourseCode())) {
+            return ResponseEntity.badRequest().body("Invalid course code format");
+        }
+        bookListing.setOwner(user);
+        bookListing.setPostedAt(LocalDateTime.now());
+
+        // Every upload is re-encoded as JPEG by the image processor
+        String key = "book-images/" + System.currentTimeMillis() + "-" + user.getId() + ".jpg";
+        try {
+            BookListing saved = imageUploadService.submit(bookListing, image, key);
+            return ResponseEntity.accepted().body(bookMapper.toBookDto(saved));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "5")
+                .body("Too many listings are being posted. Please try again shortly.");
+        } catch (IOException e) {
+            System.out.println("Failed to store image: " + e.getMessage());
+            return ResponseEntity.status(500).body("Image upload failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Issues a presigned URL for uploading a listing image directly to S3.
+     * The client PUTs the image to the URL with the returned headers, then posts
+     * the listing as JSON with the returned key as its imageKey.
+     *
+     * @param request the media type and exact size of the image
+     * @return a response entity with the staging key, URL, required headers and expiry
+     */
+    @PostMapping("/upload-url")
+    public ResponseEntity<?> createUploadUrl(@RequestBody UploadUrlRequest request) {
+        User user = userService.getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        try {
+            return ResponseEntity.ok(imageUploadService.presignUpload(user.getId(), request.getContentType(),
+                request.getSize()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Posts a new book listing whose image was uploaded directly to S3.
+     * The upload is verified with a HEAD request, the listing is saved as
+     * PENDING_IMAGE, and the image is resized in the background as for a multipart post.
+     *
+     * @param request the book listing data, with the imageKey from /upload-url
+     * @return a response entity with the pending listing, or an error
+     */
+    @PostMapping(path = "/post-listing", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> postBookListingWithUploadedImage(@RequestBody BookRequest request) {
+        User user = userService.getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
 
         BookListing bookListing = bookMapper.toEntity(request);
         if (!listingService.checkCourseCodeValid(bookListing.getCourseCode())) {
@@ -173,19 +274,49 @@ public class ListingController {
         bookListing.setOwner(user);
         bookListing.setPostedAt(LocalDateTime.now());
 
+        String key = "book-images/" + System.currentTimeMillis() + "-" + user.getId() + ".jpg";
         try {
-            String ext = "jpg";
-            if ("image/png".equals(contentType)) ext = "png";
-            String key = "book-images/" + System.currentTimeMillis() + "-" + user.getId() + "." + ext;
-            String imageUrl = s3Service.uploadFile(image, key);
-            bookListing.setImageUrl(imageUrl);
+            BookListing saved = imageUploadService.submitUploaded(bookListing, request.getImageKey(), key);
+            return ResponseEntity.accepted().body(bookMapper.toBookDto(saved));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "5")
+                .body("Too many listings are being posted. Please try again shortly.");
         } catch (Exception e) {
-            System.out.println("Failed to upload image: " + e.getMessage());
+            System.out.println("Failed to verify uploaded image: " + e.getMessage());
             return ResponseEntity.status(500).body("Image upload failed: " + e.getMessage());
         }
+    }
 
-        bookListingRepository.save(bookListing);
-        return ResponseEntity.ok().build();
+    /**
+     * Imports many book listings for the authenticated user at once.
+     * Each row of the manifest is validated, uploaded and saved independently,
+     * and the response reports the outcome of every row.
+     *
+     * @param manifest a CSV file with a header row, or a JSON array, of listings;
+     *                 each row names its image within the archive
+     * @param images a zip archive of the listing images
+     * @return a response entity with the per-row import results
+     */
+    @PostMapping(path = "/import", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
+    public ResponseEntity<?> importBookListings(
+        @RequestPart("manifest") MultipartFile manifest,
+        @RequestPart("images") MultipartFile images
+    ) {
+        User user = userService.getAuthenticatedUser();
+        if (user == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        try {
+            return ResponseEntity.ok(listingImportService.importListings(user, manifest, images));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Failed to import listings: " + e.getMessage());
+            return ResponseEntity.status(500).body("Import failed: " + e.getMessage());
+        }
     }
 
     /**
@@ -206,11 +337,11 @@ public class ListingController {
             new RuntimeException("Book listing not found");
         }
 
-        if (!bookListing.getOwner().equals(user)) {
+        if (!Objects.equals(bookListing.getOwner().getId(), user.getId())) {
             return ResponseEntity.status(403).build();
         }
 
-        bookListingRepository.delete(bookListing);
+        listingService.deleteListing(bookListing);
         return ResponseEntity.ok().build();
     }
 
@@ -222,15 +353,10 @@ public class ListingController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<BookDto> getBookById(@PathVariable Long id) {
-        BookListing bookListing = bookListingRepository.findById(id).orElse(null);
-        if (bookListing == null) {
+        BookDto bookDto = listingService.getBookById(id);
+        if (bookDto == null) {
             return ResponseEntity.notFound().build();
         }
-
-        BookDto bookDto = bookMapper.toBookDto(bookListing);
-        if (bookListing.getOwner() != null) {
-            bookDto.setSeller(userMapper.toUserDto(bookListing.getOwner()));
-        }
         return ResponseEntity.ok(bookDto);
     }
 
@@ -4,17 +4,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import com.esaunders.TextbookExchange.config.StompAuthInterceptor;
 import com.esaunders.TextbookExchange.dtos.MessageDto;
 import com.esaunders.TextbookExchange.mapper.MessagesMapper;
 import com.esaunders.TextbookExchange.model.Message;
+import com.esaunders.TextbookExchange.model.User;
 import com.esaunders.TextbookExchange.repository.MessageRepository;
 import com.esaunders.TextbookExchange.repository.UserRepository;
+import com.esaunders.TextbookExchange.service.MessageService;
+import com.esaunders.TextbookExchange.service.UserService;
 
 import lombok.AllArgsConstructor;
 
+import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
@@ -44,46 +49,102 @@ public class MessageController {
     @Autowired
     private MessagesMapper messagesMapper;
 
+    /** Template for delivering messages to user queues. */
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    /** Service for sending messages and reading conversations. */
+    @Autowired
+    private MessageService messageService;
+
+    /** Service for retrieving the authenticated user. */
+    @Autowired
+    private UserService userService;
+
     /**
      * Handles incoming chat messages via WebSocket and saves them to the database.
+     * The saved message is delivered to the sender's and receiver's queues only;
+     * the sender is the session's authenticated user, not the ID in the payload.
      * @param message the incoming message
-     * @return the saved message
+     * @param principal the authenticated user of the STOMP session
      */
     @MessageMapping("/chat")
-    @SendTo("/topic/messages")
-    public MessageDto send(Message message) {
+    public void send(Message message, Principal principal) {
         try {
             System.out.println("Received message via WebSocket: " + message);
             
             if (message == null) {
                 System.err.println("Received null message");
-                return null;
+                return;
+            }
+
+            if (!(principal instanceof StompAuthInterceptor.UserPrincipal user)) {
+                System.err.println("Received message on an unauthenticated session");
+                return;
             }
             
             // Validate message content
             if (message.getContent() == null || message.getContent().trim().isEmpty()) {
                 System.err.println("Message content is null or empty");
-                return messagesMapper.toDto(message, userRepository);
+                return;
             }
             
-            if (message.getSenderId() == null || message.getReceiverId() == null) {
-                System.err.println("SenderId or ReceiverId is null");
-                return messagesMapper.toDto(message, userRepository);
+            if (message.getReceiverId() == null) {
+                System.err.println("ReceiverId is null");
+                return;
             }
             
+            message.setSenderId(user.userId());
             message.setTimestamp(LocalDateTime.now());
-            Message savedMessage = messageRepository.save(message);
+            Message savedMessage = messageService.send(message);
             MessageDto savedMessageDto = messagesMapper.toDto(savedMessage, userRepository);
             System.out.println("Message saved successfully: " + savedMessage);
-            return savedMessageDto;
+
+            messagingTemplate.convertAndSendToUser(
+                String.valueOf(savedMessage.getSenderId()), "/queue/messages", savedMessageDto);
+            if (!savedMessage.getReceiverId().equals(savedMessage.getSenderId())) {
+                messagingTemplate.convertAndSendToUser(
+                    String.valueOf(savedMessage.getReceiverId()), "/queue/messages", savedMessageDto);
+            }
             
         } catch (Exception e) {
             System.err.println("Error processing message: " + e.getMessage());
             e.printStackTrace();
-            return messagesMapper.toDto(message, userRepository);
         }
     }
 
+    /**
+     * Gets one page of the authenticated user's inbox, most recently active conversation first.
+     * Served from the conversations read model, so the cost depends on the page size only.
+     * @param cursor the cursor from the previous page's response (optional)
+     * @param limit the maximum number of conversations to return
+     * @return a response entity with the page of ConversationDto and the next cursor
+     */
+    @GetMapping("/conversations")
+    public ResponseEntity<?> getConversations(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") int limit
+    ) {
+        User user = userService.getAuthenticatedUser();
+        try {
+            return ResponseEntity.ok(messageService.getInbox(user.getId(), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the authenticated user's conversation with another user read.
+     * @param otherUserId the other user's ID
+     * @return an empty response entity
+     */
+    @PostMapping("/conversations/{otherUserId}/read")
+    public ResponseEntity<Void> markConversationRead(@PathVariable Long otherUserId) {
+        User user = userService.getAuthenticatedUser();
+        messageService.markRead(user.getId(), otherUserId);
+        return ResponseEntity.noContent().build();
+    }
+
     /**
      * Gets all messages received by a user.
      * @param userId the receiver's user ID
@@ -114,35 +175,32 @@ public class MessageController {
     }
 
     /**
-     * Gets all messages sent and received between two users.
+     * Gets one page of the messages sent and received between two users, oldest first.
+     * Without a cursor the latest messages are returned; pass a page's {@code before}
+     * cursor to load older messages or its {@code after} cursor to load newer ones.
      * @param userId1 the first user's ID
      * @param userId2 the second user's ID
-     * @return list of MessageDto objects between the users
+     * @param before the cursor for older messages (optional)
+     * @param after the cursor for newer messages (optional)
+     * @param limit the maximum number of messages to return
+     * @return a response entity with the page of MessageDto and its cursors
      */
     @GetMapping("/between/{userId1}/{userId2}")
-    public ResponseEntity<List<MessageDto>> getMessages(@PathVariable Long userId1, @PathVariable Long userId2) {
+    public ResponseEntity<?> getMessages(
+        @PathVariable Long userId1,
+        @PathVariable Long userId2,
+        @RequestParam(required = false) String before,
+        @RequestParam(required = false) String after,
+        @RequestParam(defaultValue = "30") int limit
+    ) {
         try {
-            System.out.println("Fetching messages between users: " + userId1 + " and " + userId2);
-            
-            List<Message> sent = messageRepository.findBySenderIdAndReceiverId(userId1, userId2);
-            List<Message> received = messageRepository.findBySenderIdAndReceiverId(userId2, userId1);
-            
-            if (sent == null) sent = new ArrayList<>();
-            if (received == null) received = new ArrayList<>();
-            
-            sent.addAll(received);
-            sent.sort(Comparator.comparing(Message::getTimestamp));
-            
-            System.out.println("Found " + sent.size() + " messages between users");
-            return sent
-                .stream()
-                .map(message -> messagesMapper.toDto(message, userRepository))
-                .collect(Collectors.collectingAndThen(Collectors.toList(), ResponseEntity::ok));
-            
+            return ResponseEntity.ok(messageService.getConversation(userId1, userId2, before, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             System.err.println("Error fetching messages: " + e.getMessage());
             e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ArrayList<>());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+}
@@ -9,7 +9,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.esaunders.TextbookExchange.dtos.UpdateRequest;
-import com.esaunders.TextbookExchange.repository.UserRepository;
 import com.esaunders.TextbookExchange.service.UserService;
 
 import lombok.AllArgsConstructor;
@@ -25,11 +24,6 @@ import lombok.AllArgsConstructor;
 @CrossOrigin(origins = {"http://textbook-exchange-4ago.vercel.app", "http://localhost:3000", "http://localhost:4000"}, allowCredentials = "true")
 public class ProfileController {
 
-    /**
-     * Repository for user data access.
-     */
-    private UserRepository userRepository;
-
     /**
      * Service for user-related operations.
      */
@@ -54,7 +48,7 @@ public class ProfileController {
         if (updateRequest.getLastName() != null) {
             user.setLastName(updateRequest.getLastName());
         }
-        userRepository.save(user);
+        userService.save(user);
         return ResponseEntity.ok("Profile updated successfully");
     }
 
@@ -2,7 +2,10 @@ package com.esaunders.TextbookExchange.dtos;
 
 import java.time.LocalDateTime;
 
+import com.esaunders.TextbookExchange.model.ListingStatus;
+
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 /**
  * Data Transfer Object for book listings.
@@ -10,6 +13,7 @@ import lombok.Data;
  * @author Ethan Saunders
  */
 @Data
+@NoArgsConstructor
 public class BookDto {
     /** The unique identifier of the book listing. */
     private Long id;
@@ -46,4 +50,47 @@ public class BookDto {
 
     /** The URL of the book's cover image. */
     private String imageUrl;
+
+    /** The URL of the medium variant of the cover image, for the listing page. */
+    private String mediumUrl;
+
+    /** The URL of the thumbnail of the cover image, for listing cards. */
+    private String thumbnailUrl;
+
+    /** A BlurHash placeholder of the cover image, shown while it loads. */
+    private String blurhash;
+
+    /** The lifecycle state of the listing (e.g., PENDING_IMAGE, ACTIVE). */
+    private String status;
+
+    /**
+     * Constructs a BookDto from a listing and its seller's columns.
+     * Used by repository queries that project straight into DTOs.
+     */
+    public BookDto(Long id, String title, String author, String courseCode, String isbn,
+            String description, double price, String condition, LocalDateTime postedAt, String imageUrl,
+            String mediumUrl, String thumbnailUrl, String blurhash, Long ownerId, String sellerFirstName,
+            String sellerLastName, String sellerUsername, String sellerEmail, ListingStatus status) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.courseCode = courseCode;
+        this.isbn = isbn;
+        this.description = description;
+        this.price = price;
+        this.condition = condition;
+        this.postedAt = postedAt;
+        this.imageUrl = imageUrl;
+        this.mediumUrl = mediumUrl;
+        this.thumbnailUrl = thumbnailUrl;
+        this.blurhash = blurhash;
+        this.ownerId = ownerId;
+        this.seller = new UserDto();
+        this.seller.setId(ownerId);
+        this.seller.setFirstName(sellerFirstName);
+        this.seller.setLastName(sellerLastName);
+        this.seller.setUsername(sellerUsername);
+        this.seller.setEmail(sellerEmail);
+        this.status = status == null ? null : status.name();
+    }
 }
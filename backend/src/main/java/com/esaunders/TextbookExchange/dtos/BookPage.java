@@ -0,0 +1,39 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for a single page of book listings.
+ * Carries the listings for the page, an opaque cursor for the next one and,
+ * for searches, facet counts over every matching listing.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPage {
+    /** The book listings on this page. */
+    private List<BookDto> books;
+
+    /** The cursor to request the next page, or null if this is the last page. */
+    private String next;
+
+    /** Facet counts over all matching listings; only present on search results. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchFacets facets;
+
+    /**
+     * Constructs a page without facet counts.
+     * @param books the book listings on this page
+     * @param next the cursor for the next page, or null
+     */
+    public BookPage(List<BookDto> books, String next) {
+        this(books, next, null);
+    }
+}
@@ -43,5 +43,8 @@ public class BookRequest {
 
     /** The date and time when the listing was posted. */
     private LocalDateTime postedAt;
+
+    /** The key of an image uploaded directly to S3 with a presigned URL. */
+    private String imageKey;
 }
 
@@ -0,0 +1,30 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for book listing search filters.
+ * Every field is optional; null fields do not restrict the search.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSearchCriteria {
+    /** Search term matched against the title or course code. */
+    private String query;
+
+    /** The condition the book must be in (e.g., NEW, GOOD, FAIR, POOR). */
+    private String condition;
+
+    /** The minimum price, inclusive. */
+    private Double minPrice;
+
+    /** The maximum price, inclusive. */
+    private Double maxPrice;
+
+    /** The ID of a user whose own listings are excluded from the results. */
+    private Long excludeOwnerId;
+}
@@ -0,0 +1,30 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for one conversation in a user's inbox.
+ * Describes the conversation from the viewing user's side.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationDto {
+    /** The ID of the other user in the conversation. */
+    private Long otherUserId;
+    /** The name of the other user in the conversation. */
+    private String otherUserName;
+    /** The ID of the user who sent the latest message. */
+    private Long lastSenderId;
+    /** The content of the latest message. */
+    private String lastMessage;
+    /** The timestamp when the latest message was sent. */
+    private LocalDateTime lastMessageAt;
+    /** The number of messages the viewing user has not read. */
+    private int unreadCount;
+}
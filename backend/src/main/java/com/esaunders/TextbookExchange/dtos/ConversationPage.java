@@ -0,0 +1,23 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for a page of a user's inbox.
+ * Carries the conversations for the page and an opaque cursor for the next one.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationPage {
+    /** The conversations on this page, most recently active first. */
+    private List<ConversationDto> conversations;
+
+    /** The cursor to request the next page, or null if this is the last page. */
+    private String next;
+}
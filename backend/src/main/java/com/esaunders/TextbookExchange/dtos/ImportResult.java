@@ -0,0 +1,25 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the outcome of a bulk import.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResult {
+    /** The number of listings created. */
+    private int imported;
+
+    /** The number of rows rejected. */
+    private int failed;
+
+    /** The outcome of each row, in manifest order. */
+    private List<ImportRowResult> rows;
+}
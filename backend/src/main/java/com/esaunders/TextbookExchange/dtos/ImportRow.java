@@ -0,0 +1,40 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for one row of a bulk import manifest.
+ * Fields are kept as text so that a malformed row fails on its own
+ * instead of rejecting the whole manifest.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRow {
+    /** The title of the book. */
+    private String title;
+
+    /** The author of the book. */
+    private String author;
+
+    /** The ISBN of the book. */
+    private String isbn;
+
+    /** The course code associated with the book. */
+    private String courseCode;
+
+    /** The price of the book. */
+    private String price;
+
+    /** The condition of the book (e.g., NEW, GOOD, FAIR, POOR). */
+    private String condition;
+
+    /** The description of the book. */
+    private String description;
+
+    /** The path of the book's image within the uploaded archive. */
+    private String image;
+}
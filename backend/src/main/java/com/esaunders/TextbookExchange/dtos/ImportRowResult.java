@@ -0,0 +1,46 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for the outcome of one bulk import row.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRowResult {
+    /** The one-based position of the row in the manifest. */
+    private int row;
+
+    /** Whether the row was imported. */
+    private boolean imported;
+
+    /** The ID of the created listing, if the row was imported. */
+    private Long listingId;
+
+    /** Why the row was rejected, if it was not imported. */
+    private String error;
+
+    /**
+     * Creates the result of an imported row.
+     * @param row the one-based row number
+     * @param listingId the ID of the created listing
+     * @return the row result
+     */
+    public static ImportRowResult imported(int row, Long listingId) {
+        return new ImportRowResult(row, true, listingId, null);
+    }
+
+    /**
+     * Creates the result of a rejected row.
+     * @param row the one-based row number
+     * @param error why the row was rejected
+     * @return the row result
+     */
+    public static ImportRowResult failed(int row, String error) {
+        return new ImportRowResult(row, false, null, error);
+    }
+}
@@ -0,0 +1,26 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for a page of a conversation's history.
+ * Messages are in the order they were sent; the cursors load the pages on either side.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePage {
+    /** The messages on this page, oldest first. */
+    private List<MessageDto> messages;
+
+    /** The cursor to request older messages, or null if this page starts the conversation. */
+    private String before;
+
+    /** The cursor to request newer messages, or null if this page is the latest. */
+    private String after;
+}
@@ -0,0 +1,14 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import lombok.Data;
+
+/**
+ * Data Transfer Object for refresh and logout requests.
+ * Contains the refresh token issued at login or by the last refresh.
+ * @author Ethan Saunders
+ */
+@Data
+public class RefreshRequest {
+    /** The refresh token. */
+    private String refreshToken;
+}
@@ -0,0 +1,107 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import lombok.Data;
+
+/**
+ * Data Transfer Object for search facet counts.
+ * Counts the listings matching a search per condition, per fixed price range
+ * and per course-code prefix (the department letters, e.g. "CS" for CS101).
+ * @author Ethan Saunders
+ */
+@Data
+public class SearchFacets {
+    /** Upper bounds (exclusive) of every price range but the last. */
+    public static final double[] PRICE_BOUNDS = {25, 50, 100};
+
+    /** Labels of the price ranges, one more than there are bounds. */
+    public static final String[] PRICE_LABELS = {"0-25", "25-50", "50-100", "100+"};
+
+    /** Maximum number of course-code prefixes reported, most frequent first. */
+    public static final int MAX_COURSE_PREFIXES = 20;
+
+    /** Number of matching listings per condition. */
+    private Map<String, Long> conditions = new LinkedHashMap<>();
+
+    /** Number of matching listings per price range. */
+    private Map<String, Long> priceRanges = new LinkedHashMap<>();
+
+    /** Number of matching listings per course-code prefix. */
+    private Map<String, Long> coursePrefixes = new LinkedHashMap<>();
+
+    /**
+     * Returns the label of the price range a price falls in.
+     * @param price the price
+     * @return the price range label
+     */
+    public static String priceRange(double price) {
+        return PRICE_LABELS[priceRangeIndex(price)];
+    }
+
+    /**
+     * Returns the index of the price range a price falls in.
+     * @param price the price
+     * @return the index into PRICE_LABELS
+     */
+    public static int priceRangeIndex(double price) {
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            if (price < PRICE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return PRICE_BOUNDS.length;
+    }
+
+    /**
+     * Returns the prefix of a course code, i.e. everything before its 3-digit number.
+     * @param courseCode the course code
+     * @return the upper-case prefix, or null if there is no course code
+     */
+    public static String coursePrefix(String courseCode) {
+        if (courseCode == null || courseCode.isBlank()) {
+            return null;
+        }
+        String code = courseCode.trim().toUpperCase(Locale.ROOT);
+        return code.length() > 3 ? code.substring(0, code.length() - 3) : code;
+    }
+
+    /**
+     * Adds the count of one (condition, price range, prefix) group to the facets.
+     * @param condition the condition, or null
+     * @param priceRange the price range label
+     * @param coursePrefix the course-code prefix, or null
+     * @param count the number of listings in the group
+     */
+    public void add(String condition, String priceRange, String coursePrefix, long count) {
+        if (condition != null) {
+            conditions.merge(condition.toUpperCase(Locale.ROOT), count, Long::sum);
+        }
+        if (priceRange != null) {
+            priceRanges.merge(priceRange, count, Long::sum);
+        }
+        if (coursePrefix != null) {
+            coursePrefixes.merge(coursePrefix, count, Long::sum);
+        }
+    }
+
+    /**
+     * Orders the price ranges by price and keeps only the most frequent course-code prefixes.
+     * @return these facets
+     */
+    public SearchFacets finish() {
+        Map<String, Long> ranges = new LinkedHashMap<>();
+        for (String label : PRICE_LABELS) {
+            ranges.put(label, priceRanges.getOrDefault(label, 0L));
+        }
+        priceRanges = ranges;
+        coursePrefixes = coursePrefixes.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(MAX_COURSE_PREFIXES)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+        return this;
+    }
+}
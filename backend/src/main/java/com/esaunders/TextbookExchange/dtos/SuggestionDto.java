@@ -0,0 +1,23 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for typeahead suggestions.
+ * Holds the course codes and titles matching a prefix, most used first.
+ * @author Ethan Saunders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDto {
+    /** Course codes starting with the prefix. */
+    private List<String> courseCodes;
+
+    /** Titles starting with the prefix. */
+    private List<String> titles;
+}
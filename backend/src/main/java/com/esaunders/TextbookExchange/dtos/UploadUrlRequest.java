@@ -0,0 +1,16 @@
+package com.esaunders.TextbookExchange.dtos;
+
+import lombok.Data;
+
+/**
+ * Data Transfer Object for requesting a presigned image upload URL.
+ * @author Ethan Saunders
+ */
+@Data
+public class UploadUrlRequest {
+    /** The media type of the image, image/jpeg or image/png. */
+    private String contentType;
+
+    /** The exact size of the image in bytes. */
+    private long size;
+}
@@ -4,6 +4,8 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Context;
 
+import java.util.Map;
+
 import com.esaunders.TextbookExchange.dtos.MessageDto;
 import com.esaunders.TextbookExchange.model.Message;
 import com.esaunders.TextbookExchange.model.User;
@@ -25,6 +27,15 @@ public interface MessagesMapper {
     @Mapping(target = "senderName", expression = "java(getSenderName(message.getSenderId(), userRepository))")
     MessageDto toDto(Message message, @Context UserRepository userRepository);
 
+    /**
+     * Maps a Message entity to a MessageDto, taking the sender name from names already resolved.
+     * @param message the message entity
+     * @param senderNames the sender names by user ID
+     * @return the mapped MessageDto
+     */
+    @Mapping(target = "senderName", expression = "java(senderNames.getOrDefault(message.getSenderId(), \"Unknown\"))")
+    MessageDto toDto(Message message, @Context Map<Long, String> senderNames);
+
     /**
      * Maps a MessageDto to a Message entity.
      * @param messageDto the message DTO
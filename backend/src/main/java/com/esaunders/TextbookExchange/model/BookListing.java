@@ -5,10 +5,14 @@ import java.time.LocalDateTime;
 import jakarta.persistence.Id;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -25,9 +29,13 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class BookListing {
-    /** The unique identifier of the book listing. */
-    @Id 
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    /**
+     * The unique identifier of the book listing.
+     * Drawn from a sequence 50 at a time so that inserts can be batched.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_listings_seq")
+    @SequenceGenerator(name = "book_listings_seq", sequenceName = "book_listings_seq", allocationSize = 50)
     private Long id;
 
     /** The title of the book. */
@@ -52,8 +60,8 @@ public class BookListing {
     /** The description of the book. */
     private String description;
 
-    /** The user who owns this book listing. */
-    @ManyToOne
+    /** The user who owns this book listing, loaded only when a read asks for it. */
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
 
@@ -63,4 +71,25 @@ public class BookListing {
 
     /** The URL of the book's cover image. */
     private String imageUrl;
+
+    /** The URL of the medium variant of the cover image. */
+    @Column(name = "medium_url")
+    private String mediumUrl;
+
+    /** The URL of the thumbnail of the cover image. */
+    @Column(name = "thumbnail_url")
+    private String thumbnailUrl;
+
+    /** A BlurHash placeholder of the cover image, shown while it loads. */
+    @Column(length = 64)
+    private String blurhash;
+
+    /** The SHA-256 of the shared stored image, or null if the listing has its own image keys. */
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
+
+    /** The lifecycle state of the listing; only active listings are shown to other users. */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ListingStatus status = ListingStatus.ACTIVE;
 }
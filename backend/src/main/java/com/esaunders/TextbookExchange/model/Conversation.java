@@ -0,0 +1,81 @@
+package com.esaunders.TextbookExchange.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity summarizing the conversation between two users for the inbox.
+ * Maps to the conversations table; the pair is stored with the lower user ID first,
+ * and the row is kept current as each message is sent.
+ * @author Ethan Saunders
+ */
+@Entity
+@Table(name = "conversations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Conversation {
+    /** The unique identifier of the conversation. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** The lower of the two users' IDs. */
+    @Column(name = "user_low_id", nullable = false)
+    private Long userLowId;
+
+    /** The higher of the two users' IDs. */
+    @Column(name = "user_high_id", nullable = false)
+    private Long userHighId;
+
+    /** The ID of the latest message. */
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    /** The ID of the user who sent the latest message. */
+    @Column(name = "last_sender_id", nullable = false)
+    private Long lastSenderId;
+
+    /** The content of the latest message. */
+    @Column(name = "last_content")
+    private String lastContent;
+
+    /** The date and time when the latest message was sent. */
+    @Column(name = "last_message_at", nullable = false)
+    private LocalDateTime lastMessageAt;
+
+    /** The number of messages the lower-ID user has not read. */
+    @Column(name = "low_unread", nullable = false)
+    private int lowUnread;
+
+    /** The number of messages the higher-ID user has not read. */
+    @Column(name = "high_unread", nullable = false)
+    private int highUnread;
+
+    /**
+     * Gets the ID of the other user in the conversation.
+     * @param userId the ID of one of the users
+     * @return the ID of the other user
+     */
+    public Long otherUserId(Long userId) {
+        return userLowId.equals(userId) ? userHighId : userLowId;
+    }
+
+    /**
+     * Gets the number of messages a user in the conversation has not read.
+     * @param userId the ID of one of the users
+     * @return that user's unread count
+     */
+    public int unreadFor(Long userId) {
+        return userLowId.equals(userId) ? lowUnread : highUnread;
+    }
+}
@@ -0,0 +1,35 @@
+package com.esaunders.TextbookExchange.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity recording how far the orphaned image sweep has got through one S3 prefix.
+ * Maps to the image_sweeps table.
+ * @author Ethan Saunders
+ */
+@Entity
+@Table(name = "image_sweeps")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageSweep {
+    /** The S3 key prefix being swept. */
+    @Id
+    private String prefix;
+
+    /** The last key already swept, or null when the next sweep starts from the beginning. */
+    @Column(name = "start_after", length = 1024)
+    private String startAfter;
+
+    /** The date and time when the checkpoint was last saved. */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
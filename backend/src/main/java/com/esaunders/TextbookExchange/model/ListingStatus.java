@@ -0,0 +1,12 @@
+package com.esaunders.TextbookExchange.model;
+
+/**
+ * Lifecycle states of a book listing.
+ * @author Ethan Saunders
+ */
+public enum ListingStatus {
+    /** Saved, but its image is still being uploaded; hidden from the feed and search. */
+    PENDING_IMAGE,
+    /** Visible to every user. */
+    ACTIVE
+}
@@ -0,0 +1,58 @@
+package com.esaunders.TextbookExchange.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing a refresh token, which a client trades for a new access token.
+ * Maps to the refresh_tokens table; only the hash of the token is stored.
+ * @author Ethan Saunders
+ */
+@Entity
+@Table(name = "refresh_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+    /** The unique identifier of the refresh token. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** The user the token was issued to. */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    /** The hex SHA-256 of the token. */
+    @Column(name = "token_hash", length = 64, nullable = false, unique = true)
+    private String tokenHash;
+
+    /** The ID shared by every token rotated from the same login. */
+    @Column(name = "family_id", length = 36, nullable = false)
+    private String familyId;
+
+    /** The date and time when the token expires. */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /** The date and time when the token was issued. */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /** The date and time when the token was rotated, or null if it has not been used. */
+    @Column(name = "used_at")
+    private LocalDateTime usedAt;
+}
@@ -0,0 +1,42 @@
+package com.esaunders.TextbookExchange.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing an access token revoked before it expires.
+ * Maps to the revoked_tokens table; rows are deleted once the token has expired.
+ * @author Ethan Saunders
+ */
+@Entity
+@Table(name = "revoked_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+    /** The unique identifier of the revocation, increasing in the order revocations are made. */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** The ID (jti claim) of the revoked token. */
+    @Column(name = "token_id", length = 36, nullable = false)
+    private String tokenId;
+
+    /** The date and time when the revoked token expires. */
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    /** The date and time when the token was revoked. */
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+}
@@ -0,0 +1,49 @@
+package com.esaunders.TextbookExchange.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Entity representing a listing image stored once under the SHA-256 of its content.
+ * Maps to the stored_images table, which counts the listings sharing each image.
+ * @author Ethan Saunders
+ */
+@Entity
+@Table(name = "stored_images")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredImage {
+    /** The hex SHA-256 of the full-size image, which is also its S3 key. */
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    /** The number of listings and in-flight uploads holding the image. */
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    /** The URL of the full-size image; null until the image has been uploaded. */
+    private String imageUrl;
+
+    /** The URL of the medium variant. */
+    private String mediumUrl;
+
+    /** The URL of the thumbnail. */
+    private String thumbnailUrl;
+
+    /** The BlurHash placeholder of the image. */
+    @Column(length = 64)
+    private String blurhash;
+
+    /** The date and time when the image was first stored. */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
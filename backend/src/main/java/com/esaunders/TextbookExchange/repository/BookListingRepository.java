@@ -1,18 +1,43 @@
 package com.esaunders.TextbookExchange.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.esaunders.TextbookExchange.dtos.BookDto;
 import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.ListingStatus;
 import com.esaunders.TextbookExchange.model.User;
 
 /**
  * Repository interface for accessing book listings in the database.
- * Extends JpaRepository for CRUD operations and custom queries.
+ * Extends JpaRepository for CRUD operations and custom queries, and
+ * JpaSpecificationExecutor for dynamically composed searches.
+ * Listing reads project straight into BookDto, joining the owner's public
+ * columns in the same statement instead of loading User entities one by one.
  * @author Ethan Saunders
  */
-public interface BookListingRepository extends JpaRepository<BookListing, Long> {
+public interface BookListingRepository extends JpaRepository<BookListing, Long>,
+        JpaSpecificationExecutor<BookListing>, BookListingRepositoryCustom {
+    /** Select list projecting a listing and its seller into a BookDto in one statement. */
+    String BOOK_DTO_SELECT = "SELECT new com.esaunders.TextbookExchange.dtos.BookDto("
+        + "b.id, b.title, b.author, b.courseCode, b.isbn, b.description, b.price, b.condition, "
+        + "b.postedAt, b.imageUrl, b.mediumUrl, b.thumbnailUrl, b.blurhash, o.id, o.firstName, o.lastName, o.username, o.email, b.status) "
+        + "FROM BookListing b JOIN b.owner o ";
+
+    /** Condition limiting a query to listings shown to other users. */
+    String ACTIVE = "b.status = com.esaunders.TextbookExchange.model.ListingStatus.ACTIVE ";
+
     /** Finds book listings by course code, case-insensitive and partial match. */
     List<BookListing> findByCourseCodeContainingIgnoreCase(String courseCode);
 
@@ -24,4 +49,233 @@ public interface BookListingRepository extends JpaRepository<BookListing, Long>
 
     /** Finds a book listing by its ID and owner. */
     BookListing findByIdAndOwner(Long id, User user);
+
+    /**
+     * Finds every active listing with its seller.
+     * @return all active listings as DTOs
+     */
+    @Query(BOOK_DTO_SELECT + "WHERE " + ACTIVE)
+    List<BookDto> findAllBooks();
+
+    /**
+     * Finds the listings of one owner with their seller, including pending ones.
+     * @param ownerId the owner's ID
+     * @return the owner's listings as DTOs, newest first
+     */
+    @Query(BOOK_DTO_SELECT + "WHERE o.id = :ownerId ORDER BY b.postedAt DESC, b.id DESC")
+    List<BookDto> findBooksByOwnerId(@Param("ownerId") Long ownerId);
+
+    /**
+     * Finds one active listing with its seller. Owners see their pending listings
+     * through {@link #findBooksByOwnerId}.
+     * @param id the listing ID
+     * @return the listing as a DTO, if it exists and is active
+     */
+    @Query(BOOK_DTO_SELECT + "WHERE b.id = :id AND " + ACTIVE)
+    Optional<BookDto> findBookById(@Param("id") Long id);
+
+    /**
+     * Finds listings by ID with their sellers, in no particular order.
+     * @param ids the listing IDs
+     * @return the listings that exist, as DTOs
+     */
+    @Query(BOOK_DTO_SELECT + "WHERE b.id IN :ids")
+    List<BookDto> findBooksByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Finds a page of listings matching a search, fetching their owners in the same statement.
+     * @param spec the search predicates
+     * @param pageable the page to fetch
+     * @return the page of listings
+     */
+    @Override
+    @EntityGraph(attributePaths = "owner")
+    Page<BookListing> findAll(Specification<BookListing> spec, Pageable pageable);
+
+    /**
+     * Finds the first page of the home feed, newest first, excluding one owner's listings.
+     * @param ownerId the ID of the owner whose listings are excluded
+     * @param pageable the page size to fetch
+     * @return the newest listings not owned by the given user
+     */
+    @Query(BOOK_DTO_SELECT
+        + "WHERE " + ACTIVE + "AND o.id <> :ownerId AND b.postedAt IS NOT NULL "
+        + "ORDER BY b.postedAt DESC, b.id DESC")
+    List<BookDto> findFeed(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    /**
+     * Finds the home feed page that follows the keyset cursor (postedAt, id).
+     * @param ownerId the ID of the owner whose listings are excluded
+     * @param postedAt the posted time of the last listing on the previous page
+     * @param id the ID of the last listing on the previous page
+     * @param pageable the page size to fetch
+     * @return the listings strictly older than the cursor, newest first
+     */
+    @Query(BOOK_DTO_SELECT
+        + "WHERE " + ACTIVE + "AND o.id <> :ownerId "
+        + "AND (b.postedAt < :postedAt OR (b.postedAt = :postedAt AND b.id < :id)) "
+        + "ORDER BY b.postedAt DESC, b.id DESC")
+    List<BookDto> findFeedAfter(
+        @Param("ownerId") Long ownerId,
+        @Param("postedAt") LocalDateTime postedAt,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    /**
+     * Finds the first page of the feed shared by every user, newest first.
+     * @param pageable the page size to fetch
+     * @return the most recently posted listings
+     */
+    @Query(BOOK_DTO_SELECT + "WHERE " + ACTIVE + "AND b.postedAt IS NOT NULL "
+        + "ORDER BY b.postedAt DESC, b.id DESC")
+    List<BookDto> findRecent(Pageable pageable);
+
+    /**
+     * Finds the page of the shared feed that follows the keyset cursor (postedAt, id).
+     * @param postedAt the posted time of the last listing on the previous page
+     * @param id the ID of the last listing on the previous page
+     * @param pageable the page size to fetch
+     * @return the listings strictly older than the cursor, newest first
+     */
+    @Query(BOOK_DTO_SELECT
+        + "WHERE " + ACTIVE + "AND (b.postedAt < :postedAt OR (b.postedAt = :postedAt AND b.id < :id)) "
+        + "ORDER BY b.postedAt DESC, b.id DESC")
+    List<BookDto> findRecentAfter(
+        @Param("postedAt") LocalDateTime postedAt,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    /**
+     * Finds the next batch of listings in ID order, for walking the whole table in bounded chunks.
+     * @param id the ID of the last listing already seen
+     * @param pageable the batch size to fetch
+     * @return the listings with a greater ID, in ascending ID order
+     */
+    List<BookListing> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Finds listings in a state that were posted before a time.
+     * @param status the listing state
+     * @param postedAt the time the listings were posted before
+     * @return the matching listings
+     */
+    List<BookListing> findByStatusAndPostedAtBefore(ListingStatus status, LocalDateTime postedAt);
+
+    /**
+     * Finds the suggestion terms of the next batch of listings in ID order,
+     * without loading the listings or their owners.
+     * @param id the ID of the last listing already seen
+     * @param pageable the batch size to fetch
+     * @return the ID, title and course code of each active listing with a greater ID
+     */
+    @Query("SELECT b.id AS id, b.title AS title, b.courseCode AS courseCode FROM BookListing b "
+        + "WHERE b.id > :id AND " + ACTIVE + "ORDER BY b.id ASC")
+    List<SuggestionTerms> findSuggestionTermsAfter(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Projection of the listing fields offered as typeahead suggestions.
+     */
+    interface SuggestionTerms {
+        Long getId();
+        String getTitle();
+        String getCourseCode();
+    }
+
+    /**
+     * Finds the image URLs of the next batch of listings in ID order, in any status,
+     * without loading the listings or their owners.
+     * @param id the ID of the last listing already seen
+     * @param pageable the batch size to fetch
+     * @return the ID and image URLs of each listing with a greater ID
+     */
+    @Query("SELECT b.id AS id, b.imageUrl AS imageUrl, b.mediumUrl AS mediumUrl, b.thumbnailUrl AS thumbnailUrl "
+        + "FROM BookListing b WHERE b.id > :id ORDER BY b.id ASC")
+    List<ImageUrls> findImageUrlsAfter(@Param("id") Long id, Pageable pageable);
+
+    /**
+     * Projection of the image URLs of a listing.
+     */
+    interface ImageUrls {
+        Long getId();
+        String getImageUrl();
+        String getMediumUrl();
+        String getThumbnailUrl();
+    }
+
+    /** WHERE clause shared by the full-text search query and its count query. */
+    String FULL_TEXT_WHERE = "WHERE b.status = 'ACTIVE' "
+        + "AND (b.search_vector @@ websearch_to_tsquery('english', :query) "
+        + "OR lower(b.title) % lower(:query) "
+        + "OR lower(b.course_code) % lower(:query)) "
+        + "AND (CAST(:condition AS text) IS NULL OR upper(b.condition) = upper(CAST(:condition AS text))) "
+        + "AND (CAST(:minPrice AS double precision) IS NULL OR b.price >= CAST(:minPrice AS double precision)) "
+        + "AND (CAST(:maxPrice AS double precision) IS NULL OR b.price <= CAST(:maxPrice AS double precision)) "
+        + "AND (CAST(:excludeOwnerId AS bigint) IS NULL OR b.owner_id <> CAST(:excludeOwnerId AS bigint)) ";
+
+    /**
+     * Searches listings with PostgreSQL full-text search, tolerating typos through trigram
+     * similarity on the title and course code. Requires the V2 search migration.
+     * Text matches are ranked by ts_rank, then by trigram similarity, unless another
+     * sort is requested.
+     * @param query the search text
+     * @param condition the condition filter, or null
+     * @param minPrice the minimum price, or null
+     * @param maxPrice the maximum price, or null
+     * @param excludeOwnerId the ID of the owner whose listings are excluded, or null
+     * @param sort the sort option: relevance, newest, oldest, price_asc, price_desc or title
+     * @param pageable the page to fetch; its sort is ignored
+     * @return the IDs of the matching listings on the page, in rank order
+     */
+    @Query(value = "SELECT b.id FROM book_listings b "
+        + FULL_TEXT_WHERE
+        + "ORDER BY "
+        + "CASE WHEN :sort = 'newest' THEN b.posted_at END DESC, "
+        + "CASE WHEN :sort = 'oldest' THEN b.posted_at END ASC, "
+        + "CASE WHEN :sort = 'price_asc' THEN b.price END ASC, "
+        + "CASE WHEN :sort = 'price_desc' THEN b.price END DESC, "
+        + "CASE WHEN :sort = 'title' THEN lower(b.title) END ASC, "
+        + "ts_rank(b.search_vector, websearch_to_tsquery('english', :query)) DESC, "
+        + "greatest(similarity(lower(b.title), lower(:query)), similarity(lower(b.course_code), lower(:query))) DESC, "
+        + "b.id DESC",
+        countQuery = "SELECT count(*) FROM book_listings b " + FULL_TEXT_WHERE,
+        nativeQuery = true)
+    Page<Long> searchFullTextIds(
+        @Param("query") String query,
+        @Param("condition") String condition,
+        @Param("minPrice") Double minPrice,
+        @Param("maxPrice") Double maxPrice,
+        @Param("excludeOwnerId") Long excludeOwnerId,
+        @Param("sort") String sort,
+        Pageable pageable
+    );
+
+    /**
+     * Counts the listings matched by {@link #searchFullTextIds} per condition, price range and
+     * course-code prefix in one grouped query. The ranges and prefix rule mirror SearchFacets.
+     * @param query the search text
+     * @param condition the condition filter, or null
+     * @param minPrice the minimum price, or null
+     * @param maxPrice the maximum price, or null
+     * @param excludeOwnerId the ID of the owner whose listings are excluded, or null
+     * @return rows of (condition, price range, course-code prefix, count)
+     */
+    @Query(value = "SELECT upper(b.condition) AS cond, "
+        + "CASE WHEN b.price < 25 THEN '0-25' WHEN b.price < 50 THEN '25-50' "
+        + "WHEN b.price < 100 THEN '50-100' ELSE '100+' END AS price_range, "
+        + "CASE WHEN length(trim(b.course_code)) > 3 "
+        + "THEN upper(substr(trim(b.course_code), 1, length(trim(b.course_code)) - 3)) "
+        + "ELSE upper(trim(b.course_code)) END AS course_prefix, "
+        + "count(*) AS hits "
+        + "FROM book_listings b " + FULL_TEXT_WHERE
+        + "GROUP BY 1, 2, 3",
+        nativeQuery = true)
+    List<Object[]> facetFullText(
+        @Param("query") String query,
+        @Param("condition") String condition,
+        @Param("minPrice") Double minPrice,
+        @Param("maxPrice") Double maxPrice,
+        @Param("excludeOwnerId") Long excludeOwnerId
+    );
 }
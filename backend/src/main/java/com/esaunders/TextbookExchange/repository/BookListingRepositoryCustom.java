@@ -0,0 +1,34 @@
+package com.esaunders.TextbookExchange.repository;
+
+import java.util.stream.Stream;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.SearchFacets;
+import com.esaunders.TextbookExchange.model.BookListing;
+
+/**
+ * Custom queries on book listings that Spring Data cannot derive.
+ * @author Ethan Saunders
+ */
+public interface BookListingRepositoryCustom {
+    /**
+     * Counts the listings matching a specification per condition, price range and
+     * course-code prefix, in a single grouped query.
+     * @param spec the search specification
+     * @return the facet counts
+     */
+    SearchFacets computeFacets(Specification<BookListing> spec);
+
+    /**
+     * Streams the listings matching a specification in ID order, projected into DTOs
+     * with their sellers. Rows are fetched from a database cursor in batches of
+     * fetchSize, so the result set is never held in memory. Must be called, and the
+     * stream consumed and closed, within a transaction.
+     * @param spec the search specification
+     * @param fetchSize the number of rows fetched per round trip
+     * @return the stream of listings
+     */
+    Stream<BookDto> streamBooks(Specification<BookListing> spec, int fetchSize);
+}
@@ -0,0 +1,111 @@
+package com.esaunders.TextbookExchange.repository;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.SearchFacets;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.User;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Criteria API implementation of the custom book listing queries.
+ * @author Ethan Saunders
+ */
+public class BookListingRepositoryCustomImpl implements BookListingRepositoryCustom {
+
+    /** Entity manager for building criteria queries. */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Groups the matching listings by (condition, price range, course-code prefix) and
+     * rolls the group counts up into the three facets. The number of groups is bounded by
+     * the number of distinct facet values, not by the number of matching listings.
+     * @param spec the search specification
+     * @return the facet counts
+     */
+    @Override
+    public SearchFacets computeFacets(Specification<BookListing> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<BookListing> root = query.from(BookListing.class);
+
+        Expression<String> condition = cb.upper(root.get("condition"));
+
+        Expression<Double> price = root.get("price");
+        CriteriaBuilder.Case<String> priceCase = cb.selectCase();
+        for (int i = 0; i < SearchFacets.PRICE_BOUNDS.length; i++) {
+            priceCase = priceCase.when(cb.lessThan(price, SearchFacets.PRICE_BOUNDS[i]), SearchFacets.PRICE_LABELS[i]);
+        }
+        Expression<String> priceRange = priceCase.otherwise(SearchFacets.PRICE_LABELS[SearchFacets.PRICE_LABELS.length - 1]);
+
+        // Everything before the 3-digit course number, matching SearchFacets.coursePrefix
+        Expression<String> courseCode = cb.upper(cb.trim(root.get("courseCode")));
+        Expression<Integer> length = cb.length(courseCode);
+        Expression<String> coursePrefix = cb.<String>selectCase()
+            .when(cb.greaterThan(length, 3), cb.substring(courseCode, cb.literal(1), cb.diff(length, 3)))
+            .otherwise(courseCode);
+
+        query.multiselect(condition, priceRange, coursePrefix, cb.count(root));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.groupBy(condition, priceRange, coursePrefix);
+
+        SearchFacets facets = new SearchFacets();
+        List<Tuple> groups = entityManager.createQuery(query).getResultList();
+        for (Tuple group : groups) {
+            String prefix = group.get(2, String.class);
+            facets.add(group.get(0, String.class), group.get(1, String.class),
+                prefix == null || prefix.isEmpty() ? null : prefix, group.get(3, Long.class));
+        }
+        return facets.finish();
+    }
+
+    /**
+     * Selects the listing and seller columns straight into BookDto, so no entities
+     * accumulate in the persistence context while the stream is consumed.
+     * @param spec the search specification
+     * @param fetchSize the number of rows fetched per round trip
+     * @return the stream of listings, in ID order
+     */
+    @Override
+    public Stream<BookDto> streamBooks(Specification<BookListing> spec, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookDto> query = cb.createQuery(BookDto.class);
+        Root<BookListing> root = query.from(BookListing.class);
+        Join<BookListing, User> owner = root.join("owner");
+
+        query.select(cb.construct(BookDto.class,
+            root.get("id"), root.get("title"), root.get("author"), root.get("courseCode"), root.get("isbn"),
+            root.get("description"), root.get("price"), root.get("condition"), root.get("postedAt"),
+            root.get("imageUrl"), root.get("mediumUrl"), root.get("thumbnailUrl"), root.get("blurhash"),
+            owner.get("id"), owner.get("firstName"), owner.get("lastName"),
+            owner.get("username"), owner.get("email"), root.get("status")));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get("id")));
+
+        return entityManager.createQuery(query)
+            .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+            .setHint(HibernateHints.HINT_READ_ONLY, true)
+            .getResultStream();
+    }
+}
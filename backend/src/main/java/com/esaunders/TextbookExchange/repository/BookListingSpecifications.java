@@ -0,0 +1,74 @@
+package com.esaunders.TextbookExchange.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.ListingStatus;
+
+import jakarta.persistence.criteria.Predicate;
+
+/**
+ * Builds JPA Specifications for searching book listings.
+ * Lets search filters be combined freely and evaluated by the database.
+ * @author Ethan Saunders
+ */
+public final class BookListingSpecifications {
+
+    /** Escape character used in LIKE patterns. */
+    private static final char LIKE_ESCAPE = '\\';
+
+    private BookListingSpecifications() {
+    }
+
+    /**
+     * Creates a specification matching every active listing that passes each non-null filter in the criteria.
+     * @param criteria the search filters
+     * @return the combined specification
+     */
+    public static Specification<BookListing> matching(BookSearchCriteria criteria) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("status"), ListingStatus.ACTIVE));
+
+            if (criteria.getExcludeOwnerId() != null) {
+                predicates.add(cb.notEqual(root.get("owner").get("id"), criteria.getExcludeOwnerId()));
+            }
+            if (criteria.getQuery() != null && !criteria.getQuery().isBlank()) {
+                String pattern = "%" + escapeLike(criteria.getQuery().trim().toLowerCase(Locale.ROOT)) + "%";
+                predicates.add(cb.or(
+                    cb.like(cb.lower(root.get("title")), pattern, LIKE_ESCAPE),
+                    cb.like(cb.lower(root.get("courseCode")), pattern, LIKE_ESCAPE)
+                ));
+            }
+            if (criteria.getCondition() != null && !criteria.getCondition().isBlank()) {
+                predicates.add(cb.equal(cb.upper(root.get("condition")),
+                    criteria.getCondition().trim().toUpperCase(Locale.ROOT)));
+            }
+            if (criteria.getMinPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("price"), criteria.getMinPrice()));
+            }
+            if (criteria.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("price"), criteria.getMaxPrice()));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Escapes LIKE wildcards so user input is matched literally.
+     * @param value the raw search term
+     * @return the escaped search term
+     */
+    static String escapeLike(String value) {
+        return value
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+    }
+}
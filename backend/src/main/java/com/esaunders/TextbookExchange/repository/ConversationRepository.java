@@ -0,0 +1,133 @@
+package com.esaunders.TextbookExchange.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.esaunders.TextbookExchange.model.Conversation;
+
+/**
+ * Repository interface for the conversations read model behind the inbox.
+ * Rows are changed with single statements so concurrent sends never lose an unread increment.
+ * @author Ethan Saunders
+ */
+public interface ConversationRepository extends JpaRepository<Conversation, Long> {
+
+    /**
+     * Records a sent message on its conversation, creating the row for a new pair.
+     * The latest message only moves forward in (timestamp, id) order; the unread
+     * increments always apply.
+     * @param low the lower of the two user IDs
+     * @param high the higher of the two user IDs
+     * @param messageId the ID of the message
+     * @param senderId the ID of the sender
+     * @param content the content of the message
+     * @param sentAt when the message was sent
+     * @param lowUnread 1 if the message is unread by the lower-ID user, otherwise 0
+     * @param highUnread 1 if the message is unread by the higher-ID user, otherwise 0
+     * @return the number of rows inserted or updated
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO conversations (user_low_id, user_high_id, last_message_id, last_sender_id,
+            last_content, last_message_at, low_unread, high_unread)
+        VALUES (:low, :high, :messageId, :senderId, :content, :sentAt, :lowUnread, :highUnread)
+        ON CONFLICT (user_low_id, user_high_id) DO UPDATE SET
+            last_message_id = CASE WHEN (EXCLUDED.last_message_at, EXCLUDED.last_message_id)
+                > (conversations.last_message_at, conversations.last_message_id)
+                THEN EXCLUDED.last_message_id ELSE conversations.last_message_id END,
+            last_sender_id = CASE WHEN (EXCLUDED.last_message_at, EXCLUDED.last_message_id)
+                > (conversations.last_message_at, conversations.last_message_id)
+                THEN EXCLUDED.last_sender_id ELSE conversations.last_sender_id END,
+            last_content = CASE WHEN (EXCLUDED.last_message_at, EXCLUDED.last_message_id)
+                > (conversations.last_message_at, conversations.last_message_id)
+                THEN EXCLUDED.last_content ELSE conversations.last_content END,
+            last_message_at = CASE WHEN (EXCLUDED.last_message_at, EXCLUDED.last_message_id)
+                > (conversations.last_message_at, conversations.last_message_id)
+                THEN EXCLUDED.last_message_at ELSE conversations.last_message_at END,
+            low_unread = conversations.low_unread + EXCLUDED.low_unread,
+            high_unread = conversations.high_unread + EXCLUDED.high_unread
+        """, nativeQuery = true)
+    int recordMessage(@Param("low") Long low, @Param("high") Long high, @Param("messageId") Long messageId,
+        @Param("senderId") Long senderId, @Param("content") String content, @Param("sentAt") LocalDateTime sentAt,
+        @Param("lowUnread") int lowUnread, @Param("highUnread") int highUnread);
+
+    /**
+     * Finds the first page of a user's conversations, most recently active first.
+     * Each side of the pair is read top-N from its own index and the two short
+     * lists are merged, rather than filtering one scan with an OR. A conversation
+     * with oneself is only taken from the lower side.
+     * @param userId the user's ID
+     * @param limit the number of conversations to fetch
+     * @return the user's latest conversations
+     */
+    @Query(value = """
+        SELECT * FROM (
+            (SELECT * FROM conversations WHERE user_low_id = :userId
+                ORDER BY last_message_at DESC, id DESC LIMIT :limit)
+            UNION ALL
+            (SELECT * FROM conversations WHERE user_high_id = :userId AND user_low_id <> :userId
+                ORDER BY last_message_at DESC, id DESC LIMIT :limit)
+        ) inbox
+        ORDER BY last_message_at DESC, id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Conversation> findInbox(@Param("userId") Long userId, @Param("limit") int limit);
+
+    /**
+     * Finds the page of a user's conversations that follows the keyset cursor (lastMessageAt, id),
+     * merging a top-N read from each side's index as {@link #findInbox} does.
+     * @param userId the user's ID
+     * @param lastMessageAt the latest message time of the last conversation on the previous page
+     * @param id the ID of the last conversation on the previous page
+     * @param limit the number of conversations to fetch
+     * @return the conversations less recently active than the cursor
+     */
+    @Query(value = """
+        SELECT * FROM (
+            (SELECT * FROM conversations WHERE user_low_id = :userId
+                AND (last_message_at, id) < (:lastMessageAt, :id)
+                ORDER BY last_message_at DESC, id DESC LIMIT :limit)
+            UNION ALL
+            (SELECT * FROM conversations WHERE user_high_id = :userId AND user_low_id <> :userId
+                AND (last_message_at, id) < (:lastMessageAt, :id)
+                ORDER BY last_message_at DESC, id DESC LIMIT :limit)
+        ) inbox
+        ORDER BY last_message_at DESC, id DESC
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Conversation> findInboxAfter(
+        @Param("userId") Long userId,
+        @Param("lastMessageAt") LocalDateTime lastMessageAt,
+        @Param("id") Long id,
+        @Param("limit") int limit
+    );
+
+    /**
+     * Marks a conversation read by its lower-ID user.
+     * @param low the lower of the two user IDs
+     * @param high the higher of the two user IDs
+     * @return the number of rows updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Conversation c set c.lowUnread = 0 where c.userLowId = :low and c.userHighId = :high")
+    int markReadByLow(@Param("low") Long low, @Param("high") Long high);
+
+    /**
+     * Marks a conversation read by its higher-ID user.
+     * @param low the lower of the two user IDs
+     * @param high the higher of the two user IDs
+     * @return the number of rows updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update Conversation c set c.highUnread = 0 where c.userLowId = :low and c.userHighId = :high")
+    int markReadByHigh(@Param("low") Long low, @Param("high") Long high);
+}
@@ -0,0 +1,12 @@
+package com.esaunders.TextbookExchange.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.esaunders.TextbookExchange.model.ImageSweep;
+
+/**
+ * Repository interface for the checkpoints of the orphaned image sweep.
+ * @author Ethan Saunders
+ */
+public interface ImageSweepRepository extends JpaRepository<ImageSweep, String> {
+}
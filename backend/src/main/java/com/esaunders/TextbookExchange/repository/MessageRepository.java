@@ -1,9 +1,13 @@
 package com.esaunders.TextbookExchange.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.esaunders.TextbookExchange.model.Message;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -13,19 +17,61 @@ import java.util.List;
  */
 public interface MessageRepository extends JpaRepository<Message, Long> {
     /**
-     * Finds messages sent by a specific sender to a specific receiver.
-     * @param senderId the ID of the sender
-     * @param receiverId the ID of the receiver
-     * @return a list of messages sent by the sender to the receiver
+     * Matches both directions of the conversation between users :low and :high (low &lt;= high).
+     * Written against the pair index, so history is read with a single range scan.
      */
-    List<Message> findBySenderIdAndReceiverId(Long senderId, Long receiverId);
+    String CONVERSATION = "FROM Message m "
+        + "WHERE least(m.senderId, m.receiverId) = :low AND greatest(m.senderId, m.receiverId) = :high ";
+
     /**
-     * Finds messages received by a specific receiver from a specific sender.
-     * @param receiverId the ID of the receiver
-     * @param senderId the ID of the sender
-     * @return a list of messages received by the receiver from the sender
+     * Finds the most recent messages of a conversation, newest first.
+     * @param low the lower of the two user IDs
+     * @param high the higher of the two user IDs
+     * @param pageable the page size to fetch
+     * @return the newest messages between the users
+     */
+    @Query("SELECT m " + CONVERSATION + "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findConversation(@Param("low") Long low, @Param("high") Long high, Pageable pageable);
+
+    /**
+     * Finds the messages of a conversation older than the keyset cursor (timestamp, id), newest first.
+     * @param low the lower of the two user IDs
+     * @param high the higher of the two user IDs
+     * @param timestamp the timestamp of the oldest message already loaded
+     * @param id the ID of the oldest message already loaded
+     * @param pageable the page size to fetch
+     * @return the messages strictly older than the cursor
+     */
+    @Query("SELECT m " + CONVERSATION
+        + "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) "
+        + "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findConversationBefore(
+        @Param("low") Long low,
+        @Param("high") Long high,
+        @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    /**
+     * Finds the messages of a conversation newer than the keyset cursor (timestamp, id), oldest first.
+     * @param low the lower of the two user IDs
+     * @param high the higher of the two user IDs
+     * @param timestamp the timestamp of the newest message already loaded
+     * @param id the ID of the newest message already loaded
+     * @param pageable the page size to fetch
+     * @return the messages strictly newer than the cursor
      */
-    List<Message> findByReceiverIdAndSenderId(Long receiverId, Long senderId);
+    @Query("SELECT m " + CONVERSATION
+        + "AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) "
+        + "ORDER BY m.timestamp ASC, m.id ASC")
+    List<Message> findConversationAfter(
+        @Param("low") Long low,
+        @Param("high") Long high,
+        @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id,
+        Pageable pageable
+    );
 
     /**
      * Finds all messages received by a specific receiver.
@@ -0,0 +1,51 @@
+package com.esaunders.TextbookExchange.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.esaunders.TextbookExchange.model.RefreshToken;
+
+import jakarta.persistence.LockModeType;
+
+/**
+ * Repository interface for refresh tokens, looked up by the hash of the token.
+ * @author Ethan Saunders
+ */
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    /**
+     * Finds a refresh token and locks its row, so two requests cannot both rotate it.
+     * @param tokenHash the hex SHA-256 of the token
+     * @return the refresh token, if any
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from RefreshToken t where t.tokenHash = :tokenHash")
+    Optional<RefreshToken> findForUpdate(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Deletes every token rotated from the same login.
+     * @param familyId the family ID
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from RefreshToken t where t.familyId = :familyId")
+    int deleteFamily(@Param("familyId") String familyId);
+
+    /**
+     * Deletes tokens that have expired.
+     * @param now the current date and time
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from RefreshToken t where t.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,48 @@
+package com.esaunders.TextbookExchange.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.esaunders.TextbookExchange.model.RevokedToken;
+
+/**
+ * Repository interface for revoked access tokens, read incrementally by id.
+ * @author Ethan Saunders
+ */
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+
+    /**
+     * Finds the revocations made after a given one, in the order they were made.
+     * @param id the id of the last revocation already read
+     * @param pageable the page size
+     * @return the following revocations
+     */
+    @Query("select r from RevokedToken r where r.id > :id order by r.id")
+    List<RevokedToken> findAfter(@Param("id") long id, Pageable pageable);
+
+    /**
+     * Finds the revocations made since a given time, including any committed
+     * after revocations with a higher id had already been read.
+     * @param since the earliest revocation time
+     * @return the revocations
+     */
+    @Query("select r from RevokedToken r where r.revokedAt >= :since")
+    List<RevokedToken> findRevokedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Deletes revocations of tokens that have expired, which no longer need revoking.
+     * @param now the current date and time
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from RevokedToken r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
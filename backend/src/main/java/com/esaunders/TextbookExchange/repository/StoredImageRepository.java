@@ -0,0 +1,110 @@
+package com.esaunders.TextbookExchange.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.esaunders.TextbookExchange.model.StoredImage;
+
+import jakarta.persistence.LockModeType;
+
+/**
+ * Repository interface for the reference-counted, content-addressed listing images.
+ * Counts are changed with single UPDATE statements so concurrent uploads never lose an increment.
+ * @author Ethan Saunders
+ */
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+    /**
+     * Takes a reference to an image, creating its row if it is new.
+     * Waits while another transaction holds the row lock to delete the image.
+     * @param hash the hex SHA-256 of the image
+     * @return the number of rows inserted or updated
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO stored_images (hash, ref_count, created_at) VALUES (:hash, 1, CURRENT_TIMESTAMP)
+        ON CONFLICT (hash) DO UPDATE SET ref_count = stored_images.ref_count + 1
+        """, nativeQuery = true)
+    int acquire(@Param("hash") String hash);
+
+    /**
+     * Drops a reference to an image that was never attached to a listing.
+     * References held by listings are dropped by a trigger when the listing is deleted.
+     * @param hash the hex SHA-256 of the image
+     * @return the number of rows updated
+     */
+    @Modifying
+    @Transactional
+    @Query("update StoredImage s set s.refCount = s.refCount - 1 where s.hash = :hash")
+    int release(@Param("hash") String hash);
+
+    /**
+     * Records the URLs of an image once its objects are in S3.
+     * @param hash the hex SHA-256 of the image
+     * @param imageUrl the URL of the full-size image
+     * @param mediumUrl the URL of the medium variant
+     * @param thumbnailUrl the URL of the thumbnail
+     * @param blurhash the BlurHash placeholder
+     * @return the number of rows updated
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        update StoredImage s set s.imageUrl = :imageUrl, s.mediumUrl = :mediumUrl,
+            s.thumbnailUrl = :thumbnailUrl, s.blurhash = :blurhash
+        where s.hash = :hash
+        """)
+    int recordUpload(@Param("hash") String hash, @Param("imageUrl") String imageUrl,
+        @Param("mediumUrl") String mediumUrl, @Param("thumbnailUrl") String thumbnailUrl,
+        @Param("blurhash") String blurhash);
+
+    /**
+     * Records an image found in S3 without a row, with no references, so that it can be
+     * collected under the row lock like any other. Does nothing if the row exists.
+     * @param hash the hex SHA-256 of the image
+     * @return the number of rows inserted
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO stored_images (hash, ref_count, created_at) VALUES (:hash, 0, CURRENT_TIMESTAMP)
+        ON CONFLICT (hash) DO NOTHING
+        """, nativeQuery = true)
+    int insertUnreferenced(@Param("hash") String hash);
+
+    /**
+     * Finds images nothing refers to any more, such as those of listings removed with their owner.
+     * @param pageable the batch size to fetch
+     * @return the hashes of unreferenced images
+     */
+    @Query("select s.hash from StoredImage s where s.refCount <= 0")
+    List<String> findUnreferencedHashes(Pageable pageable);
+
+    /**
+     * Finds the next batch of image hashes in order.
+     * @param hash the last hash already seen
+     * @param pageable the batch size to fetch
+     * @return the hashes greater than the given one
+     */
+    @Query("select s.hash from StoredImage s where s.hash > :hash order by s.hash")
+    List<String> findHashesAfter(@Param("hash") String hash, Pageable pageable);
+
+    /**
+     * Loads an image and locks its row until the surrounding transaction ends,
+     * so that no reference can be taken while its objects are deleted.
+     * @param hash the hex SHA-256 of the image
+     * @return the image, if any
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from StoredImage s where s.hash = :hash")
+    Optional<StoredImage> findForUpdate(@Param("hash") String hash);
+}
@@ -3,6 +3,10 @@ package com.esaunders.TextbookExchange.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.esaunders.TextbookExchange.model.User;
 
@@ -20,4 +24,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     /** Retrieves a user by their ID. */
     User getUserById(Long id);
+
+    /**
+     * Marks a user verified, unless they already are.
+     * @param id the user's ID
+     * @return 1 if the user was verified by this call, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.verified = true where u.id = :id and u.verified = false")
+    int markVerified(@Param("id") Long id);
 }
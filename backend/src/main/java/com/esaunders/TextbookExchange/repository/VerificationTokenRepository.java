@@ -1,6 +1,12 @@
 package com.esaunders.TextbookExchange.repository;
 
+import java.time.LocalDateTime;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.esaunders.TextbookExchange.model.VerificationToken;
 
@@ -16,5 +22,14 @@ public interface VerificationTokenRepository extends JpaRepository<VerificationT
      * @return the VerificationToken if found, otherwise null
      */
     VerificationToken findByToken(String token);
-    
+
+    /**
+     * Deletes tokens that have expired.
+     * @param now the current date and time
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from VerificationToken t where t.expiryTime < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
 }
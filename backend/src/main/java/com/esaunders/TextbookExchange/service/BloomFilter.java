@@ -0,0 +1,102 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Bloom filter of strings: a compact set that may report an absent string as present,
+ * at a configured rate, but never reports a present string as absent.
+ * @author Ethan Saunders
+ */
+final class BloomFilter {
+
+    /** The bits of the filter. */
+    private final long[] bits;
+
+    /** The number of bits. */
+    private final long size;
+
+    /** The number of bits set per string. */
+    private final int hashes;
+
+    /**
+     * Creates a filter sized for a number of strings and false-positive rate.
+     * @param expected the expected number of strings
+     * @param falsePositiveRate the target false-positive rate, between 0 and 1
+     */
+    BloomFilter(long expected, double falsePositiveRate) {
+        long n = Math.max(1, expected);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.max(1, (m + 63) / 64)];
+        this.size = bits.length * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) size / n * Math.log(2)));
+    }
+
+    private BloomFilter(BloomFilter other) {
+        this.bits = other.bits.clone();
+        this.size = other.size;
+        this.hashes = other.hashes;
+    }
+
+    /**
+     * Returns a copy of the filter, which can be added to without affecting this one.
+     * @return the copy
+     */
+    BloomFilter copy() {
+        return new BloomFilter(this);
+    }
+
+    /**
+     * Adds a string.
+     * @param value the string
+     */
+    void add(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, size);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a string may have been added.
+     * @param value the string
+     * @return false if the string was certainly never added
+     */
+    boolean mightContain(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, size);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the filter in bytes.
+     * @return the number of bytes of bits
+     */
+    long sizeInBytes() {
+        return bits.length * 8L;
+    }
+
+    /** 64-bit FNV-1a of the UTF-8 bytes. */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /** The SplitMix64 finalizer, spreading every input bit over the output. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -7,7 +7,6 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.esaunders.TextbookExchange.model.User;
-import com.esaunders.TextbookExchange.model.VerificationToken;
 import com.esaunders.TextbookExchange.repository.UserRepository;
 import com.esaunders.TextbookExchange.repository.VerificationTokenRepository;
 
@@ -27,6 +26,9 @@ public class EmailService {
     /** Repository for user entities. */
     @Autowired
     private UserRepository userRepository;
+    /** Cache of users, evicted when a user is deleted. */
+    @Autowired
+    private UserCache userCache;
     /** Repository for verification tokens. */
     @Autowired
     private VerificationTokenRepository verificationTokenRepository;
@@ -56,22 +58,18 @@ public class EmailService {
         for (User user : users) {
             if (!user.isVerified() && user.getCreatedAt() != null && user.getCreatedAt().isBefore(LocalDateTime.now().minusHours(24))) {
                 userRepository.delete(user);
+                userCache.evict(user);
             }
         }
     }
 
     /**
-     * Deletes expired verification tokens.
+     * Deletes expired verification tokens in one statement; signed links store none.
      * Runs every hour.
      * @Scheduled(cron = "0 0 * * * *")
      */
     @Scheduled(cron = "0 0 * * * *")
     public void deleteExpiredTokens() {
-        List<VerificationToken> tokens = verificationTokenRepository.findAll();
-        for (VerificationToken token : tokens) {
-            if (token.getExpiryTime() != null && token.getExpiryTime().isBefore(LocalDateTime.now())) {
-                verificationTokenRepository.delete(token);
-            }
-        }
+        verificationTokenRepository.deleteExpired(LocalDateTime.now());
     }
 }
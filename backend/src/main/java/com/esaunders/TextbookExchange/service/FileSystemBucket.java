@@ -0,0 +1,52 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A local directory standing in for the S3 bucket, where each key is a relative path.
+ * Lets the image proxy run and be tested offline.
+ * @author Ethan Saunders
+ */
+public class FileSystemBucket implements ImageOrigin {
+
+    /** The directory holding the objects. */
+    private final Path root;
+
+    /**
+     * Creates a bucket over a directory.
+     * @param root the directory holding the objects
+     */
+    public FileSystemBucket(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public ObjectInfo fetch(String keyName, Path target) throws IOException {
+        Path file = root.resolve(keyName).normalize();
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Files.copy(file, target);
+            String etag = "\"" + Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+            return new ObjectInfo(attributes.size(), contentType(keyName), etag,
+                attributes.lastModifiedTime().toInstant());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static String contentType(String keyName) {
+        String lower = keyName.toLowerCase();
+        if (lower.endsWith(".png")) {
+            return "image/png";
+        }
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") ? "image/jpeg" : "application/octet-stream";
+    }
+}
@@ -0,0 +1,301 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.esaunders.TextbookExchange.config.ImageCacheProperties;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Disk cache of listing images for the /images proxy, so that repeat requests
+ * are served from local disk instead of S3.
+ * <p>
+ * The index is a Caffeine cache weighted by file size, like the listing caches,
+ * and an evicted image's file is deleted after a grace period: the controller, or
+ * Tomcat's sendfile, opens the file only after the lookup returns, and an open file
+ * stays readable once deleted. A miss is fetched once however many
+ * requests ask for it at the same time: later callers wait on the first fetch.
+ * Fetches are written to a temporary file and moved into place when complete,
+ * so a partly downloaded image is never served.
+ * <p>
+ * The proxy is public, so keys the origin does not have are remembered briefly
+ * and fetches wait in a bounded queue: requests for made-up keys cannot turn into
+ * an unbounded stream of S3 requests. Images are evicted when they are deleted.
+ * @author Ethan Saunders
+ */
+@Service
+public class ImageCache implements DisposableBean {
+    /** Key prefixes of public listing images; staged uploads are not served. */
+    private static final String[] SERVABLE_PREFIXES = {ImageStore.KEY_PREFIX, ImageGarbageCollector.LEGACY_PREFIX};
+
+    /** Where images are fetched from on a miss. */
+    private final ImageOrigin origin;
+
+    /** Directory of the cached files. */
+    private final Path dir;
+
+    /** Index of the cached files, weighted by size. */
+    private final AsyncCache<String, CachedImage> images;
+
+    /** Keys the origin recently did not have. */
+    private final Cache<String, Boolean> misses;
+
+    /** Pool fetching images from the origin, with a bounded queue. */
+    private final ThreadPoolExecutor fetchPool;
+
+    /** How long an evicted image's file is kept before it is deleted. */
+    private final Duration evictedFileGrace;
+
+    /** Deletes the files of evicted images once their grace period is over. */
+    private final ScheduledExecutorService reaper;
+
+    /**
+     * Constructs the cache over S3, or over a local directory if one is configured as the bucket.
+     * @param s3Service the S3 service
+     * @param properties the cache configuration
+     * @param meterRegistry the registry for cache metrics
+     * @throws IOException if the cache directory cannot be prepared
+     */
+    @Autowired
+    public ImageCache(S3Service s3Service, ImageCacheProperties properties, MeterRegistry meterRegistry)
+            throws IOException {
+        this(properties.getBucketDir().isBlank() ? s3Service : new FileSystemBucket(Paths.get(properties.getBucketDir())),
+            properties, meterRegistry);
+    }
+
+    /**
+     * Constructs the cache over an origin.
+     * @param origin where images are fetched from on a miss
+     * @param properties the cache configuration
+     * @param meterRegistry the registry for cache metrics
+     * @throws IOException if the cache directory cannot be prepared
+     */
+    ImageCache(ImageOrigin origin, ImageCacheProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.origin = origin;
+        this.dir = properties.getDir().isBlank()
+            ? Paths.get(System.getProperty("java.io.tmpdir"), "textbook-image-cache")
+            : Paths.get(properties.getDir());
+        Files.createDirectories(dir);
+        // The index is not persisted, so files left by a previous run cannot be found again
+        clear(dir);
+        AtomicInteger threads = new AtomicInteger();
+        this.fetchPool = new ThreadPoolExecutor(properties.getFetchThreads(), properties.getFetchThreads(),
+            0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getFetchQueueCapacity()), r -> {
+                Thread t = new Thread(r, "image-cache-fetch-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        this.evictedFileGrace = properties.getEvictedFileGrace();
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "image-cache-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.images = Caffeine.newBuilder()
+            .maximumWeight(properties.getMaxBytes())
+            .expireAfterWrite(properties.getTtl())
+            .weigher((String key, CachedImage image) -> (int) Math.min(Integer.MAX_VALUE, image.size()))
+            .removalListener((String key, CachedImage image, RemovalCause cause) -> {
+                if (image != null && cause != RemovalCause.REPLACED) {
+                    retire(image.file());
+                }
+            })
+            .recordStats()
+            .buildAsync();
+        this.misses = Caffeine.newBuilder()
+            .expireAfterWrite(properties.getMissTtl())
+            .maximumSize(properties.getMaxMisses())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, images.synchronous(), "images.proxy");
+        CaffeineCacheMetrics.monitor(meterRegistry, misses, "images.proxy.misses");
+    }
+
+    /**
+     * Checks whether a key names a public listing image.
+     * @param key the object key
+     * @return true if the key may be served
+     */
+    public static boolean isServable(String key) {
+        if (key == null || key.contains("..") || key.contains("//") || key.contains("\\")) {
+            return false;
+        }
+        for (String prefix : SERVABLE_PREFIXES) {
+            if (key.startsWith(prefix) && key.length() > prefix.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a cached image, fetching it from the origin on a miss.
+     * @param key the object key
+     * @return the cached image, or null if the origin has no such object
+     * @throws java.util.concurrent.RejectedExecutionException if too many fetches are waiting
+     * @throws Exception if the image cannot be fetched
+     */
+    public CachedImage get(String key) throws Exception {
+        if (misses.getIfPresent(key) != null) {
+            return null;
+        }
+        CachedImage cached = load(key);
+        if (cached != null && !Files.exists(cached.file())) {
+            // Deleted behind the cache's back; fetch it again
+            images.synchronous().invalidate(key);
+            cached = load(key);
+        }
+        if (cached == null) {
+            misses.put(key, Boolean.TRUE);
+        }
+        return cached;
+    }
+
+    /**
+     * Forgets an image, deleting its cached file after the grace period; call when the object is deleted or written.
+     * @param key the object key
+     */
+    public void evict(String key) {
+        images.synchronous().invalidate(key);
+        misses.invalidate(key);
+    }
+
+    /**
+     * Forgets a full-size image and its variants, as stored by {@link S3Service#uploadImages}.
+     * @param keyName the key of the full-size image
+     */
+    public void evictImages(String keyName) {
+        evict(keyName);
+        evict(ImageProcessor.variantKey(keyName, "medium"));
+        evict(ImageProcessor.variantKey(keyName, "thumb"));
+    }
+
+    private CachedImage load(String key) throws Exception {
+        // A full queue rejects the fetch here, before anything is cached for the key
+        CompletableFuture<CachedImage> image = images.get(key, (k, executor) ->
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetch(k);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, fetchPool));
+        try {
+            return image.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches an image into the cache directory.
+     * @param key the object key
+     * @return the cached image, or null if the origin has no such object
+     * @throws Exception if the image cannot be fetched
+     */
+    private CachedImage fetch(String key) throws Exception {
+        Path part = dir.resolve(UUID.randomUUID() + ".part");
+        try {
+            ImageOrigin.ObjectInfo info = origin.fetch(key, part);
+            if (info == null) {
+                return null;
+            }
+            Path file = dir.resolve(UUID.randomUUID() + ".img");
+            Files.move(part, file, StandardCopyOption.ATOMIC_MOVE);
+            return new CachedImage(file, Files.size(file), info.contentType(), info.etag(), info.lastModified());
+        } finally {
+            deleteQuietly(part);
+        }
+    }
+
+    /**
+     * Returns the approximate number of cached images.
+     * @return the number of cached images
+     */
+    public long size() {
+        return images.synchronous().estimatedSize();
+    }
+
+    /**
+     * Deletes the file of an evicted image once requests that were handed it have opened it.
+     * @param file the cached file
+     */
+    private void retire(Path file) {
+        if (evictedFileGrace.isZero()) {
+            deleteQuietly(file);
+            return;
+        }
+        try {
+            reaper.schedule(() -> deleteQuietly(file), evictedFileGrace.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the directory is emptied on the next start
+        }
+    }
+
+    private static void clear(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete cached image " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the fetch pool. Files still waiting to be deleted are cleared on the next start.
+     */
+    @Override
+    public void destroy() {
+        fetchPool.shutdownNow();
+        reaper.shutdownNow();
+    }
+
+    /**
+     * An image held in the disk cache.
+     * @param file the cached file
+     * @param size the size in bytes
+     * @param contentType the media type
+     * @param etag the entity tag from the origin, quoted
+     * @param lastModified when the image was last written at the origin
+     */
+    public record CachedImage(Path file, long size, String contentType, String etag, Instant lastModified) {
+    }
+}
@@ -0,0 +1,289 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.esaunders.TextbookExchange.config.ImageGcProperties;
+import com.esaunders.TextbookExchange.model.ImageSweep;
+import com.esaunders.TextbookExchange.repository.BookListingRepository;
+import com.esaunders.TextbookExchange.repository.ImageSweepRepository;
+import com.esaunders.TextbookExchange.repository.StoredImageRepository;
+
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Service that finds and deletes listing images in S3 that no listing refers to,
+ * such as those left by a failed save or a delete that could not reach S3.
+ * <p>
+ * A sweep loads every referenced key into a Bloom filter, then lists each image
+ * prefix in key order and deletes the objects the filter has never seen, with one
+ * DeleteObjects request per page of at most 1000 keys. A false positive only keeps
+ * an orphan until a later sweep. Objects younger than the grace period are skipped,
+ * as their listing may not be saved yet, and content-addressed images are deleted
+ * under their row lock like any other. After each page the last key is saved, so a
+ * sweep interrupted by a restart resumes where it stopped.
+ * @author Ethan Saunders
+ */
+@Service
+public class ImageGarbageCollector implements DisposableBean {
+    /** Key prefix of images uploaded with a key of their own, before content addressing. */
+    static final String LEGACY_PREFIX = "book-images/";
+
+    /** The prefixes swept, in order. */
+    static final List<String> PREFIXES =
+        List.of(LEGACY_PREFIX, ImageStore.KEY_PREFIX, ImageUploadService.STAGING_PREFIX);
+
+    /** Number of rows loaded per batch when building the reference filter. */
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    /** Service for S3 operations. */
+    private final S3Service s3Service;
+
+    /** Storage of content-addressed images. */
+    private final ImageStore imageStore;
+
+    /** Repository for the image URLs of listings. */
+    private final BookListingRepository bookListingRepository;
+
+    /** Repository of content-addressed images. */
+    private final StoredImageRepository storedImageRepository;
+
+    /** Repository of sweep checkpoints. */
+    private final ImageSweepRepository imageSweepRepository;
+
+    /** Configuration of the sweep. */
+    private final ImageGcProperties properties;
+
+    /** Whether a sweep is running, so that a manual and a scheduled sweep never overlap. */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /** Disk cache of the /images proxy, which must stop serving deleted images. */
+    private final ImageCache imageCache;
+
+    /** Runs the scheduled sweeps, once started. */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs the collector.
+     * @param s3Service the S3 service
+     * @param imageStore the image store
+     * @param bookListingRepository the listing repository
+     * @param storedImageRepository the stored image repository
+     * @param imageSweepRepository the sweep checkpoint repository
+     * @param properties the sweep configuration
+     * @param imageCache the disk cache of the /images proxy
+     */
+    public ImageGarbageCollector(S3Service s3Service, ImageStore imageStore,
+            BookListingRepository bookListingRepository, StoredImageRepository storedImageRepository,
+            ImageSweepRepository imageSweepRepository, ImageGcProperties properties, ImageCache imageCache) {
+        this.s3Service = s3Service;
+        this.imageStore = imageStore;
+        this.bookListingRepository = bookListingRepository;
+        this.storedImageRepository = storedImageRepository;
+        this.imageSweepRepository = imageSweepRepository;
+        this.properties = properties;
+        this.imageCache = imageCache;
+    }
+
+    /**
+     * Schedules the sweep once the application is ready, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!properties.isEnabled() || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "image-gc");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (Exception e) {
+                // Keep the schedule; the next sweep resumes from the last checkpoint
+                System.err.println("Image sweep failed: " + e.getMessage());
+            }
+        }, properties.getInitialDelay().toMillis(), properties.getInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs one sweep over every image prefix, resuming an interrupted one.
+     * @return what the sweep did, or null if a sweep was already running
+     * @throws Exception if S3 cannot be listed; the checkpoint of the last page is kept
+     * @throws InterruptedException if the collector is stopped during the sweep
+     */
+    public SweepResult sweep() throws Exception {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            long started = System.currentTimeMillis();
+            int collected = imageStore.collectUnreferenced();
+            BloomFilter references = loadReferences();
+            Instant cutoff = Instant.now().minus(properties.getGrace());
+            long scanned = 0;
+            // Each content-addressed image is a full-size object and two variants
+            long deleted = collected * 3L;
+            for (String prefix : PREFIXES) {
+                SweepResult result = sweepPrefix(prefix, references, cutoff);
+                scanned += result.scanned();
+                deleted += result.deleted();
+            }
+            System.out.println("Image sweep scanned " + scanned + " objects and deleted " + deleted
+                + " orphans in " + (System.currentTimeMillis() - started) + " ms");
+            return new SweepResult(scanned, deleted);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Builds a filter of every key and hash in use: the image URLs of all listings,
+     * in any status, and the hashes of all content-addressed images.
+     * @return the reference filter
+     */
+    BloomFilter loadReferences() {
+        long expected = bookListingRepository.count() * 3 + storedImageRepository.count();
+        BloomFilter references = new BloomFilter(Math.max(LOAD_BATCH_SIZE, expected),
+            properties.getFalsePositiveRate());
+
+        Long lastId = 0L;
+        List<BookListingRepository.ImageUrls> listings;
+        do {
+            listings = bookListingRepository.findImageUrlsAfter(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (BookListingRepository.ImageUrls urls : listings) {
+                addKey(references, urls.getImageUrl());
+                addKey(references, urls.getMediumUrl());
+                addKey(references, urls.getThumbnailUrl());
+                lastId = urls.getId();
+            }
+        } while (listings.size() == LOAD_BATCH_SIZE);
+
+        String lastHash = "";
+        List<String> hashes;
+        do {
+            hashes = storedImageRepository.findHashesAfter(lastHash, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (String hash : hashes) {
+                references.add(hash);
+                lastHash = hash;
+            }
+        } while (hashes.size() == LOAD_BATCH_SIZE);
+        return references;
+    }
+
+    private void addKey(BloomFilter references, String url) {
+        String key = s3Service.keyOf(url);
+        if (key != null) {
+            references.add(key);
+        }
+    }
+
+    /**
+     * Sweeps one prefix from its checkpoint to the end.
+     * @param prefix the key prefix
+     * @param references the reference filter
+     * @param cutoff objects modified after this are kept
+     * @return what was swept
+     * @throws Exception if S3 cannot be listed
+     */
+    private SweepResult sweepPrefix(String prefix, BloomFilter references, Instant cutoff) throws Exception {
+        String startAfter = imageSweepRepository.findById(prefix).map(ImageSweep::getStartAfter).orElse(null);
+        long scanned = 0;
+        long deleted = 0;
+        Set<String> collectedHashes = new HashSet<>();
+        ListObjectsV2Response page;
+        do {
+            page = s3Service.listFiles(prefix, startAfter, S3Service.MAX_DELETE_BATCH);
+            List<String> orphans = new ArrayList<>();
+            for (S3Object object : page.contents()) {
+                scanned++;
+                startAfter = object.key();
+                if (object.lastModified() != null && object.lastModified().isAfter(cutoff)) {
+                    continue;
+                }
+                String hash = ImageStore.hashOfKey(object.key());
+                if (hash != null) {
+                    // The full-size image and its variants share a hash and are deleted together
+                    if (!references.mightContain(hash) && collectedHashes.add(hash) && imageStore.collectOrphan(hash)) {
+                        deleted += 3;
+                    }
+                } else if (prefix.equals(ImageUploadService.STAGING_PREFIX) || !references.mightContain(object.key())) {
+                    // Staged uploads are never referenced; past the grace period they were abandoned
+                    orphans.add(object.key());
+                }
+            }
+            deleted += deleteOrphans(orphans);
+            saveCheckpoint(prefix, page.isTruncated() ? startAfter : null);
+        } while (page.isTruncated());
+        return new SweepResult(scanned, deleted);
+    }
+
+    /**
+     * Deletes one page of orphans, then waits long enough to keep within the delete rate.
+     * @param orphans the keys to delete, at most 1000
+     * @return the number of keys deleted
+     * @throws Exception if the request fails
+     * @throws InterruptedException if the collector is stopped while waiting
+     */
+    private int deleteOrphans(List<String> orphans) throws Exception {
+        if (orphans.isEmpty()) {
+            return 0;
+        }
+        long started = System.currentTimeMillis();
+        List<String> failed = s3Service.deleteFiles(orphans);
+        orphans.forEach(imageCache::evict);
+        if (!failed.isEmpty()) {
+            System.err.println("Failed to delete " + failed.size() + " orphaned images, for example " + failed.get(0));
+        }
+        long minimumMillis = orphans.size() * 1000L / Math.max(1, properties.getMaxDeletesPerSecond());
+        long remaining = minimumMillis - (System.currentTimeMillis() - started);
+        if (remaining > 0) {
+            Thread.sleep(remaining);
+        }
+        return orphans.size() - failed.size();
+    }
+
+    /**
+     * Records how far a prefix has been swept.
+     * @param prefix the key prefix
+     * @param startAfter the last key swept, or null once the prefix is finished
+     */
+    private void saveCheckpoint(String prefix, String startAfter) {
+        imageSweepRepository.save(new ImageSweep(prefix, startAfter, LocalDateTime.now()));
+    }
+
+    /**
+     * Stops scheduled sweeps, interrupting a running one at its next wait.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The outcome of a sweep.
+     * @param scanned the number of objects listed
+     * @param deleted the number of objects deleted
+     */
+    public record SweepResult(long scanned, long deleted) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Where the image proxy fetches the images it does not have cached:
+ * the S3 bucket, or a local directory standing in for it.
+ * @author Ethan Saunders
+ */
+public interface ImageOrigin {
+
+    /**
+     * Downloads an object to a file.
+     * @param keyName the object key
+     * @param target the file to create; it must not exist
+     * @return the object metadata, or null if there is no such object
+     * @throws Exception if the object cannot be downloaded
+     */
+    ObjectInfo fetch(String keyName, Path target) throws Exception;
+
+    /**
+     * The metadata of a fetched object.
+     * @param size the size in bytes
+     * @param contentType the media type
+     * @param etag the entity tag, quoted
+     * @param lastModified when the object was last written
+     */
+    record ObjectInfo(long size, String contentType, String etag, Instant lastModified) {
+    }
+}
@@ -0,0 +1,355 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns an uploaded listing photo into the images the clients display: a full-size
+ * image, a medium variant for the detail page and a thumbnail for feed cards, all
+ * re-encoded as compressed JPEG without the camera's metadata, plus a BlurHash
+ * placeholder shown while they load. Decoding is memory-hungry, so images are
+ * processed on a small bounded pool.
+ * @author Ethan Saunders
+ */
+@Component
+public class ImageProcessor implements DisposableBean {
+    /** Longest side of the full-size image, in pixels. */
+    static final int FULL_SIZE = 2048;
+
+    /** Longest side of the medium variant, in pixels. */
+    static final int MEDIUM_SIZE = 1024;
+
+    /** Longest side of the thumbnail, in pixels; twice the largest card size, for high-density screens. */
+    static final int THUMBNAIL_SIZE = 400;
+
+    /** Largest image accepted, in pixels, to bound the memory of a decode. */
+    static final long MAX_PIXELS = 50_000_000L;
+
+    /** Media type of every processed image. */
+    public static final String CONTENT_TYPE = "image/jpeg";
+
+    /** JPEG quality of the processed images. */
+    private static final float JPEG_QUALITY = 0.8f;
+
+    /** Longest side of the image the placeholder is computed from, in pixels. */
+    private static final int BLURHASH_SIZE = 32;
+
+    /** Number of images processed at once. */
+    private static final int PROCESSING_THREADS = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors()));
+
+    /** Number of images waiting to be processed before further images are refused. */
+    private static final int QUEUE_CAPACITY = 256;
+
+    /** Pool images are processed on. */
+    private final ExecutorService pool;
+
+    /**
+     * Constructs the processor and its pool.
+     */
+    public ImageProcessor() {
+        AtomicInteger threads = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(PROCESSING_THREADS, PROCESSING_THREADS,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                Thread t = new Thread(r, "listing-image-process-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            // Never fall back to the caller: that would decode on a request thread
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Processes an image on the pool.
+     * @param source opens the image; the stream is closed once read
+     * @return the processed image, or a future failed with the reason the image could not be read
+     * @throws java.util.concurrent.RejectedExecutionException if too many images are waiting
+     */
+    public CompletableFuture<ProcessedImage> submit(Callable<InputStream> source) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = source.call()) {
+                return process(in);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, pool);
+    }
+
+    /**
+     * Processes an image on the calling thread.
+     * @param in the JPEG or PNG image
+     * @return the processed image
+     * @throws IOException if the image cannot be read or is too large
+     */
+    ProcessedImage process(InputStream in) throws IOException {
+        // Sizes reported by the source, such as a zip entry's, are not to be trusted
+        byte[] data = in.readNBytes((int) ImageUploadService.MAX_IMAGE_BYTES + 1);
+        if (data.length > ImageUploadService.MAX_IMAGE_BYTES) {
+            throw new IOException("Image is larger than " + (ImageUploadService.MAX_IMAGE_BYTES / (1024 * 1024))
+                + " MB.");
+        }
+        BufferedImage decoded = decode(data);
+        int orientation = jpegOrientation(data);
+
+        BufferedImage full = orient(fit(decoded, FULL_SIZE), orientation);
+        BufferedImage medium = fit(full, MEDIUM_SIZE);
+        BufferedImage thumbnail = fit(medium, THUMBNAIL_SIZE);
+        String blurhash = Blurhash.encode(fit(thumbnail, BLURHASH_SIZE), 4, 3);
+
+        return new ProcessedImage(encodeJpeg(full), encodeJpeg(medium), encodeJpeg(thumbnail), blurhash);
+    }
+
+    /**
+     * Returns the S3 key of a variant: the image key with a suffix before its extension.
+     * @param key the key of the full-size image
+     * @param variant the variant name, such as "medium" or "thumb"
+     * @return the key of the variant
+     */
+    public static String variantKey(String key, String variant) {
+        int dot = key.lastIndexOf('.');
+        int slash = key.lastIndexOf('/');
+        return dot > slash ? key.substring(0, dot) + "-" + variant + key.substring(dot) : key + "-" + variant;
+    }
+
+    /**
+     * Decodes an image, subsampling large ones while reading so that the decoded
+     * raster's longest side stays under twice that of the full-size image.
+     * @param data the encoded image
+     * @return the decoded image
+     * @throws IOException if the image cannot be decoded or has too many pixels
+     */
+    private static BufferedImage decode(byte[] data) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) {
+                    throw new IOException("Image is too large: " + width + "x" + height);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / FULL_SIZE);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales an image down so that its longest side fits, flattening any transparency
+     * onto white. Large reductions are done in halving steps to avoid aliasing.
+     * @param source the image
+     * @param maxSize the longest side allowed, in pixels
+     * @return the scaled image, or the source if it already fits and is opaque RGB
+     */
+    static BufferedImage fit(BufferedImage source, int maxSize) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = redraw(current, current.getWidth() / 2, current.getHeight() / 2, null);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight
+                || current.getType() != BufferedImage.TYPE_INT_RGB) {
+            current = redraw(current, targetWidth, targetHeight, null);
+        }
+        return current;
+    }
+
+    /**
+     * Applies an EXIF orientation, since the tag itself is dropped with the rest of the metadata.
+     * @param image the image as stored
+     * @param orientation the EXIF orientation, 1 to 8
+     * @return the image as it should be displayed
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.translate(h, w); t.scale(-1, -1); t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            default -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+        }
+        boolean swap = orientation >= 5;
+        return redraw(image, swap ? h : w, swap ? w : h, t);
+    }
+
+    /**
+     * Draws an image onto a new opaque RGB image with bilinear filtering.
+     * @param source the image
+     * @param width the width of the new image
+     * @param height the height of the new image
+     * @param transform the transform to draw with, or null to stretch the source to fit
+     * @return the new image
+     */
+    private static BufferedImage redraw(BufferedImage source, int width, int height, AffineTransform transform) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            if (transform == null) {
+                g.drawImage(source, 0, 0, width, height, null);
+            } else {
+                g.drawImage(source, transform, null);
+            }
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Encodes an image as baseline JPEG. No metadata is written.
+     * @param image the image
+     * @return the JPEG bytes
+     * @throws IOException if the image cannot be encoded
+     */
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the EXIF orientation tag of a JPEG.
+     * @param data the encoded image
+     * @return the orientation, or 1 if the image is not a JPEG or has no orientation tag
+     */
+    static int jpegOrientation(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xff) != 0xFF || (data[1] & 0xff) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length && (data[pos] & 0xff) == 0xFF) {
+            int marker = data[pos + 1] & 0xff;
+            if (marker == 0xDA || marker == 0xD9) {
+                // Metadata segments all precede the image data
+                return 1;
+            }
+            int length = readUnsigned(data, pos + 2, 2, false);
+            int segment = pos + 4;
+            int end = Math.min(pos + 2 + length, data.length);
+            if (marker == 0xE1 && segment + 6 <= end && data[segment] == 'E' && data[segment + 1] == 'x'
+                    && data[segment + 2] == 'i' && data[segment + 3] == 'f' && data[segment + 4] == 0) {
+                return tiffOrientation(data, segment + 6, end);
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    /**
+     * Finds the orientation tag in the first IFD of an EXIF TIFF structure.
+     * @param data the encoded image
+     * @param start the offset of the TIFF header
+     * @param end the end of the EXIF segment
+     * @return the orientation, or 1 if absent
+     */
+    private static int tiffOrientation(byte[] data, int start, int end) {
+        if (start + 8 > end) {
+            return 1;
+        }
+        boolean littleEndian = data[start] == 'I' && data[start + 1] == 'I';
+        int ifd = start + readUnsigned(data, start + 4, 4, littleEndian);
+        if (ifd < start || ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readUnsigned(data, ifd, 2, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readUnsigned(data, entry, 2, littleEndian) == 0x0112) {
+                return readUnsigned(data, entry + 8, 2, littleEndian);
+            }
+        }
+        return 1;
+    }
+
+    private static int readUnsigned(byte[] data, int offset, int length, boolean littleEndian) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + (littleEndian ? length - 1 - i : i)] & 0xff;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    /**
+     * Stops the processing pool.
+     */
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The images generated from one upload, all JPEG.
+     * @param full the full-size image
+     * @param medium the medium variant
+     * @param thumbnail the thumbnail
+     * @param blurhash the BlurHash placeholder
+     */
+    public record ProcessedImage(byte[] full, byte[] medium, byte[] thumbnail, String blurhash) {
+    }
+}
@@ -0,0 +1,246 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.StoredImage;
+import com.esaunders.TextbookExchange.repository.StoredImageRepository;
+
+/**
+ * Service for storing listing images by content.
+ * Each processed image is stored once, under the SHA-256 of its full-size JPEG,
+ * and shared by every listing that uses it. A repeat upload of the same photo
+ * takes a reference to the existing objects instead of uploading them again.
+ * Reference counts live in the stored_images table; an image's objects are
+ * deleted only once no listing or upload in flight refers to it.
+ * @author Ethan Saunders
+ */
+@Service
+public class ImageStore {
+    /** Key prefix of content-addressed images. */
+    static final String KEY_PREFIX = "images/";
+
+    /** Number of unreferenced images loaded per batch when collecting them. */
+    private static final int COLLECT_BATCH_SIZE = 100;
+
+    /** Service for S3 operations. */
+    private final S3Service s3Service;
+
+    /** Repository of stored images and their reference counts. */
+    private final StoredImageRepository storedImageRepository;
+
+    /** Runs the locked check-and-delete of an unreferenced image in one transaction. */
+    private final TransactionTemplate transactionTemplate;
+
+    /** Whether images are stored by content; otherwise each upload gets its own keys. */
+    private final boolean contentAddressed;
+
+    /** Disk cache of the /images proxy, which must stop serving deleted images. */
+    private final ImageCache imageCache;
+
+    /**
+     * Constructs the ImageStore.
+     * @param s3Service the S3 service
+     * @param storedImageRepository the stored image repository
+     * @param transactionTemplate the transaction template
+     * @param contentAddressed whether images are stored by content
+     * @param imageCache the disk cache of the /images proxy
+     */
+    public ImageStore(S3Service s3Service, StoredImageRepository storedImageRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${listing-images.content-addressed:true}") boolean contentAddressed,
+            ImageCache imageCache) {
+        this.s3Service = s3Service;
+        this.storedImageRepository = storedImageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.contentAddressed = contentAddressed;
+        this.imageCache = imageCache;
+    }
+
+    /**
+     * Stores a processed image, taking a reference to it. The caller must either attach
+     * the result to a listing, which then holds the reference, or {@link #release} it.
+     * @param images the processed image
+     * @param keyName the key of the full-size image when images are not stored by content
+     * @return the URLs of the stored images, with the hash that identifies them
+     * @throws Exception if the upload fails; no reference is then held
+     */
+    public ListingImages store(ImageProcessor.ProcessedImage images, String keyName) throws Exception {
+        if (!contentAddressed) {
+            return s3Service.uploadImages(images, keyName);
+        }
+        String hash = sha256(images.full());
+        storedImageRepository.acquire(hash);
+        try {
+            StoredImage stored = storedImageRepository.findById(hash)
+                .orElseThrow(() -> new IllegalStateException("Stored image " + hash + " vanished"));
+            if (stored.getImageUrl() != null) {
+                // Already uploaded for another listing
+                return new ListingImages(stored.getImageUrl(), stored.getMediumUrl(), stored.getThumbnailUrl(),
+                    stored.getBlurhash(), hash);
+            }
+            // Either new, or a concurrent upload of the same image has not finished; objects
+            // it has already written are skipped, and rewriting the same bytes is harmless
+            ListingImages uploaded = s3Service.uploadImagesIfAbsent(images, keyFor(hash));
+            // The proxy may have recorded the key as missing while the image was gone
+            imageCache.evictImages(keyFor(hash));
+            storedImageRepository.recordUpload(hash, uploaded.imageUrl(), uploaded.mediumUrl(),
+                uploaded.thumbnailUrl(), uploaded.blurhash());
+            return new ListingImages(uploaded.imageUrl(), uploaded.mediumUrl(), uploaded.thumbnailUrl(),
+                uploaded.blurhash(), hash);
+        } catch (Exception e) {
+            release(hash);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the reference taken by {@link #store} for images that were never attached to a listing.
+     * @param images the stored images
+     * @param keyName the key passed to {@link #store}
+     * @throws Exception if the images cannot be deleted
+     */
+    public void release(ListingImages images, String keyName) throws Exception {
+        if (images.hash() == null) {
+            s3Service.deleteImages(keyName);
+            imageCache.evictImages(keyName);
+        } else {
+            release(images.hash());
+        }
+    }
+
+    /**
+     * Drops a reference to an image and deletes it if it was the last.
+     * @param hash the hex SHA-256 of the image
+     */
+    public void release(String hash) {
+        storedImageRepository.release(hash);
+        collect(hash);
+    }
+
+    /**
+     * Deletes an image if nothing refers to it any more. Call after deleting a listing,
+     * whose reference the database drops with it. The row stays locked while the objects
+     * are deleted, so a concurrent upload of the same image waits and then stores it afresh.
+     * @param hash the hex SHA-256 of the image
+     * @return true if the image was deleted
+     */
+    public boolean collect(String hash) {
+        Boolean deleted = transactionTemplate.execute(status -> {
+            StoredImage stored = storedImageRepository.findForUpdate(hash).orElse(null);
+            if (stored == null || stored.getRefCount() > 0) {
+                return false;
+            }
+            try {
+                s3Service.deleteImages(keyFor(hash));
+            } catch (Exception e) {
+                // Forgetting the row leaves only unreferenced objects, which are safe to delete later
+                System.err.println("Failed to delete image " + hash + ": " + e.getMessage());
+            }
+            imageCache.evictImages(keyFor(hash));
+            storedImageRepository.delete(stored);
+            return true;
+        });
+        return Boolean.TRUE.equals(deleted);
+    }
+
+    /**
+     * Deletes the images of a listing that has just been deleted. A shared image is
+     * deleted only if no other listing uses it; a listing with its own keys has them deleted at once.
+     * Anything left behind by a failure here is found by the orphaned image sweep.
+     * @param listing the deleted listing
+     * @throws Exception if the listing's own images cannot be deleted
+     */
+    public void listingDeleted(BookListing listing) throws Exception {
+        if (listing.getImageHash() != null) {
+            // The database dropped the listing's reference with the row
+            collect(listing.getImageHash());
+            return;
+        }
+        for (String url : new String[] {listing.getImageUrl(), listing.getMediumUrl(), listing.getThumbnailUrl()}) {
+            String key = s3Service.keyOf(url);
+            if (key != null) {
+                s3Service.deleteFile(key);
+                imageCache.evict(key);
+            }
+        }
+    }
+
+    /**
+     * Deletes every image nothing refers to, such as those of listings removed with their owner.
+     * @return the number of images deleted
+     */
+    public int collectUnreferenced() {
+        int collected = 0;
+        List<String> batch;
+        do {
+            batch = storedImageRepository.findUnreferencedHashes(PageRequest.of(0, COLLECT_BATCH_SIZE));
+            int before = collected;
+            for (String hash : batch) {
+                if (collect(hash)) {
+                    collected++;
+                }
+            }
+            if (collected == before) {
+                // Every image in the batch gained a reference meanwhile
+                break;
+            }
+        } while (batch.size() == COLLECT_BATCH_SIZE);
+        return collected;
+    }
+
+    /**
+     * Deletes an image found in S3 that has no row, going through the row lock so that
+     * a concurrent upload of the same image either keeps it or stores it afresh.
+     * @param hash the hex SHA-256 of the image
+     * @return true if the image was deleted
+     */
+    public boolean collectOrphan(String hash) {
+        storedImageRepository.insertUnreferenced(hash);
+        return collect(hash);
+    }
+
+    /**
+     * Returns the hash of a content-addressed key, for the full-size image or a variant.
+     * @param key the S3 object key
+     * @return the hash, or null if the key is not content-addressed
+     */
+    static String hashOfKey(String key) {
+        int end = KEY_PREFIX.length() + 64;
+        if (!key.startsWith(KEY_PREFIX) || key.length() < end) {
+            return null;
+        }
+        String hash = key.substring(KEY_PREFIX.length(), end);
+        return hash.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')) ? hash : null;
+    }
+
+    /**
+     * Returns the S3 key of the full-size image with a hash.
+     * @param hash the hex SHA-256 of the image
+     * @return the key
+     */
+    static String keyFor(String hash) {
+        return KEY_PREFIX + hash + ".jpg";
+    }
+
+    /**
+     * Hashes bytes with SHA-256.
+     * @param bytes the bytes
+     * @return the lowercase hex digest
+     */
+    static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.esaunders.TextbookExchange.model.BookListing;
+
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+/**
+ * Service for uploading listing images off the request thread.
+ * A posted listing is saved as PENDING_IMAGE and its image is spooled to a
+ * temporary file, so the request returns without waiting on S3. The image is
+ * then resized by the ImageProcessor, and a small pool uploads the variants,
+ * retrying with exponential backoff, and activates the listing. If the image
+ * cannot be read or every attempt fails, the listing is discarded.
+ * <p>
+ * Clients may instead upload the image straight to S3 with a presigned URL and
+ * post only its key. The staged object is then read from S3 by the same pipeline
+ * and deleted once processed, so image bytes never pass through the request.
+ * @author Ethan Saunders
+ */
+@Service
+public class ImageUploadService implements DisposableBean {
+    /** Largest image accepted for a single listing, in bytes. */
+    public static final long MAX_IMAGE_BYTES = 5L * 1024 * 1024;
+
+    /** Media types accepted for listing images. */
+    public static final Set<String> IMAGE_TYPES = Set.of("image/jpeg", "image/png");
+
+    /** Key prefix of images uploaded directly by clients and not yet processed. */
+    static final String STAGING_PREFIX = "uploads/";
+
+    /** How long a presigned upload URL stays valid. */
+    static final Duration UPLOAD_URL_EXPIRY = Duration.ofMinutes(10);
+
+    /** Number of attempts made to upload an image before the listing is discarded. */
+    static final int MAX_ATTEMPTS = 3;
+
+    /** Largest number of uploads queued or running at once; further posts are rejected. */
+    static final int MAX_PENDING = 100;
+
+    /** Delay before the first retry; each further retry waits twice as long. */
+    private static final long INITIAL_BACKOFF_MS = 500;
+
+    /** Number of images uploaded at once. */
+    private static final int UPLOAD_THREADS = 4;
+
+    /** Service for S3 operations. */
+    private final S3Service s3Service;
+
+    /** Service for saving and activating listings. */
+    private final ListingService listingService;
+
+    /** Resizes uploaded images into their variants. */
+    private final ImageProcessor imageProcessor;
+
+    /** Stores processed images, shared by content. */
+    private final ImageStore imageStore;
+
+    /** Pool running uploads and scheduling their retries. */
+    private final ScheduledExecutorService executor;
+
+    /** Number of uploads accepted and not yet finished. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /** Delay before the first retry, in milliseconds. */
+    private final long initialBackoffMs;
+
+    /**
+     * Age after which a pending listing is taken as abandoned, longer than any upload
+     * can run. Other instances may still be uploading younger ones.
+     */
+    private final Duration abandonAfter;
+
+    /**
+     * Constructs the service with the default pool size and backoff.
+     * @param s3Service the S3 service
+     * @param listingService the listing service
+     * @param imageProcessor the image processor
+     * @param imageStore the image store
+     * @param abandonAfter the age after which a pending listing is taken as abandoned
+     */
+    @Autowired
+    public ImageUploadService(S3Service s3Service, ListingService listingService, ImageProcessor imageProcessor,
+            ImageStore imageStore, @Value("${image-upload.abandon-after:1h}") Duration abandonAfter) {
+        this(s3Service, listingService, imageProcessor, imageStore, UPLOAD_THREADS, INITIAL_BACKOFF_MS, abandonAfter);
+    }
+
+    /**
+     * Constructs the service with the given pool size and backoff.
+     * @param s3Service the S3 service
+     * @param listingService the listing service
+     * @param imageProcessor the image processor
+     * @param imageStore the image store
+     * @param threads the number of images uploaded at once
+     * @param initialBackoffMs the delay before the first retry, in milliseconds
+     * @param abandonAfter the age after which a pending listing is taken as abandoned
+     */
+    ImageUploadService(S3Service s3Service, ListingService listingService, ImageProcessor imageProcessor,
+            ImageStore imageStore, int threads, long initialBackoffMs, Duration abandonAfter) {
+        this.s3Service = s3Service;
+        this.listingService = listingService;
+        this.imageProcessor = imageProcessor;
+        this.imageStore = imageStore;
+        this.initialBackoffMs = initialBackoffMs;
+        this.abandonAfter = abandonAfter;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "listing-image-upload-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Saves a listing as pending and uploads its image in the background.
+     * @param listing the new listing
+     * @param image the listing image
+     * @param keyName the S3 object key for the full-size image, if images are not stored by content
+     * @return the saved pending listing
+     * @throws RejectedExecutionException if too many uploads are already in progress
+     * @throws IOException if the image cannot be spooled to disk
+     */
+    public BookListing submit(BookListing listing, MultipartFile image, String keyName) throws IOException {
+        reserve();
+        Path file = null;
+        try {
+            // The multipart temp file is deleted when the request ends, so keep a copy
+            file = Files.createTempFile("listing-image-", ".upload");
+            image.transferTo(file);
+            BookListing saved = listingService.createPendingListing(listing);
+            Path spooled = file;
+            process(saved, () -> Files.newInputStream(spooled), () -> deleteSpooled(spooled), keyName);
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            pending.decrementAndGet();
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Signs a URL the owner can PUT a listing image to, directly to S3.
+     * @param ownerId the ID of the user uploading the image
+     * @param contentType the media type of the image
+     * @param size the size of the image in bytes
+     * @return the staging key and the signed URL
+     * @throws IllegalArgumentException if the type or size is not accepted
+     */
+    public S3Service.PresignedUpload presignUpload(Long ownerId, String contentType, long size) {
+        checkImage(contentType, size);
+        String stagedKey = STAGING_PREFIX + ownerId + "/" + UUID.randomUUID();
+        return s3Service.presignUpload(stagedKey, contentType, size, UPLOAD_URL_EXPIRY);
+    }
+
+    /**
+     * Saves a listing as pending and processes an image the owner uploaded directly to S3.
+     * The staged object is checked with a HEAD request before the listing is saved.
+     * @param listing the new listing, with its owner set
+     * @param stagedKey the key returned by {@link #presignUpload}
+     * @param keyName the S3 object key for the full-size image
+     * @return the saved pending listing
+     * @throws IllegalArgumentException if the key does not name an accepted upload by the owner
+     * @throws RejectedExecutionException if too many uploads are already in progress
+     * @throws Exception if S3 cannot be reached
+     */
+    public BookListing submitUploaded(BookListing listing, String stagedKey, String keyName) throws Exception {
+        if (stagedKey == null || stagedKey.isBlank()) {
+            throw new IllegalArgumentException("Book image is required.");
+        }
+        // Keys are scoped to their owner, so one user cannot claim another's upload
+        if (!stagedKey.startsWith(STAGING_PREFIX + listing.getOwner().getId() + "/")
+                || stagedKey.contains("..")) {
+            throw new IllegalArgumentException("Unknown image upload.");
+        }
+        HeadObjectResponse head = s3Service.headFile(stagedKey);
+        if (head == null) {
+            throw new IllegalArgumentException("Uploaded image not found. Please upload it again.");
+        }
+        checkImage(head.contentType(), head.contentLength() != null ? head.contentLength() : 0);
+
+        reserve();
+        try {
+            BookListing saved = listingService.createPendingListing(listing);
+            process(saved, () -> s3Service.openFile(stagedKey), () -> deleteStaged(stagedKey), keyName);
+            return saved;
+        } catch (RuntimeException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks that an image has an accepted type and size.
+     * @param contentType the media type of the image
+     * @param size the size of the image in bytes
+     * @throws IllegalArgumentException if the image is not accepted
+     */
+    private static void checkImage(String contentType, long size) {
+        if (contentType == null || !IMAGE_TYPES.contains(contentType)) {
+            throw new IllegalArgumentException("Invalid image type. Only JPEG and PNG are allowed.");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("Book image is required.");
+        }
+        if (size > MAX_IMAGE_BYTES) {
+            throw new IllegalArgumentException("Book image must be at most "
+                + (MAX_IMAGE_BYTES / (1024 * 1024)) + " MB.");
+        }
+    }
+
+    /**
+     * Counts an upload as pending.
+     * @throws RejectedExecutionException if too many uploads are already in progress
+     */
+    private void reserve() {
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Too many image uploads in progress");
+        }
+    }
+
+    /**
+     * Resizes the image of a pending listing, then uploads the variants in the background.
+     * @param saved the pending listing
+     * @param source opens the original image
+     * @param cleanup releases the original image once it has been read
+     * @param keyName the S3 object key for the full-size image
+     * @throws RejectedExecutionException if too many images are waiting to be processed;
+     *         the pending listing is discarded and the original left to the caller
+     */
+    private void process(BookListing saved, Callable<InputStream> source, Runnable cleanup, String keyName) {
+        CompletableFuture<ImageProcessor.ProcessedImage> processed;
+        try {
+            processed = imageProcessor.submit(source);
+        } catch (RejectedExecutionException e) {
+            discard(saved.getId());
+            throw e;
+        }
+        processed
+            .whenComplete((images, e) -> {
+                cleanup.run();
+                if (e != null) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    System.err.println("Image for listing " + saved.getId()
+                        + " could not be processed, discarding listing: " + cause.getMessage());
+                    discard(saved.getId());
+                    pending.decrementAndGet();
+                    return;
+                }
+                Upload upload = new Upload(saved.getId(), images, keyName);
+                executor.execute(() -> attempt(upload, 1));
+            });
+    }
+
+    /**
+     * Returns the number of uploads accepted and not yet finished.
+     * @return the number of pending uploads
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Makes one attempt to upload an image, scheduling a retry or giving up on failure.
+     * @param upload the upload
+     * @param attempt the one-based attempt number
+     */
+    private void attempt(Upload upload, int attempt) {
+        ListingImages stored;
+        try {
+            stored = imageStore.store(upload.images(), upload.keyName());
+        } catch (Exception e) {
+            if (attempt < MAX_ATTEMPTS) {
+                long delay = initialBackoffMs << (attempt - 1);
+                System.err.println("Image upload for listing " + upload.listingId() + " failed (attempt "
+                    + attempt + "), retrying in " + delay + " ms: " + e.getMessage());
+                executor.schedule(() -> attempt(upload, attempt + 1), delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+            System.err.println("Image upload for listing " + upload.listingId() + " failed, discarding listing: "
+                + e.getMessage());
+            discard(upload.listingId());
+            pending.decrementAndGet();
+            return;
+        }
+
+        try {
+            boolean held;
+            try {
+                // Null when the owner deleted the listing while its image was uploading
+                held = listingService.activateListing(upload.listingId(), stored) != null;
+            } catch (RuntimeException e) {
+                System.err.println("Failed to activate listing " + upload.listingId() + ", discarding listing: "
+                    + e.getMessage());
+                held = !discard(upload.listingId());
+            }
+            if (!held) {
+                imageStore.release(stored, upload.keyName());
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to release image of listing " + upload.listingId() + ": " + e.getMessage());
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Discards a pending listing whose image could not be stored.
+     * @param listingId the listing ID
+     * @return true if no listing holds the image any more; false if the listing
+     *         is active or could not be discarded, so the image must be kept
+     */
+    private boolean discard(Long listingId) {
+        try {
+            return listingService.discardPendingListing(listingId);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to discard listing " + listingId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a spooled image once it has been processed.
+     * @param file the spooled image
+     */
+    private static void deleteSpooled(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes a staged upload once it has been processed.
+     * @param stagedKey the S3 object key of the staged upload
+     */
+    private void deleteStaged(String stagedKey) {
+        try {
+            s3Service.deleteFile(stagedKey);
+        } catch (Exception e) {
+            System.err.println("Failed to delete staged upload " + stagedKey + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts discarding abandoned pending listings, now and then periodically, as
+     * an instance that stopped mid-upload leaves its listings pending for good.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startDiscardingAbandonedUploads() {
+        long intervalMs = abandonAfter.toMillis();
+        executor.scheduleWithFixedDelay(this::discardAbandonedUploads, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Discards pending listings older than any upload can take, whichever instance
+     * accepted them. Younger ones may still be uploading elsewhere and are left alone.
+     */
+    void discardAbandonedUploads() {
+        try {
+            int discarded = listingService.discardPendingListingsBefore(LocalDateTime.now().minus(abandonAfter));
+            if (discarded > 0) {
+                System.out.println("Discarded " + discarded + " listings whose image upload was interrupted");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to discard abandoned listings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the upload pool. Unfinished listings stay pending until they are old enough to be discarded.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Processed images waiting to be uploaded for a pending listing.
+     * @param listingId the ID of the pending listing
+     * @param images the processed images
+     * @param keyName the S3 object key of the full-size image
+     */
+    private record Upload(Long listingId, ImageProcessor.ProcessedImage images, String keyName) {
+    }
+}
@@ -1,17 +1,35 @@
 package com.esaunders.TextbookExchange.service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import org.springframework.beans.factory.annotation.Value;
 
+import com.esaunders.TextbookExchange.config.JwtProperties;
+import com.esaunders.TextbookExchange.dtos.CustomUserDetails;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -19,25 +37,93 @@ import io.jsonwebtoken.security.Keys;
 /**
  * Service for JWT token operations such as generation, validation, and extraction.
  * Handles signing and parsing of JWT tokens for authentication.
+ * <p>
+ * The signing key and parser are built once. Tokens that verified recently are
+ * remembered by their SHA-256 digest until they expire, so a client sending the
+ * same token on every request pays for the signature check and JSON parse once.
+ * Access tokens are short-lived and carry an ID, checked against the
+ * {@link RevocationList} on every request, cached or not.
  * @author Ethan Saunders
  */
 @Service
 public class JwtService {
 
-    /** The secret key used to sign JWT tokens. */
-    @Value("${JWT_SECRET}")
-    private String secretKey;
+    /** Claim holding the user's ID, so requests can be authenticated without looking the user up. */
+    static final String USER_ID_CLAIM = "uid";
+
+    /** The signing key, derived once from the configured secret. */
+    private final Key signingKey;
+
+    /** The parser verifying signatures with the signing key; parsers are immutable and thread-safe. */
+    private final JwtParser parser;
+
+    /** How long an access token is valid. */
+    private final Duration accessTokenTtl;
+
+    /** The access tokens revoked before they expire. */
+    private final RevocationList revocations;
 
-    /** The expiration time for JWT tokens in milliseconds. */
-    @Value("${EXPIRATION_TIME}")
-    private long expirationMs;
+    /** The clock used for expiry checks. */
+    private final Clock clock;
+
+    /** Recently verified tokens, keyed by the digest of the token. */
+    private final Cache<String, VerifiedToken> verified;
+
+    /**
+     * The claims of a token whose signature has been checked.
+     * @param subject the subject (the user's email)
+     * @param userId the user's ID, or null for tokens issued before the claim was added
+     * @param tokenId the token's ID, or null for tokens issued before tokens could be revoked
+     * @param expiresAt when the token expires
+     */
+    public record VerifiedToken(String subject, Long userId, String tokenId, Instant expiresAt) {
+    }
 
     /**
-     * Returns the signing key for JWT operations.
-     * @return the signing key
+     * Creates the service from the configured secret.
+     * @param secretKey the secret key used to sign JWT tokens
+     * @param properties the token lifetimes and cache size
+     * @param revocations the revoked access tokens
      */
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secretKey.getBytes());
+    @Autowired
+    public JwtService(@Value("${JWT_SECRET}") String secretKey, JwtProperties properties,
+                      RevocationList revocations) {
+        this(secretKey, properties.getAccessTokenTtl(), properties.getVerifiedCacheSize(), revocations,
+            Clock.systemUTC(), Ticker.systemTicker());
+    }
+
+    JwtService(String secretKey, Duration accessTokenTtl, long cacheSize, RevocationList revocations,
+               Clock clock, Ticker ticker) {
+        this.signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        this.accessTokenTtl = accessTokenTtl;
+        this.revocations = revocations;
+        this.clock = clock;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .setClock(() -> Date.from(clock.instant()))
+                .build();
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .ticker(ticker)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        return Math.max(0, Duration.between(clock.instant(), token.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     /**
@@ -47,6 +133,9 @@ public class JwtService {
      */
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof CustomUserDetails customUser && customUser.getId() != null) {
+            claims.put(USER_ID_CLAIM, customUser.getId());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -57,15 +146,68 @@ public class JwtService {
      * @return the generated JWT token
      */
     private String createToken(Map<String, Object> claims, String subject) {
+        long now = clock.millis();
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + accessTokenTtl.toMillis()))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifies the token's signature and expiry once, answering repeats of a
+     * recently verified token from the cache, then checks it has not been revoked.
+     * @param token the JWT token
+     * @return the verified claims, or null if the token is malformed, forged, expired or revoked
+     */
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String digest = digest(token);
+        VerifiedToken result = verified.getIfPresent(digest);
+        if (result == null) {
+            result = parse(token);
+            if (result == null) {
+                return null;
+            }
+            verified.put(digest, result);
+        } else if (!clock.instant().isBefore(result.expiresAt())) {
+            return null;
+        }
+        if (result.tokenId() != null && revocations.isRevoked(result.tokenId())) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Revokes an access token before it expires.
+     * @param token the verified token
+     */
+    public void revoke(VerifiedToken token) {
+        if (token.tokenId() != null) {
+            revocations.revoke(token.tokenId(), token.expiresAt());
+        }
+    }
+
+    private VerifiedToken parse(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                return null;
+            }
+            Number userId = claims.get(USER_ID_CLAIM, Number.class);
+            return new VerifiedToken(claims.getSubject(), userId == null ? null : userId.longValue(),
+                claims.getId(), claims.getExpiration().toInstant());
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Extracts the username (subject) from the JWT token.
      * @param token the JWT token
@@ -102,20 +244,7 @@ public class JwtService {
      * @return the claims
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    /**
-     * Checks if the JWT token is expired.
-     * @param token the JWT token
-     * @return true if the token is expired, false otherwise
-     */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
@@ -125,8 +254,8 @@ public class JwtService {
      * @return true if the token is valid and not expired, false otherwise
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        VerifiedToken verifiedToken = verify(token);
+        return verifiedToken != null && verifiedToken.subject().equals(userDetails.getUsername());
     }
 
     /**
@@ -135,10 +264,15 @@ public class JwtService {
      * @return true if valid, false otherwise
      */
     public boolean validateToken(String token) {
+        return verify(token) != null;
+    }
+
+    private static String digest(String token) {
         try {
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 
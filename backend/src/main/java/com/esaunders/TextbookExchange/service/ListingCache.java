@@ -0,0 +1,269 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.esaunders.TextbookExchange.config.ListingCacheProperties;
+import com.esaunders.TextbookExchange.config.SearchProperties;
+import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.BookPage;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.dtos.UserDto;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.service.ListingService.FeedCursor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * In-memory caches for the home feed, listing detail and search results.
+ * Each cache is bounded by an approximate size in bytes and a TTL, and reports
+ * hit, miss and eviction metrics. Posting or deleting a listing evicts exactly
+ * the entries that could contain it.
+ * @author Ethan Saunders
+ */
+@Component
+public class ListingCache {
+    /** Number of listings in a cached feed window, enough to fill any page after filtering. */
+    static final int FEED_WINDOW_SIZE = 2 * ListingService.MAX_PAGE_SIZE;
+
+    /** Cache key of the feed window at the top of the feed. */
+    static final FeedCursor HEAD = new FeedCursor(LocalDateTime.MAX, Long.MAX_VALUE);
+
+    /** Feed order, oldest first. */
+    private static final Comparator<FeedCursor> FEED_ORDER =
+        Comparator.comparing(FeedCursor::postedAt).thenComparing(FeedCursor::id);
+
+    /** Listing details by listing ID. */
+    private final Cache<Long, BookDto> details;
+
+    /** Feed windows by the cursor they start after. */
+    private final Cache<FeedCursor, FeedWindow> feedWindows;
+
+    /** Search result pages by normalized query. */
+    private final Cache<SearchKey, BookPage> searches;
+
+    /** Search configuration, which decides how text queries match. */
+    private final SearchProperties searchProperties;
+
+    /**
+     * Creates the caches and registers their metrics.
+     * @param properties the cache sizes and TTLs
+     * @param searchProperties the search configuration
+     * @param meterRegistry the registry for cache metrics
+     */
+    public ListingCache(ListingCacheProperties properties, SearchProperties searchProperties,
+            MeterRegistry meterRegistry) {
+        this.searchProperties = searchProperties;
+        this.details = Caffeine.newBuilder()
+            .maximumWeight(properties.getMaxBytes())
+            .weigher((Weigher<Long, BookDto>) (id, book) -> weigh(book))
+            .expireAfterWrite(properties.getDetailTtl())
+            .recordStats()
+            .build();
+        this.feedWindows = Caffeine.newBuilder()
+            .maximumWeight(properties.getMaxBytes())
+            .weigher((Weigher<FeedCursor, FeedWindow>) (cursor, window) -> 64 + weigh(window.books()))
+            .expireAfterWrite(properties.getFeedTtl())
+            .recordStats()
+            .build();
+        this.searches = Caffeine.newBuilder()
+            .maximumWeight(properties.getMaxBytes())
+            .weigher((Weigher<SearchKey, BookPage>) (key, page) -> 512 + weigh(page.getBooks()))
+            .expireAfterWrite(properties.getSearchTtl())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, details, "listings.detail");
+        CaffeineCacheMetrics.monitor(meterRegistry, feedWindows, "listings.feed");
+        CaffeineCacheMetrics.monitor(meterRegistry, searches, "listings.search");
+    }
+
+    /**
+     * Returns a listing's detail, loading it on a miss. Missing listings are not cached.
+     * @param id the listing ID
+     * @param loader loads the detail, returning null if there is no such listing
+     * @return the listing detail, or null
+     */
+    public BookDto detail(Long id, Supplier<BookDto> loader) {
+        return details.get(id, key -> loader.get());
+    }
+
+    /**
+     * Returns the feed window following a cursor, loading it on a miss.
+     * @param after the cursor the window starts after, or null for the top of the feed
+     * @param loader loads the window
+     * @return the feed window
+     */
+    public FeedWindow feedWindow(FeedCursor after, Supplier<FeedWindow> loader) {
+        return feedWindows.get(after == null ? HEAD : after, key -> loader.get());
+    }
+
+    /**
+     * Returns a page of search results, loading it on a miss.
+     * @param key the normalized search
+     * @param loader runs the search
+     * @return the page of results
+     */
+    public BookPage search(SearchKey key, Supplier<BookPage> loader) {
+        return searches.get(key, k -> loader.get());
+    }
+
+    /**
+     * Evicts the entries a newly posted or activated listing belongs in: its
+     * detail, the feed windows starting before its position and the searches it matches.
+     * @param listing the posted listing
+     */
+    public void listingCreated(BookListing listing) {
+        details.invalidate(listing.getId());
+        if (listing.getPostedAt() != null) {
+            FeedCursor position = new FeedCursor(listing.getPostedAt(), listing.getId());
+            feedWindows.asMap().keySet().removeIf(start -> FEED_ORDER.compare(start, position) > 0);
+        }
+        searches.asMap().keySet().removeIf(key -> mayMatch(key.criteria(), listing));
+    }
+
+    /**
+     * Evicts the entries a deleted listing appears in or is counted by.
+     * @param listing the deleted listing
+     */
+    public void listingDeleted(BookListing listing) {
+        Long id = listing.getId();
+        details.invalidate(id);
+        feedWindows.asMap().values().removeIf(window -> contains(window.books(), id));
+        searches.asMap().entrySet().removeIf(entry ->
+            contains(entry.getValue().getBooks(), id) || mayMatch(entry.getKey().criteria(), listing));
+    }
+
+    /**
+     * Empties every cache.
+     */
+    public void clear() {
+        details.invalidateAll();
+        feedWindows.invalidateAll();
+        searches.invalidateAll();
+    }
+
+    /**
+     * Checks whether a listing could be among the results of a search. Filters
+     * are checked exactly; text is checked exactly only in database mode, where
+     * it is a substring match, and otherwise assumed to match.
+     * @param criteria the normalized search filters
+     * @param listing the listing
+     * @return false if the listing cannot match
+     */
+    boolean mayMatch(BookSearchCriteria criteria, BookListing listing) {
+        if (listing.getOwner() != null && Objects.equals(criteria.getExcludeOwnerId(), listing.getOwner().getId())) {
+            return false;
+        }
+        if (criteria.getCondition() != null && !criteria.getCondition().equalsIgnoreCase(listing.getCondition())) {
+            return false;
+        }
+        if (criteria.getMinPrice() != null && listing.getPrice() < criteria.getMinPrice()) {
+            return false;
+        }
+        if (criteria.getMaxPrice() != null && listing.getPrice() > criteria.getMaxPrice()) {
+            return false;
+        }
+        if (criteria.getQuery() != null && searchProperties.getMode() == SearchProperties.Mode.DATABASE) {
+            return containsIgnoreCase(listing.getTitle(), criteria.getQuery())
+                || containsIgnoreCase(listing.getCourseCode(), criteria.getQuery());
+        }
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(String value, String lowerCaseText) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(lowerCaseText);
+    }
+
+    private static boolean contains(List<BookDto> books, Long id) {
+        return books.stream().anyMatch(book -> Objects.equals(book.getId(), id));
+    }
+
+    /**
+     * Estimates the heap size of a list of listings.
+     * @param books the listings
+     * @return the approximate size in bytes
+     */
+    private static int weigh(List<BookDto> books) {
+        int weight = 16 * books.size();
+        for (BookDto book : books) {
+            weight += weigh(book);
+        }
+        return weight;
+    }
+
+    /**
+     * Estimates the heap size of a listing, counting two bytes per character.
+     * @param book the listing
+     * @return the approximate size in bytes
+     */
+    private static int weigh(BookDto book) {
+        int weight = 160 + 2 * (length(book.getTitle()) + length(book.getAuthor()) + length(book.getIsbn())
+            + length(book.getCourseCode()) + length(book.getDescription()) + length(book.getCondition())
+            + length(book.getImageUrl()) + length(book.getMediumUrl()) + length(book.getThumbnailUrl())
+            + length(book.getBlurhash()));
+        UserDto seller = book.getSeller();
+        if (seller != null) {
+            weight += 96 + 2 * (length(seller.getFirstName()) + length(seller.getLastName())
+                + length(seller.getUsername()) + length(seller.getEmail()));
+        }
+        return weight;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * A run of the feed, unfiltered by owner, shared by every viewer.
+     * @param books up to FEED_WINDOW_SIZE listings, newest first
+     * @param hasMore whether older listings follow the window
+     */
+    public record FeedWindow(List<BookDto> books, boolean hasMore) {
+    }
+
+    /**
+     * A normalized search: lower-case trimmed query, upper-case condition and lower-case sort.
+     * @param criteria the normalized search filters
+     * @param sort the sort option, or null for the default
+     * @param page the zero-based page number
+     * @param size the page size
+     */
+    public record SearchKey(BookSearchCriteria criteria, String sort, int page, int size) {
+
+        /**
+         * Normalizes a search so that equivalent searches share a cache entry.
+         * @param criteria the search filters
+         * @param sort the sort option
+         * @param page the zero-based page number
+         * @param size the page size
+         * @return the normalized search
+         */
+        public static SearchKey of(BookSearchCriteria criteria, String sort, int page, int size) {
+            BookSearchCriteria normalized = new BookSearchCriteria(
+                normalize(criteria.getQuery(), false),
+                normalize(criteria.getCondition(), true),
+                criteria.getMinPrice(),
+                criteria.getMaxPrice(),
+                criteria.getExcludeOwnerId());
+            return new SearchKey(normalized, normalize(sort, false), page, size);
+        }
+
+        private static String normalize(String value, boolean upperCase) {
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            String collapsed = value.trim().replaceAll("\\s+", " ");
+            return upperCase ? collapsed.toUpperCase(Locale.ROOT) : collapsed.toLowerCase(Locale.ROOT);
+        }
+    }
+}
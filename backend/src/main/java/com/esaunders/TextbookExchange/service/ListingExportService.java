@@ -0,0 +1,202 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.repository.BookListingRepository;
+import com.esaunders.TextbookExchange.repository.BookListingSpecifications;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Service for bulk export of book listings.
+ * Listings are read through a database cursor and written to the output as they
+ * arrive, so an export of the whole inventory holds only one fetch batch in memory.
+ * @author Ethan Saunders
+ */
+@Service
+@AllArgsConstructor
+public class ListingExportService {
+    /** Number of rows fetched from the database per round trip. */
+    static final int FETCH_SIZE = 500;
+
+    /** Number of rows written between flushes of the output. */
+    private static final int FLUSH_INTERVAL = 500;
+
+    /** Exported columns, in CSV order. */
+    static final String[] COLUMNS = {
+        "id", "title", "author", "isbn", "courseCode", "condition", "price", "description",
+        "postedAt", "imageUrl", "ownerId"
+    };
+
+    /**
+     * The formats listings can be exported in.
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum Format {
+        /** One JSON object per line. */
+        NDJSON("application/x-ndjson", "ndjson"),
+        /** RFC 4180 comma-separated values with a header row. */
+        CSV("text/csv", "csv");
+
+        /** The media type of the export. */
+        private final String mediaType;
+
+        /** The file extension of the export. */
+        private final String extension;
+
+        /**
+         * Parses a format name, case-insensitively.
+         * @param name the format name
+         * @return the format
+         * @throws IllegalArgumentException if the format is unknown
+         */
+        public static Format parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unknown export format: " + name);
+            }
+        }
+    }
+
+    /** Repository for accessing book listings. */
+    private BookListingRepository bookListingRepository;
+
+    /** JSON mapper, shared with the web layer. */
+    private ObjectMapper objectMapper;
+
+    /**
+     * Writes every listing matching the filters to the output, in ID order.
+     * The read-only transaction keeps the database cursor open while rows are written.
+     * @param criteria the search filters
+     * @param format the export format
+     * @param out the output to write to; left open
+     * @return the number of listings written
+     * @throws IOException if the output cannot be written
+     */
+    @Transactional(readOnly = true)
+    public long export(BookSearchCriteria criteria, Format format, OutputStream out) throws IOException {
+        try (Stream<BookDto> books = bookListingRepository.streamBooks(
+                BookListingSpecifications.matching(criteria), FETCH_SIZE)) {
+            return format == Format.CSV ? writeCsv(books.iterator(), out) : writeNdjson(books.iterator(), out);
+        }
+    }
+
+    /**
+     * Writes listings as newline-delimited JSON.
+     * @param books the listings
+     * @param out the output
+     * @return the number of listings written
+     * @throws IOException if the output cannot be written
+     */
+    private long writeNdjson(Iterator<BookDto> books, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            while (books.hasNext()) {
+                BookDto book = books.next();
+                json.writeStartObject();
+                json.writeNumberField("id", book.getId());
+                json.writeStringField("title", book.getTitle());
+                json.writeStringField("author", book.getAuthor());
+                json.writeStringField("isbn", book.getIsbn());
+                json.writeStringField("courseCode", book.getCourseCode());
+                json.writeStringField("condition", book.getCondition());
+                json.writeNumberField("price", book.getPrice());
+                json.writeStringField("description", book.getDescription());
+                json.writeStringField("postedAt", book.getPostedAt() == null ? null : book.getPostedAt().toString());
+                json.writeStringField("imageUrl", book.getImageUrl());
+                if (book.getOwnerId() == null) {
+                    json.writeNullField("ownerId");
+                } else {
+                    json.writeNumberField("ownerId", book.getOwnerId());
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+                if (++count % FLUSH_INTERVAL == 0) {
+                    json.flush();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes listings as CSV with a header row.
+     * @param books the listings
+     * @param out the output
+     * @return the number of listings written
+     * @throws IOException if the output cannot be written
+     */
+    private long writeCsv(Iterator<BookDto> books, OutputStream out) throws IOException {
+        Writer csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        csv.write(String.join(",", COLUMNS));
+        csv.write("\r\n");
+        long count = 0;
+        while (books.hasNext()) {
+            BookDto book = books.next();
+            csv.write(String.valueOf(book.getId()));
+            writeCsvField(csv, book.getTitle());
+            writeCsvField(csv, book.getAuthor());
+            writeCsvField(csv, book.getIsbn());
+            writeCsvField(csv, book.getCourseCode());
+            writeCsvField(csv, book.getCondition());
+            // A number, like the ID: never quoted or escaped, so spreadsheets keep it numeric
+            csv.write(',');
+            csv.write(String.valueOf(book.getPrice()));
+            writeCsvField(csv, book.getDescription());
+            writeCsvField(csv, book.getPostedAt() == null ? null : book.getPostedAt().toString());
+            writeCsvField(csv, book.getImageUrl());
+            writeCsvField(csv, book.getOwnerId() == null ? null : book.getOwnerId().toString());
+            csv.write("\r\n");
+            if (++count % FLUSH_INTERVAL == 0) {
+                csv.flush();
+            }
+        }
+        csv.flush();
+        return count;
+    }
+
+    /**
+     * Writes a separator and a field, quoting it if it contains a comma, quote or line break.
+     * Fields a spreadsheet would read as a formula are prefixed with an apostrophe,
+     * so that a listing cannot run a formula on the machine of whoever opens the export.
+     * @param csv the output
+     * @param value the field, or null for an empty field
+     * @throws IOException if the output cannot be written
+     */
+    private static void writeCsvField(Writer csv, String value) throws IOException {
+        csv.write(',');
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            csv.write(value);
+            return;
+        }
+        csv.write('"');
+        csv.write(value.replace("\"", "\"\""));
+        csv.write('"');
+    }
+}
@@ -0,0 +1,28 @@
+package com.esaunders.TextbookExchange.service;
+
+import com.esaunders.TextbookExchange.model.BookListing;
+
+/**
+ * The stored images of a listing.
+ * @param imageUrl the URL of the full-size image
+ * @param mediumUrl the URL of the medium variant
+ * @param thumbnailUrl the URL of the thumbnail
+ * @param blurhash the BlurHash placeholder
+ * @param hash the SHA-256 the images are stored under, or null if they have their own keys
+ * @author Ethan Saunders
+ */
+public record ListingImages(String imageUrl, String mediumUrl, String thumbnailUrl, String blurhash,
+        String hash) {
+
+    /**
+     * Sets the image fields of a listing.
+     * @param listing the listing
+     */
+    public void applyTo(BookListing listing) {
+        listing.setImageUrl(imageUrl);
+        listing.setMediumUrl(mediumUrl);
+        listing.setThumbnailUrl(thumbnailUrl);
+        listing.setBlurhash(blurhash);
+        listing.setImageHash(hash);
+    }
+}
@@ -0,0 +1,487 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.esaunders.TextbookExchange.dtos.ImportResult;
+import com.esaunders.TextbookExchange.dtos.ImportRow;
+import com.esaunders.TextbookExchange.dtos.ImportRowResult;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.User;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Service for bulk import of book listings from a manifest and an archive of images.
+ * Rows are validated up front, their images are resized by the ImageProcessor and
+ * uploaded to S3 concurrently on a bounded pool, and the valid rows are inserted
+ * together in JDBC batches. Each row
+ * succeeds or fails on its own, and the outcome of every row is reported.
+ * @author Ethan Saunders
+ */
+@Service
+public class ListingImportService implements DisposableBean {
+    /** Largest number of rows accepted in one manifest. */
+    static final int MAX_ROWS = 1000;
+
+    /** Number of images uploaded at once, across all imports. */
+    private static final int UPLOAD_CONCURRENCY = 8;
+
+    /**
+     * Number of one import's images handed to the ImageProcessor at once, so a
+     * large import waits for its own images instead of filling the shared queue.
+     */
+    static final int IMAGES_IN_FLIGHT = 16;
+
+    /** Media types of the accepted image extensions. */
+    private static final Map<String, String> IMAGE_TYPES = Map.of(
+        "jpg", "image/jpeg",
+        "jpeg", "image/jpeg",
+        "png", "image/png"
+    );
+
+    /** Manifest columns, by normalized header name. */
+    private static final Map<String, BiConsumer<ImportRow, String>> COLUMNS = Map.of(
+        "title", ImportRow::setTitle,
+        "author", ImportRow::setAuthor,
+        "isbn", ImportRow::setIsbn,
+        "coursecode", ImportRow::setCourseCode,
+        "price", ImportRow::setPrice,
+        "condition", ImportRow::setCondition,
+        "description", ImportRow::setDescription,
+        "image", ImportRow::setImage
+    );
+
+    /** Service for saving listings. */
+    private final ListingService listingService;
+
+    /** Stores processed images, shared by content. */
+    private final ImageStore imageStore;
+
+    /** JSON mapper, shared with the web layer. */
+    private final ObjectMapper objectMapper;
+
+    /** Resizes uploaded images into their variants. */
+    private final ImageProcessor imageProcessor;
+
+    /** Pool the image uploads run on; its queue holds one full manifest. */
+    private final ExecutorService uploadExecutor;
+
+    /**
+     * Constructs the service with the default upload concurrency.
+     * @param listingService the listing service
+     * @param imageStore the image store
+     * @param objectMapper the JSON mapper
+     * @param imageProcessor the image processor
+     */
+    @Autowired
+    public ListingImportService(ListingService listingService, ImageStore imageStore, ObjectMapper objectMapper,
+            ImageProcessor imageProcessor) {
+        this(listingService, imageStore, objectMapper, imageProcessor, UPLOAD_CONCURRENCY);
+    }
+
+    /**
+     * Constructs the service with the given upload concurrency.
+     * @param listingService the listing service
+     * @param imageStore the image store
+     * @param objectMapper the JSON mapper
+     * @param imageProcessor the image processor
+     * @param uploadConcurrency the number of images uploaded at once
+     */
+    ListingImportService(ListingService listingService, ImageStore imageStore, ObjectMapper objectMapper,
+            ImageProcessor imageProcessor, int uploadConcurrency) {
+        this.listingService = listingService;
+        this.imageStore = imageStore;
+        this.objectMapper = objectMapper;
+        this.imageProcessor = imageProcessor;
+        AtomicInteger threads = new AtomicInteger();
+        // When the queue is full the submitting request uploads the image itself,
+        // which slows that import down instead of failing its rows
+        this.uploadExecutor = new ThreadPoolExecutor(uploadConcurrency, uploadConcurrency,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_ROWS),
+            r -> {
+                Thread t = new Thread(r, "listing-import-upload-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Imports the listings described by a manifest for a user.
+     * @param owner the user the listings are posted for
+     * @param manifest a CSV file with a header row, or a JSON array of rows
+     * @param images a zip archive holding the image named by each row
+     * @return the outcome of each row
+     * @throws IllegalArgumentException if the manifest or archive cannot be read
+     * @throws IOException if the archive cannot be spooled to disk
+     */
+    public ImportResult importListings(User owner, MultipartFile manifest, MultipartFile images) throws IOException {
+        if (manifest == null || manifest.isEmpty()) {
+            throw new IllegalArgumentException("Import manifest is required.");
+        }
+        if (images == null || images.isEmpty()) {
+            throw new IllegalArgumentException("Image archive is required.");
+        }
+        List<ImportRow> rows = parseManifest(manifest);
+
+        // ZipFile needs random access, so the upload is spooled to a temporary file
+        Path archive = Files.createTempFile("listing-import-", ".zip");
+        try {
+            images.transferTo(archive);
+            try (ZipFile zip = openArchive(archive)) {
+                return importRows(owner, rows, zip);
+            }
+        } finally {
+            Files.deleteIfExists(archive);
+        }
+    }
+
+    /**
+     * Validates the rows, uploads their images concurrently and saves the listings.
+     * @param owner the owner of the listings
+     * @param rows the manifest rows
+     * @param zip the image archive
+     * @return the outcome of each row
+     */
+    private ImportResult importRows(User owner, List<ImportRow> rows, ZipFile zip) {
+        ImportRowResult[] results = new ImportRowResult[rows.size()];
+        BookListing[] listings = new BookListing[rows.size()];
+        LocalDateTime postedAt = LocalDateTime.now();
+        List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(IMAGES_IN_FLIGHT);
+
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRow row = rows.get(i);
+            int index = i;
+            String error = validate(row, zip);
+            if (error != null) {
+                results[i] = ImportRowResult.failed(i + 1, error);
+                continue;
+            }
+            BookListing listing = toListing(row, owner, postedAt);
+            ZipEntry entry = zip.getEntry(row.getImage());
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<ImageProcessor.ProcessedImage> processed;
+            try {
+                processed = imageProcessor.submit(() -> zip.getInputStream(entry));
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                results[i] = ImportRowResult.failed(i + 1, "Image processing is busy. Please try this row again later.");
+                continue;
+            }
+            uploads.add(processed
+                .thenAcceptAsync(images -> upload(images, owner).applyTo(listing), uploadExecutor)
+                .handle((ignored, e) -> {
+                    inFlight.release();
+                    if (e == null) {
+                        listings[index] = listing;
+                    } else {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        System.out.println("Failed to store image: " + cause.getMessage());
+                        results[index] = ImportRowResult.failed(index + 1, "Image upload failed: " + cause.getMessage());
+                    }
+                    return null;
+                }));
+        }
+        CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).join();
+
+        List<BookListing> toSave = new ArrayList<>();
+        List<Integer> savedRows = new ArrayList<>();
+        for (int i = 0; i < listings.length; i++) {
+            if (listings[i] != null) {
+                toSave.add(listings[i]);
+                savedRows.add(i);
+            }
+        }
+        List<BookListing> saved;
+        try {
+            saved = listingService.createListings(toSave);
+        } catch (RuntimeException e) {
+            // No listing holds the stored images, so drop their references
+            for (BookListing listing : toSave) {
+                if (listing.getImageHash() != null) {
+                    imageStore.release(listing.getImageHash());
+                }
+            }
+            throw e;
+        }
+        for (int i = 0; i < saved.size(); i++) {
+            int row = savedRows.get(i);
+            results[row] = ImportRowResult.imported(row + 1, saved.get(i).getId());
+        }
+
+        List<ImportRowResult> rowResults = Arrays.asList(results);
+        int imported = (int) rowResults.stream().filter(ImportRowResult::isImported).count();
+        return new ImportResult(imported, rowResults.size() - imported, rowResults);
+    }
+
+    /**
+     * Checks a row against the same rules as posting a single listing.
+     * @param row the manifest row
+     * @param zip the image archive
+     * @return why the row is invalid, or null if it is valid
+     */
+    private String validate(ImportRow row, ZipFile zip) {
+        if (row.getTitle() == null || row.getTitle().isBlank()) {
+            return "Title is required.";
+        }
+        if (!listingService.checkCourseCodeValid(row.getCourseCode())) {
+            return "Invalid course code format";
+        }
+        try {
+            if (row.getPrice() == null) {
+                return "Invalid price.";
+            }
+            double price = Double.parseDouble(row.getPrice().trim());
+            // parseDouble also accepts NaN and Infinity
+            if (!Double.isFinite(price) || price < 0) {
+                return "Invalid price.";
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid price.";
+        }
+        if (row.getImage() == null || row.getImage().isBlank()) {
+            return "Book image is required.";
+        }
+        if (imageType(row.getImage()) == null) {
+            return "Invalid image type. Only JPEG and PNG are allowed.";
+        }
+        ZipEntry entry = zip.getEntry(row.getImage());
+        if (entry == null || entry.isDirectory()) {
+            return "Image not found in archive: " + row.getImage();
+        }
+        if (entry.getSize() > ImageUploadService.MAX_IMAGE_BYTES) {
+            return "Image is larger than " + (ImageUploadService.MAX_IMAGE_BYTES / (1024 * 1024)) + " MB.";
+        }
+        return null;
+    }
+
+    /**
+     * Builds the listing for a valid row.
+     * @param row the manifest row
+     * @param owner the owner of the listing
+     * @param postedAt the posting time shared by the import
+     * @return the unsaved listing, without its image URL
+     */
+    private static BookListing toListing(ImportRow row, User owner, LocalDateTime postedAt) {
+        BookListing listing = new BookListing();
+        listing.setTitle(row.getTitle().trim());
+        listing.setAuthor(row.getAuthor());
+        listing.setIsbn(row.getIsbn());
+        listing.setCourseCode(row.getCourseCode());
+        listing.setPrice(Double.parseDouble(row.getPrice().trim()));
+        listing.setCondition(row.getCondition());
+        listing.setDescription(row.getDescription());
+        listing.setOwner(owner);
+        listing.setPostedAt(postedAt);
+        return listing;
+    }
+
+    /**
+     * Stores one processed image and its variants.
+     * @param images the processed image
+     * @param owner the owner of the listing
+     * @return the stored images
+     */
+    private ListingImages upload(ImageProcessor.ProcessedImage images, User owner) {
+        String key = "book-images/" + UUID.randomUUID() + "-" + owner.getId() + ".jpg";
+        try {
+            return imageStore.store(images, key);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens the spooled image archive.
+     * @param archive the archive file
+     * @return the open archive
+     * @throws IllegalArgumentException if the file is not a zip archive
+     */
+    private static ZipFile openArchive(Path archive) {
+        try {
+            return new ZipFile(archive.toFile());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Image archive must be a zip file.");
+        }
+    }
+
+    /**
+     * Parses a manifest as JSON if it is named or typed as JSON, and as CSV otherwise.
+     * @param manifest the manifest file
+     * @return the rows, in order
+     * @throws IllegalArgumentException if the manifest is malformed, empty or too long
+     */
+    List<ImportRow> parseManifest(MultipartFile manifest) {
+        String name = manifest.getOriginalFilename() == null ? "" : manifest.getOriginalFilename().toLowerCase(Locale.ROOT);
+        boolean json = name.endsWith(".json")
+            || (manifest.getContentType() != null && manifest.getContentType().startsWith("application/json"));
+        List<ImportRow> rows;
+        try (InputStream in = manifest.getInputStream()) {
+            rows = json ? parseJson(in) : parseCsv(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed import manifest: " + e.getMessage());
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Import manifest has no rows.");
+        }
+        if (rows.size() > MAX_ROWS) {
+            throw new IllegalArgumentException("Import manifest has more than " + MAX_ROWS + " rows.");
+        }
+        return rows;
+    }
+
+    /**
+     * Parses a JSON array of rows, ignoring unknown fields.
+     * @param in the manifest content
+     * @return the rows
+     * @throws IOException if the JSON is malformed
+     */
+    private List<ImportRow> parseJson(InputStream in) throws IOException {
+        List<ImportRow> rows = objectMapper.readerFor(new TypeReference<List<ImportRow>>() { })
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .readValue(in);
+        return rows == null ? List.of() : rows;
+    }
+
+    /**
+     * Parses RFC 4180 CSV with a header row naming the columns, in any order and case.
+     * Unknown columns are ignored and blank lines are skipped.
+     * @param in the manifest content
+     * @return the rows
+     * @throws IOException if the CSV is malformed
+     */
+    private static List<ImportRow> parseCsv(Reader in) throws IOException {
+        List<String> header = readCsvRecord(in);
+        if (header == null) {
+            return List.of();
+        }
+        Map<Integer, BiConsumer<ImportRow, String>> setters = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).replaceAll("[^A-Za-z]", "").toLowerCase(Locale.ROOT);
+            if (COLUMNS.containsKey(column)) {
+                setters.put(i, COLUMNS.get(column));
+            }
+        }
+        List<ImportRow> rows = new ArrayList<>();
+        List<String> record;
+        while ((record = readCsvRecord(in)) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            if (rows.size() == MAX_ROWS) {
+                // One past the limit is enough to reject the manifest
+                rows.add(new ImportRow());
+                break;
+            }
+            ImportRow row = new ImportRow();
+            for (int i = 0; i < record.size(); i++) {
+                BiConsumer<ImportRow, String> setter = setters.get(i);
+                if (setter != null && !record.get(i).isEmpty()) {
+                    setter.accept(row, record.get(i));
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Reads one CSV record. Quoted fields may contain commas, line breaks and doubled quotes.
+     * @param in the CSV content
+     * @return the fields of the record, or null at the end of the input
+     * @throws IOException if a quoted field is not closed
+     */
+    private static List<String> readCsvRecord(Reader in) throws IOException {
+        int c = in.read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("unterminated quoted field");
+                }
+                if (c == '"') {
+                    c = in.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c < 0 || c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Returns the media type of an image file name.
+     * @param name the file name
+     * @return the media type, or null if the extension is not an accepted image type
+     */
+    private static String imageType(String name) {
+        return IMAGE_TYPES.get(extension(name));
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Stops the upload pool, abandoning queued uploads.
+     */
+    @Override
+    public void destroy() {
+        uploadExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,51 @@
+package com.esaunders.TextbookExchange.service;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Rebuilds the listing search structures at startup.
+ * Always loads the typeahead suggestions; rebuilds the search index when it is
+ * empty, or on demand when the application is started with the
+ * {@code --rebuild-search-index} option.
+ * @author Ethan Saunders
+ */
+@Component
+@AllArgsConstructor
+public class ListingIndexRebuilder implements ApplicationRunner {
+
+    /** Command-line option that forces a rebuild. */
+    public static final String REBUILD_OPTION = "rebuild-search-index";
+
+    /** Embedded full-text index of listings. */
+    private ListingIndexService listingIndexService;
+
+    /** Service for listing-related business logic. */
+    private ListingService listingService;
+
+    /**
+     * Loads the suggestions, then rebuilds the index if it is enabled and either
+     * empty or a rebuild was requested.
+     * @param args the application arguments
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        long loadStart = System.currentTimeMillis();
+        int loaded = listingService.rebuildSuggestions();
+        System.out.println("Loaded typeahead suggestions from " + loaded + " listings in "
+            + (System.currentTimeMillis() - loadStart) + " ms");
+
+        if (!listingIndexService.isEnabled()) {
+            return;
+        }
+        if (args.containsOption(REBUILD_OPTION) || listingIndexService.size() == 0) {
+            long start = System.currentTimeMillis();
+            int count = listingService.rebuildSearchIndex();
+            System.out.println("Rebuilt listing search index with " + count + " listings in "
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+}
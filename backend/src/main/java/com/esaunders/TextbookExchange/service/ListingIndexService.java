@@ -0,0 +1,589 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import com.esaunders.TextbookExchange.config.SearchProperties;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.dtos.SearchFacets;
+import com.esaunders.TextbookExchange.model.BookListing;
+
+/**
+ * Service maintaining an embedded Lucene full-text index of book listings.
+ * Indexes title, author, ISBN, course code and description, ranks matches with BM25,
+ * and makes changes searchable within the configured maximum staleness.
+ * The index is only opened when search mode is LUCENE; otherwise every method is a no-op.
+ * @author Ethan Saunders
+ */
+@Service
+public class ListingIndexService implements DisposableBean {
+
+    /** Field names used in the index. */
+    static final String ID = "id";
+    static final String OWNER_ID = "ownerId";
+    static final String TITLE = "title";
+    static final String TITLE_SORT = "titleSort";
+    static final String AUTHOR = "author";
+    static final String ISBN = "isbn";
+    static final String COURSE_CODE = "courseCode";
+    static final String COURSE_CODE_KEYWORD = "courseCodeKeyword";
+    static final String DESCRIPTION = "description";
+    static final String CONDITION = "condition";
+    static final String CONDITION_FACET = "conditionFacet";
+    static final String COURSE_PREFIX = "coursePrefix";
+    static final String PRICE = "price";
+    static final String POSTED_AT = "postedAt";
+    static final String EPOCH = "epoch";
+
+    /** Relative weight of each text field when ranking matches. */
+    private static final Map<String, Float> FIELD_BOOSTS = Map.of(
+        TITLE, 3.0f,
+        COURSE_CODE, 3.0f,
+        ISBN, 2.0f,
+        AUTHOR, 1.5f,
+        DESCRIPTION, 1.0f
+    );
+
+    /** Whether the index is open. */
+    private final boolean enabled;
+
+    /** Analyzer used for both indexing and querying. */
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    /** Directory the index is stored in. */
+    private Directory directory;
+
+    /** Writer applying changes to the index. */
+    private IndexWriter writer;
+
+    /** Manager handing out near-real-time searchers. */
+    private SearcherManager searcherManager;
+
+    /** Background thread reopening searchers to bound staleness. */
+    private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+
+    /** Scheduler for periodic durable commits. */
+    private ScheduledExecutorService committer;
+
+    /**
+     * Rebuild epoch stamped on every document written. Each rebuild starts a new
+     * epoch, so documents not rewritten since it started are known to be stale.
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * Constructs the service, opening the index if search mode is LUCENE.
+     * @param properties the search configuration
+     * @throws IOException if the index cannot be opened
+     */
+    public ListingIndexService(SearchProperties properties) throws IOException {
+        this.enabled = properties.getMode() == SearchProperties.Mode.LUCENE;
+        if (enabled) {
+            Directory dir = properties.getIndexPath() == null || properties.getIndexPath().isBlank()
+                ? new ByteBuffersDirectory()
+                : FSDirectory.open(Path.of(properties.getIndexPath()));
+            open(dir, properties.getMaxStalenessMs(), properties.getCommitIntervalMs());
+        }
+    }
+
+    /**
+     * Constructs an enabled service over the given directory.
+     * @param directory the directory to store the index in
+     * @param maxStalenessMs the maximum staleness of searches, in milliseconds
+     * @throws IOException if the index cannot be opened
+     */
+    ListingIndexService(Directory directory, long maxStalenessMs) throws IOException {
+        this.enabled = true;
+        open(directory, maxStalenessMs, 0);
+    }
+
+    /**
+     * Opens the writer, the searcher manager and the background threads.
+     * @param dir the index directory
+     * @param maxStalenessMs the maximum staleness of searches, in milliseconds
+     * @param commitIntervalMs the commit interval, or 0 to commit only on demand
+     * @throws IOException if the index cannot be opened
+     */
+    private void open(Directory dir, long maxStalenessMs, long commitIntervalMs) throws IOException {
+        directory = dir;
+        writer = new IndexWriter(dir, new IndexWriterConfig(analyzer)
+            .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+            byte[] latest = PointValues.getMaxPackedValue(reader, EPOCH);
+            if (latest != null) {
+                epoch.set(LongPoint.decodeDimension(latest, 0));
+            }
+        }
+        searcherManager = new SearcherManager(writer, null);
+
+        double maxStaleSec = Math.max(maxStalenessMs, 1) / 1000.0;
+        reopenThread = new ControlledRealTimeReopenThread<>(writer, searcherManager, maxStaleSec, Math.min(maxStaleSec, 0.025));
+        reopenThread.setName("listing-index-reopen");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+
+        if (commitIntervalMs > 0) {
+            committer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "listing-index-commit");
+                t.setDaemon(true);
+                return t;
+            });
+            committer.scheduleWithFixedDelay(this::commit, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Indicates whether the index is open and should be used for searches.
+     * @return true if search mode is LUCENE
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds or replaces a listing in the index.
+     * @param listing the listing to index
+     * @return the generation of the change, to pass to {@link #awaitSearchable(long)}
+     */
+    public long index(BookListing listing) {
+        if (!enabled) {
+            return 0;
+        }
+        try {
+            return writer.updateDocument(new Term(ID, String.valueOf(listing.getId())), toDocument(listing));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to index listing " + listing.getId(), e);
+        }
+    }
+
+    /**
+     * Removes a listing from the index.
+     * @param id the ID of the listing to remove
+     * @return the generation of the change, to pass to {@link #awaitSearchable(long)}
+     */
+    public long delete(Long id) {
+        if (!enabled) {
+            return 0;
+        }
+        try {
+            return writer.deleteDocuments(new Term(ID, String.valueOf(id)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove listing " + id + " from index", e);
+        }
+    }
+
+    /**
+     * Waits until a change is visible to searches, so that results cached
+     * afterwards include it. Waiting prompts the reopen thread to refresh early.
+     * @param generation the generation returned by index or delete
+     */
+    public void awaitSearchable(long generation) {
+        if (!enabled || generation <= 0) {
+            return;
+        }
+        try {
+            reopenThread.waitForGeneration(generation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts a rebuild. Listings stay searchable throughout: the rebuild rewrites
+     * each one in place, then {@link #finishRebuild(long)} drops those it did not.
+     * @return the epoch of the rebuild
+     */
+    public long beginRebuild() {
+        return epoch.incrementAndGet();
+    }
+
+    /**
+     * Removes every listing not written since a rebuild began, such as listings
+     * deleted or no longer active while the index was not being updated.
+     * @param rebuild the epoch returned by {@link #beginRebuild()}
+     * @return the generation of the change, to pass to {@link #awaitSearchable(long)}
+     */
+    public long finishRebuild(long rebuild) {
+        if (!enabled) {
+            return 0;
+        }
+        Query stale = new BooleanQuery.Builder()
+            .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+            .add(LongPoint.newRangeQuery(EPOCH, rebuild, Long.MAX_VALUE), BooleanClause.Occur.MUST_NOT)
+            .build();
+        try {
+            return writer.deleteDocuments(stale);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove stale listings from index", e);
+        }
+    }
+
+    /**
+     * Counts the listings in the index.
+     * @return the number of indexed listings
+     */
+    public int size() {
+        if (!enabled) {
+            return 0;
+        }
+        return writer.getDocStats().numDocs;
+    }
+
+    /**
+     * Durably commits pending changes to the index directory.
+     */
+    public void commit() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            System.err.println("Failed to commit listing index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Makes every change so far visible to searches, without waiting for the reopen thread.
+     */
+    void refresh() throws IOException {
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * Searches the index, ranking text matches with BM25 unless another sort is requested.
+     * Facet counts over every match are gathered in the same pass that collects the top hits.
+     * @param criteria the search filters
+     * @param sort the sort option: relevance, newest, oldest, price_asc, price_desc or title
+     * @param page the zero-based page number
+     * @param size the number of listings per page
+     * @return the IDs of the listings on the page, in order, the total number of hits and the facets
+     * @throws IllegalArgumentException if the sort option is unknown
+     */
+    public IndexHits search(BookSearchCriteria criteria, String sort, int page, int size) {
+        Query query = buildQuery(criteria);
+        Sort luceneSort = resolveSort(sort, criteria);
+        int wanted = (page + 1) * size;
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocsCollector<?> topCollector = luceneSort == null
+                ? TopScoreDocCollector.create(wanted, Integer.MAX_VALUE)
+                : TopFieldCollector.create(luceneSort, wanted, Integer.MAX_VALUE);
+            FacetCollector facetCollector = new FacetCollector();
+            searcher.search(query, MultiCollector.wrap(topCollector, facetCollector));
+            TopDocs top = topCollector.topDocs();
+
+            List<Long> ids = new ArrayList<>();
+            for (int i = page * size; i < top.scoreDocs.length; i++) {
+                ScoreDoc hit = top.scoreDocs[i];
+                ids.add(Long.valueOf(searcher.storedFields().document(hit.doc).get(ID)));
+            }
+            return new IndexHits(ids, top.totalHits.value, facetCollector.facets());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to search listing index", e);
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException e) {
+                    System.err.println("Failed to release index searcher: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the Lucene query for the search filters.
+     * @param criteria the search filters
+     * @return the query
+     */
+    Query buildQuery(BookSearchCriteria criteria) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+
+        String text = criteria.getQuery() == null ? "" : criteria.getQuery().trim();
+        if (text.isEmpty()) {
+            builder.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        } else {
+            BooleanQuery.Builder textQuery = new BooleanQuery.Builder();
+            try {
+                MultiFieldQueryParser parser = new MultiFieldQueryParser(
+                    FIELD_BOOSTS.keySet().toArray(new String[0]), analyzer, FIELD_BOOSTS);
+                textQuery.add(parser.parse(QueryParser.escape(text)), BooleanClause.Occur.SHOULD);
+            } catch (ParseException e) {
+                // Escaped input only fails to parse when it has no searchable terms
+            }
+            // Course codes are typed partially ("CS1"), so also match them by prefix
+            textQuery.add(new PrefixQuery(new Term(COURSE_CODE_KEYWORD, text.toLowerCase(Locale.ROOT))),
+                BooleanClause.Occur.SHOULD);
+            builder.add(textQuery.build(), BooleanClause.Occur.MUST);
+        }
+
+        if (criteria.getCondition() != null && !criteria.getCondition().isBlank()) {
+            builder.add(new TermQuery(new Term(CONDITION, criteria.getCondition().trim().toLowerCase(Locale.ROOT))),
+                BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getMinPrice() != null || criteria.getMaxPrice() != null) {
+            double min = criteria.getMinPrice() != null ? criteria.getMinPrice() : Double.NEGATIVE_INFINITY;
+            double max = criteria.getMaxPrice() != null ? criteria.getMaxPrice() : Double.POSITIVE_INFINITY;
+            builder.add(DoublePoint.newRangeQuery(PRICE, min, max), BooleanClause.Occur.FILTER);
+        }
+        if (criteria.getExcludeOwnerId() != null) {
+            builder.add(LongPoint.newExactQuery(OWNER_ID, criteria.getExcludeOwnerId()), BooleanClause.Occur.MUST_NOT);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Resolves a client sort option to a Lucene sort.
+     * @param sort the sort option, or null for relevance (or newest when there is no text query)
+     * @param criteria the search filters
+     * @return the sort, or null to rank by relevance
+     * @throws IllegalArgumentException if the sort option is unknown
+     */
+    static Sort resolveSort(String sort, BookSearchCriteria criteria) {
+        boolean hasText = criteria.getQuery() != null && !criteria.getQuery().isBlank();
+        if (sort == null || sort.isBlank()) {
+            sort = hasText ? "relevance" : "newest";
+        }
+        SortField byId = new SortField(ID, SortField.Type.STRING, true);
+        switch (sort.toLowerCase(Locale.ROOT)) {
+            case "relevance":
+                return null;
+            case "newest":
+                return new Sort(new SortField(POSTED_AT, SortField.Type.LONG, true), byId);
+            case "oldest":
+                return new Sort(new SortField(POSTED_AT, SortField.Type.LONG), byId);
+            case "price_asc":
+                return new Sort(new SortField(PRICE, SortField.Type.DOUBLE), byId);
+            case "price_desc":
+                return new Sort(new SortField(PRICE, SortField.Type.DOUBLE, true), byId);
+            case "title":
+                return new Sort(new SortField(TITLE_SORT, SortField.Type.STRING), byId);
+            default:
+                throw new IllegalArgumentException("Unknown sort option: " + sort);
+        }
+    }
+
+    /**
+     * Converts a listing to an index document.
+     * @param listing the listing
+     * @return the document
+     */
+    Document toDocument(BookListing listing) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, String.valueOf(listing.getId()), Field.Store.YES));
+        doc.add(new SortedDocValuesField(ID, new BytesRef(String.valueOf(listing.getId()))));
+        doc.add(new LongPoint(EPOCH, epoch.get()));
+        if (listing.getOwner() != null && listing.getOwner().getId() != null) {
+            doc.add(new LongPoint(OWNER_ID, listing.getOwner().getId()));
+        }
+
+        String title = nullToEmpty(listing.getTitle());
+        doc.add(new TextField(TITLE, title, Field.Store.NO));
+        doc.add(new SortedDocValuesField(TITLE_SORT, new BytesRef(title.toLowerCase(Locale.ROOT))));
+        doc.add(new TextField(AUTHOR, nullToEmpty(listing.getAuthor()), Field.Store.NO));
+        doc.add(new TextField(ISBN, nullToEmpty(listing.getIsbn()).replace("-", ""), Field.Store.NO));
+        doc.add(new TextField(DESCRIPTION, nullToEmpty(listing.getDescription()), Field.Store.NO));
+
+        String courseCode = nullToEmpty(listing.getCourseCode());
+        doc.add(new TextField(COURSE_CODE, courseCode, Field.Store.NO));
+        doc.add(new StringField(COURSE_CODE_KEYWORD, courseCode.toLowerCase(Locale.ROOT), Field.Store.NO));
+
+        if (listing.getCondition() != null) {
+            doc.add(new StringField(CONDITION, listing.getCondition().toLowerCase(Locale.ROOT), Field.Store.NO));
+            doc.add(new SortedDocValuesField(CONDITION_FACET,
+                new BytesRef(listing.getCondition().trim().toUpperCase(Locale.ROOT))));
+        }
+        String coursePrefix = SearchFacets.coursePrefix(listing.getCourseCode());
+        if (coursePrefix != null) {
+            doc.add(new SortedDocValuesField(COURSE_PREFIX, new BytesRef(coursePrefix)));
+        }
+        doc.add(new DoublePoint(PRICE, listing.getPrice()));
+        doc.add(new DoubleDocValuesField(PRICE, listing.getPrice()));
+        long postedAt = listing.getPostedAt() == null ? 0L
+            : listing.getPostedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        doc.add(new NumericDocValuesField(POSTED_AT, postedAt));
+        return doc;
+    }
+
+    /**
+     * Returns the value, or an empty string if it is null.
+     * @param value the value
+     * @return the value or an empty string
+     */
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Stops the background threads, commits and closes the index.
+     * @throws IOException if the index cannot be closed cleanly
+     */
+    @Override
+    public void destroy() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (committer != null) {
+            committer.shutdownNow();
+        }
+        reopenThread.close();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * The result of an index search.
+     * @param ids the IDs of the listings on the requested page, in rank order
+     * @param totalHits the total number of matching listings
+     * @param facets the facet counts over all matching listings
+     */
+    public record IndexHits(List<Long> ids, long totalHits, SearchFacets facets) {
+    }
+
+    /**
+     * Collector counting facet values from doc values as matches are collected.
+     * Counts are kept per segment ordinal and resolved to labels once per segment.
+     */
+    private static final class FacetCollector extends SimpleCollector {
+        /** The facets being accumulated. */
+        private final SearchFacets facets = new SearchFacets();
+
+        /** Conditions of the current segment. */
+        private SortedDocValues conditions;
+        /** Course-code prefixes of the current segment. */
+        private SortedDocValues prefixes;
+        /** Prices of the current segment. */
+        private NumericDocValues prices;
+
+        /** Per-ordinal counts of the current segment. */
+        private long[] conditionCounts = new long[0];
+        private long[] prefixCounts = new long[0];
+        /** Per-range price counts, across all segments. */
+        private final long[] priceCounts = new long[SearchFacets.PRICE_LABELS.length];
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            flushSegment();
+            conditions = DocValues.getSorted(context.reader(), CONDITION_FACET);
+            prefixes = DocValues.getSorted(context.reader(), COURSE_PREFIX);
+            prices = DocValues.getNumeric(context.reader(), PRICE);
+            conditionCounts = new long[conditions.getValueCount()];
+            prefixCounts = new long[prefixes.getValueCount()];
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (conditions.advanceExact(doc)) {
+                conditionCounts[conditions.ordValue()]++;
+            }
+            if (prefixes.advanceExact(doc)) {
+                prefixCounts[prefixes.ordValue()]++;
+            }
+            if (prices.advanceExact(doc)) {
+                priceCounts[SearchFacets.priceRangeIndex(Double.longBitsToDouble(prices.longValue()))]++;
+            }
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE_NO_SCORES;
+        }
+
+        /**
+         * Resolves the current segment's ordinal counts to labels.
+         * @throws IOException if the doc values cannot be read
+         */
+        private void flushSegment() throws IOException {
+            for (int ord = 0; ord < conditionCounts.length; ord++) {
+                if (conditionCounts[ord] > 0) {
+                    facets.add(conditions.lookupOrd(ord).utf8ToString(), null, null, conditionCounts[ord]);
+                }
+            }
+            for (int ord = 0; ord < prefixCounts.length; ord++) {
+                if (prefixCounts[ord] > 0) {
+                    facets.add(null, null, prefixes.lookupOrd(ord).utf8ToString(), prefixCounts[ord]);
+                }
+            }
+            conditionCounts = new long[0];
+            prefixCounts = new long[0];
+        }
+
+        /**
+         * Returns the facets over every collected match.
+         * @return the facet counts
+         * @throws IOException if the doc values cannot be read
+         */
+        SearchFacets facets() throws IOException {
+            flushSegment();
+            for (int i = 0; i < priceCounts.length; i++) {
+                if (priceCounts[i] > 0) {
+                    facets.add(null, SearchFacets.PRICE_LABELS[i], null, priceCounts[i]);
+                }
+            }
+            return facets.finish();
+        }
+    }
+}
@@ -1,13 +1,36 @@
 package com.esaunders.TextbookExchange.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import com.esaunders.TextbookExchange.config.SearchProperties;
 import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.BookPage;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.dtos.SearchFacets;
 import com.esaunders.TextbookExchange.mapper.BookMapper;
+import com.esaunders.TextbookExchange.mapper.UserMapper;
 import com.esaunders.TextbookExchange.repository.BookListingRepository;
+import com.esaunders.TextbookExchange.repository.BookListingSpecifications;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.ListingStatus;
 import com.esaunders.TextbookExchange.model.User;
 
 import lombok.AllArgsConstructor;
@@ -20,20 +43,430 @@ import lombok.AllArgsConstructor;
 @Service
 @AllArgsConstructor
 public class ListingService {
+    /** Largest page size a client may request from the feed. */
+    public static final int MAX_PAGE_SIZE = 50;
+
+    /**
+     * Deepest a search may be paged, in results. Ranking keeps every result up to
+     * the requested page, so deeper pages are refused rather than collected.
+     */
+    public static final int MAX_SEARCH_RESULTS = 1000;
+
+    /** Course-code format: 1-3 letters followed by 3 digits. */
+    public static final Pattern COURSE_CODE_PATTERN = Pattern.compile("[A-Za-z]{1,3}\\d{3}");
+
     /** Repository for accessing book listings. */
     private BookListingRepository bookListingRepository;
 
     /** Mapper for converting between BookListing and BookDto. */
     private BookMapper bookMapper;
 
+    /** Number of listings loaded per batch when rebuilding the search index. */
+    private static final int REINDEX_BATCH_SIZE = 500;
+
+    /** Mapper for converting the listing owner to a UserDto. */
+    private UserMapper userMapper;
+
+    /** Embedded full-text index of listings, used when search mode is LUCENE. */
+    private ListingIndexService listingIndexService;
+
+    /** Search configuration selecting the search backend. */
+    private SearchProperties searchProperties;
+
+    /** In-memory typeahead suggestions of course codes and titles. */
+    private SuggestionService suggestionService;
+
+    /** Caches of the feed, listing detail and search results. */
+    private ListingCache listingCache;
+
+    /** Storage of listing images, deleted with the listings that use them. */
+    private ImageStore imageStore;
+
     /**
      * Retrieves all book listings as DTOs.
      * @return a list of all BookDto objects
      */
     public List<BookDto> getAllBooks() {
-        return bookListingRepository.findAll().stream()
-            .map(bookMapper::toBookDto)
+        return bookListingRepository.findAllBooks();
+    }
+
+    /**
+     * Retrieves one page of the home feed, newest first, excluding the user's own listings.
+     * Pages are addressed by a keyset cursor on (postedAt, id), so each page costs
+     * the same regardless of how deep into the feed the client has scrolled.
+     * Pages are cut from cached feed windows shared by every user and filtered
+     * per user; the database is queried directly only when the user's own
+     * listings leave a window too short to fill the page.
+     * @param user the user viewing the feed
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of listings to return
+     * @return the page of listings and the cursor for the next page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public BookPage getFeed(User user, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        FeedCursor after = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor);
+
+        ListingCache.FeedWindow window = listingCache.feedWindow(after, () -> loadFeedWindow(after));
+        List<BookDto> visible = window.books().stream()
+            .filter(book -> !Objects.equals(book.getOwnerId(), user.getId()))
+            .limit(size + 1)
             .collect(Collectors.toList());
+        if (visible.size() <= size && window.hasMore()) {
+            return queryFeed(user, after, size);
+        }
+
+        String next = null;
+        if (visible.size() > size) {
+            visible = visible.subList(0, size);
+            BookDto last = visible.get(size - 1);
+            next = encodeCursor(new FeedCursor(last.getPostedAt(), last.getId()));
+        }
+        return new BookPage(new ArrayList<>(visible), next);
+    }
+
+    /**
+     * Loads the shared feed window following a cursor.
+     * @param after the cursor, or null for the top of the feed
+     * @return the window of listings
+     */
+    private ListingCache.FeedWindow loadFeedWindow(FeedCursor after) {
+        // Fetch one extra row to learn whether the feed continues past the window
+        PageRequest page = PageRequest.of(0, ListingCache.FEED_WINDOW_SIZE + 1);
+        List<BookDto> books = after == null
+            ? bookListingRepository.findRecent(page)
+            : bookListingRepository.findRecentAfter(after.postedAt(), after.id(), page);
+        boolean hasMore = books.size() > ListingCache.FEED_WINDOW_SIZE;
+        if (hasMore) {
+            books = new ArrayList<>(books.subList(0, ListingCache.FEED_WINDOW_SIZE));
+        }
+        return new ListingCache.FeedWindow(books, hasMore);
+    }
+
+    /**
+     * Queries one page of the user's feed directly from the database.
+     * @param user the user viewing the feed
+     * @param after the cursor, or null for the first page
+     * @param size the page size
+     * @return the page of listings and the cursor for the next page
+     */
+    private BookPage queryFeed(User user, FeedCursor after, int size) {
+        // Fetch one extra row to learn whether another page exists
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<BookDto> books;
+        if (after == null) {
+            books = bookListingRepository.findFeed(user.getId(), page);
+        } else {
+            books = bookListingRepository.findFeedAfter(user.getId(), after.postedAt(), after.id(), page);
+        }
+
+        String next = null;
+        if (books.size() > size) {
+            books = new ArrayList<>(books.subList(0, size));
+            BookDto last = books.get(size - 1);
+            next = encodeCursor(new FeedCursor(last.getPostedAt(), last.getId()));
+        }
+        return new BookPage(books, next);
+    }
+
+    /**
+     * Retrieves a listing's detail, including the seller's information.
+     * Listings still waiting for their image are not shown.
+     * @param id the listing ID
+     * @return the listing detail, or null if there is no such active listing
+     */
+    public BookDto getBookById(Long id) {
+        return listingCache.detail(id, () -> bookListingRepository.findBookById(id).orElse(null));
+    }
+
+    /**
+     * Searches book listings with the given filters using the configured search backend:
+     * JPA Specifications, the embedded Lucene index, or PostgreSQL full-text search.
+     * @param criteria the search filters
+     * @param sort the sort option: relevance, newest, oldest, price_asc, price_desc or title
+     * @param page the zero-based page number
+     * @param size the maximum number of listings per page
+     * @return the page of matching listings, the next page number, if any, and facet counts
+     * @throws IllegalArgumentException if the sort option or page is invalid, or the page
+     *         lies beyond the first {@link #MAX_SEARCH_RESULTS} results
+     */
+    public BookPage searchBooks(BookSearchCriteria criteria, String sort, int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must not be negative");
+        }
+        resolveSort(sort); // rejects unknown sort options before they reach the cache
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        if (((long) page + 1) * pageSize > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException("Only the first " + MAX_SEARCH_RESULTS + " results can be paged through");
+        }
+        ListingCache.SearchKey key = ListingCache.SearchKey.of(criteria, sort, page, pageSize);
+        BookPage result = listingCache.search(key, () -> search(key.criteria(), key.sort(), page, pageSize));
+        if (result.getNext() != null && ((long) page + 2) * pageSize > MAX_SEARCH_RESULTS) {
+            return new BookPage(result.getBooks(), null, result.getFacets());
+        }
+        return result;
+    }
+
+    /**
+     * Runs a normalized search against the configured search backend.
+     * @param criteria the normalized search filters
+     * @param sort the lower-case sort option, or null for the default
+     * @param page the zero-based page number
+     * @param pageSize the number of listings per page
+     * @return the page of matching listings, the next page number, if any, and facet counts
+     */
+    private BookPage search(BookSearchCriteria criteria, String sort, int page, int pageSize) {
+        boolean hasText = criteria.getQuery() != null && !criteria.getQuery().isBlank();
+
+        if (searchProperties.getMode() == SearchProperties.Mode.LUCENE) {
+            return searchIndex(criteria, sort, page, pageSize);
+        } else if (searchProperties.getMode() == SearchProperties.Mode.POSTGRES && hasText) {
+            String query = criteria.getQuery().trim();
+            String condition = blankToNull(criteria.getCondition());
+            Page<Long> ids = bookListingRepository.searchFullTextIds(query, condition,
+                criteria.getMinPrice(), criteria.getMaxPrice(), criteria.getExcludeOwnerId(),
+                sort == null ? "relevance" : sort,
+                PageRequest.of(page, pageSize));
+            SearchFacets facets = new SearchFacets();
+            for (Object[] group : bookListingRepository.facetFullText(query, condition,
+                    criteria.getMinPrice(), criteria.getMaxPrice(), criteria.getExcludeOwnerId())) {
+                facets.add((String) group[0], (String) group[1], (String) group[2], ((Number) group[3]).longValue());
+            }
+            facets.finish();
+            return new BookPage(findBooksInOrder(ids.getContent()),
+                ids.hasNext() ? String.valueOf(page + 1) : null, facets);
+        }
+
+        Specification<BookListing> spec = BookListingSpecifications.matching(criteria);
+        Page<BookListing> result = bookListingRepository.findAll(spec, PageRequest.of(page, pageSize, resolveSort(sort)));
+        List<BookDto> books = result.getContent().stream()
+            .map(this::toBookDtoWithSeller)
+            .collect(Collectors.toList());
+        return new BookPage(books, result.hasNext() ? String.valueOf(page + 1) : null,
+            bookListingRepository.computeFacets(spec));
+    }
+
+    /**
+     * Searches the embedded full-text index, then loads the matching listings by ID.
+     * @param criteria the search filters
+     * @param sort the sort option, or null to rank by relevance
+     * @param page the zero-based page number
+     * @param size the number of listings per page
+     * @return the page of matching listings in rank order
+     */
+    private BookPage searchIndex(BookSearchCriteria criteria, String sort, int page, int size) {
+        ListingIndexService.IndexHits hits = listingIndexService.search(criteria, sort, page, size);
+        boolean hasNext = (long) (page + 1) * size < hits.totalHits();
+        return new BookPage(findBooksInOrder(hits.ids()), hasNext ? String.valueOf(page + 1) : null, hits.facets());
+    }
+
+    /**
+     * Loads listings by ID in one query and returns them in the order of the IDs.
+     * @param ids the listing IDs, in rank order
+     * @return the listings that still exist, in rank order
+     */
+    private List<BookDto> findBooksInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            rank.put(ids.get(i), i);
+        }
+        return bookListingRepository.findBooksByIdIn(ids).stream()
+            .sorted(Comparator.comparing(book -> rank.get(book.getId())))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Saves a new book listing, makes it searchable and evicts the cached pages it belongs in.
+     * @param bookListing the listing to save
+     * @return the saved listing
+     */
+    public BookListing createListing(BookListing bookListing) {
+        BookListing saved = bookListingRepository.save(bookListing);
+        publish(saved);
+        return saved;
+    }
+
+    /**
+     * Saves a new listing whose image is still uploading. The listing is hidden
+     * from the feed, search and suggestions until {@link #activateListing} is called.
+     * @param bookListing the listing to save
+     * @return the saved listing
+     */
+    public BookListing createPendingListing(BookListing bookListing) {
+        bookListing.setStatus(ListingStatus.PENDING_IMAGE);
+        return bookListingRepository.save(bookListing);
+    }
+
+    /**
+     * Attaches the uploaded images to a pending listing and makes it visible.
+     * @param id the listing ID
+     * @param images the uploaded images
+     * @return the activated listing, or null if the listing was deleted or is not pending
+     */
+    public BookListing activateListing(Long id, ListingImages images) {
+        BookListing listing = bookListingRepository.findById(id).orElse(null);
+        if (listing == null || listing.getStatus() != ListingStatus.PENDING_IMAGE) {
+            return null;
+        }
+        images.applyTo(listing);
+        listing.setStatus(ListingStatus.ACTIVE);
+        BookListing saved = bookListingRepository.save(listing);
+        publish(saved);
+        return saved;
+    }
+
+    /**
+     * Deletes a listing whose image could not be uploaded. Active listings are left alone.
+     * @param id the listing ID
+     * @return false if the listing is active and so holds its image, otherwise true
+     */
+    public boolean discardPendingListing(Long id) {
+        Optional<BookListing> found = bookListingRepository.findById(id);
+        if (found.isEmpty()) {
+            return true;
+        }
+        BookListing listing = found.get();
+        if (listing.getStatus() != ListingStatus.PENDING_IMAGE) {
+            return false;
+        }
+        bookListingRepository.delete(listing);
+        listingCache.listingDeleted(listing);
+        return true;
+    }
+
+    /**
+     * Deletes the pending listings posted before a time, whose uploads can no longer finish.
+     * @param postedBefore the time the listings were posted before
+     * @return the number of listings deleted
+     */
+    public int discardPendingListingsBefore(LocalDateTime postedBefore) {
+        List<BookListing> abandoned =
+            bookListingRepository.findByStatusAndPostedAtBefore(ListingStatus.PENDING_IMAGE, postedBefore);
+        bookListingRepository.deleteAll(abandoned);
+        abandoned.forEach(listingCache::listingDeleted);
+        return abandoned.size();
+    }
+
+    /**
+     * Makes a saved listing searchable and evicts the cached pages it belongs in.
+     * @param saved the saved listing
+     */
+    private void publish(BookListing saved) {
+        try {
+            listingIndexService.awaitSearchable(listingIndexService.index(saved));
+        } catch (RuntimeException e) {
+            // The database is the source of truth; a rebuild restores the index
+            System.err.println("Failed to index listing " + saved.getId() + ": " + e.getMessage());
+        }
+        listingCache.listingCreated(saved);
+        suggestionService.add(saved.getCourseCode(), saved.getTitle());
+    }
+
+    /**
+     * Saves many new listings at once, then makes them searchable and evicts the
+     * cached pages they belong in. The listings are saved in one transaction and,
+     * with sequence-assigned IDs, sent to the database in JDBC batches.
+     * @param bookListings the listings to save
+     * @return the saved listings, in the same order
+     */
+    public List<BookListing> createListings(List<BookListing> bookListings) {
+        if (bookListings.isEmpty()) {
+            return List.of();
+        }
+        List<BookListing> saved = bookListingRepository.saveAll(bookListings);
+        try {
+            long generation = 0;
+            for (BookListing listing : saved) {
+                generation = Math.max(generation, listingIndexService.index(listing));
+            }
+            listingIndexService.awaitSearchable(generation);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to index imported listings: " + e.getMessage());
+        }
+        for (BookListing listing : saved) {
+            listingCache.listingCreated(listing);
+            suggestionService.add(listing.getCourseCode(), listing.getTitle());
+        }
+        return saved;
+    }
+
+    /**
+     * Deletes a book listing, removes it from search and evicts the cached pages it appears in.
+     * Its images are deleted too, unless another listing shares them. Pending listings were
+     * never published, so only the row and any images are deleted.
+     * @param bookListing the listing to delete
+     */
+    public void deleteListing(BookListing bookListing) {
+        bookListingRepository.delete(bookListing);
+        try {
+            imageStore.listingDeleted(bookListing);
+        } catch (Exception e) {
+            // The orphaned image sweep deletes whatever is left behind
+            System.err.println("Failed to delete images of listing " + bookListing.getId() + ": " + e.getMessage());
+        }
+        if (bookListing.getStatus() != ListingStatus.ACTIVE) {
+            // A listing still waiting for its image was never published
+            return;
+        }
+        try {
+            listingIndexService.awaitSearchable(listingIndexService.delete(bookListing.getId()));
+        } catch (RuntimeException e) {
+            System.err.println("Failed to remove listing " + bookListing.getId() + " from index: " + e.getMessage());
+        }
+        listingCache.listingDeleted(bookListing);
+        suggestionService.remove(bookListing.getCourseCode(), bookListing.getTitle());
+    }
+
+    /**
+     * Rebuilds the search index from the active listings in the database, walking the table in ID order.
+     * Listings are replaced in place, so searches keep working while the rebuild runs.
+     * @return the number of listings indexed
+     */
+    public int rebuildSearchIndex() {
+        if (!listingIndexService.isEnabled()) {
+            return 0;
+        }
+        long rebuild = listingIndexService.beginRebuild();
+        int count = 0;
+        Long lastId = 0L;
+        List<BookListing> batch;
+        do {
+            batch = bookListingRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, REINDEX_BATCH_SIZE));
+            for (BookListing listing : batch) {
+                if (listing.getStatus() == ListingStatus.ACTIVE) {
+                    listingIndexService.index(listing);
+                    count++;
+                }
+                lastId = listing.getId();
+            }
+        } while (batch.size() == REINDEX_BATCH_SIZE);
+        listingIndexService.finishRebuild(rebuild);
+        listingIndexService.commit();
+        return count;
+    }
+
+    /**
+     * Reloads the typeahead suggestions from the database, walking the table in ID order.
+     * @return the number of listings loaded
+     */
+    public int rebuildSuggestions() {
+        suggestionService.clear();
+        int count = 0;
+        Long lastId = 0L;
+        List<BookListingRepository.SuggestionTerms> batch;
+        do {
+            batch = bookListingRepository.findSuggestionTermsAfter(lastId, PageRequest.of(0, REINDEX_BATCH_SIZE));
+            for (BookListingRepository.SuggestionTerms terms : batch) {
+                suggestionService.add(terms.getCourseCode(), terms.getTitle());
+                lastId = terms.getId();
+            }
+            count += batch.size();
+        } while (batch.size() == REINDEX_BATCH_SIZE);
+        return count;
     }
 
     /**
@@ -42,9 +475,7 @@ public class ListingService {
      * @return a list of BookDto objects for the user
      */
     public List<BookDto> getMyListings(User user) {
-        return bookListingRepository.findByOwner(user).stream()
-            .map(bookMapper::toBookDto)
-            .collect(Collectors.toList());
+        return bookListingRepository.findBooksByOwnerId(user.getId());
     }
 
     /**
@@ -53,8 +484,94 @@ public class ListingService {
      * @return true if valid, false otherwise
      */
     public boolean checkCourseCodeValid(String courseCode) {
-        return courseCode != null && courseCode.matches("^[A-Za-z]{1,3}\\d{3}$");
+        return courseCode != null && COURSE_CODE_PATTERN.matcher(courseCode).matches();
     }
-}
 
+    /**
+     * Resolves a client sort option to a database sort. Ties are broken by ID
+     * so that pages are stable. The database cannot rank by relevance, so
+     * relevance falls back to newest first.
+     * @param sort the sort option, or null for newest first
+     * @return the sort to apply
+     * @throws IllegalArgumentException if the sort option is unknown
+     */
+    static Sort resolveSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            sort = "newest";
+        }
+        switch (sort.toLowerCase()) {
+            case "relevance":
+            case "newest":
+                return Sort.by(Sort.Order.desc("postedAt"), Sort.Order.desc("id"));
+            case "oldest":
+                return Sort.by(Sort.Order.asc("postedAt"), Sort.Order.asc("id"));
+            case "price_asc":
+                return Sort.by(Sort.Order.asc("price"), Sort.Order.desc("id"));
+            case "price_desc":
+                return Sort.by(Sort.Order.desc("price"), Sort.Order.desc("id"));
+            case "title":
+                return Sort.by(Sort.Order.asc("title"), Sort.Order.desc("id"));
+            default:
+                throw new IllegalArgumentException("Unknown sort option: " + sort);
+        }
+    }
 
+    /**
+     * Returns null for a null or blank value, otherwise the trimmed value.
+     * @param value the value
+     * @return the trimmed value or null
+     */
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * Maps a listing to a BookDto, including the seller's information.
+     * @param book the book listing
+     * @return the mapped BookDto
+     */
+    private BookDto toBookDtoWithSeller(BookListing book) {
+        BookDto dto = bookMapper.toBookDto(book);
+        if (book.getOwner() != null) {
+            dto.setSeller(userMapper.toUserDto(book.getOwner()));
+        }
+        return dto;
+    }
+
+    /**
+     * Encodes a feed position as an opaque, URL-safe cursor.
+     * @param cursor the feed position
+     * @return the encoded cursor
+     */
+    static String encodeCursor(FeedCursor cursor) {
+        String raw = cursor.postedAt() + "|" + cursor.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor(FeedCursor)}.
+     * @param cursor the encoded cursor
+     * @return the feed position
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static FeedCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new FeedCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * A position in the feed: the (postedAt, id) of the last listing already seen.
+     * @param postedAt the posted time of the listing
+     * @param id the ID of the listing
+     */
+    record FeedCursor(LocalDateTime postedAt, Long id) {
+    }
+}
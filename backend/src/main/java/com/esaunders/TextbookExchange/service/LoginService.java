@@ -0,0 +1,203 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import com.esaunders.TextbookExchange.config.LoginProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Service checking login credentials off the request threads. Passwords are
+ * checked with BCrypt on a small pool of their own with a bounded queue, so a
+ * burst of logins uses only those cores and is refused once the queue is full,
+ * instead of occupying every request thread. Before any hashing, each IP
+ * address and each account is held to a token-bucket rate.
+ * <p>
+ * Metrics: {@code login.hash} times each check by outcome,
+ * {@code login.queue.depth} and {@code login.active} track the pool, and
+ * {@code login.rejected} counts refusals by reason.
+ * @author Ethan Saunders
+ */
+@Service
+public class LoginService implements DisposableBean {
+
+    /** Checks credentials; with the default configuration this runs BCrypt. */
+    private final AuthenticationManager authenticationManager;
+
+    /** Configuration of the pool and rate limits. */
+    private final LoginProperties properties;
+
+    /** Pool checking passwords. */
+    private final ThreadPoolExecutor executor;
+
+    /** Rate limits by client IP address. */
+    private final TokenBuckets byIp;
+
+    /** Rate limits by account email. */
+    private final TokenBuckets byEmail;
+
+    /** Time spent on successful checks. */
+    private final Timer succeeded;
+
+    /** Time spent on failed checks. */
+    private final Timer failed;
+
+    /** Logins refused for their IP address's rate. */
+    private final Counter ipLimited;
+
+    /** Logins refused for their account's rate. */
+    private final Counter emailLimited;
+
+    /** Logins refused because the pool was full or the check took too long. */
+    private final Counter busy;
+
+    /**
+     * Thrown when a client or account has made too many logins recently.
+     */
+    public static class RateLimitedException extends RuntimeException {
+        /** Seconds until another login will be accepted. */
+        private final long retryAfterSeconds;
+
+        /**
+         * Creates the exception.
+         * @param retryAfterSeconds seconds until another login will be accepted
+         */
+        public RateLimitedException(long retryAfterSeconds) {
+            super("Too many login attempts");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        /**
+         * Returns the number of seconds until another login will be accepted.
+         * @return the seconds to wait
+         */
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * Constructs the service.
+     * @param authenticationManager the authentication manager
+     * @param properties the pool and rate limit configuration
+     * @param meterRegistry the registry for login metrics
+     */
+    @Autowired
+    public LoginService(AuthenticationManager authenticationManager, LoginProperties properties,
+            MeterRegistry meterRegistry) {
+        this(authenticationManager, properties, meterRegistry, System::nanoTime);
+    }
+
+    LoginService(AuthenticationManager authenticationManager, LoginProperties properties,
+            MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.authenticationManager = authenticationManager;
+        this.properties = properties;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+            r -> {
+                Thread t = new Thread(r, "login-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.byIp = new TokenBuckets(properties.getIpBurst(), properties.getIpPerMinute(),
+            properties.getMaxTrackedClients(), nanoTime);
+        this.byEmail = new TokenBuckets(properties.getEmailBurst(), properties.getEmailPerMinute(),
+            properties.getMaxTrackedClients(), nanoTime);
+        this.succeeded = Timer.builder("login.hash").tag("outcome", "success").register(meterRegistry);
+        this.failed = Timer.builder("login.hash").tag("outcome", "failure").register(meterRegistry);
+        this.ipLimited = Counter.builder("login.rejected").tag("reason", "ip").register(meterRegistry);
+        this.emailLimited = Counter.builder("login.rejected").tag("reason", "email").register(meterRegistry);
+        this.busy = Counter.builder("login.rejected").tag("reason", "busy").register(meterRegistry);
+        Gauge.builder("login.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("login.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    /**
+     * Checks a login's credentials on the login pool.
+     * @param email the email entered
+     * @param password the password entered
+     * @param clientIp the client's IP address
+     * @return the authentication, completing exceptionally with an AuthenticationException
+     *         if the credentials are wrong, or a TimeoutException if the check took too long
+     * @throws RateLimitedException if the client or account has made too many logins recently
+     * @throws RejectedExecutionException if too many logins are already waiting
+     */
+    public CompletableFuture<Authentication> authenticate(String email, String password, String clientIp) {
+        long wait = byIp.tryAcquire(clientIp);
+        if (wait > 0) {
+            ipLimited.increment();
+            throw new RateLimitedException(toSeconds(wait));
+        }
+        wait = byEmail.tryAcquire(email == null ? "" : email.trim().toLowerCase(Locale.ROOT));
+        if (wait > 0) {
+            emailLimited.increment();
+            throw new RateLimitedException(toSeconds(wait));
+        }
+
+        CompletableFuture<Authentication> result = new CompletableFuture<>();
+        Runnable task = () -> check(email, password, result);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            busy.increment();
+            throw e;
+        }
+        return result.orTimeout(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+            .whenComplete((authentication, e) -> {
+                if (e instanceof TimeoutException) {
+                    busy.increment();
+                    // Free the queue slot of a login that never started
+                    executor.remove(task);
+                }
+            });
+    }
+
+    private void check(String email, String password, CompletableFuture<Authentication> result) {
+        if (result.isDone()) {
+            // Timed out while queued; nobody is waiting for the answer
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            Authentication authentication = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(email, password));
+            succeeded.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            result.complete(authentication);
+        } catch (RuntimeException e) {
+            failed.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static long toSeconds(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos + 999_999_999L));
+    }
+
+    /**
+     * Stops the login pool.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
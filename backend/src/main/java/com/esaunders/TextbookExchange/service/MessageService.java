@@ -0,0 +1,249 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.esaunders.TextbookExchange.dtos.ConversationDto;
+import com.esaunders.TextbookExchange.dtos.ConversationPage;
+import com.esaunders.TextbookExchange.dtos.MessageDto;
+import com.esaunders.TextbookExchange.dtos.MessagePage;
+import com.esaunders.TextbookExchange.mapper.MessagesMapper;
+import com.esaunders.TextbookExchange.model.Conversation;
+import com.esaunders.TextbookExchange.model.Message;
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.repository.ConversationRepository;
+import com.esaunders.TextbookExchange.repository.MessageRepository;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Service for sending messages and reading conversations.
+ * History and the inbox are paged by keyset cursors, so loading any page costs
+ * the same however long the conversation or the inbox has grown. The inbox is
+ * served from the conversations read model, updated with every message sent.
+ * @author Ethan Saunders
+ */
+@AllArgsConstructor
+@Service
+public class MessageService {
+    /** Largest page size a client may request from a conversation or the inbox. */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /** Repository for message entities. */
+    private MessageRepository messageRepository;
+
+    /** Repository for the conversations read model. */
+    private ConversationRepository conversationRepository;
+
+    /** Mapper for converting Message to MessageDto. */
+    private MessagesMapper messagesMapper;
+
+    /** Cache of users, for resolving sender names. */
+    private UserCache userCache;
+
+    /**
+     * Saves a message and records it on its conversation in the same transaction,
+     * counting it unread for the receiver.
+     * @param message the message, with its sender, receiver, content and timestamp set
+     * @return the saved message
+     */
+    @Transactional
+    public Message send(Message message) {
+        Message saved = messageRepository.save(message);
+        Long low = Math.min(saved.getSenderId(), saved.getReceiverId());
+        Long high = Math.max(saved.getSenderId(), saved.getReceiverId());
+        boolean toSelf = low.equals(high);
+        conversationRepository.recordMessage(low, high, saved.getId(), saved.getSenderId(), saved.getContent(),
+            saved.getTimestamp(),
+            !toSelf && saved.getReceiverId().equals(low) ? 1 : 0,
+            !toSelf && saved.getReceiverId().equals(high) ? 1 : 0);
+        return saved;
+    }
+
+    /**
+     * Retrieves one page of a user's inbox, most recently active conversation first.
+     * @param userId the user's ID
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of conversations to return
+     * @return the page of conversations and the cursor for the next page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public ConversationPage getInbox(Long userId, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Fetch one extra row to learn whether another page exists
+        int fetch = size + 1;
+
+        List<Conversation> conversations;
+        if (cursor == null || cursor.isBlank()) {
+            conversations = conversationRepository.findInbox(userId, fetch);
+        } else {
+            MessageCursor after = decodeCursor(cursor);
+            conversations = conversationRepository.findInboxAfter(userId, after.timestamp(), after.id(), fetch);
+        }
+
+        String next = null;
+        if (conversations.size() > size) {
+            conversations = new ArrayList<>(conversations.subList(0, size));
+            Conversation last = conversations.get(size - 1);
+            next = encodeCursor(last.getLastMessageAt(), last.getId());
+        }
+        List<ConversationDto> dtos = conversations.stream()
+            .map(conversation -> {
+                Long otherUserId = conversation.otherUserId(userId);
+                User other = userCache.findById(otherUserId);
+                return new ConversationDto(otherUserId, other != null ? other.getUsername() : "Unknown",
+                    conversation.getLastSenderId(), conversation.getLastContent(),
+                    conversation.getLastMessageAt(), conversation.unreadFor(userId));
+            })
+            .collect(Collectors.toList());
+        return new ConversationPage(dtos, next);
+    }
+
+    /**
+     * Marks a user's side of a conversation read.
+     * @param userId the ID of the user who read the conversation
+     * @param otherUserId the ID of the other user in the conversation
+     */
+    public void markRead(Long userId, Long otherUserId) {
+        Long low = Math.min(userId, otherUserId);
+        Long high = Math.max(userId, otherUserId);
+        if (userId.equals(low)) {
+            conversationRepository.markReadByLow(low, high);
+        } else {
+            conversationRepository.markReadByHigh(low, high);
+        }
+    }
+
+    /**
+     * Retrieves one page of the conversation between two users, oldest message first.
+     * Without a cursor the page holds the latest messages; {@code before} pages back
+     * through older history and {@code after} forward towards the latest.
+     * @param userId1 the first user's ID
+     * @param userId2 the second user's ID
+     * @param before the {@code before} cursor of a previous page, or null
+     * @param after the {@code after} cursor of a previous page, or null
+     * @param limit the maximum number of messages to return
+     * @return the page of messages and the cursors on either side of it
+     * @throws IllegalArgumentException if both cursors are given or a cursor is malformed
+     */
+    public MessagePage getConversation(Long userId1, Long userId2, String before, String after, int limit) {
+        boolean hasBefore = before != null && !before.isBlank();
+        boolean hasAfter = after != null && !after.isBlank();
+        if (hasBefore && hasAfter) {
+            throw new IllegalArgumentException("Only one of before and after may be given");
+        }
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Long low = Math.min(userId1, userId2);
+        Long high = Math.max(userId1, userId2);
+        // Fetch one extra row to learn whether the conversation continues past the page
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        if (hasAfter) {
+            MessageCursor cursor = decodeCursor(after);
+            List<Message> messages = messageRepository.findConversationAfter(
+                low, high, cursor.timestamp(), cursor.id(), page);
+            boolean hasMore = messages.size() > size;
+            if (hasMore) {
+                messages = new ArrayList<>(messages.subList(0, size));
+            }
+            String older = messages.isEmpty() ? after : encodeCursor(messages.get(0));
+            String newer = hasMore ? encodeCursor(messages.get(size - 1)) : null;
+            return new MessagePage(toDtos(messages), older, newer);
+        }
+
+        List<Message> messages;
+        if (hasBefore) {
+            MessageCursor cursor = decodeCursor(before);
+            messages = messageRepository.findConversationBefore(low, high, cursor.timestamp(), cursor.id(), page);
+        } else {
+            messages = messageRepository.findConversation(low, high, page);
+        }
+        boolean hasMore = messages.size() > size;
+        messages = new ArrayList<>(hasMore ? messages.subList(0, size) : messages);
+        Collections.reverse(messages);
+
+        String older = hasMore ? encodeCursor(messages.get(0)) : null;
+        String newer = null;
+        if (hasBefore) {
+            newer = messages.isEmpty() ? before : encodeCursor(messages.get(messages.size() - 1));
+        }
+        return new MessagePage(toDtos(messages), older, newer);
+    }
+
+    /**
+     * Maps messages to DTOs, resolving each sender's name once per page.
+     * @param messages the messages
+     * @return the mapped messages, in the same order
+     */
+    private List<MessageDto> toDtos(List<Message> messages) {
+        Map<Long, String> senderNames = new HashMap<>();
+        for (Message message : messages) {
+            senderNames.computeIfAbsent(message.getSenderId(), id -> {
+                User user = userCache.findById(id);
+                return user != null ? user.getUsername() : "Unknown";
+            });
+        }
+        return messages.stream()
+            .map(message -> messagesMapper.toDto(message, senderNames))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Encodes a message's position in its conversation as an opaque, URL-safe cursor.
+     * @param message the message
+     * @return the encoded cursor
+     */
+    static String encodeCursor(Message message) {
+        return encodeCursor(message.getTimestamp(), message.getId());
+    }
+
+    /**
+     * Encodes a (timestamp, id) position as an opaque, URL-safe cursor.
+     * @param timestamp the timestamp of the position
+     * @param id the ID of the row at the position
+     * @return the encoded cursor
+     */
+    static String encodeCursor(LocalDateTime timestamp, Long id) {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor(LocalDateTime, Long)}.
+     * @param cursor the encoded cursor
+     * @return the conversation position
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static MessageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new MessageCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * A position in a conversation or the inbox: the (timestamp, id) of a message or conversation.
+     * @param timestamp when the message, or the conversation's latest message, was sent
+     * @param id the ID of the message or conversation
+     */
+    record MessageCursor(LocalDateTime timestamp, Long id) {
+    }
+}
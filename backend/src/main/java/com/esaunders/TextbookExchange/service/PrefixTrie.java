@@ -0,0 +1,214 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counted prefix trie for typeahead suggestions.
+ * Every term carries the number of listings that use it, and every node the
+ * highest count in its subtree, so the top-k terms under a prefix are found
+ * best-first without visiting the rest of the subtree. Children are kept in
+ * sorted parallel arrays to keep nodes small.
+ * Not thread-safe; callers guard access.
+ * @author Ethan Saunders
+ */
+class PrefixTrie {
+
+    /** Orders candidates by count, highest first, then alphabetically, terms before subtrees. */
+    private static final Comparator<Candidate> BEST_FIRST = Comparator
+        .comparingInt(Candidate::count).reversed()
+        .thenComparing(Candidate::key)
+        .thenComparing(candidate -> candidate.node() != null);
+
+    /** The root node, for the empty prefix. */
+    private final Node root = new Node();
+
+    /** Number of distinct terms in the trie. */
+    private int size;
+
+    /**
+     * Adds one use of a term.
+     * @param key the normalized term
+     * @param display the term as it should be suggested
+     */
+    void add(String key, String display) {
+        Node node = root;
+        Node[] path = new Node[key.length() + 1];
+        path[0] = node;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+            path[i + 1] = node;
+        }
+        if (node.count++ == 0) {
+            node.display = display;
+            size++;
+        }
+        for (Node step : path) {
+            step.max = Math.max(step.max, node.count);
+        }
+    }
+
+    /**
+     * Removes one use of a term, pruning nodes no longer on the path to any term.
+     * @param key the normalized term
+     */
+    void remove(String key) {
+        Node[] path = new Node[key.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                return;
+            }
+            path[i + 1] = node;
+        }
+        if (node.count == 0) {
+            return;
+        }
+        if (--node.count == 0) {
+            node.display = null;
+            size--;
+        }
+        for (int i = key.length(); i >= 0; i--) {
+            path[i].recomputeMax();
+            if (i > 0 && path[i].max == 0) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            }
+        }
+    }
+
+    /**
+     * Returns the most used terms starting with a prefix.
+     * @param prefix the normalized prefix
+     * @param limit the maximum number of terms to return
+     * @return the display forms of the terms, most used first
+     */
+    List<String> top(String prefix, int limit) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        List<String> result = new ArrayList<>(limit);
+        if (node == null || node.max == 0) {
+            return result;
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(BEST_FIRST);
+        queue.add(new Candidate(prefix, node.max, node));
+        while (!queue.isEmpty() && result.size() < limit) {
+            Candidate next = queue.poll();
+            if (next.node() == null) {
+                result.add(next.display());
+                continue;
+            }
+            Node current = next.node();
+            if (current.count > 0) {
+                queue.add(new Candidate(next.key(), current.count, null, current.display));
+            }
+            for (int i = 0; i < current.childCount; i++) {
+                Node child = current.children[i];
+                queue.add(new Candidate(next.key() + current.keys[i], child.max, child));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct terms.
+     * @return the number of terms
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every term.
+     */
+    void clear() {
+        root.childCount = 0;
+        root.keys = new char[0];
+        root.children = new Node[0];
+        root.count = 0;
+        root.max = 0;
+        root.display = null;
+        size = 0;
+    }
+
+    /**
+     * A term or a subtree waiting to be visited.
+     * @param key the term, or the path of the subtree
+     * @param count the term's count, or the highest count in the subtree
+     * @param node the subtree, or null for a term
+     * @param display the display form of the term
+     */
+    private record Candidate(String key, int count, Node node, String display) {
+        Candidate(String key, int count, Node node) {
+            this(key, count, node, null);
+        }
+    }
+
+    /**
+     * A trie node; the term it ends is the path from the root.
+     */
+    private static final class Node {
+        /** Sorted child edge characters. */
+        private char[] keys = new char[0];
+        /** Children, parallel to keys. */
+        private Node[] children = new Node[0];
+        /** Number of children in use. */
+        private int childCount;
+        /** Number of listings using the term ending here. */
+        private int count;
+        /** Highest count in this subtree, including this node. */
+        private int max;
+        /** Display form of the term ending here, if count is positive. */
+        private String display;
+
+        private Node child(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        private Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, at, keys, at + 1, childCount - at);
+            System.arraycopy(children, at, children, at + 1, childCount - at);
+            Node child = new Node();
+            keys[at] = c;
+            children[at] = child;
+            childCount++;
+            return child;
+        }
+
+        private void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            if (i < 0) {
+                return;
+            }
+            System.arraycopy(keys, i + 1, keys, i, childCount - i - 1);
+            System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+            children[--childCount] = null;
+        }
+
+        private void recomputeMax() {
+            int best = count;
+            for (int i = 0; i < childCount; i++) {
+                best = Math.max(best, children[i].max);
+            }
+            max = best;
+        }
+    }
+}
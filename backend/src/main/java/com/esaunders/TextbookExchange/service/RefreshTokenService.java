@@ -0,0 +1,144 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.esaunders.TextbookExchange.config.JwtProperties;
+import com.esaunders.TextbookExchange.dtos.CustomUserDetails;
+import com.esaunders.TextbookExchange.model.RefreshToken;
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.repository.RefreshTokenRepository;
+
+/**
+ * Service issuing access and refresh token pairs. Refresh tokens are random,
+ * stored only as a hash, and single use: each refresh marks the token used and
+ * issues a new one in the same family. A used token presented again has been
+ * copied, so the whole family is deleted and the login must be repeated, unless
+ * it was rotated moments ago: tabs sharing a token often refresh together, and
+ * the later one is refused without ending the session the earlier one renewed.
+ * @author Ethan Saunders
+ */
+@Service
+public class RefreshTokenService {
+
+    /** Number of random bytes in a refresh token. */
+    private static final int TOKEN_BYTES = 32;
+
+    /** Source of refresh tokens. */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /** Repository of refresh tokens. */
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    /** Service issuing and revoking access tokens. */
+    private final JwtService jwtService;
+
+    /** Token lifetimes. */
+    private final JwtProperties properties;
+
+    /**
+     * An access token and the refresh token that renews it.
+     * @param accessToken the access token
+     * @param refreshToken the refresh token
+     */
+    public record TokenPair(String accessToken, String refreshToken) {
+    }
+
+    /**
+     * Constructs the service.
+     * @param refreshTokenRepository the refresh token repository
+     * @param jwtService the JWT service
+     * @param properties the token lifetimes
+     */
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, JwtService jwtService,
+            JwtProperties properties) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.jwtService = jwtService;
+        this.properties = properties;
+    }
+
+    /**
+     * Issues a token pair for a user who has just logged in, starting a new family.
+     * @param user the user
+     * @return the token pair
+     */
+    @Transactional
+    public TokenPair issue(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Trades a refresh token for a new pair.
+     * @param refreshToken the refresh token
+     * @return the new token pair, or null if the token is unknown, expired or already used
+     */
+    @Transactional
+    public TokenPair rotate(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return null;
+        }
+        RefreshToken current = refreshTokenRepository.findForUpdate(hash(refreshToken)).orElse(null);
+        if (current == null) {
+            return null;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (current.getUsedAt() != null) {
+            if (current.getUsedAt().plus(properties.getRefreshReuseGrace()).isAfter(now)) {
+                // Another tab rotated it moments ago; the token it received stays valid
+                return null;
+            }
+            System.out.println("Refresh token reused, ending its sessions: family " + current.getFamilyId());
+            refreshTokenRepository.deleteFamily(current.getFamilyId());
+            return null;
+        }
+        if (!current.getExpiresAt().isAfter(now)) {
+            return null;
+        }
+        current.setUsedAt(now);
+        return issue(current.getUser(), current.getFamilyId());
+    }
+
+    /**
+     * Ends a session: deletes the refresh token's family and revokes the access token.
+     * @param refreshToken the refresh token, or null
+     * @param accessToken the verified access token, or null
+     */
+    @Transactional
+    public void logout(String refreshToken, JwtService.VerifiedToken accessToken) {
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            refreshTokenRepository.findForUpdate(hash(refreshToken))
+                .ifPresent(token -> refreshTokenRepository.deleteFamily(token.getFamilyId()));
+        }
+        if (accessToken != null) {
+            jwtService.revoke(accessToken);
+        }
+    }
+
+    private TokenPair issue(User user, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        LocalDateTime now = LocalDateTime.now();
+        refreshTokenRepository.save(new RefreshToken(null, user, hash(refreshToken), familyId,
+            now.plus(properties.getRefreshTokenTtl()), now, null));
+        return new TokenPair(jwtService.generateToken(new CustomUserDetails(user)), refreshToken);
+    }
+
+    private static String hash(String refreshToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.esaunders.TextbookExchange.config.JwtProperties;
+import com.esaunders.TextbookExchange.model.RevokedToken;
+import com.esaunders.TextbookExchange.repository.RefreshTokenRepository;
+import com.esaunders.TextbookExchange.repository.RevokedTokenRepository;
+
+/**
+ * The access tokens revoked before they expire, checked on every request
+ * without the database. Revoked token IDs are held in a Bloom filter in front
+ * of an exact set: almost every token is answered by the filter alone, and the
+ * few it reports as possibly revoked are confirmed against the set.
+ * <p>
+ * Revocations made here take effect at once; those made by other instances are
+ * read from the database every few seconds, in id order. Entries are
+ * dropped when their token expires, and the filter is rebuilt to match.
+ * @author Ethan Saunders
+ */
+@Service
+public class RevocationList implements DisposableBean {
+
+    /** Number of revocations read per query. */
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    /** Smallest number of revocations the filter is sized for. */
+    private static final int MIN_CAPACITY = 1024;
+
+    /** How far back each refresh re-reads, for revocations committed out of id order. */
+    private static final Duration COMMIT_WINDOW = Duration.ofMinutes(1);
+
+    /** How often expired revocations and refresh tokens are deleted from the database. */
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    /** Repository of revoked tokens. */
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    /** Repository of refresh tokens, purged along with revocations. */
+    private final RefreshTokenRepository refreshTokenRepository;
+
+    /** Configuration of tokens and revocation. */
+    private final JwtProperties properties;
+
+    /** The clock deciding which revocations have expired. */
+    private final Clock clock;
+
+    /** Revoked token IDs, with when each token expires. */
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * Filter over the revoked token IDs. It is never modified once published:
+     * additions are made to a copy, which then replaces it.
+     */
+    private volatile BloomFilter filter;
+
+    /** The number of revocations the filter is sized for. */
+    private long capacity;
+
+    /** The id of the last revocation read from the database. */
+    private long lastId;
+
+    /** When the database was last purged. */
+    private Instant lastPurge;
+
+    /** Runs the scheduled refreshes, once started. */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs the revocation list.
+     * @param revokedTokenRepository the revoked token repository
+     * @param refreshTokenRepository the refresh token repository
+     * @param properties the token configuration
+     */
+    @Autowired
+    public RevocationList(RevokedTokenRepository revokedTokenRepository,
+            RefreshTokenRepository refreshTokenRepository, JwtProperties properties) {
+        this(revokedTokenRepository, refreshTokenRepository, properties, Clock.systemDefaultZone());
+    }
+
+    RevocationList(RevokedTokenRepository revokedTokenRepository, RefreshTokenRepository refreshTokenRepository,
+            JwtProperties properties, Clock clock) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.properties = properties;
+        this.clock = clock;
+        this.capacity = MIN_CAPACITY;
+        this.filter = new BloomFilter(capacity, properties.getRevocationFalsePositiveRate());
+        this.lastPurge = clock.instant();
+    }
+
+    /**
+     * Loads the revocations and schedules refreshes once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "token-revocations");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = properties.getRevocationRefreshInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                // Keep the schedule; the next refresh reads from the same id
+                System.err.println("Failed to refresh revoked tokens: " + e.getMessage());
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks whether a token has been revoked.
+     * @param tokenId the token's ID
+     * @return true if the token is revoked
+     */
+    public boolean isRevoked(String tokenId) {
+        return filter.mightContain(tokenId) && revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Revokes a token, here at once and on other instances at their next refresh.
+     * @param tokenId the token's ID
+     * @param expiresAt when the token expires; it is forgotten after that
+     */
+    public void revoke(String tokenId, Instant expiresAt) {
+        Instant now = clock.instant();
+        if (!expiresAt.isAfter(now)) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(null, tokenId, toLocal(expiresAt), toLocal(now)));
+        synchronized (this) {
+            if (revoked.putIfAbsent(tokenId, expiresAt) == null) {
+                publish(List.of(tokenId));
+            }
+        }
+    }
+
+    /**
+     * Reads revocations made since the last refresh, drops expired ones and
+     * purges the database when due.
+     */
+    public synchronized void refresh() {
+        Instant now = clock.instant();
+        List<String> added = new ArrayList<>();
+        for (RevokedToken row : revokedTokenRepository.findRevokedSince(toLocal(now.minus(COMMIT_WINDOW)))) {
+            load(row, now, added);
+        }
+        List<RevokedToken> page;
+        do {
+            page = revokedTokenRepository.findAfter(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (RevokedToken row : page) {
+                lastId = Math.max(lastId, row.getId());
+                load(row, now, added);
+            }
+        } while (page.size() == LOAD_BATCH_SIZE);
+
+        boolean expired = revoked.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        if (expired || revoked.size() > capacity) {
+            rebuild();
+        } else if (!added.isEmpty()) {
+            publish(added);
+        }
+
+        if (Duration.between(lastPurge, now).compareTo(PURGE_INTERVAL) >= 0) {
+            lastPurge = now;
+            revokedTokenRepository.deleteExpired(toLocal(now));
+            refreshTokenRepository.deleteExpired(toLocal(now));
+        }
+    }
+
+    /**
+     * Returns the number of revoked tokens that have not expired.
+     * @return the number of revoked tokens
+     */
+    public int size() {
+        return revoked.size();
+    }
+
+    private void load(RevokedToken row, Instant now, List<String> added) {
+        Instant expiresAt = row.getExpiresAt().atZone(clock.getZone()).toInstant();
+        if (expiresAt.isAfter(now) && revoked.putIfAbsent(row.getTokenId(), expiresAt) == null) {
+            added.add(row.getTokenId());
+        }
+    }
+
+    /** Publishes a copy of the filter with more token IDs; the set must already hold them. */
+    private void publish(Collection<String> tokenIds) {
+        if (revoked.size() > capacity) {
+            rebuild();
+            return;
+        }
+        BloomFilter next = filter.copy();
+        tokenIds.forEach(next::add);
+        filter = next;
+    }
+
+    /** Publishes a new filter sized for the current set, with room to grow. */
+    private void rebuild() {
+        capacity = Math.max(MIN_CAPACITY, 2L * revoked.size());
+        BloomFilter next = new BloomFilter(capacity, properties.getRevocationFalsePositiveRate());
+        revoked.keySet().forEach(next::add);
+        filter = next;
+    }
+
+    private LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, clock.getZone());
+    }
+
+    /**
+     * Stops the scheduled refreshes.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
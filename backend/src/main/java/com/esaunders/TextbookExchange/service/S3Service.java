@@ -1,9 +1,36 @@
 package com.esaunders.TextbookExchange.service;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,19 +42,26 @@ import org.springframework.beans.factory.annotation.Value;
  * @author Ethan Saunders
  */
 @Service
-public class S3Service {
+public class S3Service implements ImageOrigin {
+    /** Largest number of keys S3 accepts in one DeleteObjects request. */
+    public static final int MAX_DELETE_BATCH = 1000;
+
     /** S3 client for AWS operations. */
     private final S3Client s3Client;
+    /** Signs URLs that let clients upload directly to S3. */
+    private final S3Presigner s3Presigner;
     /** S3 bucket name. */
     private final String bucketName;
 
     /**
-     * Constructs the S3Service with the given S3 client and bucket name.
+     * Constructs the S3Service with the given S3 client, presigner and bucket name.
      * @param s3Client the S3 client
+     * @param s3Presigner the S3 presigner
      * @param bucketName the S3 bucket name
      */
-    public S3Service(S3Client s3Client, @Value("${aws.s3.bucket}") String bucketName) {
+    public S3Service(S3Client s3Client, S3Presigner s3Presigner, @Value("${aws.s3.bucket}") String bucketName) {
         this.s3Client = s3Client;
+        this.s3Presigner = s3Presigner;
         this.bucketName = bucketName;
     }
 
@@ -39,18 +73,272 @@ public class S3Service {
      * @throws Exception if upload fails
      */
     public String uploadFile(MultipartFile file, String keyName) throws Exception {
+        try (InputStream in = file.getInputStream()) {
+            return uploadStream(in, file.getSize(), file.getContentType(), keyName);
+        }
+    }
+
+    /**
+     * Uploads the contents of a stream to S3 and returns the public URL.
+     * Safe to call from several threads at once; the S3 client is thread-safe.
+     * @param in the content to upload; not closed
+     * @param size the content length in bytes
+     * @param contentType the media type of the content, or null
+     * @param keyName the S3 object key
+     * @return the public URL of the uploaded file
+     * @throws Exception if upload fails
+     */
+    public String uploadStream(InputStream in, long size, String contentType, String keyName) throws Exception {
         try {
             s3Client.putObject(
                 PutObjectRequest.builder()
                     .bucket(bucketName)
                     .key(keyName)
+                    .contentType(contentType)
                     .build(),
-                RequestBody.fromInputStream(file.getInputStream(), file.getSize())
+                RequestBody.fromInputStream(in, size)
             );
-            return String.format("https://%s.s3.amazonaws.com/%s", bucketName, keyName);
+            return urlOf(keyName);
         } catch (S3Exception e) {
             // Log the error and rethrow as a generic exception or custom exception
             throw new Exception("Failed to upload file to S3: " + e.awsErrorDetails().errorMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Uploads a processed listing image and its variants. The variants are stored
+     * next to the full-size image, under keys derived by {@link ImageProcessor#variantKey}.
+     * @param images the processed image
+     * @param keyName the S3 object key of the full-size image
+     * @return the URLs of the stored images and the placeholder
+     * @throws Exception if any upload fails
+     */
+    public ListingImages uploadImages(ImageProcessor.ProcessedImage images, String keyName) throws Exception {
+        String imageUrl = uploadBytes(images.full(), keyName);
+        String mediumUrl = uploadBytes(images.medium(), ImageProcessor.variantKey(keyName, "medium"));
+        String thumbnailUrl = uploadBytes(images.thumbnail(), ImageProcessor.variantKey(keyName, "thumb"));
+        return new ListingImages(imageUrl, mediumUrl, thumbnailUrl, images.blurhash(), null);
+    }
+
+    /**
+     * Uploads a processed listing image and its variants, skipping any object already in S3.
+     * Meant for content-addressed keys, where an existing object holds the same bytes.
+     * @param images the processed image
+     * @param keyName the S3 object key of the full-size image
+     * @return the URLs of the stored images and the placeholder
+     * @throws Exception if any upload fails
+     */
+    public ListingImages uploadImagesIfAbsent(ImageProcessor.ProcessedImage images, String keyName)
+            throws Exception {
+        String imageUrl = uploadBytesIfAbsent(images.full(), keyName);
+        String mediumUrl = uploadBytesIfAbsent(images.medium(), ImageProcessor.variantKey(keyName, "medium"));
+        String thumbnailUrl = uploadBytesIfAbsent(images.thumbnail(), ImageProcessor.variantKey(keyName, "thumb"));
+        return new ListingImages(imageUrl, mediumUrl, thumbnailUrl, images.blurhash(), null);
+    }
+
+    /**
+     * Deletes a listing image and its variants.
+     * @param keyName the S3 object key of the full-size image
+     * @throws Exception if any delete fails
+     */
+    public void deleteImages(String keyName) throws Exception {
+        deleteFile(keyName);
+        deleteFile(ImageProcessor.variantKey(keyName, "medium"));
+        deleteFile(ImageProcessor.variantKey(keyName, "thumb"));
+    }
+
+    private String uploadBytes(byte[] bytes, String keyName) throws Exception {
+        return uploadStream(new ByteArrayInputStream(bytes), bytes.length, ImageProcessor.CONTENT_TYPE, keyName);
+    }
+
+    private String uploadBytesIfAbsent(byte[] bytes, String keyName) throws Exception {
+        if (headFile(keyName) != null) {
+            return urlOf(keyName);
+        }
+        return uploadBytes(bytes, keyName);
+    }
+
+    private String urlOf(String keyName) {
+        return String.format("https://%s.s3.amazonaws.com/%s", bucketName, keyName);
+    }
+
+    /**
+     * Returns the key of an object from the URL returned when it was uploaded.
+     * @param url the object URL
+     * @return the key, or null if the URL is not of an object in this bucket
+     */
+    public String keyOf(String url) {
+        String prefix = urlOf("");
+        return url != null && url.startsWith(prefix) && url.length() > prefix.length()
+            ? url.substring(prefix.length()) : null;
+    }
+
+    /**
+     * Lists one page of objects under a prefix, in key order.
+     * @param prefix the key prefix
+     * @param startAfter list keys after this one, or null to start at the beginning
+     * @param maxKeys the largest number of keys to return, at most 1000
+     * @return the page of objects; isTruncated() tells whether more follow
+     * @throws Exception if the listing fails
+     */
+    public ListObjectsV2Response listFiles(String prefix, String startAfter, int maxKeys) throws Exception {
+        try {
+            return s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .startAfter(startAfter)
+                .maxKeys(maxKeys)
+                .build());
+        } catch (S3Exception e) {
+            throw new Exception("Failed to list files in S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes many objects with one DeleteObjects request. Deleting a missing object succeeds.
+     * @param keyNames the S3 object keys, at most {@link #MAX_DELETE_BATCH}
+     * @return the keys that could not be deleted
+     * @throws Exception if the request fails
+     */
+    public List<String> deleteFiles(Collection<String> keyNames) throws Exception {
+        if (keyNames.size() > MAX_DELETE_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_DELETE_BATCH + " keys can be deleted at once");
+        }
+        if (keyNames.isEmpty()) {
+            return List.of();
+        }
+        List<ObjectIdentifier> objects = new ArrayList<>(keyNames.size());
+        for (String keyName : keyNames) {
+            objects.add(ObjectIdentifier.builder().key(keyName).build());
+        }
+        try {
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(objects).quiet(true).build())
+                .build());
+            List<String> failed = new ArrayList<>();
+            response.errors().forEach(error -> failed.add(error.key()));
+            return failed;
+        } catch (S3Exception e) {
+            throw new Exception("Failed to delete files from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes an object from S3. Deleting a missing object succeeds.
+     * @param keyName the S3 object key
+     * @throws Exception if the delete fails
+     */
+    public void deleteFile(String keyName) throws Exception {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName)
+                .build());
+        } catch (S3Exception e) {
+            throw new Exception("Failed to delete file from S3: " + e.awsErrorDetails().errorMessage(), e);
+        }
+    }
+
+    /**
+     * Signs a URL that lets a client PUT one object directly to S3.
+     * The content type and length are signed, so S3 rejects an upload of any other type or size.
+     * @param keyName the S3 object key
+     * @param contentType the media type the client must send
+     * @param size the exact content length the client must send
+     * @param expiry how long the URL stays valid
+     * @return the signed URL and the headers the client must send with it
+     */
+    public PresignedUpload presignUpload(String keyName, String contentType, long size, Duration expiry) {
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+            .signatureDuration(expiry)
+            .putObjectRequest(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName)
+                .contentType(contentType)
+                .contentLength(size)
+                .build())
+            .build());
+        Map<String, String> headers = new LinkedHashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            // Browsers set Host themselves and refuse to send it from scripts
+            if (!"host".equalsIgnoreCase(name)) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return new PresignedUpload(keyName, presigned.url().toString(), headers, presigned.expiration());
+    }
+
+    /**
+     * Reads the metadata of an object without downloading it.
+     * @param keyName the S3 object key
+     * @return the object metadata, or null if there is no such object
+     * @throws Exception if the request fails
+     */
+    public HeadObjectResponse headFile(String keyName) throws Exception {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName)
+                .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                // HEAD responses have no body, so a missing key is not always reported as NoSuchKey
+                return null;
+            }
+            throw new Exception("Failed to read file metadata from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens an object for reading. The caller must close the stream.
+     * @param keyName the S3 object key
+     * @return the object content
+     * @throws Exception if the object cannot be read
+     */
+    public InputStream openFile(String keyName) throws Exception {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName)
+                .build());
+        } catch (S3Exception e) {
+            throw new Exception("Failed to read file from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Downloads an object to a file, for the image proxy.
+     * @param keyName the S3 object key
+     * @param target the file to create; it must not exist
+     * @return the object metadata, or null if there is no such object
+     * @throws Exception if the download fails
+     */
+    @Override
+    public ObjectInfo fetch(String keyName, Path target) throws Exception {
+        try {
+            GetObjectResponse response = s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName)
+                .build(), ResponseTransformer.toFile(target));
+            return new ObjectInfo(response.contentLength(), response.contentType(), response.eTag(),
+                response.lastModified());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            throw new Exception("Failed to read file from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A URL signed for a direct upload to S3.
+     * @param key the S3 object key the upload is stored under
+     * @param url the URL to PUT the content to
+     * @param headers the headers that must be sent with the PUT
+     * @param expiresAt when the URL stops being accepted
+     */
+    public record PresignedUpload(String key, String url, Map<String, String> headers, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Service;
+
+import com.esaunders.TextbookExchange.dtos.SuggestionDto;
+
+/**
+ * Service for typeahead suggestions of course codes and titles.
+ * Suggestions are served from in-memory prefix tries that are loaded at startup
+ * and kept current as listings are posted and deleted, so lookups never reach
+ * the database.
+ * @author Ethan Saunders
+ */
+@Service
+public class SuggestionService {
+    /** Default number of suggestions of each kind. */
+    public static final int DEFAULT_LIMIT = 5;
+
+    /** Largest number of suggestions of each kind a client may request. */
+    public static final int MAX_LIMIT = 10;
+
+    /** Longest title kept in the trie; longer titles are truncated. */
+    static final int MAX_TITLE_LENGTH = 100;
+
+    /** Course codes in use, keyed by their upper-case form. */
+    private final PrefixTrie courseCodes = new PrefixTrie();
+
+    /** Titles in use, keyed by their lower-case form. */
+    private final PrefixTrie titles = new PrefixTrie();
+
+    /** Guards both tries; lookups share the read lock. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Returns the most used course codes and titles starting with a prefix.
+     * @param prefix the prefix typed so far
+     * @param limit the maximum number of suggestions of each kind
+     * @return the suggestions, most used first
+     */
+    public SuggestionDto suggest(String prefix, int limit) {
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String normalized = prefix == null ? "" : prefix.trim();
+        if (normalized.isEmpty()) {
+            return new SuggestionDto(List.of(), List.of());
+        }
+        lock.readLock().lock();
+        try {
+            return new SuggestionDto(
+                courseCodes.top(normalized.toUpperCase(Locale.ROOT), k),
+                titles.top(titleKey(normalized), k));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the course code and title of a posted listing.
+     * Course codes that do not match the listing format are ignored.
+     * @param courseCode the listing's course code
+     * @param title the listing's title
+     */
+    public void add(String courseCode, String title) {
+        lock.writeLock().lock();
+        try {
+            if (isValidCourseCode(courseCode)) {
+                String code = courseCode.toUpperCase(Locale.ROOT);
+                courseCodes.add(code, code);
+            }
+            if (title != null && !title.isBlank()) {
+                String display = truncate(title.trim());
+                titles.add(titleKey(display), display);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets the course code and title of a deleted listing.
+     * @param courseCode the listing's course code
+     * @param title the listing's title
+     */
+    public void remove(String courseCode, String title) {
+        lock.writeLock().lock();
+        try {
+            if (isValidCourseCode(courseCode)) {
+                courseCodes.remove(courseCode.toUpperCase(Locale.ROOT));
+            }
+            if (title != null && !title.isBlank()) {
+                titles.remove(titleKey(truncate(title.trim())));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every suggestion, ahead of a reload.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            courseCodes.clear();
+            titles.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct course codes and titles known.
+     * @return the number of suggestion terms
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return courseCodes.size() + titles.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean isValidCourseCode(String courseCode) {
+        return courseCode != null && ListingService.COURSE_CODE_PATTERN.matcher(courseCode).matches();
+    }
+
+    private static String titleKey(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    private static String truncate(String title) {
+        return title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title;
+    }
+}
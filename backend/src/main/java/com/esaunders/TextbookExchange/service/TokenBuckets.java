@@ -0,0 +1,129 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket rate limits by key. Each key holds up to a burst of tokens,
+ * refilled at a steady rate, and each call takes one. Keys are spread over
+ * independently locked stripes so that concurrent callers rarely contend.
+ * <p>
+ * Memory is bounded: when a stripe is full, buckets that have refilled
+ * completely are dropped, as they are the same as no bucket at all; if that is
+ * not enough, arbitrary buckets are dropped, forgetting some clients' recent use.
+ * @author Ethan Saunders
+ */
+final class TokenBuckets {
+
+    /** Number of stripes; a power of two. */
+    private static final int STRIPES = 64;
+
+    /** The stripes, each with its own lock. */
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /** Tokens a bucket holds when full. */
+    private final double burst;
+
+    /** Tokens added per nanosecond. */
+    private final double refillPerNano;
+
+    /** Buckets held per stripe. */
+    private final int maxPerStripe;
+
+    /** The time source, in nanoseconds. */
+    private final LongSupplier nanoTime;
+
+    /**
+     * Creates the limits.
+     * @param burst the tokens a bucket holds when full
+     * @param perMinute the tokens added per minute
+     * @param maxKeys the approximate number of keys tracked
+     * @param nanoTime the time source, in nanoseconds
+     */
+    TokenBuckets(int burst, double perMinute, int maxKeys, LongSupplier nanoTime) {
+        if (burst < 1 || perMinute <= 0) {
+            throw new IllegalArgumentException("Rate limits need a burst of at least 1 and a positive rate");
+        }
+        this.burst = burst;
+        this.refillPerNano = perMinute / 60_000_000_000.0;
+        this.maxPerStripe = Math.max(1, maxKeys / STRIPES);
+        this.nanoTime = nanoTime;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Takes a token from a key's bucket, if it has one.
+     * @param key the key
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    long tryAcquire(String key) {
+        Stripe stripe = stripes[spread(key.hashCode()) & (STRIPES - 1)];
+        synchronized (stripe) {
+            long now = nanoTime.getAsLong();
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                if (stripe.buckets.size() >= maxPerStripe) {
+                    stripe.evict(now);
+                }
+                bucket = new Bucket(burst, now);
+                stripe.buckets.put(key, bucket);
+            }
+            bucket.refill(now);
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / refillPerNano);
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /** A stripe of buckets, locked as a whole. */
+    private final class Stripe {
+        /** Buckets by key. */
+        private final Map<String, Bucket> buckets = new HashMap<>();
+
+        /** Drops full buckets, then arbitrary ones, until there is room for one more. */
+        private void evict(long now) {
+            Iterator<Bucket> it = buckets.values().iterator();
+            while (it.hasNext()) {
+                Bucket bucket = it.next();
+                bucket.refill(now);
+                if (bucket.tokens >= burst) {
+                    it.remove();
+                }
+            }
+            it = buckets.values().iterator();
+            while (buckets.size() >= maxPerStripe && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /** The tokens of one key. */
+    private final class Bucket {
+        /** Tokens available, possibly fractional. */
+        private double tokens;
+
+        /** When tokens was last brought up to date. */
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - updatedAt) * refillPerNano);
+            updatedAt = now;
+        }
+    }
+}
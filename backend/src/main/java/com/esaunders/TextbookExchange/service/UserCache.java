@@ -0,0 +1,93 @@
+package com.esaunders.TextbookExchange.service;
+
+import org.springframework.stereotype.Component;
+
+import com.esaunders.TextbookExchange.config.UserCacheProperties;
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Short-lived cache of users by ID and by email, so authenticated requests do
+ * not load the user from the database every time. Callers get their own copy of
+ * the cached user, which they may modify and save; whoever saves or deletes a
+ * user evicts it.
+ * @author Ethan Saunders
+ */
+@Component
+public class UserCache {
+
+    /** Repository the cache loads users from. */
+    private final UserRepository userRepository;
+
+    /** Users by ID. */
+    private final Cache<Long, User> byId;
+
+    /** Users by email. */
+    private final Cache<String, User> byEmail;
+
+    /**
+     * Creates the caches and registers their metrics.
+     * @param userRepository the user repository
+     * @param properties the cache size and TTL
+     * @param meterRegistry the registry for cache metrics
+     */
+    public UserCache(UserRepository userRepository, UserCacheProperties properties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.byId = Caffeine.newBuilder()
+            .maximumSize(properties.getMaxSize())
+            .expireAfterWrite(properties.getTtl())
+            .recordStats()
+            .build();
+        this.byEmail = Caffeine.newBuilder()
+            .maximumSize(properties.getMaxSize())
+            .expireAfterWrite(properties.getTtl())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users.id");
+        CaffeineCacheMetrics.monitor(meterRegistry, byEmail, "users.email");
+    }
+
+    /**
+     * Returns a user by ID, loading it on a miss. Missing users are not cached.
+     * @param id the user ID
+     * @return a copy of the user, or null if there is no such user
+     */
+    public User findById(Long id) {
+        return copyOf(byId.get(id, key -> userRepository.findById(key).orElse(null)));
+    }
+
+    /**
+     * Returns a user by email, loading it on a miss. Missing users are not cached.
+     * @param email the user's email
+     * @return a copy of the user, or null if there is no such user
+     */
+    public User findByEmail(String email) {
+        return copyOf(byEmail.get(email, key -> userRepository.findByEmail(key).orElse(null)));
+    }
+
+    /**
+     * Evicts a user that was saved or deleted.
+     * @param user the user
+     */
+    public void evict(User user) {
+        if (user.getId() != null) {
+            byId.invalidate(user.getId());
+        }
+        if (user.getEmail() != null) {
+            byEmail.invalidate(user.getEmail());
+        }
+    }
+
+    private static User copyOf(User user) {
+        if (user == null) {
+            return null;
+        }
+        return new User(user.getId(), user.getFirstName(), user.getLastName(), user.getUsername(),
+            user.getEmail(), user.getPassword(), user.isVerified(), user.getCreatedAt());
+    }
+}
@@ -3,7 +3,6 @@ package com.esaunders.TextbookExchange.service;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import com.esaunders.TextbookExchange.dtos.CustomUserDetails;
 import com.esaunders.TextbookExchange.model.User;
@@ -13,7 +12,8 @@ import lombok.AllArgsConstructor;
 
 /**
  * Service for user-related operations.
- * Handles retrieval of the authenticated user from the security context.
+ * Handles retrieval of the authenticated user from the security context,
+ * through the user cache, and saving users so the cache stays current.
  * @author Ethan Saunders
  */
 @AllArgsConstructor
@@ -22,12 +22,14 @@ public class UserService {
     /** Repository for accessing user data. */
     private UserRepository userRepository;
 
+    /** Cache of users, evicted whenever a user is saved. */
+    private UserCache userCache;
+
     /**
      * Retrieves the currently authenticated user from the security context.
      * @return the authenticated User
      * @throws RuntimeException if the user is unauthenticated or invalid
      */
-    @Transactional
     public User getAuthenticatedUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || !auth.isAuthenticated()) {
@@ -36,11 +38,38 @@ public class UserService {
 
         Object principal = auth.getPrincipal();
         if (principal instanceof CustomUserDetails customUser) {
-            User user = userRepository.findById(customUser.getId())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+            User user = userCache.findById(customUser.getId());
+            if (user == null) {
+                throw new RuntimeException("User not found");
+            }
             return user;
         } else {
             throw new RuntimeException("Invalid user");
         }
     }
+
+    /**
+     * Marks a user verified, once: a second attempt finds the user already verified.
+     * @param userId the user's ID
+     * @return true if the user exists and was verified by this call
+     */
+    public boolean markVerified(Long userId) {
+        User user = userRepository.findById(userId).orElse(null);
+        if (user == null || userRepository.markVerified(userId) == 0) {
+            return false;
+        }
+        userCache.evict(user);
+        return true;
+    }
+
+    /**
+     * Saves a user and evicts it from the user cache.
+     * @param user the user
+     * @return the saved user
+     */
+    public User save(User user) {
+        User saved = userRepository.save(user);
+        userCache.evict(user);
+        return saved;
+    }
 }
@@ -0,0 +1,157 @@
+package com.esaunders.TextbookExchange.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.model.VerificationToken;
+import com.esaunders.TextbookExchange.repository.VerificationTokenRepository;
+
+/**
+ * Service issuing and checking the tokens in email verification links.
+ * <p>
+ * With signed links (the default) a token is {@code <user id>.<expiry>.<mac>}:
+ * the user's ID and the link's expiry in epoch seconds, signed with HMAC-SHA256.
+ * Nothing is stored; the MAC is checked in constant time, and a link can only
+ * verify an account once because verifying flips the user's verified flag.
+ * The MAC key is derived from the JWT secret, so no other secret is needed.
+ * <p>
+ * Otherwise each token is a random ID stored in verification_tokens. Stored
+ * tokens are accepted in both modes, so links sent before switching still work.
+ * @author Ethan Saunders
+ */
+@Service
+public class VerificationLinkService {
+
+    /** The MAC algorithm. */
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /** What the MAC key is derived for, so it differs from the JWT signing key. */
+    private static final byte[] KEY_PURPOSE = "email-verification".getBytes(StandardCharsets.UTF_8);
+
+    /** Repository of stored verification tokens. */
+    private final VerificationTokenRepository verificationTokenRepository;
+
+    /** The MAC key. */
+    private final SecretKeySpec key;
+
+    /** Whether new links are signed rather than stored. */
+    private final boolean signedLinks;
+
+    /** How long a link is valid. */
+    private final Duration linkTtl;
+
+    /** The clock deciding when links expire. */
+    private final Clock clock;
+
+    /**
+     * Constructs the service.
+     * @param verificationTokenRepository the verification token repository
+     * @param secret the JWT secret, from which the MAC key is derived
+     * @param signedLinks whether new links are signed rather than stored
+     * @param linkTtl how long a link is valid
+     */
+    @Autowired
+    public VerificationLinkService(VerificationTokenRepository verificationTokenRepository,
+            @Value("${JWT_SECRET}") String secret,
+            @Value("${verification.signed-links:true}") boolean signedLinks,
+            @Value("${verification.link-ttl:1h}") Duration linkTtl) {
+        this(verificationTokenRepository, secret, signedLinks, linkTtl, Clock.systemDefaultZone());
+    }
+
+    VerificationLinkService(VerificationTokenRepository verificationTokenRepository, String secret,
+            boolean signedLinks, Duration linkTtl, Clock clock) {
+        this.verificationTokenRepository = verificationTokenRepository;
+        this.signedLinks = signedLinks;
+        this.linkTtl = linkTtl;
+        this.clock = clock;
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+            this.key = new SecretKeySpec(mac.doFinal(KEY_PURPOSE), MAC_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Issues the token for a newly registered user's verification link.
+     * @param user the saved user
+     * @return the token, safe to use in a URL as is
+     */
+    public String issue(User user) {
+        if (!signedLinks) {
+            VerificationToken token = new VerificationToken(UUID.randomUUID().toString(), user,
+                LocalDateTime.now(clock).plus(linkTtl));
+            verificationTokenRepository.save(token);
+            return token.getToken();
+        }
+        String payload = user.getId() + "." + clock.instant().plus(linkTtl).getEpochSecond();
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(mac(payload));
+    }
+
+    /**
+     * Checks a verification link's token. A stored token is deleted once checked.
+     * @param token the token
+     * @return the ID of the user to verify, or null if the token is forged, malformed or expired
+     */
+    public Long verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        int macStart = token.lastIndexOf('.');
+        if (macStart < 0) {
+            return verifyStored(token);
+        }
+        String payload = token.substring(0, macStart);
+        byte[] actual;
+        try {
+            actual = Base64.getUrlDecoder().decode(token.substring(macStart + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(mac(payload), actual)) {
+            return null;
+        }
+        int dot = payload.indexOf('.');
+        try {
+            long userId = Long.parseLong(payload.substring(0, dot));
+            long expiresAt = Long.parseLong(payload.substring(dot + 1));
+            return clock.instant().getEpochSecond() < expiresAt ? userId : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Long verifyStored(String token) {
+        VerificationToken stored = verificationTokenRepository.findByToken(token);
+        if (stored == null) {
+            return null;
+        }
+        verificationTokenRepository.delete(stored);
+        return stored.isExpired() ? null : stored.getUser().getId();
+    }
+
+    private byte[] mac(String payload) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+-- CONVERSATION HISTORY
+-- A conversation is addressed by its (lower user ID, higher user ID) pair, so
+-- both directions are read with one index range scan in (timestamp, id) order
+-- and each page of history stops after the rows it returns.
+CREATE INDEX IF NOT EXISTS idx_messages_pair_timestamp_id
+    ON messages (LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id), timestamp, id);
+
+-- Superseded by the pair index above
+DROP INDEX IF EXISTS idx_messages_sender_receiver_timestamp;
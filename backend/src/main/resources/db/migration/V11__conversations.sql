@@ -0,0 +1,40 @@
+-- CONVERSATIONS
+-- Read model for the inbox: one row per pair of users, keyed by (lower user ID,
+-- higher user ID), holding the latest message and each side's unread count.
+-- Rows are upserted in the same transaction that saves each message, so the
+-- inbox never reads the messages table.
+CREATE TABLE IF NOT EXISTS conversations (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_low_id BIGINT NOT NULL,
+    user_high_id BIGINT NOT NULL,
+    last_message_id BIGINT NOT NULL,
+    last_sender_id BIGINT NOT NULL,
+    last_content VARCHAR(255),
+    last_message_at TIMESTAMP(6) NOT NULL,
+    low_unread INTEGER NOT NULL DEFAULT 0,
+    high_unread INTEGER NOT NULL DEFAULT 0,
+    CONSTRAINT uq_conversations_pair UNIQUE (user_low_id, user_high_id),
+    CONSTRAINT fk_conversations_user_low
+        FOREIGN KEY (user_low_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE,
+    CONSTRAINT fk_conversations_user_high
+        FOREIGN KEY (user_high_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
+);
+
+-- A user's inbox is the union of the conversations on either side, newest first
+CREATE INDEX IF NOT EXISTS idx_conversations_low_last_message
+    ON conversations (user_low_id, last_message_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_conversations_high_last_message
+    ON conversations (user_high_id, last_message_at DESC, id DESC);
+
+-- Backfill from existing history; messages sent before this had no read tracking
+INSERT INTO conversations (user_low_id, user_high_id, last_message_id, last_sender_id, last_content, last_message_at)
+SELECT DISTINCT ON (LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id))
+    LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id), id, sender_id, content, timestamp
+FROM messages
+WHERE sender_id IS NOT NULL AND receiver_id IS NOT NULL AND timestamp IS NOT NULL
+ORDER BY LEAST(sender_id, receiver_id), GREATEST(sender_id, receiver_id), timestamp DESC, id DESC
+ON CONFLICT (user_low_id, user_high_id) DO NOTHING;
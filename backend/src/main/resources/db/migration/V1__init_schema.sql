@@ -1,55 +1,63 @@
+-- INITIAL SCHEMA
+-- Mirrors the entities as Hibernate created them before Flyway owned the schema,
+-- so that ddl-auto=validate passes on fresh and existing databases alike.
+-- Existing databases are baselined at version 1 and skip this script.
+
 -- USERS TABLE
 CREATE TABLE users (
-    id SERIAL PRIMARY KEY,
-    first_name VARCHAR(100) NOT NULL,
-    last_name VARCHAR(100) NOT NULL,
-    email VARCHAR(150) UNIQUE NOT NULL,
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    username VARCHAR(255) NOT NULL UNIQUE,
+    email VARCHAR(255) NOT NULL UNIQUE,
     password VARCHAR(255) NOT NULL,
-    verified BOOLEAN DEFAULT FALSE,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    verified BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
 -- BOOK LISTINGS TABLE
 CREATE TABLE book_listings (
-    id SERIAL PRIMARY KEY,
-    title VARCHAR(255) NOT NULL,
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title VARCHAR(255),
     author VARCHAR(255),
-    course_code VARCHAR(50),
-    condition VARCHAR(50),
-    price NUMERIC(10, 2),
-    posted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    owner_id INTEGER REFERENCES users(id) ON DELETE CASCADE
+    isbn VARCHAR(255),
+    course_code VARCHAR(255),
+    price DOUBLE PRECISION NOT NULL,
+    condition VARCHAR(255),
+    description VARCHAR(255),
+    owner_id BIGINT NOT NULL,
+    posted_at TIMESTAMP(6),
+    image_url VARCHAR(255),
+    CONSTRAINT fk_book_listings_owner
+        FOREIGN KEY (owner_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
 );
 
+-- VERIFICATION TOKENS TABLE
 CREATE TABLE verification_tokens (
     token VARCHAR(255) PRIMARY KEY,
-    user_id BIGINT NOT NULL,
-    expiry_time TIMESTAMP NOT NULL,
-    CONSTRAINT fk_user
-      FOREIGN KEY (user_id)
-      REFERENCES users(id)
-      ON DELETE CASCADE
+    user_id BIGINT UNIQUE,
+    expiry_time TIMESTAMP(6),
+    CONSTRAINT fk_verification_tokens_user
+        FOREIGN KEY (user_id)
+        REFERENCES users(id)
+        ON DELETE CASCADE
 );
 
+-- MESSAGES TABLE
 CREATE TABLE messages (
-    id SERIAL PRIMARY KEY,
-    sender_id BIGINT NOT NULL,
-    receiver_id BIGINT NOT NULL,
-    content TEXT NOT NULL,
-    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-    read BOOLEAN DEFAULT FALSE
-);
-
--- Optional: Add foreign keys if you have a users table
--- (Assuming users.id is BIGINT)
-ALTER TABLE messages
-    ADD CONSTRAINT fk_sender
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    sender_id BIGINT,
+    receiver_id BIGINT,
+    content VARCHAR(255),
+    timestamp TIMESTAMP(6),
+    CONSTRAINT fk_messages_sender
         FOREIGN KEY (sender_id)
         REFERENCES users(id)
-        ON DELETE CASCADE;
-
-ALTER TABLE messages
-    ADD CONSTRAINT fk_receiver
+        ON DELETE CASCADE,
+    CONSTRAINT fk_messages_receiver
         FOREIGN KEY (receiver_id)
         REFERENCES users(id)
-        ON DELETE CASCADE;
+        ON DELETE CASCADE
+);
@@ -0,0 +1,25 @@
+-- FULL-TEXT AND TRIGRAM SEARCH FOR BOOK LISTINGS
+-- Used when search.mode=postgres. Written to be re-runnable against databases
+-- whose schema was created by Hibernate before Flyway owned it.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Weighted document: title and course code rank above ISBN and author, then description
+ALTER TABLE book_listings
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(course_code, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(isbn, '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(author, '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(description, '')), 'C')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_book_listings_search_vector
+    ON book_listings USING GIN (search_vector);
+
+-- Trigram indexes let misspelled titles and course codes match through the % operator
+CREATE INDEX IF NOT EXISTS idx_book_listings_title_trgm
+    ON book_listings USING GIN (lower(title) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_book_listings_course_code_trgm
+    ON book_listings USING GIN (lower(course_code) gin_trgm_ops);
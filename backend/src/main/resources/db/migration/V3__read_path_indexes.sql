@@ -0,0 +1,23 @@
+-- INDEXES FOR THE HOT READ PATHS
+-- Written to be re-runnable against databases whose schema was created by
+-- Hibernate before Flyway owned it.
+
+-- Home feed: newest first, paged by the (posted_at, id) keyset
+CREATE INDEX IF NOT EXISTS idx_book_listings_posted_at_id
+    ON book_listings (posted_at DESC, id DESC);
+
+-- My listings and owner lookups, newest first
+CREATE INDEX IF NOT EXISTS idx_book_listings_owner_posted_at
+    ON book_listings (owner_id, posted_at DESC, id DESC);
+
+-- Exact course-code lookups; substring matches use the trigram index from V2
+CREATE INDEX IF NOT EXISTS idx_book_listings_course_code
+    ON book_listings (course_code);
+
+-- Conversation history between two users, in time order
+CREATE INDEX IF NOT EXISTS idx_messages_sender_receiver_timestamp
+    ON messages (sender_id, receiver_id, timestamp);
+
+-- Messages received by a user
+CREATE INDEX IF NOT EXISTS idx_messages_receiver_timestamp
+    ON messages (receiver_id, timestamp);
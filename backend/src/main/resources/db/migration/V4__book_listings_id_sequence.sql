@@ -0,0 +1,12 @@
+-- SEQUENCE IDS FOR BOOK LISTINGS
+-- IDENTITY keys force Hibernate to insert rows one at a time to read back each ID.
+-- A sequence incremented by 50 matches the pooled allocation of the entity, so
+-- one nextval covers 50 listings and inserts can be sent in JDBC batches.
+ALTER TABLE book_listings ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE book_listings ALTER COLUMN id DROP DEFAULT;
+
+CREATE SEQUENCE IF NOT EXISTS book_listings_seq INCREMENT BY 50 OWNED BY book_listings.id;
+
+-- The pooled optimizer hands out the 50 IDs ending at each value it draws,
+-- so the first value must sit 50 past the highest existing ID
+SELECT setval('book_listings_seq', (SELECT coalesce(max(id), 0) + 50 FROM book_listings), false);
@@ -0,0 +1,7 @@
+-- LISTING STATUS
+-- Listings are saved as PENDING_IMAGE while their image uploads in the
+-- background and become ACTIVE once it is stored. Existing listings are active.
+ALTER TABLE book_listings ADD COLUMN IF NOT EXISTS status varchar(20) NOT NULL DEFAULT 'ACTIVE';
+
+-- Pending listings are few and short-lived; this finds the ones abandoned by a restart
+CREATE INDEX IF NOT EXISTS idx_book_listings_pending ON book_listings (posted_at) WHERE status = 'PENDING_IMAGE';
@@ -0,0 +1,7 @@
+-- IMAGE VARIANTS
+-- Listing photos are stored as a full-size image plus medium and thumbnail
+-- variants, with a BlurHash placeholder. Listings posted earlier have none
+-- and clients fall back to image_url.
+ALTER TABLE book_listings ADD COLUMN IF NOT EXISTS medium_url varchar(255);
+ALTER TABLE book_listings ADD COLUMN IF NOT EXISTS thumbnail_url varchar(255);
+ALTER TABLE book_listings ADD COLUMN IF NOT EXISTS blurhash varchar(64);
@@ -0,0 +1,37 @@
+-- CONTENT-ADDRESSED IMAGES
+-- Listing photos are stored once per distinct image, under images/<sha256>.jpg,
+-- and shared by every listing that uses them. ref_count counts the listings
+-- (and uploads in flight) holding each image; at zero its objects may be deleted.
+CREATE TABLE IF NOT EXISTS stored_images (
+    hash VARCHAR(64) PRIMARY KEY,
+    ref_count INTEGER NOT NULL,
+    image_url VARCHAR(255),
+    medium_url VARCHAR(255),
+    thumbnail_url VARCHAR(255),
+    blurhash VARCHAR(64),
+    created_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Listings posted before content addressing keep a null hash and their own keys.
+ALTER TABLE book_listings ADD COLUMN IF NOT EXISTS image_hash VARCHAR(64);
+
+CREATE INDEX IF NOT EXISTS idx_stored_images_unreferenced
+    ON stored_images (hash)
+    WHERE ref_count <= 0;
+
+-- Releasing the reference in the database covers every way a listing is removed,
+-- including the cascade when its owner is deleted.
+CREATE OR REPLACE FUNCTION release_listing_image() RETURNS trigger AS $$
+BEGIN
+    IF OLD.image_hash IS NOT NULL
+            AND (TG_OP = 'DELETE' OR OLD.image_hash IS DISTINCT FROM NEW.image_hash) THEN
+        UPDATE stored_images SET ref_count = ref_count - 1 WHERE hash = OLD.image_hash;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS book_listings_release_image ON book_listings;
+CREATE TRIGGER book_listings_release_image
+    AFTER DELETE OR UPDATE OF image_hash ON book_listings
+    FOR EACH ROW EXECUTE FUNCTION release_listing_image();
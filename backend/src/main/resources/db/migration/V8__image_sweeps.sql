@@ -0,0 +1,8 @@
+-- IMAGE SWEEPS
+-- The orphaned image sweep lists each S3 prefix in key order and records the
+-- last key it finished, so an interrupted sweep resumes where it stopped.
+CREATE TABLE IF NOT EXISTS image_sweeps (
+    prefix VARCHAR(255) PRIMARY KEY,
+    start_after VARCHAR(1024),
+    updated_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
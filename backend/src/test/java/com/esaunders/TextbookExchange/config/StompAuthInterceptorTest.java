@@ -0,0 +1,99 @@
+package com.esaunders.TextbookExchange.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.service.JwtService;
+import com.esaunders.TextbookExchange.service.UserCache;
+
+@ExtendWith(MockitoExtension.class)
+class StompAuthInterceptorTest {
+
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private UserCache userCache;
+
+    private StompAuthInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new StompAuthInterceptor(jwtService, userCache);
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String authorization) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        if (authorization != null) {
+            accessor.addNativeHeader("Authorization", authorization);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static StompAuthInterceptor.UserPrincipal userOf(Message<?> message) {
+        return (StompAuthInterceptor.UserPrincipal) StompHeaderAccessor.wrap(message).getUser();
+    }
+
+    @Test
+    void preSend_ShouldNameThePrincipalAfterTheTokensUserId() {
+        // Arrange
+        when(jwtService.verify("good")).thenReturn(
+            new JwtService.VerifiedToken("a@ncsu.edu", 7L, "jti", Instant.now().plusSeconds(60)));
+
+        // Act
+        Message<?> result = interceptor.preSend(frame(StompCommand.CONNECT, "Bearer good"), null);
+
+        // Assert
+        assertEquals("7", userOf(result).getName());
+        verifyNoInteractions(userCache);
+    }
+
+    @Test
+    void preSend_ShouldLookUpTheUserForTokensWithoutTheIdClaim() {
+        // Arrange
+        User user = new User();
+        user.setId(9L);
+        when(jwtService.verify("old")).thenReturn(
+            new JwtService.VerifiedToken("b@ncsu.edu", null, null, Instant.now().plusSeconds(60)));
+        when(userCache.findByEmail("b@ncsu.edu")).thenReturn(user);
+
+        // Act
+        Message<?> result = interceptor.preSend(frame(StompCommand.CONNECT, "Bearer old"), null);
+
+        // Assert
+        assertEquals(9L, userOf(result).userId());
+    }
+
+    @Test
+    void preSend_ShouldRejectConnectionsWithoutAValidToken() {
+        when(jwtService.verify("bad")).thenReturn(null);
+
+        assertThrows(MessageDeliveryException.class,
+            () -> interceptor.preSend(frame(StompCommand.CONNECT, null), null));
+        assertThrows(MessageDeliveryException.class,
+            () -> interceptor.preSend(frame(StompCommand.CONNECT, "Bearer bad"), null));
+    }
+
+    @Test
+    void preSend_ShouldPassOtherFramesThrough() {
+        Message<byte[]> send = frame(StompCommand.SEND, null);
+
+        assertSame(send, interceptor.preSend(send, null));
+        verifyNoInteractions(jwtService);
+    }
+}
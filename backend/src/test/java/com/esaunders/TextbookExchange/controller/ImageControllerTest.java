@@ -0,0 +1,185 @@
+package com.esaunders.TextbookExchange.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.esaunders.TextbookExchange.service.ImageCache;
+
+@ExtendWith(MockitoExtension.class)
+class ImageControllerTest {
+
+    private static final String KEY = "images/abc.jpg";
+    private static final String ETAG = "\"5d41402abc4b2a76\"";
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private ImageCache imageCache;
+
+    private ImageController imageController;
+    private ImageCache.CachedImage image;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        imageController = new ImageController(imageCache);
+        Path file = Files.write(dir.resolve("abc.img"), "0123456789".getBytes());
+        image = new ImageCache.CachedImage(file, 10, "image/jpeg", ETAG, Instant.parse("2025-03-01T12:00:00Z"));
+        lenient().when(imageCache.get(KEY)).thenReturn(image);
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        imageController.getImage("/" + KEY, request, response);
+        return response;
+    }
+
+    @Test
+    void getImage_ShouldServeTheWholeImageWithValidators() throws Exception {
+        // Act
+        MockHttpServletResponse response = get(new MockHttpServletRequest("GET", "/images/" + KEY));
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals(ETAG, response.getHeader("ETag"));
+        assertEquals(ImageController.CACHE_CONTROL, response.getHeader("Cache-Control"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("Last-Modified"));
+    }
+
+    @Test
+    void getImage_ShouldServeARange() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + KEY);
+        request.addHeader("Range", "bytes=2-5");
+
+        // Act
+        MockHttpServletResponse response = get(request);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void getImage_ShouldRejectRangesPastTheEnd() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + KEY);
+        request.addHeader("Range", "bytes=10-");
+
+        // Act
+        MockHttpServletResponse response = get(request);
+
+        // Assert
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void getImage_ShouldIgnoreARangeForAChangedImage() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + KEY);
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"older\"");
+
+        // Act
+        MockHttpServletResponse response = get(request);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void getImage_ShouldAnswerNotModifiedForACurrentCopy() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + KEY);
+        request.addHeader("If-None-Match", "W/" + ETAG);
+
+        // Act
+        MockHttpServletResponse response = get(request);
+
+        // Assert
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void getImage_ShouldHandTheFileToTomcatWhenSendfileIsSupported() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + KEY);
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=-3");
+
+        // Act
+        MockHttpServletResponse response = get(request);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(image.file().toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(7L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void getImage_ShouldNotServeStagedUploadsOrMissingImages() throws Exception {
+        // Arrange
+        MockHttpServletResponse staged = new MockHttpServletResponse();
+        MockHttpServletResponse missing = new MockHttpServletResponse();
+
+        // Act
+        imageController.getImage("/uploads/3/abc", new MockHttpServletRequest("GET", "/images/uploads/3/abc"), staged);
+        imageController.getImage("/images/missing.jpg", new MockHttpServletRequest("GET", "/images/images/missing.jpg"),
+            missing);
+
+        // Assert
+        assertEquals(404, staged.getStatus());
+        assertEquals(404, missing.getStatus());
+        verify(imageCache, never()).get("uploads/3/abc");
+    }
+
+    @Test
+    void getImage_ShouldAskClientsToRetryWhenTooManyFetchesAreWaiting() throws Exception {
+        // Arrange
+        when(imageCache.get("images/new.jpg")).thenThrow(new RejectedExecutionException());
+
+        // Act
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        imageController.getImage("/images/new.jpg", new MockHttpServletRequest("GET", "/images/images/new.jpg"),
+            response);
+
+        // Assert
+        assertEquals(503, response.getStatus());
+        assertEquals("5", response.getHeader("Retry-After"));
+    }
+
+    @Test
+    void parseRange_ShouldHandleOpenSuffixAndInvalidRanges() {
+        assertArrayEquals(new long[] {0, 9}, ImageController.parseRange("bytes=0-", 10));
+        assertArrayEquals(new long[] {4, 9}, ImageController.parseRange("bytes=4-100", 10));
+        assertArrayEquals(new long[] {0, 9}, ImageController.parseRange("bytes=-20", 10));
+        assertNull(ImageController.parseRange("bytes=5-2", 10));
+        assertNull(ImageController.parseRange("bytes=0-1,4-5", 10));
+        assertNull(ImageController.parseRange("items=0-1", 10));
+        assertEquals(0, ImageController.parseRange("bytes=-0", 10).length);
+    }
+}
@@ -0,0 +1,87 @@
+package com.esaunders.TextbookExchange.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import com.esaunders.TextbookExchange.config.StompAuthInterceptor;
+import com.esaunders.TextbookExchange.dtos.MessageDto;
+import com.esaunders.TextbookExchange.mapper.MessagesMapper;
+import com.esaunders.TextbookExchange.model.Message;
+import com.esaunders.TextbookExchange.repository.MessageRepository;
+import com.esaunders.TextbookExchange.repository.UserRepository;
+import com.esaunders.TextbookExchange.service.MessageService;
+import com.esaunders.TextbookExchange.service.UserService;
+
+@ExtendWith(MockitoExtension.class)
+class MessageControllerTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MessagesMapper messagesMapper;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private UserService userService;
+
+    private MessageController messageController;
+
+    @BeforeEach
+    void setUp() {
+        messageController = new MessageController(messageRepository, userRepository, messagesMapper, messagingTemplate,
+            messageService, userService);
+    }
+
+    @Test
+    void send_ShouldDeliverToTheSenderAndReceiverQueuesOnly() {
+        // Arrange
+        Message message = new Message(null, 99L, 2L, "Still available?", null);
+        when(messageService.send(message)).thenReturn(message);
+        MessageDto dto = new MessageDto(5L, 1L, "Ann", 2L, "Still available?", LocalDateTime.now());
+        when(messagesMapper.toDto(message, userRepository)).thenReturn(dto);
+
+        // Act
+        messageController.send(message, new StompAuthInterceptor.UserPrincipal(1L));
+
+        // Assert
+        assertEquals(1L, message.getSenderId());
+        assertNotNull(message.getTimestamp());
+        ArgumentCaptor<String> users = ArgumentCaptor.forClass(String.class);
+        verify(messagingTemplate, times(2)).convertAndSendToUser(users.capture(), eq("/queue/messages"), eq(dto));
+        assertEquals(List.of("1", "2"), users.getAllValues());
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    @Test
+    void send_ShouldIgnoreMessagesFromUnauthenticatedSessionsOrWithoutContent() {
+        // Act
+        messageController.send(new Message(null, 1L, 2L, "hi", null), null);
+        messageController.send(new Message(null, 1L, 2L, "  ", null), new StompAuthInterceptor.UserPrincipal(1L));
+
+        // Assert
+        verify(messageService, never()).send(any());
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+    }
+}
@@ -10,6 +10,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
 
 import com.esaunders.TextbookExchange.model.BookListing;
 import com.esaunders.TextbookExchange.model.User;
@@ -114,6 +119,29 @@ class BookListingRepositoryTest {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    void testFindAllMatchingSpecification() {
+        // Test query matches title or course code, excluding the owner's own listings
+        BookSearchCriteria criteria = new BookSearchCriteria("cs1", null, null, null, testUser1.getId());
+        Page<BookListing> result = bookListingRepository.findAll(
+                BookListingSpecifications.matching(criteria), PageRequest.of(0, 10, Sort.by("id")));
+        assertThat(result.getContent()).extracting(BookListing::getTitle)
+                .containsExactly("Python Programming");
+
+        // Test filters combine and page in the database
+        criteria = new BookSearchCriteria("java", null, null, null, null);
+        result = bookListingRepository.findAll(
+                BookListingSpecifications.matching(criteria), PageRequest.of(0, 1, Sort.by("id")));
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.getTotalElements()).isEqualTo(2);
+
+        // Test LIKE wildcards in the query are matched literally
+        criteria = new BookSearchCriteria("%", null, null, null, null);
+        result = bookListingRepository.findAll(
+                BookListingSpecifications.matching(criteria), PageRequest.of(0, 10));
+        assertThat(result.getContent()).isEmpty();
+    }
+
     @Test
     void testFindByOwner() {
         // Test finding books by testUser1
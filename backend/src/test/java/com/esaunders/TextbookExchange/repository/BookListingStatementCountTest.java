@@ -0,0 +1,124 @@
+package com.esaunders.TextbookExchange.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.User;
+
+/**
+ * Guards the listing reads behind each endpoint against N+1 owner loading:
+ * every read must take one statement however many owners its rows have.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BookListingStatementCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BookListingRepository bookListingRepository;
+
+    private Statistics statistics;
+    private User viewer;
+    private List<Long> listingIds;
+
+    @BeforeEach
+    void setUp() {
+        viewer = persistUser("viewer");
+        listingIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            User owner = persistUser("owner" + i);
+            for (int j = 0; j < 2; j++) {
+                BookListing listing = new BookListing();
+                listing.setTitle("Book " + i + "-" + j);
+                listing.setCourseCode("CS10" + i);
+                listing.setCondition("GOOD");
+                listing.setPrice(10.0 * (i + 1));
+                listing.setOwner(owner);
+                listing.setPostedAt(LocalDateTime.of(2025, 1, 1, 12, 0).plusHours(i * 2 + j));
+                listingIds.add(entityManager.persistAndFlush(listing).getId());
+            }
+        }
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+            .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private User persistUser(String name) {
+        User user = new User();
+        user.setFirstName(name);
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("hash");
+        user.setCreatedAt(LocalDateTime.now());
+        return entityManager.persistAndFlush(user);
+    }
+
+    private long statements() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void feed_ShouldTakeOneStatement() {
+        List<BookDto> shared = bookListingRepository.findRecent(PageRequest.of(0, 20));
+        List<BookDto> personal = bookListingRepository.findFeed(viewer.getId(), PageRequest.of(0, 20));
+
+        assertThat(shared).hasSize(8);
+        assertThat(personal).hasSize(8);
+        assertThat(shared).allSatisfy(book -> assertThat(book.getSeller().getUsername()).startsWith("owner"));
+        assertThat(statements()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void detail_ShouldTakeOneStatement() {
+        BookDto book = bookListingRepository.findBookById(listingIds.get(0)).orElseThrow();
+
+        assertThat(book.getSeller().getUsername()).isEqualTo("owner0");
+        assertThat(statements()).isEqualTo(1);
+    }
+
+    @Test
+    void allBooksAndMyListings_ShouldTakeOneStatementEach() {
+        assertThat(bookListingRepository.findAllBooks()).hasSize(8);
+        assertThat(bookListingRepository.findBooksByOwnerId(viewer.getId())).isEmpty();
+
+        assertThat(statements()).isEqualTo(2);
+    }
+
+    @Test
+    void rankedSearchResults_ShouldLoadInOneStatement() {
+        assertThat(bookListingRepository.findBooksByIdIn(listingIds)).hasSize(8);
+
+        assertThat(statements()).isEqualTo(1);
+    }
+
+    @Test
+    void specificationSearch_ShouldFetchOwnersWithListings() {
+        Page<BookListing> page = bookListingRepository.findAll(
+            BookListingSpecifications.matching(new BookSearchCriteria("book", null, null, null, viewer.getId())),
+            PageRequest.of(0, 20));
+        page.getContent().forEach(listing -> listing.getOwner().getUsername());
+
+        assertThat(page.getContent()).hasSize(8);
+        assertThat(statements()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,227 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.esaunders.TextbookExchange.config.ImageCacheProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ImageCacheTest {
+
+    @TempDir
+    Path bucketDir;
+
+    @TempDir
+    Path cacheDir;
+
+    private ImageCacheProperties properties;
+    private AtomicInteger fetches;
+    private CountDownLatch release;
+    private ImageCache imageCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(bucketDir.resolve("images"));
+        Files.write(bucketDir.resolve("images/a.jpg"), new byte[] {1, 2, 3, 4});
+        Files.write(bucketDir.resolve("images/b.jpg"), new byte[] {5, 6, 7, 8});
+        properties = new ImageCacheProperties();
+        properties.setDir(cacheDir.toString());
+        properties.setEvictedFileGrace(Duration.ZERO);
+        fetches = new AtomicInteger();
+        release = new CountDownLatch(0);
+        imageCache = create();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageCache.destroy();
+    }
+
+    private ImageCache create() throws Exception {
+        FileSystemBucket bucket = new FileSystemBucket(bucketDir);
+        return new ImageCache((key, target) -> {
+            fetches.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return bucket.fetch(key, target);
+        }, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void get_ShouldFetchOnceAndServeLaterRequestsFromDisk() throws Exception {
+        // Act
+        ImageCache.CachedImage first = imageCache.get("images/a.jpg");
+        ImageCache.CachedImage second = imageCache.get("images/a.jpg");
+
+        // Assert
+        assertEquals(1, fetches.get());
+        assertEquals(first.file(), second.file());
+        assertTrue(first.file().startsWith(cacheDir));
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, Files.readAllBytes(first.file()));
+        assertEquals("image/jpeg", first.contentType());
+        assertNotNull(first.etag());
+    }
+
+    @Test
+    void get_ShouldFetchAMissOnceForConcurrentRequests() throws Exception {
+        // Arrange
+        release = new CountDownLatch(1);
+        ExecutorService requests = Executors.newFixedThreadPool(8);
+        List<Future<ImageCache.CachedImage>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            results.add(requests.submit(() -> imageCache.get("images/b.jpg")));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        // Assert
+        for (Future<ImageCache.CachedImage> result : results) {
+            assertEquals(4, result.get(5, TimeUnit.SECONDS).size());
+        }
+        requests.shutdown();
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void get_ShouldRememberMissingImagesUntilTheyAreEvicted() throws Exception {
+        assertNull(imageCache.get("images/missing.jpg"));
+        assertNull(imageCache.get("images/missing.jpg"));
+        assertEquals(1, fetches.get());
+
+        imageCache.evict("images/missing.jpg");
+        assertNull(imageCache.get("images/missing.jpg"));
+        assertEquals(2, fetches.get());
+        assertNull(imageCache.get("images/../../etc/passwd"));
+    }
+
+    @Test
+    void get_ShouldRefuseMissesOnceTheFetchQueueIsFull() throws Exception {
+        // Arrange
+        imageCache.destroy();
+        properties.setFetchThreads(1);
+        properties.setFetchQueueCapacity(1);
+        imageCache = create();
+        release = new CountDownLatch(1);
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+        Future<ImageCache.CachedImage> running = requests.submit(() -> imageCache.get("images/a.jpg"));
+        Thread.sleep(100);
+        Future<ImageCache.CachedImage> queued = requests.submit(() -> imageCache.get("images/b.jpg"));
+        Thread.sleep(100);
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class, () -> imageCache.get("images/c.jpg"));
+        release.countDown();
+        assertNotNull(running.get(5, TimeUnit.SECONDS));
+        assertNotNull(queued.get(5, TimeUnit.SECONDS));
+        requests.shutdown();
+    }
+
+    @Test
+    void evict_ShouldDeleteTheCachedFile() throws Exception {
+        // Arrange
+        Path file = imageCache.get("images/a.jpg").file();
+
+        // Act
+        imageCache.evict("images/a.jpg");
+        for (int i = 0; i < 100 && Files.exists(file); i++) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertFalse(Files.exists(file));
+        imageCache.get("images/a.jpg");
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void evict_ShouldKeepTheFileReadableForRequestsAlreadyHandedIt() throws Exception {
+        // Arrange
+        imageCache.destroy();
+        properties.setEvictedFileGrace(Duration.ofMillis(300));
+        imageCache = create();
+        Path file = imageCache.get("images/a.jpg").file();
+
+        // Act
+        imageCache.evict("images/a.jpg");
+
+        // Assert
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, Files.readAllBytes(file));
+        for (int i = 0; i < 200 && Files.exists(file); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void get_ShouldDeleteTheFilesOfEvictedImages() throws Exception {
+        // Arrange
+        imageCache.destroy();
+        properties.setMaxBytes(4);
+        imageCache = create();
+
+        // Act
+        Path a = imageCache.get("images/a.jpg").file();
+        Path b = imageCache.get("images/b.jpg").file();
+        for (int i = 0; i < 100 && Files.exists(a) && Files.exists(b); i++) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertFalse(Files.exists(a) && Files.exists(b));
+        assertEquals(1, imageCache.size());
+    }
+
+    @Test
+    void get_ShouldRefetchImagesDeletedFromDisk() throws Exception {
+        // Arrange
+        Files.delete(imageCache.get("images/a.jpg").file());
+
+        // Act
+        ImageCache.CachedImage image = imageCache.get("images/a.jpg");
+
+        // Assert
+        assertTrue(Files.exists(image.file()));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void constructor_ShouldClearFilesLeftByAPreviousRun() throws Exception {
+        // Arrange
+        Path stale = Files.write(cacheDir.resolve("stale.img"), new byte[] {1});
+
+        // Act
+        imageCache.destroy();
+        imageCache = create();
+
+        // Assert
+        assertFalse(Files.exists(stale));
+    }
+
+    @Test
+    void isServable_ShouldAllowOnlyPublicImageKeys() {
+        assertTrue(ImageCache.isServable("images/abc.jpg"));
+        assertTrue(ImageCache.isServable("book-images/1-3.jpg"));
+        assertFalse(ImageCache.isServable("uploads/3/abc"));
+        assertFalse(ImageCache.isServable("images/"));
+        assertFalse(ImageCache.isServable("images/../uploads/3/abc"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.esaunders.TextbookExchange.config.ImageGcProperties;
+import com.esaunders.TextbookExchange.model.ImageSweep;
+import com.esaunders.TextbookExchange.repository.BookListingRepository;
+import com.esaunders.TextbookExchange.repository.ImageSweepRepository;
+import com.esaunders.TextbookExchange.repository.StoredImageRepository;
+
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+@ExtendWith(MockitoExtension.class)
+class ImageGarbageCollectorTest {
+
+    private static final String HASH = "039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81";
+    private static final String ORPHAN_HASH = "a665a45920422f9d417e4867efdc4fb8a04a1f3fff1fa07e998e86f7f7a27ae3";
+    private static final Instant OLD = Instant.now().minus(Duration.ofDays(3));
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private BookListingRepository bookListingRepository;
+
+    @Mock
+    private StoredImageRepository storedImageRepository;
+
+    @Mock
+    private ImageSweepRepository imageSweepRepository;
+
+    @Mock
+    private ImageCache imageCache;
+
+    private ImageGarbageCollector collector;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ImageGcProperties properties = new ImageGcProperties();
+        properties.setMaxDeletesPerSecond(1_000_000);
+        collector = new ImageGarbageCollector(s3Service, imageStore, bookListingRepository, storedImageRepository,
+            imageSweepRepository, properties, imageCache);
+
+        BookListingRepository.ImageUrls urls = mock(BookListingRepository.ImageUrls.class);
+        lenient().when(urls.getId()).thenReturn(1L);
+        lenient().when(urls.getImageUrl()).thenReturn("https://bucket/book-images/1-3.jpg");
+        lenient().when(urls.getThumbnailUrl()).thenReturn("https://bucket/book-images/1-3-thumb.jpg");
+        lenient().when(bookListingRepository.findImageUrlsAfter(eq(0L), any())).thenReturn(List.of(urls));
+        lenient().when(storedImageRepository.findHashesAfter(eq(""), any())).thenReturn(List.of(HASH));
+        lenient().when(s3Service.keyOf(anyString())).thenAnswer(inv -> {
+            String url = inv.getArgument(0);
+            return url.startsWith("https://bucket/") ? url.substring("https://bucket/".length()) : null;
+        });
+        lenient().when(imageSweepRepository.findById(anyString())).thenReturn(Optional.empty());
+        lenient().when(s3Service.listFiles(anyString(), any(), anyInt())).thenReturn(page(false));
+        lenient().when(s3Service.deleteFiles(any())).thenReturn(List.of());
+    }
+
+    private static S3Object object(String key, Instant lastModified) {
+        return S3Object.builder().key(key).lastModified(lastModified).build();
+    }
+
+    private static ListObjectsV2Response page(boolean truncated, S3Object... objects) {
+        return ListObjectsV2Response.builder().contents(Arrays.asList(objects)).isTruncated(truncated).build();
+    }
+
+    @Test
+    void sweep_ShouldDeleteOnlyOldUnreferencedImages() throws Exception {
+        // Arrange
+        when(s3Service.listFiles(eq("book-images/"), isNull(), anyInt())).thenReturn(page(false,
+            object("book-images/1-3.jpg", OLD),
+            object("book-images/1-3-thumb.jpg", OLD),
+            object("book-images/2-3.jpg", OLD),
+            object("book-images/4-3.jpg", Instant.now())));
+        when(s3Service.listFiles(eq("images/"), isNull(), anyInt())).thenReturn(page(false,
+            object("images/" + HASH + ".jpg", OLD),
+            object("images/" + ORPHAN_HASH + ".jpg", OLD),
+            object("images/" + ORPHAN_HASH + "-medium.jpg", OLD)));
+        when(s3Service.listFiles(eq("uploads/"), isNull(), anyInt())).thenReturn(page(false,
+            object("uploads/3/abc", OLD),
+            object("uploads/3/def", Instant.now())));
+        when(imageStore.collectOrphan(ORPHAN_HASH)).thenReturn(true);
+
+        // Act
+        ImageGarbageCollector.SweepResult result = collector.sweep();
+
+        // Assert
+        verify(s3Service).deleteFiles(List.of("book-images/2-3.jpg"));
+        verify(s3Service).deleteFiles(List.of("uploads/3/abc"));
+        verify(imageCache).evict("book-images/2-3.jpg");
+        verify(imageStore).collectOrphan(ORPHAN_HASH);
+        verify(imageStore, never()).collectOrphan(HASH);
+        verify(imageStore).collectUnreferenced();
+        assertEquals(9, result.scanned());
+        assertEquals(5, result.deleted());
+        verify(imageSweepRepository, times(3)).save(argThat(sweep -> sweep.getStartAfter() == null));
+    }
+
+    @Test
+    void sweep_ShouldResumeFromTheCheckpointAndSaveOneAfterEachPage() throws Exception {
+        // Arrange
+        when(imageSweepRepository.findById("book-images/"))
+            .thenReturn(Optional.of(new ImageSweep("book-images/", "book-images/5-3.jpg", LocalDateTime.now())));
+        when(s3Service.listFiles(eq("book-images/"), eq("book-images/5-3.jpg"), anyInt()))
+            .thenReturn(page(true, object("book-images/6-3.jpg", OLD)));
+        when(s3Service.listFiles(eq("book-images/"), eq("book-images/6-3.jpg"), anyInt()))
+            .thenReturn(page(false, object("book-images/7-3.jpg", OLD)));
+
+        // Act
+        collector.sweep();
+
+        // Assert
+        verify(s3Service).deleteFiles(List.of("book-images/6-3.jpg"));
+        verify(s3Service).deleteFiles(List.of("book-images/7-3.jpg"));
+        verify(imageSweepRepository).save(argThat(sweep ->
+            sweep.getPrefix().equals("book-images/") && "book-images/6-3.jpg".equals(sweep.getStartAfter())));
+    }
+
+    @Test
+    void sweep_ShouldKeepTheCheckpointWhenListingFails() throws Exception {
+        // Arrange
+        when(s3Service.listFiles(eq("book-images/"), isNull(), anyInt()))
+            .thenReturn(page(true, object("book-images/6-3.jpg", OLD)));
+        when(s3Service.listFiles(eq("book-images/"), eq("book-images/6-3.jpg"), anyInt()))
+            .thenThrow(new Exception("Failed to list files in S3: slow down"));
+
+        // Act & Assert
+        assertThrows(Exception.class, () -> collector.sweep());
+        verify(imageSweepRepository).save(argThat(sweep -> "book-images/6-3.jpg".equals(sweep.getStartAfter())));
+        verify(imageSweepRepository, never()).save(argThat(sweep -> sweep.getStartAfter() == null));
+    }
+
+    @Test
+    void bloomFilter_ShouldHaveNoFalseNegativesAndFewFalsePositives() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("book-images/" + i + "-3.jpg");
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 10_000; i < 20_000; i++) {
+            if (filter.mightContain("book-images/" + i + "-3.jpg")) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("book-images/" + i + "-3.jpg"));
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertTrue(filter.sizeInBytes() < 16 * 1024);
+    }
+}
@@ -0,0 +1,170 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ImageProcessorTest {
+
+    private ImageProcessor imageProcessor;
+
+    @BeforeEach
+    void setUp() {
+        imageProcessor = new ImageProcessor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessor.destroy();
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bytes);
+        return bytes.toByteArray();
+    }
+
+    private static BufferedImage read(byte[] bytes) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+
+    /** Inserts an APP1 Exif segment holding only an orientation tag after the SOI marker. */
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] tiff = {
+            'M', 'M', 0, 42, 0, 0, 0, 8,
+            0, 1,
+            0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+            0, 0, 0, 0
+        };
+        int length = 2 + 6 + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xff);
+        out.writeBytes("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        out.writeBytes(tiff);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    @Test
+    void process_ShouldProduceBoundedJpegVariantsAndPlaceholder() throws Exception {
+        // Arrange
+        BufferedImage photo = new BufferedImage(3000, 2000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = photo.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 1500, 2000);
+        g.dispose();
+
+        // Act
+        ImageProcessor.ProcessedImage result = imageProcessor.submit(
+            () -> new ByteArrayInputStream(encode(photo, "png"))).join();
+
+        // Assert
+        BufferedImage full = read(result.full());
+        BufferedImage medium = read(result.medium());
+        BufferedImage thumbnail = read(result.thumbnail());
+        assertEquals(ImageProcessor.FULL_SIZE, full.getWidth());
+        assertEquals(1365, full.getHeight());
+        assertEquals(ImageProcessor.MEDIUM_SIZE, medium.getWidth());
+        assertEquals(ImageProcessor.THUMBNAIL_SIZE, thumbnail.getWidth());
+        assertEquals(267, thumbnail.getHeight());
+        assertEquals((byte) 0xFF, result.thumbnail()[0]);
+        assertEquals((byte) 0xD8, result.thumbnail()[1]);
+        assertEquals(28, result.blurhash().length());
+    }
+
+    @Test
+    void process_ShouldApplyExifOrientationAndDropMetadata() throws Exception {
+        // Arrange: a landscape photo whose left half is red, stored rotated as cameras do
+        BufferedImage photo = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = photo.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 200, 100);
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 100, 100);
+        g.dispose();
+        byte[] jpeg = withOrientation(encode(photo, "jpeg"), 6);
+
+        // Act
+        ImageProcessor.ProcessedImage result = imageProcessor.process(new ByteArrayInputStream(jpeg));
+
+        // Assert: rotated 90 degrees clockwise, the red half is now on top
+        BufferedImage full = read(result.full());
+        assertEquals(100, full.getWidth());
+        assertEquals(200, full.getHeight());
+        assertTrue(new Color(full.getRGB(50, 20)).getRed() > 200);
+        assertTrue(new Color(full.getRGB(50, 20)).getGreen() < 60);
+        assertTrue(new Color(full.getRGB(50, 180)).getGreen() > 200);
+        assertEquals(1, ImageProcessor.jpegOrientation(result.full()));
+    }
+
+    @Test
+    void process_ShouldRejectFilesThatAreNotImages() {
+        assertThrows(IOException.class, () -> imageProcessor.process(
+            new ByteArrayInputStream("not an image".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void process_ShouldRejectImagesLargerThanTheLimitWithoutReadingThemWhole() {
+        // Arrange: a stream far larger than the limit, as a crafted zip entry inflates to
+        InputStream endless = new InputStream() {
+            private long read;
+
+            @Override
+            public int read() {
+                return read++ < 1L << 32 ? 0 : -1;
+            }
+        };
+
+        // Act & Assert
+        IOException e = assertThrows(IOException.class, () -> imageProcessor.process(endless));
+        assertTrue(e.getMessage().startsWith("Image is larger than"));
+    }
+
+    @Test
+    void jpegOrientation_ShouldReadLittleAndBigEndianTags() throws Exception {
+        byte[] jpeg = encode(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "jpeg");
+
+        assertEquals(1, ImageProcessor.jpegOrientation(jpeg));
+        assertEquals(8, ImageProcessor.jpegOrientation(withOrientation(jpeg, 8)));
+        assertEquals(1, ImageProcessor.jpegOrientation(new byte[] {1, 2, 3}));
+    }
+
+    @Test
+    void blurhash_ShouldEncodeSolidColorAsItsAverage() {
+        BufferedImage gray = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = gray.createGraphics();
+        g.setColor(new Color(128, 128, 128));
+        g.fillRect(0, 0, 16, 16);
+        g.dispose();
+
+        String hash = Blurhash.encode(gray, 4, 3);
+
+        // Size flag for 4x3, AC maximum, DC of rgb(128,128,128), then eleven AC components
+        assertEquals("L", hash.substring(0, 1));
+        assertEquals("Eyb[", hash.substring(2, 6));
+        assertEquals(28, hash.length());
+    }
+
+    @Test
+    void variantKey_ShouldInsertSuffixBeforeExtension() {
+        assertEquals("book-images/1-3-thumb.jpg", ImageProcessor.variantKey("book-images/1-3.jpg", "thumb"));
+        assertEquals("a.b/key-medium", ImageProcessor.variantKey("a.b/key", "medium"));
+    }
+}
@@ -0,0 +1,188 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.StoredImage;
+import com.esaunders.TextbookExchange.repository.StoredImageRepository;
+
+@ExtendWith(MockitoExtension.class)
+class ImageStoreTest {
+
+    private static final ImageProcessor.ProcessedImage PROCESSED =
+        new ImageProcessor.ProcessedImage(new byte[] {1, 2, 3}, new byte[] {2}, new byte[] {3}, "L00000fQfQfQ");
+    /** SHA-256 of the bytes 1, 2, 3. */
+    private static final String HASH = "039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81";
+    private static final String KEY = "images/" + HASH + ".jpg";
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private StoredImageRepository storedImageRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ImageCache imageCache;
+
+    private ImageStore imageStore;
+
+    @BeforeEach
+    void setUp() {
+        imageStore = new ImageStore(s3Service, storedImageRepository, new TransactionTemplate(transactionManager), true,
+            imageCache);
+    }
+
+    private static StoredImage stored(int refCount, String imageUrl) {
+        return new StoredImage(HASH, refCount, imageUrl, imageUrl == null ? null : "https://bucket/medium",
+            imageUrl == null ? null : "https://bucket/thumb", imageUrl == null ? null : "L00000fQfQfQ",
+            LocalDateTime.now());
+    }
+
+    @Test
+    void store_ShouldUploadNewImagesUnderTheirHash() throws Exception {
+        // Arrange
+        when(storedImageRepository.findById(HASH)).thenReturn(Optional.of(stored(1, null)));
+        when(s3Service.uploadImagesIfAbsent(PROCESSED, KEY)).thenReturn(new ListingImages("https://bucket/" + KEY,
+            "https://bucket/medium", "https://bucket/thumb", "L00000fQfQfQ", null));
+
+        // Act
+        ListingImages result = imageStore.store(PROCESSED, "book-images/1-3.jpg");
+
+        // Assert
+        assertEquals(HASH, result.hash());
+        assertEquals("https://bucket/" + KEY, result.imageUrl());
+        InOrder order = inOrder(storedImageRepository, s3Service);
+        order.verify(storedImageRepository).acquire(HASH);
+        order.verify(s3Service).uploadImagesIfAbsent(PROCESSED, KEY);
+        order.verify(storedImageRepository).recordUpload(HASH, "https://bucket/" + KEY, "https://bucket/medium",
+            "https://bucket/thumb", "L00000fQfQfQ");
+    }
+
+    @Test
+    void store_ShouldReuseImagesAlreadyUploaded() throws Exception {
+        // Arrange
+        when(storedImageRepository.findById(HASH)).thenReturn(Optional.of(stored(2, "https://bucket/" + KEY)));
+
+        // Act
+        ListingImages result = imageStore.store(PROCESSED, "book-images/1-3.jpg");
+
+        // Assert
+        assertEquals("https://bucket/" + KEY, result.imageUrl());
+        assertEquals("https://bucket/thumb", result.thumbnailUrl());
+        assertEquals(HASH, result.hash());
+        verify(storedImageRepository).acquire(HASH);
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    void store_ShouldDropItsReferenceWhenTheUploadFails() throws Exception {
+        // Arrange
+        when(storedImageRepository.findById(HASH)).thenReturn(Optional.of(stored(1, null)));
+        when(s3Service.uploadImagesIfAbsent(PROCESSED, KEY)).thenThrow(new Exception("Failed to upload file to S3"));
+        when(storedImageRepository.findForUpdate(HASH)).thenReturn(Optional.of(stored(0, null)));
+
+        // Act & Assert
+        assertThrows(Exception.class, () -> imageStore.store(PROCESSED, "book-images/1-3.jpg"));
+        verify(storedImageRepository).release(HASH);
+        verify(s3Service).deleteImages(KEY);
+        verify(storedImageRepository).delete(any(StoredImage.class));
+    }
+
+    @Test
+    void store_ShouldUseTheGivenKeyWhenNotContentAddressed() throws Exception {
+        // Arrange
+        imageStore = new ImageStore(s3Service, storedImageRepository, new TransactionTemplate(transactionManager), false,
+            imageCache);
+        ListingImages uploaded = new ListingImages("https://bucket/book-images/1-3.jpg", null, null, null, null);
+        when(s3Service.uploadImages(PROCESSED, "book-images/1-3.jpg")).thenReturn(uploaded);
+
+        // Act & Assert
+        assertSame(uploaded, imageStore.store(PROCESSED, "book-images/1-3.jpg"));
+        verifyNoInteractions(storedImageRepository);
+    }
+
+    @Test
+    void collect_ShouldKeepImagesStillReferenced() throws Exception {
+        // Arrange
+        when(storedImageRepository.findForUpdate(HASH)).thenReturn(Optional.of(stored(1, "https://bucket/" + KEY)));
+
+        // Act & Assert
+        assertFalse(imageStore.collect(HASH));
+        verify(s3Service, never()).deleteImages(anyString());
+        verify(storedImageRepository, never()).delete(any(StoredImage.class));
+    }
+
+    @Test
+    void collect_ShouldForgetTheImageEvenIfS3DeleteFails() throws Exception {
+        // Arrange
+        when(storedImageRepository.findForUpdate(HASH)).thenReturn(Optional.of(stored(0, "https://bucket/" + KEY)));
+        doThrow(new Exception("Failed to delete file from S3")).when(s3Service).deleteImages(KEY);
+
+        // Act & Assert
+        assertTrue(imageStore.collect(HASH));
+        verify(storedImageRepository).delete(any(StoredImage.class));
+        verify(imageCache).evictImages(KEY);
+    }
+
+    @Test
+    void listingDeleted_ShouldDeleteTheOwnKeysOfLegacyListings() throws Exception {
+        // Arrange
+        BookListing listing = new BookListing();
+        listing.setImageUrl("https://bucket/book-images/1-3.jpg");
+        listing.setThumbnailUrl("https://elsewhere/1-3-thumb.jpg");
+        when(s3Service.keyOf(anyString())).thenAnswer(inv -> {
+            String url = inv.getArgument(0);
+            return url.startsWith("https://bucket/") ? url.substring("https://bucket/".length()) : null;
+        });
+
+        // Act
+        imageStore.listingDeleted(listing);
+
+        // Assert
+        verify(s3Service).deleteFile("book-images/1-3.jpg");
+        verify(s3Service, times(1)).deleteFile(anyString());
+        verifyNoInteractions(storedImageRepository);
+    }
+
+    @Test
+    void listingDeleted_ShouldCollectSharedImages() throws Exception {
+        // Arrange
+        BookListing listing = new BookListing();
+        listing.setImageHash(HASH);
+        listing.setImageUrl("https://bucket/" + KEY);
+        when(storedImageRepository.findForUpdate(HASH)).thenReturn(Optional.of(stored(1, "https://bucket/" + KEY)));
+
+        // Act
+        imageStore.listingDeleted(listing);
+
+        // Assert
+        verify(s3Service, never()).deleteFile(anyString());
+        verify(s3Service, never()).deleteImages(anyString());
+    }
+
+    @Test
+    void hashOfKey_ShouldMatchContentAddressedKeysAndVariants() {
+        assertEquals(HASH, ImageStore.hashOfKey(KEY));
+        assertEquals(HASH, ImageStore.hashOfKey("images/" + HASH + "-thumb.jpg"));
+        assertNull(ImageStore.hashOfKey("book-images/" + HASH + ".jpg"));
+        assertNull(ImageStore.hashOfKey("images/not-a-hash.jpg"));
+    }
+}
@@ -0,0 +1,315 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.User;
+
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+@ExtendWith(MockitoExtension.class)
+class ImageUploadServiceTest {
+
+    private static final String KEY = "book-images/1-3.jpg";
+    private static final String STAGED_KEY = "uploads/3/5f0c9a52-7d7e-4a43-9d0e-0c3e7f5b2a10";
+    private static final ImageProcessor.ProcessedImage PROCESSED =
+        new ImageProcessor.ProcessedImage(new byte[] {1}, new byte[] {2}, new byte[] {3}, "L00000fQfQfQ");
+    private static final ListingImages STORED = new ListingImages("https://bucket/" + KEY,
+        "https://bucket/book-images/1-3-medium.jpg", "https://bucket/book-images/1-3-thumb.jpg", "L00000fQfQfQ", null);
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private ListingService listingService;
+
+    @Mock
+    private ImageProcessor imageProcessor;
+
+    @Mock
+    private ImageStore imageStore;
+
+    private ImageUploadService imageUploadService;
+    private BookListing listing;
+    private MockMultipartFile image;
+
+    @BeforeEach
+    void setUp() {
+        imageUploadService = new ImageUploadService(s3Service, listingService, imageProcessor, imageStore, 2, 1,
+            Duration.ofHours(1));
+        listing = new BookListing();
+        User owner = new User();
+        owner.setId(3L);
+        listing.setOwner(owner);
+        image = new MockMultipartFile("image", "cover.jpg", "image/jpeg", new byte[] {1, 2, 3});
+        lenient().when(listingService.createPendingListing(listing)).thenAnswer(inv -> {
+            listing.setId(9L);
+            return listing;
+        });
+        lenient().when(imageProcessor.submit(any())).thenReturn(CompletableFuture.completedFuture(PROCESSED));
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageUploadService.destroy();
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        for (int i = 0; i < 500 && imageUploadService.getPendingCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, imageUploadService.getPendingCount());
+    }
+
+    @Test
+    void submit_ShouldSavePendingListingAndActivateItAfterUpload() throws Exception {
+        // Arrange
+        when(imageStore.store(PROCESSED, KEY)).thenReturn(STORED);
+        when(listingService.activateListing(9L, STORED)).thenReturn(listing);
+
+        // Act
+        BookListing saved = imageUploadService.submit(listing, image, KEY);
+        awaitIdle();
+
+        // Assert
+        assertEquals(9L, saved.getId());
+        verify(listingService).activateListing(9L, STORED);
+        verify(listingService, never()).discardPendingListing(anyLong());
+    }
+
+    @Test
+    void submit_ShouldRetryFailedUploads() throws Exception {
+        // Arrange
+        when(imageStore.store(PROCESSED, KEY))
+            .thenThrow(new Exception("Failed to upload file to S3: slow down"))
+            .thenReturn(STORED);
+        when(listingService.activateListing(9L, STORED)).thenReturn(listing);
+
+        // Act
+        imageUploadService.submit(listing, image, KEY);
+        awaitIdle();
+
+        // Assert
+        verify(imageStore, times(2)).store(PROCESSED, KEY);
+        verify(listingService).activateListing(9L, STORED);
+    }
+
+    @Test
+    void submit_ShouldDiscardListingWhenEveryAttemptFails() throws Exception {
+        // Arrange
+        when(imageStore.store(PROCESSED, KEY))
+            .thenThrow(new Exception("Failed to upload file to S3: access denied"));
+
+        // Act
+        imageUploadService.submit(listing, image, KEY);
+        awaitIdle();
+
+        // Assert
+        verify(imageStore, times(ImageUploadService.MAX_ATTEMPTS)).store(PROCESSED, KEY);
+        verify(listingService).discardPendingListing(9L);
+        verify(listingService, never()).activateListing(anyLong(), any());
+    }
+
+    @Test
+    void submit_ShouldDeleteImageOfListingDeletedDuringUpload() throws Exception {
+        // Arrange
+        when(imageStore.store(PROCESSED, KEY)).thenReturn(STORED);
+        when(listingService.activateListing(9L, STORED)).thenReturn(null);
+
+        // Act
+        imageUploadService.submit(listing, image, KEY);
+        awaitIdle();
+
+        // Assert
+        verify(imageStore).release(STORED, KEY);
+    }
+
+    @Test
+    void submit_ShouldDiscardListingAndReleaseImageWhenActivationFails() throws Exception {
+        // Arrange
+        when(imageStore.store(PROCESSED, KEY)).thenReturn(STORED);
+        when(listingService.activateListing(9L, STORED)).thenThrow(new RuntimeException("connection reset"));
+        when(listingService.discardPendingListing(9L)).thenReturn(true);
+
+        // Act
+        imageUploadService.submit(listing, image, KEY);
+        awaitIdle();
+
+        // Assert
+        verify(listingService).discardPendingListing(9L);
+        verify(imageStore).release(STORED, KEY);
+    }
+
+    @Test
+    void submit_ShouldKeepImageOfListingActivatedDespiteAnError() throws Exception {
+        // Arrange
+        when(imageStore.store(PROCESSED, KEY)).thenReturn(STORED);
+        when(listingService.activateListing(9L, STORED)).thenThrow(new RuntimeException("commit failed"));
+        when(listingService.discardPendingListing(9L)).thenReturn(false);
+
+        // Act
+        imageUploadService.submit(listing, image, KEY);
+        awaitIdle();
+
+        // Assert
+        verify(imageStore, never()).release(any(ListingImages.class), any());
+    }
+
+    @Test
+    void submit_ShouldDiscardListingWhoseImageCannotBeRead() throws Exception {
+        // Arrange
+        when(imageProcessor.submit(any()))
+            .thenReturn(CompletableFuture.failedFuture(new IOException("Unsupported image format")));
+
+        // Act
+        imageUploadService.submit(listing, image, KEY);
+        awaitIdle();
+
+        // Assert
+        verify(listingService).discardPendingListing(9L);
+        verifyNoInteractions(imageStore);
+    }
+
+    @Test
+    void submit_ShouldDiscardListingWhenImageProcessingIsBusy() throws Exception {
+        // Arrange
+        when(imageProcessor.submit(any())).thenThrow(new RejectedExecutionException("queue full"));
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class, () -> imageUploadService.submit(listing, image, KEY));
+        verify(listingService).discardPendingListing(9L);
+        assertEquals(0, imageUploadService.getPendingCount());
+        verifyNoInteractions(imageStore);
+    }
+
+    @Test
+    void submit_ShouldRejectWhenTooManyUploadsArePending() throws Exception {
+        // Arrange
+        when(imageStore.store(any(), any())).thenAnswer(inv -> {
+            Thread.sleep(50);
+            throw new Exception("unavailable");
+        });
+        for (int i = 0; i < ImageUploadService.MAX_PENDING; i++) {
+            imageUploadService.submit(listing, image, KEY);
+        }
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class, () -> imageUploadService.submit(listing, image, KEY));
+        verify(listingService, times(ImageUploadService.MAX_PENDING)).createPendingListing(listing);
+    }
+
+    @Test
+    void discardAbandonedUploads_ShouldOnlyDiscardListingsOlderThanAnyUpload() {
+        // Act
+        LocalDateTime before = LocalDateTime.now();
+        imageUploadService.discardAbandonedUploads();
+
+        // Assert
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(listingService).discardPendingListingsBefore(cutoff.capture());
+        assertFalse(cutoff.getValue().isAfter(LocalDateTime.now().minusHours(1)));
+        assertFalse(cutoff.getValue().isBefore(before.minusHours(1)));
+    }
+
+    @Test
+    void presignUpload_ShouldSignAKeyScopedToTheOwner() {
+        // Arrange
+        S3Service.PresignedUpload presigned = new S3Service.PresignedUpload(STAGED_KEY, "https://bucket/signed",
+            Map.of("content-type", "image/png"), Instant.now());
+        when(s3Service.presignUpload(argThat(key -> key.startsWith("uploads/3/")), eq("image/png"), eq(1024L),
+            eq(ImageUploadService.UPLOAD_URL_EXPIRY))).thenReturn(presigned);
+
+        // Act
+        S3Service.PresignedUpload result = imageUploadService.presignUpload(3L, "image/png", 1024);
+
+        // Assert
+        assertSame(presigned, result);
+    }
+
+    @Test
+    void presignUpload_ShouldRejectUnsupportedTypesAndSizes() {
+        assertThrows(IllegalArgumentException.class, () -> imageUploadService.presignUpload(3L, "image/gif", 1024));
+        assertThrows(IllegalArgumentException.class,
+            () -> imageUploadService.presignUpload(3L, "image/jpeg", ImageUploadService.MAX_IMAGE_BYTES + 1));
+        assertThrows(IllegalArgumentException.class, () -> imageUploadService.presignUpload(3L, "image/jpeg", 0));
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submitUploaded_ShouldProcessTheStagedObjectAndDeleteIt() throws Exception {
+        // Arrange
+        when(s3Service.headFile(STAGED_KEY))
+            .thenReturn(HeadObjectResponse.builder().contentType("image/jpeg").contentLength(2048L).build());
+        InputStream staged = new ByteArrayInputStream(new byte[] {1, 2, 3});
+        when(s3Service.openFile(STAGED_KEY)).thenReturn(staged);
+        when(imageStore.store(PROCESSED, KEY)).thenReturn(STORED);
+        when(listingService.activateListing(9L, STORED)).thenReturn(listing);
+
+        // Act
+        BookListing saved = imageUploadService.submitUploaded(listing, STAGED_KEY, KEY);
+        awaitIdle();
+
+        // Assert
+        assertEquals(9L, saved.getId());
+        ArgumentCaptor<Callable<InputStream>> source = ArgumentCaptor.forClass(Callable.class);
+        verify(imageProcessor).submit(source.capture());
+        assertSame(staged, source.getValue().call());
+        verify(s3Service).deleteFile(STAGED_KEY);
+        verify(listingService).activateListing(9L, STORED);
+    }
+
+    @Test
+    void submitUploaded_ShouldRejectKeysOfOtherUsers() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+            () -> imageUploadService.submitUploaded(listing, "uploads/4/5f0c9a52", KEY));
+        assertThrows(IllegalArgumentException.class,
+            () -> imageUploadService.submitUploaded(listing, "uploads/3/../4/5f0c9a52", KEY));
+        assertThrows(IllegalArgumentException.class,
+            () -> imageUploadService.submitUploaded(listing, "book-images/1-4.jpg", KEY));
+        verifyNoInteractions(s3Service);
+        verify(listingService, never()).createPendingListing(any());
+    }
+
+    @Test
+    void submitUploaded_ShouldRejectMissingOrOversizedUploads() throws Exception {
+        // Arrange
+        when(s3Service.headFile(STAGED_KEY))
+            .thenReturn(null)
+            .thenReturn(HeadObjectResponse.builder().contentType("image/jpeg")
+                .contentLength(ImageUploadService.MAX_IMAGE_BYTES + 1).build());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+            () -> imageUploadService.submitUploaded(listing, STAGED_KEY, KEY));
+        assertThrows(IllegalArgumentException.class,
+            () -> imageUploadService.submitUploaded(listing, STAGED_KEY, KEY));
+        verify(listingService, never()).createPendingListing(any());
+        assertEquals(0, imageUploadService.getPendingCount());
+    }
+}
@@ -0,0 +1,160 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import com.esaunders.TextbookExchange.config.JwtProperties;
+import com.esaunders.TextbookExchange.dtos.CustomUserDetails;
+import com.esaunders.TextbookExchange.repository.RefreshTokenRepository;
+import com.esaunders.TextbookExchange.repository.RevokedTokenRepository;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "a-test-secret-that-is-at-least-256-bits-long!!";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private Instant start;
+    private Clock clock;
+    private RevocationList revocations;
+    private JwtService jwtService;
+    private UserDetails user;
+
+    @BeforeEach
+    void setUp() {
+        start = Instant.parse("2026-01-01T00:00:00Z");
+        clock = new Clock() {
+            @Override
+            public Instant instant() {
+                return start.plusNanos(nanos.get());
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        };
+        revocations = new RevocationList(mock(RevokedTokenRepository.class), mock(RefreshTokenRepository.class),
+            new JwtProperties(), clock);
+        jwtService = service(SECRET, 10);
+        user = User.withUsername("student@school.edu").password("x").authorities("USER").build();
+    }
+
+    /** A service whose clock and cache ticker both follow {@link #nanos}. */
+    private JwtService service(String secret, long cacheSize) {
+        return new JwtService(secret, Duration.ofHours(1), cacheSize, revocations, clock, nanos::get);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void verify_ShouldReturnTheSubjectAndExpiryOfAValidToken() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+
+        // Act
+        JwtService.VerifiedToken verified = jwtService.verify(token);
+
+        // Assert
+        assertEquals("student@school.edu", verified.subject());
+        assertEquals(start.plus(Duration.ofHours(1)), verified.expiresAt());
+        assertEquals("student@school.edu", jwtService.extractUsername(token));
+        assertTrue(jwtService.isTokenValid(token, user));
+        assertTrue(jwtService.validateToken(token));
+    }
+
+    @Test
+    void verify_ShouldRejectTamperedForgedAndMalformedTokens() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+        String[] parts = token.split("\\.");
+        String tampered = parts[0] + "." + parts[1] + "x." + parts[2];
+        String forged = service("another-secret-that-is-also-at-least-256-bits-long", 10).generateToken(user);
+
+        // Act & Assert
+        assertNull(jwtService.verify(tampered));
+        assertNull(jwtService.verify(forged));
+        assertNull(jwtService.verify("not-a-jwt"));
+        assertNull(jwtService.verify(""));
+        assertNull(jwtService.verify(null));
+        assertFalse(jwtService.validateToken(forged));
+    }
+
+    @Test
+    void verify_ShouldRejectCachedTokensOnceTheyExpire() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+        JwtService.VerifiedToken first = jwtService.verify(token);
+
+        // Act
+        advance(Duration.ofMinutes(30));
+        JwtService.VerifiedToken cached = jwtService.verify(token);
+        advance(Duration.ofMinutes(31));
+
+        // Assert
+        assertSame(first, cached);
+        assertNull(jwtService.verify(token));
+        assertFalse(jwtService.isTokenValid(token, user));
+    }
+
+    @Test
+    void isTokenValid_ShouldRequireTheSubjectToMatchTheUser() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+        UserDetails other = User.withUsername("other@school.edu").password("x").authorities("USER").build();
+
+        // Act & Assert
+        assertFalse(jwtService.isTokenValid(token, other));
+    }
+
+    @Test
+    void verify_ShouldCarryTheUserIdOfCustomUserDetails() {
+        // Arrange
+        com.esaunders.TextbookExchange.model.User account = new com.esaunders.TextbookExchange.model.User();
+        account.setId(42L);
+        account.setEmail("student@school.edu");
+        String token = jwtService.generateToken(new CustomUserDetails(account));
+
+        // Act
+        JwtService.VerifiedToken verified = jwtService.verify(token);
+
+        // Assert
+        assertEquals(42L, verified.userId());
+        assertEquals("student@school.edu", verified.subject());
+        assertNull(jwtService.verify(jwtService.generateToken(user)).userId());
+    }
+
+    @Test
+    void verify_ShouldRejectRevokedTokensEvenWhenCached() {
+        // Arrange
+        String token = jwtService.generateToken(user);
+        String other = jwtService.generateToken(user);
+        JwtService.VerifiedToken verified = jwtService.verify(token);
+
+        // Act
+        jwtService.revoke(verified);
+
+        // Assert
+        assertNotNull(verified.tokenId());
+        assertNull(jwtService.verify(token));
+        assertNotNull(jwtService.verify(other));
+    }
+}
@@ -0,0 +1,122 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.esaunders.TextbookExchange.config.ListingCacheProperties;
+import com.esaunders.TextbookExchange.config.SearchProperties;
+import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.BookPage;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.User;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ListingCacheTest {
+
+    private ListingCache listingCache;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        listingCache = new ListingCache(new ListingCacheProperties(), new SearchProperties(), meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    private BookListing listing(Long id, LocalDateTime postedAt, Long ownerId) {
+        User owner = new User();
+        owner.setId(ownerId);
+        BookListing listing = new BookListing();
+        listing.setId(id);
+        listing.setTitle("Organic Chemistry");
+        listing.setCourseCode("CH201");
+        listing.setCondition("GOOD");
+        listing.setPrice(30.0);
+        listing.setPostedAt(postedAt);
+        listing.setOwner(owner);
+        return listing;
+    }
+
+    private BookDto book(Long id) {
+        BookDto book = new BookDto();
+        book.setId(id);
+        return book;
+    }
+
+    private ListingCache.FeedWindow window(ListingService.FeedCursor after, Long... ids) {
+        return listingCache.feedWindow(after, () -> {
+            loads.incrementAndGet();
+            return new ListingCache.FeedWindow(Arrays.stream(ids).map(this::book).toList(), false);
+        });
+    }
+
+    @Test
+    void listingCreated_ShouldEvictOnlyFeedWindowsStartingBeforeIt() {
+        LocalDateTime noon = LocalDateTime.of(2025, 3, 1, 12, 0);
+        ListingService.FeedCursor older = new ListingService.FeedCursor(noon.minusDays(1), 4L);
+        window(null, 9L, 8L);
+        window(older, 3L, 2L);
+
+        listingCache.listingCreated(listing(10L, noon, 1L));
+        window(null, 10L, 9L, 8L);
+        window(older, 3L, 2L);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void listingDeleted_ShouldEvictFeedWindowsAndDetailContainingIt() {
+        ListingService.FeedCursor cursor = new ListingService.FeedCursor(LocalDateTime.of(2025, 3, 1, 12, 0), 5L);
+        window(null, 9L, 8L);
+        window(cursor, 3L, 2L);
+        listingCache.detail(3L, () -> book(3L));
+
+        listingCache.listingDeleted(listing(3L, LocalDateTime.of(2025, 2, 1, 12, 0), 1L));
+        window(null, 9L, 8L);
+        window(cursor, 2L);
+
+        assertEquals(3, loads.get());
+        assertNull(listingCache.detail(3L, () -> null));
+    }
+
+    @Test
+    void searchKey_ShouldNormalizeEquivalentSearches() {
+        assertEquals(
+            ListingCache.SearchKey.of(new BookSearchCriteria(" Linear  Algebra ", "good", 1.0, null, 2L), "Price_Asc", 0, 10),
+            ListingCache.SearchKey.of(new BookSearchCriteria("linear algebra", "GOOD", 1.0, null, 2L), "price_asc", 0, 10));
+    }
+
+    @Test
+    void mayMatch_ShouldCheckFiltersAndDatabaseText() {
+        BookListing listing = listing(1L, LocalDateTime.now(), 1L);
+
+        assertTrue(listingCache.mayMatch(new BookSearchCriteria("chem", "good", 20.0, 40.0, 2L), listing));
+        assertFalse(listingCache.mayMatch(new BookSearchCriteria("physics", null, null, null, null), listing));
+        assertFalse(listingCache.mayMatch(new BookSearchCriteria(null, "NEW", null, null, null), listing));
+        assertFalse(listingCache.mayMatch(new BookSearchCriteria(null, null, 35.0, null, null), listing));
+        assertFalse(listingCache.mayMatch(new BookSearchCriteria(null, null, null, null, 1L), listing));
+    }
+
+    @Test
+    void search_ShouldRecordHitAndMissMetrics() {
+        ListingCache.SearchKey key = ListingCache.SearchKey.of(new BookSearchCriteria(), null, 0, 10);
+        List<BookDto> books = Arrays.asList(book(1L));
+        listingCache.search(key, () -> new BookPage(books, null));
+        listingCache.search(key, () -> new BookPage(books, null));
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "listings.search").tag("result", "hit")
+            .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "listings.search").tag("result", "miss")
+            .functionCounter().count());
+    }
+}
@@ -0,0 +1,112 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.esaunders.TextbookExchange.dtos.BookDto;
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.model.ListingStatus;
+import com.esaunders.TextbookExchange.repository.BookListingRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+class ListingExportServiceTest {
+
+    @Mock
+    private BookListingRepository bookListingRepository;
+
+    private ListingExportService listingExportService;
+    private ObjectMapper objectMapper;
+    private AtomicBoolean closed;
+    private BookDto plain;
+    private BookDto quoted;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        listingExportService = new ListingExportService(bookListingRepository, objectMapper);
+        closed = new AtomicBoolean();
+
+        plain = new BookDto(1L, "Java Programming", "Gosling", "CS101", "978-0", null, 40.0, "GOOD",
+            LocalDateTime.of(2025, 1, 2, 12, 0), null, null, null, null, 7L, "Ada", "Lovelace", "ada", "ada@example.com", ListingStatus.ACTIVE);
+        quoted = new BookDto(2L, "Calculus, \"Early\"", null, "MA141", null, "Line one\nline two", 25.5, "FAIR",
+            null, "https://img/2.jpg", null, null, null, 8L, null, null, "bob", "bob@example.com", ListingStatus.ACTIVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubRows(BookDto... books) {
+        when(bookListingRepository.streamBooks(any(Specification.class), eq(ListingExportService.FETCH_SIZE)))
+            .thenReturn(Stream.of(books).onClose(() -> closed.set(true)));
+    }
+
+    @Test
+    void export_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        stubRows(plain, quoted);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = listingExportService.export(new BookSearchCriteria(), ListingExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, count);
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(1L, first.get("id").asLong());
+        assertEquals("2025-01-02T12:00", first.get("postedAt").asText());
+        assertEquals(7L, first.get("ownerId").asLong());
+        assertFalse(first.has("seller"));
+        assertEquals("Line one\nline two", objectMapper.readTree(lines[1]).get("description").asText());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void export_ShouldWriteCsvWithHeaderAndQuotedFields() throws Exception {
+        stubRows(plain, quoted);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        listingExportService.export(new BookSearchCriteria(), ListingExportService.Format.CSV, out);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith(String.join(",", ListingExportService.COLUMNS) + "\r\n"));
+        assertTrue(csv.contains("1,Java Programming,Gosling,978-0,CS101,GOOD,40.0,,2025-01-02T12:00,,7\r\n"));
+        assertTrue(csv.contains("2,\"Calculus, \"\"Early\"\"\",,,MA141,FAIR,25.5,\"Line one\nline two\",,https://img/2.jpg,8\r\n"));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void export_ShouldNeutralizeFieldsThatSpreadsheetsReadAsFormulas() throws Exception {
+        plain.setTitle("=HYPERLINK(\"https://evil\",\"Java\")");
+        plain.setAuthor("@SUM(A1)");
+        plain.setDescription("-2+3");
+        plain.setPrice(-5.0);
+        stubRows(plain);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        listingExportService.export(new BookSearchCriteria(), ListingExportService.Format.CSV, out);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.contains("1,\"'=HYPERLINK(\"\"https://evil\"\",\"\"Java\"\")\",'@SUM(A1),978-0,CS101,GOOD,-5.0,'-2+3,"));
+    }
+
+    @Test
+    void formatParse_ShouldRejectUnknownFormats() {
+        assertEquals(ListingExportService.Format.CSV, ListingExportService.Format.parse(" Csv "));
+        assertThrows(IllegalArgumentException.class, () -> ListingExportService.Format.parse("xml"));
+        assertThrows(IllegalArgumentException.class, () -> ListingExportService.Format.parse(null));
+    }
+}
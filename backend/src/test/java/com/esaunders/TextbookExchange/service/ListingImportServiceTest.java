@@ -0,0 +1,214 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.esaunders.TextbookExchange.dtos.ImportResult;
+import com.esaunders.TextbookExchange.dtos.ImportRow;
+import com.esaunders.TextbookExchange.dtos.ImportRowResult;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(MockitoExtension.class)
+class ListingImportServiceTest {
+
+    @Mock
+    private ListingService listingService;
+
+    @Mock
+    private ImageStore imageStore;
+
+    private ImageProcessor imageProcessor;
+    private ListingImportService listingImportService;
+    private User owner;
+    private MockMultipartFile images;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        imageProcessor = new ImageProcessor();
+        listingImportService = new ListingImportService(listingService, imageStore, new ObjectMapper(), imageProcessor, 2);
+        owner = new User();
+        owner.setId(3L);
+        images = zip("covers/a.jpg", "covers/b.png", "notes.txt");
+        lenient().when(listingService.checkCourseCodeValid(anyString()))
+            .thenAnswer(inv -> ((String) inv.getArgument(0)).matches("^[A-Za-z]{1,3}\\d{3}$"));
+        lenient().when(imageStore.store(any(), anyString())).thenAnswer(inv -> {
+            ImageProcessor.ProcessedImage images = inv.getArgument(0);
+            String key = inv.getArgument(1);
+            return new ListingImages("https://bucket/" + key, null, "https://bucket/thumb/" + key, images.blurhash(),
+                null);
+        });
+        lenient().when(listingService.createListings(any())).thenAnswer(inv -> {
+            List<BookListing> listings = inv.getArgument(0);
+            long id = 100;
+            for (BookListing listing : listings) {
+                listing.setId(id++);
+            }
+            return listings;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        listingImportService.destroy();
+        imageProcessor.destroy();
+    }
+
+    private static MockMultipartFile zip(String... names) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                if (name.endsWith(".txt")) {
+                    zip.write(name.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB),
+                        name.substring(name.lastIndexOf('.') + 1), zip);
+                }
+                zip.closeEntry();
+            }
+        }
+        return new MockMultipartFile("images", "images.zip", "application/zip", bytes.toByteArray());
+    }
+
+    private static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("manifest", "listings.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importListings_ShouldSaveValidRowsTogetherAndReportEachRow() throws Exception {
+        // Arrange
+        MockMultipartFile manifest = csv(
+            "Title,Course Code,Price,Condition,Image\r\n"
+            + "Calculus,MA141,25.5,GOOD,covers/a.jpg\r\n"
+            + "Bad Code,MATH1,10,GOOD,covers/a.jpg\r\n"
+            + "\"Physics, \"\"Vol 1\"\"\",PY205,40,FAIR,covers/b.png\r\n"
+            + "Missing,CS101,5,GOOD,covers/missing.jpg\r\n"
+            + "Text,CS101,5,GOOD,notes.txt\r\n");
+
+        // Act
+        ImportResult result = listingImportService.importListings(owner, manifest, images);
+
+        // Assert
+        assertEquals(2, result.getImported());
+        assertEquals(3, result.getFailed());
+        assertEquals(100L, result.getRows().get(0).getListingId());
+        assertEquals("Invalid course code format", result.getRows().get(1).getError());
+        assertEquals(101L, result.getRows().get(2).getListingId());
+        assertTrue(result.getRows().get(3).getError().startsWith("Image not found"));
+        assertTrue(result.getRows().get(4).getError().startsWith("Invalid image type"));
+        assertEquals(5, result.getRows().get(4).getRow());
+
+        ArgumentCaptor<List<BookListing>> saved = ArgumentCaptor.forClass(List.class);
+        verify(listingService).createListings(saved.capture());
+        BookListing physics = saved.getValue().get(1);
+        assertEquals("Physics, \"Vol 1\"", physics.getTitle());
+        assertEquals(40.0, physics.getPrice());
+        assertEquals(owner, physics.getOwner());
+        assertTrue(physics.getImageUrl().endsWith("-3.jpg"));
+        assertNotNull(physics.getThumbnailUrl());
+        assertNotNull(physics.getBlurhash());
+    }
+
+    @Test
+    void importListings_ShouldFailOnlyTheRowsWhoseUploadFails() throws Exception {
+        // Arrange
+        MockMultipartFile manifest = new MockMultipartFile("manifest", "listings.json", "application/json", (
+            "[{\"title\":\"Calculus\",\"courseCode\":\"MA141\",\"price\":25,\"image\":\"covers/a.jpg\",\"extra\":1},"
+            + "{\"title\":\"Physics\",\"courseCode\":\"PY205\",\"price\":\"40\",\"image\":\"covers/b.png\"}]")
+            .getBytes(StandardCharsets.UTF_8));
+        AtomicBoolean failed = new AtomicBoolean();
+        doAnswer(inv -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new Exception("Failed to upload file to S3: slow down");
+            }
+            return new ListingImages("https://bucket/" + inv.getArgument(1), null, null, null, null);
+        }).when(imageStore).store(any(), anyString());
+
+        // Act
+        ImportResult result = listingImportService.importListings(owner, manifest, images);
+
+        // Assert
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        ImportRowResult rejected = result.getRows().stream().filter(row -> !row.isImported()).findFirst().orElseThrow();
+        assertTrue(rejected.getError().contains("slow down"));
+        verify(listingService).createListings(argThat(listings -> listings.size() == 1));
+    }
+
+    @Test
+    void importListings_ShouldRejectPricesThatAreNotFiniteNumbers() throws Exception {
+        // Arrange
+        MockMultipartFile manifest = csv(
+            "Title,Course Code,Price,Image\r\n"
+            + "Calculus,MA141,NaN,covers/a.jpg\r\n"
+            + "Physics,PY205,Infinity,covers/a.jpg\r\n"
+            + "Chemistry,CH101,-1,covers/a.jpg\r\n");
+
+        // Act
+        ImportResult result = listingImportService.importListings(owner, manifest, images);
+
+        // Assert
+        assertEquals(0, result.getImported());
+        for (ImportRowResult row : result.getRows()) {
+            assertEquals("Invalid price.", row.getError());
+        }
+    }
+
+    @Test
+    void importListings_ShouldRejectArchivesThatAreNotZipFiles() {
+        MockMultipartFile notZip = new MockMultipartFile("images", "images.zip", "application/zip", new byte[] {1, 2, 3});
+
+        assertThrows(IllegalArgumentException.class,
+            () -> listingImportService.importListings(owner, csv("title\nCalculus\n"), notZip));
+        verifyNoInteractions(imageStore);
+    }
+
+    @Test
+    void parseManifest_ShouldRejectEmptyAndOversizedManifests() {
+        StringBuilder tooLong = new StringBuilder("title\n");
+        for (int i = 0; i <= ListingImportService.MAX_ROWS; i++) {
+            tooLong.append("Book ").append(i).append('\n');
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> listingImportService.parseManifest(csv("title\n\n")));
+        assertThrows(IllegalArgumentException.class, () -> listingImportService.parseManifest(csv(tooLong.toString())));
+        assertThrows(IllegalArgumentException.class, () -> listingImportService.parseManifest(csv("title\n\"open\n")));
+    }
+
+    @Test
+    void parseManifest_ShouldKeepLineBreaksInQuotedFields() {
+        List<ImportRow> rows = new ArrayList<>(listingImportService.parseManifest(
+            csv("description,title\n\"Line one\nline two\",Calculus\n")));
+
+        assertEquals(1, rows.size());
+        assertEquals("Line one\nline two", rows.get(0).getDescription());
+        assertEquals("Calculus", rows.get(0).getTitle());
+    }
+}
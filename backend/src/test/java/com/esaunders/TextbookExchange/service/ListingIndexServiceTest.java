@@ -0,0 +1,151 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.esaunders.TextbookExchange.dtos.BookSearchCriteria;
+import com.esaunders.TextbookExchange.dtos.SearchFacets;
+import com.esaunders.TextbookExchange.model.BookListing;
+import com.esaunders.TextbookExchange.model.User;
+
+class ListingIndexServiceTest {
+
+    private ListingIndexService listingIndexService;
+    private User seller;
+    private User buyer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        listingIndexService = new ListingIndexService(new ByteBuffersDirectory(), 50);
+
+        seller = new User();
+        seller.setId(1L);
+        buyer = new User();
+        buyer.setId(2L);
+
+        listingIndexService.index(listing(1L, "Java Programming", "CS101", "GOOD", 40.0, seller));
+        listingIndexService.index(listing(2L, "Advanced Java Concepts", "CS201", "NEW", 80.0, seller));
+        listingIndexService.index(listing(3L, "Calculus Early Transcendentals", "MA141", "FAIR", 25.0, buyer));
+        listingIndexService.refresh();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        listingIndexService.destroy();
+    }
+
+    private BookListing listing(Long id, String title, String courseCode, String condition, double price, User owner) {
+        BookListing listing = new BookListing();
+        listing.setId(id);
+        listing.setTitle(title);
+        listing.setCourseCode(courseCode);
+        listing.setCondition(condition);
+        listing.setPrice(price);
+        listing.setOwner(owner);
+        listing.setPostedAt(LocalDateTime.of(2025, 1, id.intValue(), 12, 0));
+        return listing;
+    }
+
+    private List<Long> search(BookSearchCriteria criteria, String sort) {
+        return listingIndexService.search(criteria, sort, 0, 10).ids();
+    }
+
+    @Test
+    void search_ShouldRankTextMatchesAcrossFields() {
+        List<Long> ids = search(new BookSearchCriteria("java", null, null, null, null), null);
+        assertEquals(2, ids.size());
+        assertTrue(ids.containsAll(Arrays.asList(1L, 2L)));
+    }
+
+    @Test
+    void search_ShouldMatchCourseCodePrefix() {
+        assertEquals(Arrays.asList(1L), search(new BookSearchCriteria("cs1", null, null, null, null), null));
+    }
+
+    @Test
+    void search_ShouldApplyFiltersAndOwnerExclusion() {
+        assertEquals(Arrays.asList(3L),
+            search(new BookSearchCriteria(null, null, null, null, 1L), null));
+        assertEquals(Arrays.asList(2L),
+            search(new BookSearchCriteria(null, "new", null, null, null), null));
+        assertEquals(Arrays.asList(3L, 1L),
+            search(new BookSearchCriteria(null, null, 20.0, 50.0, null), "price_asc"));
+    }
+
+    @Test
+    void search_ShouldSortNewestFirstWithoutQuery() {
+        assertEquals(Arrays.asList(3L, 2L, 1L), search(new BookSearchCriteria(), null));
+    }
+
+    @Test
+    void search_ShouldPageResults() {
+        ListingIndexService.IndexHits hits = listingIndexService.search(new BookSearchCriteria(), "newest", 1, 2);
+        assertEquals(Arrays.asList(1L), hits.ids());
+        assertEquals(3, hits.totalHits());
+    }
+
+    @Test
+    void search_ShouldCountFacetsOverAllMatches() {
+        SearchFacets facets = listingIndexService.search(new BookSearchCriteria(), null, 0, 1).facets();
+
+        assertEquals(1L, facets.getConditions().get("GOOD"));
+        assertEquals(1L, facets.getConditions().get("NEW"));
+        assertEquals(1L, facets.getConditions().get("FAIR"));
+        assertEquals(0L, facets.getPriceRanges().get("0-25"));
+        assertEquals(2L, facets.getPriceRanges().get("25-50"));
+        assertEquals(1L, facets.getPriceRanges().get("50-100"));
+        assertEquals(0L, facets.getPriceRanges().get("100+"));
+        assertEquals(2L, facets.getCoursePrefixes().get("CS"));
+        assertEquals(1L, facets.getCoursePrefixes().get("MA"));
+    }
+
+    @Test
+    void delete_ShouldRemoveListingFromResults() throws Exception {
+        listingIndexService.delete(1L);
+        listingIndexService.refresh();
+
+        assertEquals(Arrays.asList(2L), search(new BookSearchCriteria("java", null, null, null, null), null));
+    }
+
+    @Test
+    void rebuild_ShouldKeepListingsSearchableAndDropOnlyThoseNotRewritten() throws Exception {
+        long rebuild = listingIndexService.beginRebuild();
+        listingIndexService.index(listing(1L, "Java Programming", "CS101", "GOOD", 40.0, seller));
+        listingIndexService.refresh();
+        assertEquals(Arrays.asList(2L, 1L), search(new BookSearchCriteria("java", null, null, null, null), "newest"));
+
+        listingIndexService.index(listing(3L, "Calculus Early Transcendentals", "MA141", "FAIR", 25.0, buyer));
+        listingIndexService.finishRebuild(rebuild);
+        listingIndexService.refresh();
+
+        assertEquals(Arrays.asList(3L, 1L), search(new BookSearchCriteria(), "newest"));
+        assertEquals(2, listingIndexService.size());
+    }
+
+    @Test
+    void index_ShouldBecomeSearchableWithinMaxStaleness() throws Exception {
+        listingIndexService.index(listing(4L, "Organic Chemistry", "CH221", "GOOD", 60.0, buyer));
+
+        long deadline = System.currentTimeMillis() + 2000;
+        List<Long> ids = search(new BookSearchCriteria("chemistry", null, null, null, null), null);
+        while (ids.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ids = search(new BookSearchCriteria("chemistry", null, null, null, null), null);
+        }
+        assertEquals(Arrays.asList(4L), ids);
+    }
+
+    @Test
+    void search_ShouldRejectUnknownSort() {
+        assertThrows(IllegalArgumentException.class,
+            () -> search(new BookSearchCriteria(), "cheapest"));
+    }
+}
@@ -0,0 +1,173 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import com.esaunders.TextbookExchange.config.LoginProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class LoginServiceTest {
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private LoginProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private LoginService loginService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LoginProperties();
+        properties.setThreads(1);
+        properties.setQueueCapacity(1);
+        properties.setIpBurst(3);
+        properties.setIpPerMinute(60);
+        properties.setEmailBurst(2);
+        properties.setEmailPerMinute(60);
+        meterRegistry = new SimpleMeterRegistry();
+        loginService = new LoginService(authenticationManager, properties, meterRegistry, nanos::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loginService.destroy();
+    }
+
+    @Test
+    void authenticate_ShouldCheckCredentialsOnTheLoginPool() throws Exception {
+        // Arrange
+        Authentication authenticated = new UsernamePasswordAuthenticationToken("a@school.edu", null, List.of());
+        when(authenticationManager.authenticate(any())).thenAnswer(inv -> {
+            assertTrue(Thread.currentThread().getName().startsWith("login-"));
+            return authenticated;
+        });
+
+        // Act
+        Authentication result = loginService.authenticate("a@school.edu", "secret", "10.0.0.1").get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertSame(authenticated, result);
+        assertEquals(1, meterRegistry.get("login.hash").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void authenticate_ShouldCompleteExceptionallyForWrongPasswords() {
+        // Arrange
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+
+        // Act
+        CompletableFuture<Authentication> result = loginService.authenticate("a@school.edu", "wrong", "10.0.0.1");
+
+        // Assert
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BadCredentialsException.class, e.getCause());
+        assertEquals(1, meterRegistry.get("login.hash").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void authenticate_ShouldLimitEachAccountAndRefillOverTime() {
+        // Arrange
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+        loginService.authenticate("A@school.edu", "1", "10.0.0.1").exceptionally(e -> null).join();
+        loginService.authenticate("a@school.edu ", "2", "10.0.0.2").exceptionally(e -> null).join();
+
+        // Act & Assert
+        LoginService.RateLimitedException limited = assertThrows(LoginService.RateLimitedException.class,
+            () -> loginService.authenticate("a@school.edu", "3", "10.0.0.3"));
+        assertEquals(1, limited.getRetryAfterSeconds());
+        nanos.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertDoesNotThrow(() -> loginService.authenticate("a@school.edu", "4", "10.0.0.4").exceptionally(e -> null).join());
+        assertEquals(1, meterRegistry.get("login.rejected").tag("reason", "email").counter().count());
+    }
+
+    @Test
+    void authenticate_ShouldLimitEachIpAddressBeforeCheckingTheAccount() {
+        // Arrange
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+        for (int i = 0; i < 3; i++) {
+            loginService.authenticate("user" + i + "@school.edu", "x", "10.0.0.1").exceptionally(e -> null).join();
+        }
+
+        // Act & Assert
+        assertThrows(LoginService.RateLimitedException.class,
+            () -> loginService.authenticate("other@school.edu", "x", "10.0.0.1"));
+        assertDoesNotThrow(() -> loginService.authenticate("other@school.edu", "x", "10.0.0.2").exceptionally(e -> null).join());
+        assertEquals(1, meterRegistry.get("login.rejected").tag("reason", "ip").counter().count());
+        verify(authenticationManager, times(4)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_ShouldRejectLoginsBeyondTheQueue() throws Exception {
+        // Arrange
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(authenticationManager.authenticate(any())).thenAnswer(inv -> {
+            running.countDown();
+            release.await();
+            return null;
+        });
+        CompletableFuture<Authentication> first = loginService.authenticate("a@school.edu", "x", "10.0.0.1");
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Authentication> queued = loginService.authenticate("b@school.edu", "x", "10.0.0.2");
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class,
+            () -> loginService.authenticate("c@school.edu", "x", "10.0.0.3"));
+        assertEquals(1.0, meterRegistry.get("login.queue.depth").gauge().value());
+        assertEquals(1, meterRegistry.get("login.rejected").tag("reason", "busy").counter().count());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void authenticate_ShouldSkipChecksThatTimedOutWhileQueued() throws Exception {
+        // Arrange
+        properties.setTimeout(Duration.ofMillis(50));
+        loginService.destroy();
+        loginService = new LoginService(authenticationManager, properties, meterRegistry, nanos::get);
+        CountDownLatch release = new CountDownLatch(1);
+        when(authenticationManager.authenticate(any())).thenAnswer(inv -> {
+            release.await();
+            return null;
+        });
+        CompletableFuture<Authentication> first = loginService.authenticate("a@school.edu", "x", "10.0.0.1");
+        CompletableFuture<Authentication> queued = loginService.authenticate("b@school.edu", "x", "10.0.0.2");
+
+        // Act
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        loginService.authenticate("c@school.edu", "x", "10.0.0.3").get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        verify(authenticationManager, times(2)).authenticate(any());
+        assertEquals(2, meterRegistry.get("login.rejected").tag("reason", "busy").counter().count());
+    }
+}
@@ -0,0 +1,209 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import com.esaunders.TextbookExchange.dtos.ConversationDto;
+import com.esaunders.TextbookExchange.dtos.ConversationPage;
+import com.esaunders.TextbookExchange.dtos.MessageDto;
+import com.esaunders.TextbookExchange.dtos.MessagePage;
+import com.esaunders.TextbookExchange.mapper.MessagesMapper;
+import com.esaunders.TextbookExchange.model.Conversation;
+import com.esaunders.TextbookExchange.model.Message;
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.repository.ConversationRepository;
+import com.esaunders.TextbookExchange.repository.MessageRepository;
+
+@ExtendWith(MockitoExtension.class)
+class MessageServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private MessagesMapper messagesMapper;
+
+    @Mock
+    private UserCache userCache;
+
+    private MessageService messageService;
+
+    @BeforeEach
+    void setUp() {
+        messageService = new MessageService(messageRepository, conversationRepository, messagesMapper, userCache);
+        lenient().when(messagesMapper.toDto(any(Message.class), anyMap())).thenAnswer(inv -> {
+            Message message = inv.getArgument(0);
+            Map<Long, String> names = inv.getArgument(1);
+            return new MessageDto(message.getId(), message.getSenderId(), names.get(message.getSenderId()),
+                message.getReceiverId(), message.getContent(), message.getTimestamp());
+        });
+        User ann = new User();
+        ann.setUsername("ann");
+        lenient().when(userCache.findById(7L)).thenReturn(ann);
+    }
+
+    /** Messages with IDs from..to (inclusive, either direction), alternating senders. */
+    private static List<Message> messages(long from, long to) {
+        List<Message> messages = new ArrayList<>();
+        long step = from <= to ? 1 : -1;
+        for (long id = from; id != to + step; id += step) {
+            long sender = id % 2 == 0 ? 7L : 3L;
+            messages.add(new Message(id, sender, sender == 7L ? 3L : 7L, "m" + id, START.plusMinutes(id)));
+        }
+        return messages;
+    }
+
+    private static List<Long> ids(MessagePage page) {
+        return page.getMessages().stream().map(MessageDto::getId).toList();
+    }
+
+    @Test
+    void getConversation_ShouldReturnTheLatestPageOldestFirstWithACursorForOlderMessages() {
+        // Arrange
+        when(messageRepository.findConversation(3L, 7L, PageRequest.of(0, 4))).thenReturn(messages(10, 7));
+
+        // Act
+        MessagePage page = messageService.getConversation(7L, 3L, null, null, 3);
+
+        // Assert
+        assertEquals(List.of(8L, 9L, 10L), ids(page));
+        assertEquals(new MessageService.MessageCursor(START.plusMinutes(8), 8L),
+            MessageService.decodeCursor(page.getBefore()));
+        assertNull(page.getAfter());
+        assertEquals("ann", page.getMessages().get(0).getSenderName());
+        verify(userCache).findById(7L);
+        verify(userCache).findById(3L);
+    }
+
+    @Test
+    void getConversation_ShouldPageBackUntilTheStartOfTheConversation() {
+        // Arrange
+        String before = MessageService.encodeCursor(messages(3, 3).get(0));
+        when(messageRepository.findConversationBefore(3L, 7L, START.plusMinutes(3), 3L, PageRequest.of(0, 4)))
+            .thenReturn(messages(2, 1));
+
+        // Act
+        MessagePage page = messageService.getConversation(3L, 7L, before, null, 3);
+
+        // Assert
+        assertEquals(List.of(1L, 2L), ids(page));
+        assertNull(page.getBefore());
+        assertEquals(2L, MessageService.decodeCursor(page.getAfter()).id());
+    }
+
+    @Test
+    void getConversation_ShouldPageForwardFromAnAfterCursor() {
+        // Arrange
+        String after = MessageService.encodeCursor(messages(4, 4).get(0));
+        when(messageRepository.findConversationAfter(eq(3L), eq(7L), eq(START.plusMinutes(4)), eq(4L), any()))
+            .thenReturn(messages(5, 7));
+
+        // Act
+        MessagePage page = messageService.getConversation(3L, 7L, null, after, 2);
+
+        // Assert
+        assertEquals(List.of(5L, 6L), ids(page));
+        assertEquals(5L, MessageService.decodeCursor(page.getBefore()).id());
+        assertEquals(6L, MessageService.decodeCursor(page.getAfter()).id());
+    }
+
+    @Test
+    void getConversation_ShouldRejectMalformedOrConflictingCursors() {
+        String cursor = MessageService.encodeCursor(messages(1, 1).get(0));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> messageService.getConversation(3L, 7L, "not-a-cursor", null, 10));
+        assertThrows(IllegalArgumentException.class,
+            () -> messageService.getConversation(3L, 7L, cursor, cursor, 10));
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void send_ShouldCountTheMessageUnreadForTheReceiverOnly() {
+        // Arrange
+        Message message = new Message(null, 7L, 3L, "Still available?", START);
+        when(messageRepository.save(message)).thenAnswer(inv -> {
+            message.setId(11L);
+            return message;
+        });
+
+        // Act
+        messageService.send(message);
+
+        // Assert
+        verify(conversationRepository).recordMessage(3L, 7L, 11L, 7L, "Still available?", START, 1, 0);
+    }
+
+    @Test
+    void getInbox_ShouldDescribeEachConversationFromTheUsersSide() {
+        // Arrange
+        List<Conversation> rows = new ArrayList<>(List.of(
+            new Conversation(20L, 3L, 7L, 11L, 7L, "Still available?", START.plusMinutes(2), 4, 0),
+            new Conversation(19L, 7L, 9L, 10L, 7L, "Sold", START.plusMinutes(1), 0, 2),
+            new Conversation(18L, 1L, 7L, 9L, 1L, "Hi", START, 0, 1)));
+        when(conversationRepository.findInbox(7L, 3)).thenReturn(rows);
+
+        // Act
+        ConversationPage page = messageService.getInbox(7L, null, 2);
+
+        // Assert
+        assertEquals(2, page.getConversations().size());
+        ConversationDto first = page.getConversations().get(0);
+        assertEquals(3L, first.getOtherUserId());
+        assertEquals(0, first.getUnreadCount());
+        assertEquals("Still available?", first.getLastMessage());
+        ConversationDto second = page.getConversations().get(1);
+        assertEquals(9L, second.getOtherUserId());
+        assertEquals(0, second.getUnreadCount());
+        assertEquals(new MessageService.MessageCursor(START.plusMinutes(1), 19L),
+            MessageService.decodeCursor(page.getNext()));
+    }
+
+    @Test
+    void getInbox_ShouldContinueAfterTheCursor() {
+        // Arrange
+        String cursor = MessageService.encodeCursor(START.plusMinutes(1), 19L);
+        when(conversationRepository.findInboxAfter(7L, START.plusMinutes(1), 19L, 3)).thenReturn(List.of(
+            new Conversation(18L, 1L, 7L, 9L, 1L, "Hi", START, 0, 1)));
+
+        // Act
+        ConversationPage page = messageService.getInbox(7L, cursor, 2);
+
+        // Assert
+        assertEquals(1, page.getConversations().size());
+        assertEquals(1L, page.getConversations().get(0).getOtherUserId());
+        assertEquals(1, page.getConversations().get(0).getUnreadCount());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void markRead_ShouldClearOnlyTheReadersSide() {
+        // Act
+        messageService.markRead(7L, 3L);
+        messageService.markRead(3L, 7L);
+
+        // Assert
+        verify(conversationRepository).markReadByHigh(3L, 7L);
+        verify(conversationRepository).markReadByLow(3L, 7L);
+    }
+}
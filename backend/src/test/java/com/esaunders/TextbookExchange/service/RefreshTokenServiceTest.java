@@ -0,0 +1,141 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.esaunders.TextbookExchange.config.JwtProperties;
+import com.esaunders.TextbookExchange.model.RefreshToken;
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.repository.RefreshTokenRepository;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private JwtService jwtService;
+
+    private RefreshTokenService refreshTokenService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, jwtService, new JwtProperties());
+        user = new User();
+        user.setId(1L);
+        user.setEmail("test@test.com");
+        lenient().when(jwtService.generateToken(any())).thenReturn("access");
+    }
+
+    private RefreshToken stored(String familyId, LocalDateTime expiresAt, LocalDateTime usedAt) {
+        return new RefreshToken(7L, user, "hash", familyId, expiresAt, LocalDateTime.now(), usedAt);
+    }
+
+    @Test
+    void issue_ShouldStoreOnlyTheHashOfTheRefreshToken() {
+        // Act
+        RefreshTokenService.TokenPair tokens = refreshTokenService.issue(user);
+
+        // Assert
+        assertEquals("access", tokens.accessToken());
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertNotEquals(tokens.refreshToken(), saved.getValue().getTokenHash());
+        assertEquals(64, saved.getValue().getTokenHash().length());
+        assertEquals(user, saved.getValue().getUser());
+        assertTrue(saved.getValue().getExpiresAt().isAfter(LocalDateTime.now().plusDays(29)));
+    }
+
+    @Test
+    void rotate_ShouldMarkTheTokenUsedAndIssueOneInTheSameFamily() {
+        // Arrange
+        RefreshToken current = stored("family", LocalDateTime.now().plusDays(1), null);
+        when(refreshTokenRepository.findForUpdate(anyString())).thenReturn(Optional.of(current));
+
+        // Act
+        RefreshTokenService.TokenPair tokens = refreshTokenService.rotate("refresh");
+
+        // Assert
+        assertNotNull(tokens);
+        assertNotNull(current.getUsedAt());
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals("family", saved.getValue().getFamilyId());
+        verify(refreshTokenRepository, never()).deleteFamily(anyString());
+    }
+
+    @Test
+    void rotate_ShouldEndTheFamilyWhenAUsedTokenIsPresentedAgain() {
+        // Arrange
+        RefreshToken used = stored("family", LocalDateTime.now().plusDays(1), LocalDateTime.now().minusMinutes(1));
+        when(refreshTokenRepository.findForUpdate(anyString())).thenReturn(Optional.of(used));
+
+        // Act
+        RefreshTokenService.TokenPair tokens = refreshTokenService.rotate("refresh");
+
+        // Assert
+        assertNull(tokens);
+        verify(refreshTokenRepository).deleteFamily("family");
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void rotate_ShouldRefuseATokenRotatedMomentsAgoWithoutEndingTheFamily() {
+        // Arrange
+        RefreshToken used = stored("family", LocalDateTime.now().plusDays(1), LocalDateTime.now().minusSeconds(2));
+        when(refreshTokenRepository.findForUpdate(anyString())).thenReturn(Optional.of(used));
+
+        // Act
+        RefreshTokenService.TokenPair tokens = refreshTokenService.rotate("refresh");
+
+        // Assert
+        assertNull(tokens);
+        verify(refreshTokenRepository, never()).deleteFamily(anyString());
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void rotate_ShouldRejectUnknownAndExpiredTokens() {
+        // Arrange
+        when(refreshTokenRepository.findForUpdate(anyString()))
+            .thenReturn(Optional.empty())
+            .thenReturn(Optional.of(stored("family", LocalDateTime.now().minusSeconds(1), null)));
+
+        // Act & Assert
+        assertNull(refreshTokenService.rotate("unknown"));
+        assertNull(refreshTokenService.rotate("expired"));
+        assertNull(refreshTokenService.rotate(" "));
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void logout_ShouldEndTheFamilyAndRevokeTheAccessToken() {
+        // Arrange
+        when(refreshTokenRepository.findForUpdate(anyString()))
+            .thenReturn(Optional.of(stored("family", LocalDateTime.now().plusDays(1), null)));
+        JwtService.VerifiedToken access = new JwtService.VerifiedToken("test@test.com", 1L, "jti",
+            Instant.now().plusSeconds(60));
+
+        // Act
+        refreshTokenService.logout("refresh", access);
+
+        // Assert
+        verify(refreshTokenRepository).deleteFamily("family");
+        verify(jwtService).revoke(access);
+    }
+}
@@ -0,0 +1,176 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.esaunders.TextbookExchange.config.JwtProperties;
+import com.esaunders.TextbookExchange.model.RevokedToken;
+import com.esaunders.TextbookExchange.repository.RefreshTokenRepository;
+import com.esaunders.TextbookExchange.repository.RevokedTokenRepository;
+
+@ExtendWith(MockitoExtension.class)
+class RevocationListTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private Instant now;
+    private RevocationList revocations;
+
+    @BeforeEach
+    void setUp() {
+        now = NOW;
+        Clock clock = new Clock() {
+            @Override
+            public Instant instant() {
+                return now;
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+        };
+        revocations = new RevocationList(revokedTokenRepository, refreshTokenRepository, new JwtProperties(), clock);
+        lenient().when(revokedTokenRepository.findRevokedSince(any())).thenReturn(List.of());
+        lenient().when(revokedTokenRepository.findAfter(anyLong(), any())).thenReturn(List.of());
+    }
+
+    private static RevokedToken row(long id, String tokenId, Duration expiresIn) {
+        return new RevokedToken(id, tokenId, LocalDateTime.ofInstant(NOW.plus(expiresIn), ZoneOffset.UTC),
+            LocalDateTime.ofInstant(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void revoke_ShouldTakeEffectAtOnceAndBeStored() {
+        // Act
+        revocations.revoke("token-1", NOW.plus(Duration.ofMinutes(10)));
+
+        // Assert
+        assertTrue(revocations.isRevoked("token-1"));
+        assertFalse(revocations.isRevoked("token-2"));
+        ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(saved.capture());
+        assertEquals("token-1", saved.getValue().getTokenId());
+    }
+
+    @Test
+    void revoke_ShouldIgnoreTokensThatHaveAlreadyExpired() {
+        // Act
+        revocations.revoke("token-1", NOW.minusSeconds(1));
+
+        // Assert
+        assertFalse(revocations.isRevoked("token-1"));
+        verifyNoInteractions(revokedTokenRepository);
+    }
+
+    @Test
+    void refresh_ShouldReadOnlyNewRevocationsAndSkipExpiredOnes() {
+        // Arrange
+        when(revokedTokenRepository.findAfter(eq(0L), any()))
+            .thenReturn(List.of(row(1, "token-1", Duration.ofMinutes(10)), row(2, "old", Duration.ofMinutes(-1))));
+        when(revokedTokenRepository.findAfter(eq(2L), any()))
+            .thenReturn(List.of(row(3, "token-3", Duration.ofMinutes(10))));
+
+        // Act
+        revocations.refresh();
+        revocations.refresh();
+
+        // Assert
+        assertTrue(revocations.isRevoked("token-1"));
+        assertTrue(revocations.isRevoked("token-3"));
+        assertFalse(revocations.isRevoked("old"));
+        assertEquals(2, revocations.size());
+    }
+
+    @Test
+    void refresh_ShouldPickUpRevocationsCommittedOutOfIdOrder() {
+        // Arrange
+        when(revokedTokenRepository.findAfter(eq(0L), any()))
+            .thenReturn(List.of(row(5, "token-5", Duration.ofMinutes(10))));
+        revocations.refresh();
+        when(revokedTokenRepository.findRevokedSince(any()))
+            .thenReturn(List.of(row(4, "token-4", Duration.ofMinutes(10))));
+
+        // Act
+        revocations.refresh();
+
+        // Assert
+        assertTrue(revocations.isRevoked("token-4"));
+        verify(revokedTokenRepository).findAfter(eq(5L), any());
+    }
+
+    @Test
+    void refresh_ShouldForgetRevocationsOnceTheirTokensExpire() {
+        // Arrange
+        when(revokedTokenRepository.findAfter(eq(0L), any()))
+            .thenReturn(List.of(row(1, "token-1", Duration.ofMinutes(10))));
+        revocations.refresh();
+
+        // Act
+        now = NOW.plus(Duration.ofMinutes(11));
+        revocations.refresh();
+
+        // Assert
+        assertFalse(revocations.isRevoked("token-1"));
+        assertEquals(0, revocations.size());
+    }
+
+    @Test
+    void refresh_ShouldGrowTheFilterBeyondItsInitialCapacity() {
+        // Arrange
+        for (int i = 0; i < 3000; i++) {
+            revocations.revoke("token-" + i, NOW.plus(Duration.ofMinutes(10)));
+        }
+
+        // Act
+        revocations.refresh();
+
+        // Assert
+        for (int i = 0; i < 3000; i++) {
+            assertTrue(revocations.isRevoked("token-" + i));
+        }
+        assertFalse(revocations.isRevoked("token-3000"));
+    }
+
+    @Test
+    void refresh_ShouldPurgeExpiredRowsHourly() {
+        // Act
+        revocations.refresh();
+        now = NOW.plus(Duration.ofHours(1));
+        revocations.refresh();
+
+        // Assert
+        LocalDateTime purgedAt = LocalDateTime.ofInstant(now, ZoneOffset.UTC);
+        verify(revokedTokenRepository, times(1)).deleteExpired(purgedAt);
+        verify(refreshTokenRepository, times(1)).deleteExpired(purgedAt);
+    }
+}
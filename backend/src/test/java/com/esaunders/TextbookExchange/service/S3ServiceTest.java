@@ -0,0 +1,88 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+@ExtendWith(MockitoExtension.class)
+class S3ServiceTest {
+
+    @Mock
+    private S3Client s3Client;
+
+    private S3Presigner s3Presigner;
+    private S3Service s3Service;
+
+    @BeforeEach
+    void setUp() {
+        // Presigning is done locally, so a real presigner with dummy credentials needs no network
+        s3Presigner = S3Presigner.builder()
+            .region(Region.US_EAST_2)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIDEXAMPLE", "secret")))
+            .build();
+        s3Service = new S3Service(s3Client, s3Presigner, "textbook-images");
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3Presigner.close();
+    }
+
+    @Test
+    void presignUpload_ShouldSignTheContentTypeAndLength() {
+        // Act
+        S3Service.PresignedUpload upload = s3Service.presignUpload("uploads/3/abc", "image/png", 1024,
+            Duration.ofMinutes(10));
+
+        // Assert
+        assertEquals("uploads/3/abc", upload.key());
+        assertTrue(upload.url().startsWith("https://textbook-images.s3.us-east-2.amazonaws.com/uploads/3/abc?"));
+        assertTrue(upload.url().contains("X-Amz-Signature="));
+        String signedHeaders = upload.url().replaceAll(".*X-Amz-SignedHeaders=([^&]*).*", "$1");
+        assertTrue(signedHeaders.contains("content-type"));
+        assertTrue(signedHeaders.contains("content-length"));
+        assertEquals("image/png", upload.headers().get("content-type"));
+        assertEquals("1024", upload.headers().get("content-length"));
+        assertFalse(upload.headers().containsKey("host"));
+        assertTrue(upload.expiresAt().isAfter(Instant.now().plus(Duration.ofMinutes(9))));
+    }
+
+    @Test
+    void headFile_ShouldReturnNullForMissingObjects() throws Exception {
+        // Arrange
+        when(s3Client.headObject(any(HeadObjectRequest.class)))
+            .thenThrow(S3Exception.builder().statusCode(404).message("Not Found").build());
+
+        // Act & Assert
+        assertNull(s3Service.headFile("uploads/3/missing"));
+    }
+
+    @Test
+    void headFile_ShouldRethrowOtherErrors() {
+        // Arrange
+        when(s3Client.headObject(any(HeadObjectRequest.class)))
+            .thenThrow(S3Exception.builder().statusCode(403).message("Forbidden").build());
+
+        // Act & Assert
+        Exception e = assertThrows(Exception.class, () -> s3Service.headFile("uploads/3/abc"));
+        assertTrue(e.getMessage().startsWith("Failed to read file metadata from S3"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.esaunders.TextbookExchange.dtos.SuggestionDto;
+
+class SuggestionServiceTest {
+
+    private SuggestionService suggestionService;
+
+    @BeforeEach
+    void setUp() {
+        suggestionService = new SuggestionService();
+        suggestionService.add("CS101", "Java Programming");
+        suggestionService.add("CS101", "Java Concurrency in Practice");
+        suggestionService.add("cs201", "Java Programming");
+        suggestionService.add("CS102", "Javascript: The Good Parts");
+        suggestionService.add("MA141", "Calculus");
+    }
+
+    @Test
+    void suggest_ShouldRankCourseCodesByUseThenAlphabetically() {
+        SuggestionDto result = suggestionService.suggest("cs", 5);
+        assertEquals(Arrays.asList("CS101", "CS102", "CS201"), result.getCourseCodes());
+    }
+
+    @Test
+    void suggest_ShouldMatchTitlesCaseInsensitively() {
+        SuggestionDto result = suggestionService.suggest("JAVA", 5);
+        assertEquals(Arrays.asList("Java Programming", "Java Concurrency in Practice", "Javascript: The Good Parts"),
+            result.getTitles());
+        assertTrue(result.getCourseCodes().isEmpty());
+    }
+
+    @Test
+    void suggest_ShouldRespectLimit() {
+        assertEquals(Arrays.asList("CS101"), suggestionService.suggest("c", 1).getCourseCodes());
+        for (int i = 0; i < 15; i++) {
+            suggestionService.add(String.format("PH%03d", i), null);
+        }
+        assertEquals(SuggestionService.MAX_LIMIT, suggestionService.suggest("ph", 100).getCourseCodes().size());
+    }
+
+    @Test
+    void suggest_ShouldReturnNothingForBlankOrUnknownPrefix() {
+        SuggestionDto blank = suggestionService.suggest("  ", 5);
+        assertTrue(blank.getCourseCodes().isEmpty());
+        assertTrue(blank.getTitles().isEmpty());
+        assertTrue(suggestionService.suggest("xyz", 5).getTitles().isEmpty());
+    }
+
+    @Test
+    void add_ShouldIgnoreInvalidCourseCodes() {
+        suggestionService.add("COMP1010", "Discrete Math");
+        assertTrue(suggestionService.suggest("comp", 5).getCourseCodes().isEmpty());
+        assertEquals(Arrays.asList("Discrete Math"), suggestionService.suggest("disc", 5).getTitles());
+    }
+
+    @Test
+    void remove_ShouldDropTermsOnceNoListingUsesThem() {
+        suggestionService.remove("CS101", "Java Programming");
+        assertEquals(Arrays.asList("CS101", "CS102", "CS201"), suggestionService.suggest("cs", 5).getCourseCodes());
+
+        suggestionService.remove("CS101", "Java Concurrency in Practice");
+        suggestionService.remove("MA141", "Calculus");
+        List<String> codes = suggestionService.suggest("c", 5).getCourseCodes();
+        assertEquals(Arrays.asList("CS102", "CS201"), codes);
+        assertTrue(suggestionService.suggest("calc", 5).getTitles().isEmpty());
+        assertTrue(suggestionService.suggest("m", 5).getCourseCodes().isEmpty());
+    }
+
+    @Test
+    void clear_ShouldRemoveEverySuggestion() {
+        suggestionService.clear();
+        assertEquals(0, suggestionService.size());
+        assertTrue(suggestionService.suggest("j", 5).getTitles().isEmpty());
+    }
+}
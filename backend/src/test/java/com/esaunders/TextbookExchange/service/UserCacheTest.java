@@ -0,0 +1,86 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.esaunders.TextbookExchange.config.UserCacheProperties;
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class UserCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserCache userCache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userCache = new UserCache(userRepository, new UserCacheProperties(), new SimpleMeterRegistry());
+        user = new User();
+        user.setId(1L);
+        user.setEmail("test@test.com");
+        user.setFirstName("Ada");
+    }
+
+    @Test
+    void findById_ShouldLoadOnceAndReturnCopies() {
+        // Arrange
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        // Act
+        User first = userCache.findById(1L);
+        first.setFirstName("Changed");
+        User second = userCache.findById(1L);
+
+        // Assert
+        assertNotSame(first, second);
+        assertEquals("Ada", second.getFirstName());
+        assertEquals("test@test.com", second.getEmail());
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void findById_ShouldNotCacheMissingUsers() {
+        // Arrange
+        when(userRepository.findById(2L)).thenReturn(Optional.empty());
+
+        // Act
+        assertNull(userCache.findById(2L));
+        assertNull(userCache.findById(2L));
+
+        // Assert
+        verify(userRepository, times(2)).findById(2L);
+    }
+
+    @Test
+    void evict_ShouldReloadTheUserByIdAndEmail() {
+        // Arrange
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.findByEmail("test@test.com")).thenReturn(Optional.of(user));
+        userCache.findById(1L);
+        userCache.findByEmail("test@test.com");
+
+        // Act
+        user.setVerified(true);
+        userCache.evict(user);
+
+        // Assert
+        assertTrue(userCache.findById(1L).isVerified());
+        assertTrue(userCache.findByEmail("test@test.com").isVerified());
+        verify(userRepository, times(2)).findById(1L);
+        verify(userRepository, times(2)).findByEmail("test@test.com");
+    }
+}
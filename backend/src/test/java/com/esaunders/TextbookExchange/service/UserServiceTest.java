@@ -25,6 +25,9 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserCache userCache;
+
     @Mock
     private SecurityContext securityContext;
 
@@ -54,7 +57,7 @@ class UserServiceTest {
         when(securityContext.getAuthentication()).thenReturn(authentication);
         when(authentication.isAuthenticated()).thenReturn(true);
         when(authentication.getPrincipal()).thenReturn(customUserDetails);
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userCache.findById(1L)).thenReturn(user);
 
         // Act
         User result = userService.getAuthenticatedUser();
@@ -68,7 +71,7 @@ class UserServiceTest {
         verify(securityContext).getAuthentication();
         verify(authentication).isAuthenticated();
         verify(authentication).getPrincipal();
-        verify(userRepository).findById(1L);
+        verify(userCache).findById(1L);
     }
 
     @Test
@@ -82,7 +85,7 @@ class UserServiceTest {
         
         assertEquals("Unauthenticated", exception.getMessage());
         verify(securityContext).getAuthentication();
-        verifyNoInteractions(userRepository);
+        verifyNoInteractions(userCache);
     }
 
     @Test
@@ -98,7 +101,7 @@ class UserServiceTest {
         assertEquals("Unauthenticated", exception.getMessage());
         verify(securityContext).getAuthentication();
         verify(authentication).isAuthenticated();
-        verifyNoInteractions(userRepository);
+        verifyNoInteractions(userCache);
     }
 
     @Test
@@ -116,16 +119,16 @@ class UserServiceTest {
         verify(securityContext).getAuthentication();
         verify(authentication).isAuthenticated();
         verify(authentication).getPrincipal();
-        verifyNoInteractions(userRepository);
+        verifyNoInteractions(userCache);
     }
 
     @Test
-    void getAuthenticatedUser_ShouldThrowExceptionWhenUserNotFoundInDatabase() {
+    void getAuthenticatedUser_ShouldThrowExceptionWhenUserNoLongerExists() {
         // Arrange
         when(securityContext.getAuthentication()).thenReturn(authentication);
         when(authentication.isAuthenticated()).thenReturn(true);
         when(authentication.getPrincipal()).thenReturn(customUserDetails);
-        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+        when(userCache.findById(1L)).thenReturn(null);
 
         // Act & Assert
         RuntimeException exception = assertThrows(RuntimeException.class, 
@@ -135,6 +138,42 @@ class UserServiceTest {
         verify(securityContext).getAuthentication();
         verify(authentication).isAuthenticated();
         verify(authentication).getPrincipal();
-        verify(userRepository).findById(1L);
+        verify(userCache).findById(1L);
+    }
+
+    @Test
+    void save_ShouldEvictTheSavedUserFromTheCache() {
+        // Arrange
+        when(userRepository.save(user)).thenReturn(user);
+
+        // Act
+        User result = userService.save(user);
+
+        // Assert
+        assertEquals(user, result);
+        verify(userRepository).save(user);
+        verify(userCache).evict(user);
+    }
+
+    @Test
+    void markVerified_ShouldVerifyOnceAndEvictTheUser() {
+        // Arrange
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userRepository.markVerified(1L)).thenReturn(1).thenReturn(0);
+
+        // Act & Assert
+        assertTrue(userService.markVerified(1L));
+        assertFalse(userService.markVerified(1L));
+        verify(userCache, times(1)).evict(user);
+    }
+
+    @Test
+    void markVerified_ShouldRejectUnknownUsers() {
+        // Arrange
+        when(userRepository.findById(2L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertFalse(userService.markVerified(2L));
+        verify(userRepository, never()).markVerified(2L);
     }
 }
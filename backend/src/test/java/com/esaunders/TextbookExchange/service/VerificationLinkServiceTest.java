@@ -0,0 +1,105 @@
+package com.esaunders.TextbookExchange.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.esaunders.TextbookExchange.model.User;
+import com.esaunders.TextbookExchange.model.VerificationToken;
+import com.esaunders.TextbookExchange.repository.VerificationTokenRepository;
+
+@ExtendWith(MockitoExtension.class)
+class VerificationLinkServiceTest {
+
+    private static final String SECRET = "a-test-secret-that-is-at-least-256-bits-long!!";
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @Mock
+    private VerificationTokenRepository verificationTokenRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId(42L);
+        user.setEmail("student@school.edu");
+    }
+
+    private VerificationLinkService service(boolean signed, Instant now) {
+        return new VerificationLinkService(verificationTokenRepository, SECRET, signed, Duration.ofHours(1),
+            Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void verify_ShouldAcceptASignedTokenUntilItExpires() {
+        // Arrange
+        String token = service(true, NOW).issue(user);
+
+        // Act & Assert
+        assertTrue(token.matches("42\\.\\d+\\.[A-Za-z0-9_-]+"));
+        assertEquals(42L, service(true, NOW.plus(Duration.ofMinutes(59))).verify(token));
+        assertNull(service(true, NOW.plus(Duration.ofHours(1))).verify(token));
+        verifyNoInteractions(verificationTokenRepository);
+    }
+
+    @Test
+    void verify_ShouldRejectTamperedAndMalformedTokens() {
+        // Arrange
+        VerificationLinkService service = service(true, NOW);
+        String token = service.issue(user);
+        String mac = token.substring(token.lastIndexOf('.'));
+        String expiry = token.substring(3, token.lastIndexOf('.'));
+        String otherSecret = new VerificationLinkService(verificationTokenRepository,
+            "another-secret-that-is-also-at-least-256-bits-long", true, Duration.ofHours(1),
+            Clock.fixed(NOW, ZoneOffset.UTC)).issue(user);
+
+        // Act & Assert
+        assertNull(service.verify("43." + expiry + mac));
+        assertNull(service.verify("42." + (Long.parseLong(expiry) + 3600) + mac));
+        assertNull(service.verify(otherSecret));
+        assertNull(service.verify(token.substring(0, token.length() - 2)));
+        assertNull(service.verify("42.1.!!"));
+        assertNull(service.verify(""));
+    }
+
+    @Test
+    void issue_ShouldStoreTheTokenWhenLinksAreNotSigned() {
+        // Act
+        String token = service(false, NOW).issue(user);
+
+        // Assert
+        ArgumentCaptor<VerificationToken> saved = ArgumentCaptor.forClass(VerificationToken.class);
+        verify(verificationTokenRepository).save(saved.capture());
+        assertEquals(token, saved.getValue().getToken());
+        assertEquals(user, saved.getValue().getUser());
+        assertFalse(token.contains("."));
+    }
+
+    @Test
+    void verify_ShouldStillAcceptAndDeleteStoredTokens() {
+        // Arrange
+        VerificationToken stored = new VerificationToken("uuid", user, LocalDateTime.now().plusMinutes(5));
+        when(verificationTokenRepository.findByToken("uuid")).thenReturn(stored);
+        when(verificationTokenRepository.findByToken("missing")).thenReturn(null);
+
+        // Act & Assert
+        assertEquals(42L, service(true, NOW).verify("uuid"));
+        assertNull(service(true, NOW).verify("missing"));
+        verify(verificationTokenRepository).delete(stored);
+        verify(verificationTokenRepository, never()).save(any());
+    }
+}
@@ -11,6 +11,7 @@ import Verification from './pages/Verification';
 import VerifyEmail from './services/VerifyEmail';
 import Chat from './pages/Chat';
 import Messages from './pages/Messages';
+import { clearTokens, ensureFreshToken, logout, scheduleRefresh } from './services/tokens';
 import './App.css';
 
 function App() {
@@ -21,17 +22,18 @@ function App() {
     // Check if user is logged in on app load
     const token = localStorage.getItem('token');
     if (token) {
-      // Verify token with backend
-      fetch('/api/auth/user', {
+      // Renew an expired access token, then verify it with backend
+      ensureFreshToken()
+      .then(() => fetch('/api/auth/user', {
         method: 'GET',
         headers: {
-          'Authorization': `Bearer ${token}`
+          'Authorization': `Bearer ${localStorage.getItem('token')}`
         }
-      })
+      }))
       .then(response => {
         if (response.status === 401) {
           setUser(null);
-          localStorage.removeItem('token');
+          clearTokens();
           return;
         }
         if (response.ok) {
@@ -41,10 +43,11 @@ function App() {
       })
       .then(userData => {
         setUser(userData);
+        scheduleRefresh();
       })
       .catch(error => {
         console.error('Token verification failed:', error);
-        localStorage.removeItem('token');
+        clearTokens();
       })
       .finally(() => {
         setLoading(false);
@@ -60,7 +63,7 @@ function App() {
 
   const handleLogout = () => {
     setUser(null);
-    localStorage.removeItem('token');
+    logout();
   };
 
   if (loading) {
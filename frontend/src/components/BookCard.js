@@ -42,8 +42,9 @@ const BookCard = ({ book, currentUserId }) => {
         {book.imageUrl && (
           <div className="book-image-container" style={{ textAlign: 'center', marginBottom: '1rem' }}>
             <img
-              src={book.imageUrl}
+              src={book.thumbnailUrl || book.imageUrl}
               alt={`Cover of ${book.title}`}
+              loading="lazy"
               style={{
                 maxWidth: '200px',
                 maxHeight: '250px',
@@ -1,14 +1,19 @@
 import React, { useEffect, useState, useRef } from "react";
 import SockJS from "sockjs-client";
 import { Client } from "@stomp/stompjs";
+import { ensureFreshToken } from "../services/tokens";
 
 const API_URL = process.env.REACT_APP_API_URL;
+const PAGE_SIZE = 30;
 
 const ChatComponent = ({ userId, recipientId }) => {
   const [messages, setMessages] = useState([]);
   const [input, setInput] = useState("");
   const [connectionStatus, setConnectionStatus] = useState("Disconnected");
+  const [olderCursor, setOlderCursor] = useState(null);
+  const [loadingOlder, setLoadingOlder] = useState(false);
   const stompClient = useRef(null);
+  const historyRef = useRef(null);
   const token = localStorage.getItem('token');
 
   useEffect(() => {
@@ -18,7 +23,15 @@ const ChatComponent = ({ userId, recipientId }) => {
       return;
     }
 
-    const wsUrl = `${API_URL}/ws?token=${encodeURIComponent(token)}`;
+    // Clears this conversation's unread count in the inbox
+    const markRead = () => {
+      fetch(`${API_URL}/api/messages/conversations/${recipientId}/read`, {
+        method: 'POST',
+        headers: { 'Authorization': `Bearer ${localStorage.getItem('token')}` }
+      }).catch((error) => console.error("Error marking conversation read:", error));
+    };
+
+    const wsUrl = `${API_URL}/ws`;
     console.log("Connecting to WebSocket at:", wsUrl);
     
     const client = new Client({
@@ -27,12 +40,20 @@ const ChatComponent = ({ userId, recipientId }) => {
         return new SockJS(wsUrl);
       },
       reconnectDelay: 5000,
+      // The session is authenticated once, from the CONNECT frame; reconnects send the current token
+      beforeConnect: async () => {
+        await ensureFreshToken();
+        client.connectHeaders = {
+          Authorization: `Bearer ${localStorage.getItem('token')}`,
+        };
+      },
       debug: (str) => console.log("STOMP: " + str),
       onConnect: (frame) => {
         console.log("Connected to WebSocket:", frame);
         setConnectionStatus("Connected");
         
-        client.subscribe("/topic/messages", (msg) => {
+        // Only this user's messages are delivered to their queue
+        client.subscribe("/user/queue/messages", (msg) => {
           console.log("Received message:", msg.body);
           const message = JSON.parse(msg.body);
           if (
@@ -40,6 +61,7 @@ const ChatComponent = ({ userId, recipientId }) => {
             (message.senderId === recipientId && message.receiverId === userId)
           ) {
             setMessages((prev) => [...prev, message]);
+            if (message.senderId === recipientId) markRead();
           }
         });
       },
@@ -69,7 +91,7 @@ const ChatComponent = ({ userId, recipientId }) => {
 
     const fetchMessages = async () => {
       try {
-        const response = await fetch(`${API_URL}/api/messages/between/${userId}/${recipientId}`, {
+        const response = await fetch(`${API_URL}/api/messages/between/${userId}/${recipientId}?limit=${PAGE_SIZE}`, {
           headers: { 
             'Authorization': `Bearer ${token}`,
             'Content-Type': 'application/json'
@@ -77,8 +99,9 @@ const ChatComponent = ({ userId, recipientId }) => {
         });
         if (response.ok) {
           const data = await response.json();
-          setMessages(data);
-          console.log("Loaded message history:", data.length, "messages");
+          setMessages(data.messages);
+          setOlderCursor(data.before);
+          console.log("Loaded message history:", data.messages.length, "messages");
         } else {
           console.error("Failed to fetch messages:", response.status, response.statusText);
         }
@@ -87,6 +110,7 @@ const ChatComponent = ({ userId, recipientId }) => {
       }
     };
     fetchMessages();
+    markRead();
 
     return () => {
       if (stompClient.current) {
@@ -96,6 +120,38 @@ const ChatComponent = ({ userId, recipientId }) => {
     };
   }, [userId, recipientId, token]);
 
+  // Loads the page of history before the oldest message shown, keeping the scroll position
+  const loadOlder = async () => {
+    if (!olderCursor || loadingOlder) return;
+    setLoadingOlder(true);
+    try {
+      const response = await fetch(
+        `${API_URL}/api/messages/between/${userId}/${recipientId}?limit=${PAGE_SIZE}&before=${encodeURIComponent(olderCursor)}`, {
+          headers: { 'Authorization': `Bearer ${localStorage.getItem('token')}` }
+        });
+      if (response.ok) {
+        const data = await response.json();
+        const history = historyRef.current;
+        const fromBottom = history ? history.scrollHeight - history.scrollTop : 0;
+        setMessages((prev) => [...data.messages, ...prev]);
+        setOlderCursor(data.before);
+        requestAnimationFrame(() => {
+          if (history) history.scrollTop = history.scrollHeight - fromBottom;
+        });
+      } else {
+        console.error("Failed to fetch older messages:", response.status, response.statusText);
+      }
+    } catch (error) {
+      console.error("Error fetching older messages:", error);
+    } finally {
+      setLoadingOlder(false);
+    }
+  };
+
+  const handleScroll = (e) => {
+    if (e.currentTarget.scrollTop < 40) loadOlder();
+  };
+
   const getSenderName = (msg) => {
     if (msg.senderId === userId) return "Me";
     return msg.senderName || "Unknown";
@@ -128,9 +184,14 @@ const ChatComponent = ({ userId, recipientId }) => {
       <div style={{ marginBottom: '10px', padding: '5px', backgroundColor: '#f0f0f0' }}>
         Status: {connectionStatus}
       </div>
-      <div style={{ height: 300, overflowY: "auto", border: '1px solid #ccc', padding: '10px' }}>
+      <div
+        ref={historyRef}
+        onScroll={handleScroll}
+        style={{ height: 300, overflowY: "auto", border: '1px solid #ccc', padding: '10px' }}
+      >
+        {loadingOlder && <div style={{ color: '#666', textAlign: 'center' }}>Loading older messages...</div>}
         {messages.map((m, i) => (
-          <div key={i} style={{ marginBottom: '5px' }}>
+          <div key={m.id ?? i} style={{ marginBottom: '5px' }}>
             <b>{getSenderName(m)}:</b> {m.content}
             <small style={{ color: '#666', marginLeft: '10px' }}>
               {m.timestamp ? new Date(m.timestamp).toLocaleTimeString() : ''}
@@ -1,7 +1,7 @@
 import React from 'react';
 import { useNavigate } from 'react-router-dom';
 
-const MessageCard = ({ senderId, senderName, lastMessage, timestamp }) => {
+const MessageCard = ({ senderId, senderName, lastMessage, timestamp, unreadCount = 0 }) => {
   const navigate = useNavigate();
 
   return (
@@ -21,7 +21,23 @@ const MessageCard = ({ senderId, senderName, lastMessage, timestamp }) => {
       onClick={() => navigate(`/chat/${senderId}`)}
     >
       <div style={{ flex: 1 }}>
-        <div style={{ fontWeight: 'bold', fontSize: '1rem' }}>{senderName || senderId}</div>
+        <div style={{ fontWeight: 'bold', fontSize: '1rem' }}>
+          {senderName || senderId}
+          {unreadCount > 0 && (
+            <span
+              style={{
+                marginLeft: '0.5rem',
+                padding: '0 0.4rem',
+                borderRadius: '0.6rem',
+                background: '#d9534f',
+                color: '#fff',
+                fontSize: '0.75rem',
+              }}
+            >
+              {unreadCount}
+            </span>
+          )}
+        </div>
         <div style={{ color: '#555', fontSize: '0.95rem', marginTop: 2 }}>{lastMessage}</div>
       </div>
       <div style={{ fontSize: '0.8rem', color: '#999', marginLeft: '1rem', whiteSpace: 'nowrap' }}>
@@ -49,7 +49,7 @@ const Home = () => {
         throw new Error('Failed to fetch books');
       }
       const data = await response.json();
-      setBooks(data);
+      setBooks(data.books);
     } catch (err) {
       setError(err.message);
     } finally {
@@ -62,7 +62,7 @@ const Home = () => {
       setLoading(true);
       const queryParams = new URLSearchParams();
       
-      if (filters.searchTerm) queryParams.append('search', filters.searchTerm);
+      if (filters.searchTerm) queryParams.append('query', filters.searchTerm);
       if (filters.condition) queryParams.append('condition', filters.condition);
       if (filters.minPrice) queryParams.append('minPrice', filters.minPrice);
       if (filters.maxPrice) queryParams.append('maxPrice', filters.maxPrice);
@@ -77,7 +77,7 @@ const Home = () => {
         throw new Error('Failed to search books');
       }
       const data = await response.json();
-      setBooks(data);
+      setBooks(data.books);
     } catch (err) {
       setError(err.message);
     } finally {
@@ -1,5 +1,6 @@
 import React, { useState } from 'react';
 import { Link } from 'react-router-dom';
+import { saveTokens } from '../services/tokens';
 
 const Login = ({ onLogin }) => {
   const [formData, setFormData] = useState({
@@ -51,7 +52,7 @@ const Login = ({ onLogin }) => {
       }
 
       const data = await response.json();
-      localStorage.setItem('token', data.token);
+      saveTokens(data);
       onLogin(data.user);
       window.location.href = '/';
     } catch (err) {
@@ -4,56 +4,83 @@ import MessageCard from '../components/MessageCard';
 import App from '../App';
 
 
+const PAGE_SIZE = 20;
+
 const Messages = ({ user }) => {
-  const [receivedMessages, setReceivedMessages] = useState([]);
+  const [conversations, setConversations] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
   const navigate = useNavigate();
   const token = localStorage.getItem('token');
 
   const API_BASE_URL = process.env.REACT_APP_API_URL;
 
+  // Fetches one page of the inbox; the server keeps a summary per conversation
+  const fetchPage = async (cursor) => {
+    const params = new URLSearchParams({ limit: PAGE_SIZE });
+    if (cursor) params.set('cursor', cursor);
+    const response = await fetch(`${API_BASE_URL}/api/messages/conversations?${params}`, {
+      headers: { Authorization: `Bearer ${localStorage.getItem('token')}` }
+    });
+    if (!response.ok) throw new Error(`Failed to fetch conversations: ${response.status}`);
+    return response.json();
+  };
+
   useEffect(() => {
-    const fetchMessages = async () => {
+    const fetchConversations = async () => {
       try {
-        const response = await fetch(`${API_BASE_URL}/api/messages/received/${user.id}`, {
-          headers: { Authorization: `Bearer ${token}` }
-        });
-        const data = await response.json();
-        const grouped = {};
-        data.forEach(msg => {
-          if (!grouped[msg.senderId] || new Date(msg.timestamp) > new Date(grouped[msg.senderId].timestamp)) {
-            grouped[msg.senderId] = msg;
-          }
-        });
-        const sorted = Object.values(grouped).sort((a, b) => new Date(b.timestamp) - new Date(a.timestamp));
-        setReceivedMessages(sorted);
+        const data = await fetchPage(null);
+        setConversations(data.conversations);
+        setNextCursor(data.next);
       } catch (err) {
-        setReceivedMessages([]);
+        setConversations([]);
       } finally {
         setLoading(false);
       }
     };
-    if (user) fetchMessages();
+    if (user) fetchConversations();
   }, [user, token]);
 
+  const loadMore = async () => {
+    setLoadingMore(true);
+    try {
+      const data = await fetchPage(nextCursor);
+      setConversations((prev) => [...prev, ...data.conversations]);
+      setNextCursor(data.next);
+    } catch (err) {
+      console.error(err);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   if (loading) return <div>Loading messages...</div>;
-  if (!receivedMessages.length) return <div>No messages received.</div>;
+  if (!conversations.length) return <div>No messages yet.</div>;
 
   return (
     <div className="messages-list" style={{ maxWidth: 600, margin: '0 auto' }}>
-      <h2>Received Messages</h2>
+      <h2>Messages</h2>
       <ul style={{ listStyle: 'none', padding: 0 }}>
-        {receivedMessages.map(msg => (
-          <li key={msg.id} style={{ padding: 0, margin: 0 }}>
+        {conversations.map(conversation => (
+          <li key={conversation.otherUserId} style={{ padding: 0, margin: 0 }}>
             <MessageCard
-              senderId={msg.senderId}
-              senderName={msg.senderName}
-              lastMessage={msg.content}
-              timestamp={msg.timestamp}
+              senderId={conversation.otherUserId}
+              senderName={conversation.otherUserName}
+              lastMessage={conversation.lastSenderId === user.id
+                ? `You: ${conversation.lastMessage}`
+                : conversation.lastMessage}
+              timestamp={conversation.lastMessageAt}
+              unreadCount={conversation.unreadCount}
             />
           </li>
         ))}
       </ul>
+      {nextCursor && (
+        <button onClick={loadMore} disabled={loadingMore} style={{ width: '100%', padding: '0.5rem' }}>
+          {loadingMore ? 'Loading...' : 'Load more'}
+        </button>
+      )}
     </div>
   );
 };
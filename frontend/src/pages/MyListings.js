@@ -117,7 +117,8 @@ const MyListings = ({ user }) => {
                   <div className="book-image-container" style={{ textAlign: 'center', marginBottom: '1rem' }}>
                     {console.log('Image URL:', listing.imageUrl)}
                     <img
-                      src={listing.imageUrl}
+                      src={listing.thumbnailUrl || listing.imageUrl}
+                      loading="lazy"
                       style={{
                         maxWidth: '200px',
                         maxHeight: '250px',
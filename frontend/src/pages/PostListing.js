@@ -76,22 +76,44 @@ const PostListing = ({ user }) => {
       const token = localStorage.getItem('token');
       const cleanedData = sanitizeFormData(formData);
 
-      const formDataToSend = new FormData();
-      formDataToSend.append('request', new Blob([JSON.stringify({
-        ...cleanedData,
-        price: parseFloat(cleanedData.price)
-      })], { type: 'application/json' }));
-
-      if (imageFile) {
-        formDataToSend.append('image', imageFile);
+      // Upload the image straight to S3, then post the listing with its key
+      const uploadUrlResponse = await fetch(`${API_BASE_URL}/api/books/upload-url`, {
+        method: 'POST',
+        headers: {
+          'Authorization': `Bearer ${token}`,
+          'Content-Type': 'application/json'
+        },
+        body: JSON.stringify({ contentType: imageFile.type, size: imageFile.size })
+      });
+      if (!uploadUrlResponse.ok) {
+        throw new Error('Failed to prepare image upload');
+      }
+      const upload = await uploadUrlResponse.json();
+
+      // The browser sets Content-Length from the file itself; it must match the signed size
+      const uploadHeaders = Object.fromEntries(
+        Object.entries(upload.headers).filter(([name]) => name.toLowerCase() !== 'content-length')
+      );
+      const uploadResponse = await fetch(upload.url, {
+        method: 'PUT',
+        headers: uploadHeaders,
+        body: imageFile
+      });
+      if (!uploadResponse.ok) {
+        throw new Error('Failed to upload image');
       }
 
       const response = await fetch(`${API_BASE_URL}/api/books/post-listing`, {
         method: 'POST',
         headers: {
-          'Authorization': `Bearer ${token}`
+          'Authorization': `Bearer ${token}`,
+          'Content-Type': 'application/json'
         },
-        body: formDataToSend
+        body: JSON.stringify({
+          ...cleanedData,
+          price: parseFloat(cleanedData.price),
+          imageKey: upload.key
+        })
       });
 
       if (!response.ok) {
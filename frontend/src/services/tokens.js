@@ -0,0 +1,113 @@
+const API_BASE_URL = process.env.REACT_APP_API_URL;
+
+// Access tokens last minutes; renew them this long before they expire
+const REFRESH_MARGIN_MS = 60 * 1000;
+
+let refreshTimer = null;
+let refreshing = null;
+
+// Expiry of a JWT in epoch milliseconds, or 0 if it cannot be read
+export function expiryOf(token) {
+  try {
+    const payload = token.split('.')[1].replace(/-/g, '+').replace(/_/g, '/');
+    return JSON.parse(atob(payload)).exp * 1000;
+  } catch (e) {
+    return 0;
+  }
+}
+
+function isFresh(token) {
+  return !!token && expiryOf(token) - Date.now() > REFRESH_MARGIN_MS;
+}
+
+export function saveTokens({ token, refreshToken }) {
+  localStorage.setItem('token', token);
+  if (refreshToken) {
+    localStorage.setItem('refreshToken', refreshToken);
+  }
+  scheduleRefresh();
+}
+
+export function clearTokens() {
+  clearTimeout(refreshTimer);
+  localStorage.removeItem('token');
+  localStorage.removeItem('refreshToken');
+}
+
+async function rotate() {
+  const refreshToken = localStorage.getItem('refreshToken');
+  if (!refreshToken) {
+    return false;
+  }
+  const response = await fetch(`${API_BASE_URL}/api/auth/refresh`, {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify({ refreshToken }),
+  });
+  if (!response.ok) {
+    // Another tab may have rotated the token first; its new tokens are already stored
+    if (localStorage.getItem('refreshToken') !== refreshToken) {
+      scheduleRefresh();
+      return true;
+    }
+    clearTokens();
+    return false;
+  }
+  saveTokens(await response.json());
+  return true;
+}
+
+// Rotates in one tab at a time; a tab that waited finds the tokens already renewed
+function rotateExclusively() {
+  if (!navigator.locks) {
+    return rotate();
+  }
+  return navigator.locks.request('refresh-token', () =>
+    isFresh(localStorage.getItem('token')) ? true : rotate());
+}
+
+// Trades the refresh token for new tokens; concurrent callers share one request
+export function refreshTokens() {
+  if (!refreshing) {
+    refreshing = rotateExclusively()
+      .catch(() => false)
+      .finally(() => { refreshing = null; });
+  }
+  return refreshing;
+}
+
+// Makes sure the stored access token is usable, renewing it if needed
+export async function ensureFreshToken() {
+  return isFresh(localStorage.getItem('token')) || refreshTokens();
+}
+
+export function scheduleRefresh() {
+  clearTimeout(refreshTimer);
+  const token = localStorage.getItem('token');
+  if (!token || !localStorage.getItem('refreshToken')) {
+    return;
+  }
+  // Jitter spreads out tabs sharing the same tokens
+  const delay = Math.max(0, expiryOf(token) - Date.now() - REFRESH_MARGIN_MS) + Math.random() * 5000;
+  refreshTimer = setTimeout(() => {
+    if (isFresh(localStorage.getItem('token'))) {
+      scheduleRefresh();
+    } else {
+      refreshTokens();
+    }
+  }, delay);
+}
+
+export async function logout() {
+  const token = localStorage.getItem('token');
+  const refreshToken = localStorage.getItem('refreshToken');
+  clearTokens();
+  await fetch(`${API_BASE_URL}/api/auth/logout`, {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+      ...(token && { 'Authorization': `Bearer ${token}` }),
+    },
+    body: JSON.stringify({ refreshToken }),
+  }).catch(() => {});
+}